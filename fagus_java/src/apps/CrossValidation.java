@@ -1,13 +1,19 @@
 package apps;
 
+import classify.BootstrapValidator;
 import classify.Classifier;
+import classify.ClassifierFactory;
 import classify.CrossValidator;
+import classify.KFoldValidator;
 import classify.Validator;
+import classify.bayes.NormalFactorClassifier;
 import classify.bayes.NormalLinearClassifier;
 import classify.bayes.NormalMLEClassifier;
 import classify.bayes.NormalRegularizedClassifier;
 import classify.knn.KNNClassifier;
 import classify.parzen.ParzenWindowClassifier;
+import classify.svm.KernelMatrix;
+import classify.svm.LinearSupportVectorClassifier;
 import classify.svm.SupportVectorClassifier;
 import reporting.ClassificationLogger;
 import reporting.ConfusionMatrixReporter;
@@ -18,6 +24,7 @@ import select.FeatureSelection;
 import select.extract.ChernoffLinearDiscriminantAnalysis;
 import select.extract.FisherLinearDiscriminantAnalysis;
 import util.LibSVMVectorSetReader;
+import util.Parallel;
 import util.VectorSet;
 
 /**
@@ -31,91 +38,184 @@ import util.VectorSet;
 public class CrossValidation {
 
 	private static void usage() {
-		System.err.println("Usage: java apps.CrossValidation [-lda n] CLASSIFIER [OPTIONS] INPUT_FILE");
-		System.err.println("Where LDA is used to reduce the dimension of the input data to n features\n");
+		System.err.println("Usage: java apps.CrossValidation [-lda n] [-folds k | -bootstrap b] [-threads t] CLASSIFIER [OPTIONS] INPUT_FILE");
+		System.err.println("Where LDA is used to reduce the dimension of the input data to n features,");
+		System.err.println("k-fold cross validation or b bootstrap replicates are used instead of Leave-One-Out,");
+		System.err.println("and t threads are used\n");
 		System.err.println("Classifiers and options: ");
 		System.err.println("    knn [k]               : k-NN classifier with k neighbors");
 		System.err.println("    parzen [r]            : Parzen Window classifier with radius r");
 		System.err.println("    bayes [-linear] | \n" +
-				           "      [-regularize alpha] : Bayes classifier, either quadratic (default),\n" +
-				           "                            linear, or regularized");
-		System.err.println("    svm [c gamma]         : Support-Vector-Machine with parameters c and gamma");
+				           "      [-regularize alpha] | \n" +
+				           "      [-factor k]         : Bayes classifier, either quadratic (default),\n" +
+				           "                            linear, regularized, or with k factors");
+		System.err.println("    svm [-precomputed] \n" +
+				           "      [c gamma]           : Support-Vector-Machine with parameters c and gamma,\n" +
+				           "                            optionally using a precomputed kernel matrix");
+		System.err.println("    svm -linear [c]       : linear Support-Vector-Machine with parameter c");
 	}
-
-
-	public static void main(String[] args) throws Exception {
-		VectorSet trainingSet = null;
+	
+	/*
+	 * Create a classifier from its name and options. Returns null,
+	 * if the options are invalid.
+	 */
+	private static Classifier newClassifier(String[] spec, KernelMatrix kernel) {
 		Classifier classifier = null;
-		int argp = 0;
-		boolean useLda = false;
-		int nLda = 0;
-		
-		if(args.length < 2) {
-			usage();
-			System.exit(1);
-		}
-		
-		if(args[argp].equals("-lda")) {
-			useLda = true;
-			nLda = Integer.parseInt(args[argp + 1]);
-			argp += 2;
-		}
 		
-		if(args[argp].equalsIgnoreCase("knn")) {
-			if(args.length == argp + 2) {
+		if(spec[0].equalsIgnoreCase("knn")) {
+			if(spec.length == 1) {
 				classifier = new KNNClassifier();
 			} else {
-				classifier = new KNNClassifier(Integer.parseInt(args[argp + 1]));
-				argp++;
+				classifier = new KNNClassifier(Integer.parseInt(spec[1]));
 			}
-		} else if(args[argp].equalsIgnoreCase("bayes")) {
-			if(args.length == argp + 2) {
+		} else if(spec[0].equalsIgnoreCase("bayes")) {
+			if(spec.length == 1) {
 				classifier = new NormalMLEClassifier();
-			} else if(args[argp + 1].equals("-linear")) {
+			} else if(spec[1].equals("-linear")) {
 				classifier = new NormalLinearClassifier();
-				argp++;
-			} else if(args[argp + 1].equals("-regularize")) {
-				double alpha = Double.parseDouble(args[argp + 2]);
+			} else if(spec[1].equals("-regularize")) {
+				double alpha = Double.parseDouble(spec[2]);
 				classifier = new NormalRegularizedClassifier(alpha);
-				argp += 2;
-			} else {
-				usage();
-				System.exit(1);				
+			} else if(spec[1].equals("-factor")) {
+				int rank = Integer.parseInt(spec[2]);
+				classifier = new NormalFactorClassifier(rank);
 			}
-		} else if(args[argp].equalsIgnoreCase("parzen")) {
+		} else if(spec[0].equalsIgnoreCase("parzen")) {
 			double radius;
-			if(args.length == argp + 2) {
+			if(spec.length == 1) {
 				radius = 1.0;
 			} else {
-				radius = Double.parseDouble(args[argp + 1]);
-				argp++;
+				radius = Double.parseDouble(spec[1]);
 			}
 			classifier = new ParzenWindowClassifier(radius, ParzenWindowClassifier.KernelType.GAUSSIAN_PRODUCT);
-		} else if(args[argp].equalsIgnoreCase("svm")) {
-			if(args.length == argp + 2) {
+		} else if(spec[0].equalsIgnoreCase("svm") && spec.length > 1 && spec[1].equals("-linear")) {
+			if(spec.length == 2) {
+				classifier = new LinearSupportVectorClassifier();
+			} else {
+				classifier = new LinearSupportVectorClassifier(Double.parseDouble(spec[2]));
+			}
+		} else if(spec[0].equalsIgnoreCase("svm")) {
+			int argp = 0;
+			
+			if(spec.length > 1 && spec[1].equals("-precomputed")) {
+				argp++;
+			}
+			
+			if(spec.length == argp + 1) {
 				classifier = new SupportVectorClassifier();
 			} else {
-				double c = Double.parseDouble(args[argp + 1]);
-				double gamma = Double.parseDouble(args[argp + 2]);
+				double c = Double.parseDouble(spec[argp + 1]);
+				double gamma = Double.parseDouble(spec[argp + 2]);
 				classifier = new SupportVectorClassifier(c, gamma);
-				
-				argp += 2;
 			}
-		} else {
+			
+			((SupportVectorClassifier)classifier).setKernelMatrix(kernel);
+		}
+		
+		return classifier;
+	}
+
+
+	public static void main(String[] args) throws Exception {
+		VectorSet trainingSet = null;
+		Classifier classifier = null;
+		int argp = 0;
+		boolean useLda = false;
+		int nLda = 0;
+		int folds = 0;
+		int replicates = 0;
+		int threads = Parallel.getDefaultThreads();
+		
+		while(argp < args.length && args[argp].startsWith("-")) {
+			if(args[argp].equals("-lda") && argp + 1 < args.length) {
+				useLda = true;
+				nLda = Integer.parseInt(args[argp + 1]);
+			} else if(args[argp].equals("-folds") && argp + 1 < args.length) {
+				folds = Integer.parseInt(args[argp + 1]);
+			} else if(args[argp].equals("-bootstrap") && argp + 1 < args.length) {
+				replicates = Integer.parseInt(args[argp + 1]);
+			} else if(args[argp].equals("-threads") && argp + 1 < args.length) {
+				threads = Integer.parseInt(args[argp + 1]);
+			} else {
+				usage();
+				System.exit(1);
+			}
+			argp += 2;
+		}
+		
+		if(args.length - argp < 2) {
 			usage();
 			System.exit(1);
 		}
 		
-		argp++;
-		trainingSet = (new LibSVMVectorSetReader(args[argp])).parse();
+		// the classifier and its options, without the input file
+		final String[] spec = new String[args.length - argp - 1];
+		System.arraycopy(args, argp, spec, 0, spec.length);
+		
+		classifier = newClassifier(spec, null);
+		
+		if(classifier == null) {
+			usage();
+			System.exit(1);
+		}
+		
+		trainingSet = (new LibSVMVectorSetReader(args[args.length - 1])).parse();
+		
+		KernelMatrix matrix = null;
+		
+		boolean precomputed = spec.length > 1 && spec[1].equals("-precomputed");
+		
+		if(classifier instanceof SupportVectorClassifier && precomputed && !useLda) {
+			/*
+			 * All training sets of the cross validation are subsets of the
+			 * input data. Compute the kernel matrix once.
+			 */
+			matrix = new KernelMatrix(trainingSet, threads);
+			((SupportVectorClassifier)classifier).setKernelMatrix(matrix);
+		}
 		
 		// create some reporters
 		Reporter[] reporters = new Reporter[2];
 		reporters[0] = new ConfusionMatrixReporter(trainingSet.getClassDescriptors());
 		reporters[1] = new TotalErrorReporter();
 		
-		ClassificationLogger logger = new ProgressClassificationLogger(trainingSet.getData().size());//new ClassificationLogger();
-		Validator validator = new CrossValidator();
+		ClassificationLogger logger;
+		Validator validator;
+		
+		if(replicates > 0) {
+			// the number of out-of-bag vectors is not known in advance
+			logger = new ClassificationLogger();
+		} else {
+			logger = new ProgressClassificationLogger(trainingSet.getData().size());
+		}
+		
+		final KernelMatrix kernel = matrix;
+		ClassifierFactory factory = new ClassifierFactory() {
+			public Classifier newInstance() {
+				return newClassifier(spec, kernel);
+			}
+		};
+		
+		if(replicates > 0) {
+			BootstrapValidator bootstrap = new BootstrapValidator(replicates);
+			
+			bootstrap.setThreads(threads);
+			bootstrap.setClassifierFactory(factory);
+			validator = bootstrap;
+		} else if(folds > 0) {
+			KFoldValidator kfold = new KFoldValidator(folds);
+			
+			kfold.setThreads(threads);
+			kfold.setClassifierFactory(factory);
+			validator = kfold;
+		} else {
+			CrossValidator loo = new CrossValidator();
+			
+			loo.setThreads(threads);
+			loo.setClassifier(classifier);
+			loo.setClassifierFactory(factory);
+			validator = loo;
+		}
 		
 		if(useLda) {
 			/*
@@ -140,7 +240,6 @@ public class CrossValidation {
 			validator.setFeatureSelection(selection);	
 		}
 		
-		validator.setClassifier(classifier);
 		validator.setLogger(logger);
 		
 		// run evaluation
@@ -152,6 +251,19 @@ public class CrossValidation {
 		for(Reporter reporter: reporters) {
 			reporter.createReport(logger, System.out);
 		}
+		
+		if(validator instanceof BootstrapValidator) {
+			BootstrapValidator bootstrap = (BootstrapValidator)validator;
+			double[] ci = bootstrap.getConfidenceInterval632();
+			double[] ciPlus = bootstrap.getConfidenceInterval632Plus();
+			
+			System.out.printf("%.4f %% resubstitution error\n", bootstrap.getApparentError() * 100.0);
+			System.out.printf("%.4f %% leave-one-out bootstrap error\n", bootstrap.getBootstrapError() * 100.0);
+			System.out.printf("%.4f %% .632 error, 95 %% interval [%.4f, %.4f]\n",
+					bootstrap.getEstimate632() * 100.0, ci[0] * 100.0, ci[1] * 100.0);
+			System.out.printf("%.4f %% .632+ error, 95 %% interval [%.4f, %.4f]\n",
+					bootstrap.getEstimate632Plus() * 100.0, ciPlus[0] * 100.0, ciPlus[1] * 100.0);
+		}
 	}
 		
 }
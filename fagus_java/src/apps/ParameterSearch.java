@@ -0,0 +1,130 @@
+package apps;
+
+import java.io.IOException;
+import java.util.StringTokenizer;
+
+import util.FeatureScaler;
+import util.LibSVMVectorSetReader;
+import util.Parallel;
+import util.UniformFeatureScaler;
+import util.VectorSet;
+import util.io.ModelWriter;
+import classify.svm.GridSearch;
+import classify.svm.GridSearch.Result;
+
+/**
+ * Search the parameters C and gamma of a Support-Vector-Machine by
+ * k-fold cross validation on a grid. The error rate of every evaluated
+ * grid point is printed to stdout in CSV format. A model using the
+ * best parameters is trained on all data and written to a model file.
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public class ParameterSearch {
+
+	private static void usage() {
+		System.err.println("usage: java apps.ParameterSearch [OPTIONS] TRAINING_DATA MODEL_FILE");
+		System.err.println("Options:");
+		System.err.println("    -c from:to:step   : exponents of C to the base 2 (default -5:15:2)");
+		System.err.println("    -g from:to:step   : exponents of gamma to the base 2 (default -15:3:2)");
+		System.err.println("    -folds k          : k-fold cross validation (default 5)");
+		System.err.println("    -refine r         : refine the grid r times around the best point (default 0)");
+		System.err.println("    -threads n        : number of threads (default: number of processors)");
+		System.err.println("    -precomputed      : use a precomputed kernel matrix");
+	}
+
+	/*
+	 * Parse a range 'from:to:step' into a grid of exponents.
+	 */
+	private static double[] parseRange(String s) {
+		StringTokenizer st = new StringTokenizer(s, ":");
+
+		if(st.countTokens() != 3) {
+			usage();
+			System.exit(1);
+		}
+
+		double from = Double.parseDouble(st.nextToken());
+		double to = Double.parseDouble(st.nextToken());
+		double step = Double.parseDouble(st.nextToken());
+
+		int n = (int)Math.floor((to - from) / step + 1E-9) + 1;
+		double[] grid = new double[n];
+
+		for(int i = 0; i < n; i++) {
+			grid[i] = from + i * step;
+		}
+
+		return grid;
+	}
+
+	public static void main(String[] args) {
+		double[] log2C = parseRange("-5:15:2");
+		double[] log2Gamma = parseRange("-15:3:2");
+		int folds = 5;
+		int refinements = 0;
+		int threads = Parallel.getDefaultThreads();
+		boolean precomputed = false;
+		int argp = 0;
+
+		while(argp < args.length && args[argp].startsWith("-")) {
+			if(args[argp].equals("-c") && argp + 1 < args.length) {
+				log2C = parseRange(args[++argp]);
+			} else if(args[argp].equals("-g") && argp + 1 < args.length) {
+				log2Gamma = parseRange(args[++argp]);
+			} else if(args[argp].equals("-folds") && argp + 1 < args.length) {
+				folds = Integer.parseInt(args[++argp]);
+			} else if(args[argp].equals("-refine") && argp + 1 < args.length) {
+				refinements = Integer.parseInt(args[++argp]);
+			} else if(args[argp].equals("-threads") && argp + 1 < args.length) {
+				threads = Integer.parseInt(args[++argp]);
+			} else if(args[argp].equals("-precomputed")) {
+				precomputed = true;
+			} else {
+				usage();
+				System.exit(1);
+			}
+			argp++;
+		}
+
+		if(args.length - argp != 2) {
+			usage();
+			System.exit(1);
+		}
+
+		VectorSet data = null;
+
+		try {
+			data = new LibSVMVectorSetReader(args[argp]).parse();
+		} catch(IOException e) {
+			System.err.println("Cannot read training data: " + e.getMessage());
+			System.exit(1);
+		}
+
+		// SVMs suggest scaling
+		FeatureScaler scaling = new UniformFeatureScaler(data, -1.0, 1.0);
+		scaling.scale(data);
+
+		GridSearch search = new GridSearch(log2C, log2Gamma);
+		search.setFolds(folds);
+		search.setRefinements(refinements);
+		search.setThreads(threads);
+		search.setPrecomputed(precomputed);
+		search.run(data);
+
+		search.printResults(System.out);
+
+		Result best = search.getBestResult();
+		System.err.println("best: c=" + best.getC() + " gamma=" + best.getGamma() + " error=" + best.getError());
+
+		try {
+			ModelWriter writer = new ModelWriter();
+			writer.setClassifier(search.getBestClassifier());
+			writer.setScaling(scaling);
+			writer.write(args[argp + 1]);
+		} catch(IOException e) {
+			System.err.println("Cannot write model file: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -2,15 +2,20 @@ package apps;
 
 import java.io.IOException;
 
+import classify.Classifier;
+import classify.ClassifierFactory;
 import classify.bayes.NormalMLEClassifier;
 import reporting.ProgressBar;
 import reporting.SubsetSelectionLogger;
 import select.subset.BhattacharyyaDistance;
+import select.subset.CachingCriterionFunction;
 import select.subset.ChernoffCriterion;
 import select.subset.CriterionFunction;
 import select.subset.CrossValidationCriterion;
+import select.subset.DeferredCriterionFunction;
 import select.subset.FeatureSubsetSelection;
 import select.subset.FisherClassSeparabilityCriterion;
+import select.subset.MulticlassBhattacharyyaDistance;
 import select.subset.SelectionAlgorithm;
 import select.subset.bnb.BranchAndBound;
 import select.subset.bnb.FastBranchAndBound;
@@ -23,6 +28,7 @@ import select.subset.greedy.OscillatingSearch;
 import select.subset.greedy.SequentialForwardFloatingSearch;
 import util.LibSVMVectorSetReader;
 import util.LibSVMVectorSetWriter;
+import util.Parallel;
 import util.VectorSet;
 import util.VectorSetWriter;
 
@@ -34,15 +40,19 @@ import util.VectorSetWriter;
  * manually, or can be left as a choice to the program. For two
  * class problems a Recursive Branch &amp; Bound algorithm using
  * the Bhattacharyya distance will be run. For a multi class problem,
- * the Fisher criterion and a Fast Branch &amp; Bound will be used.
+ * the Fisher criterion will be used. If the Bhattacharyya distance is
+ * chosen for a multi class problem, the pairwise distances of the
+ * classes are summed up.
  * 
  * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
  */
 public class SubsetSelection {
 
 	private static void usage() {
-		System.err.println("Usage: java apps.SubsetSelection ALGORITHM [CRITERION] -FEATURES ORIGINAL_FEATURES OUTPUT_FILE");
-		System.err.println("  where ALGORITHM is one of:");
+		System.err.println("Usage: java apps.SubsetSelection [-cache n] [-deferred m] [-threads t] ALGORITHM [CRITERION] -FEATURES ORIGINAL_FEATURES OUTPUT_FILE");
+		System.err.println("  where up to n criterion values are cached, covariance matrices are");
+		System.err.println("  estimated on demand keeping up to m elements each, t threads evaluate");
+		System.err.println("  subsets, and ALGORITHM is one of:");
 		System.err.println("    bnb       : Branch and bound search");
 		System.err.println("    exhaustive: Exhaustive search");
 		System.err.println("    sffs      : Sequencial forward floating search");
@@ -101,8 +111,24 @@ public class SubsetSelection {
 
 	public static void main(String[] args) {
 		int argp = 0;
+		int cacheSize = 0;
+		int deferred = 0;
+		int threads = Parallel.getDefaultThreads();
+		
+		while(argp + 1 < args.length) {
+			if(args[argp].equals("-cache")) {
+				cacheSize = Integer.parseInt(args[argp + 1]);
+			} else if(args[argp].equals("-deferred")) {
+				deferred = Integer.parseInt(args[argp + 1]);
+			} else if(args[argp].equals("-threads")) {
+				threads = Integer.parseInt(args[argp + 1]);
+			} else {
+				break;
+			}
+			argp += 2;
+		}
 
-		if(args.length < 3) {
+		if(args.length - argp < 3) {
 			usage();
 			System.exit(1);
 		}
@@ -111,7 +137,7 @@ public class SubsetSelection {
 		
 		String criterion = null;
 		
-		if(args.length > 4) {
+		if(args.length - argp > 3) {
 			criterion = args[argp++];
 		}
 		
@@ -137,18 +163,17 @@ public class SubsetSelection {
 		CriterionFunction f = null;
 		
 		/*
-		 * The bhattacharyya distance gives better results, but is only applicable
-		 * for a two-class problem. The fisher criterion, on the other hand, cannot
-		 * be computed recursively.
+		 * The bhattacharyya distance gives better results for a two-class
+		 * problem. Both can be computed recursively.
 		 */
 		if(criterion == null) {
+			if(algorithm.equalsIgnoreCase("bnb")) {
+				BranchAndBound bnb = new RecursiveBranchAndBound();
+				bnb.addObserver(new ProgressBar());
+				selector = bnb;
+			}
+			
 			if(vectorSet.isTwoClassProblem()) {
-				if(algorithm.equalsIgnoreCase("bnb")) {
-					BranchAndBound bnb = new RecursiveBranchAndBound();
-					bnb.addObserver(new ProgressBar());
-					selector = bnb;
-				}
-				
 				f = new BhattacharyyaDistance();
 			} else {
 				f = new FisherClassSeparabilityCriterion();
@@ -166,15 +191,25 @@ public class SubsetSelection {
 				
 				f = new BhattacharyyaDistance();
 			} else {
-				System.err.println("Cannot use Bhattacharyya bound for more than 2 classes");
-				System.exit(1);
+				// the sum of the pairwise distances, weighted by the priors
+				if(algorithm.equalsIgnoreCase("bnb")) {
+					BranchAndBound bnb = new RecursiveBranchAndBound();
+					bnb.addObserver(new ProgressBar());
+					selector = bnb;
+				}
+				
+				f = new MulticlassBhattacharyyaDistance();
 			}
 		} else if(criterion.equalsIgnoreCase("fisher")) {
 			f = new FisherClassSeparabilityCriterion();
 		} else if(criterion.equalsIgnoreCase("chernoff")) {
 			f = new ChernoffCriterion();
 		} else if(criterion.equalsIgnoreCase("bayes")) {
-			f = new CrossValidationCriterion(new NormalMLEClassifier());
+			f = new CrossValidationCriterion(new ClassifierFactory() {
+				public Classifier newInstance() {
+					return new NormalMLEClassifier();
+				}
+			});
 		} else {
 			System.err.println("Unknown criterion function: " + criterion + "\n");
 			usage();
@@ -186,12 +221,37 @@ public class SubsetSelection {
 			selector = getSelector(algorithm);
 		}
 		
+		if(selector instanceof NestedSubsetAlgorithm) {
+			((NestedSubsetAlgorithm)selector).setThreads(threads);
+		} else if(f instanceof ChernoffCriterion) {
+			// evaluate the class pairs of a subset concurrently instead
+			((ChernoffCriterion)f).setThreads(threads);
+		} else if(f instanceof MulticlassBhattacharyyaDistance) {
+			((MulticlassBhattacharyyaDistance)f).setThreads(threads);
+		}
+		
+		if(deferred > 0 && f instanceof DeferredCriterionFunction) {
+			((DeferredCriterionFunction)f).setDeferredEstimation(deferred);
+		}
+		
+		CachingCriterionFunction cache = null;
+		
+		// the recursive Branch & Bound only derives states, which are not cached
+		if(cacheSize > 0 && !(selector instanceof RecursiveBranchAndBound)) {
+			cache = CachingCriterionFunction.newInstance(f, cacheSize);
+			f = cache;
+		}
+		
 		FeatureSubsetSelection fss = new FeatureSubsetSelection(selector, f, k);
 		
 		fss.initialize(vectorSet);
 		
 		System.out.println();
 		
+		if(cache != null) {
+			System.out.println("cache: " + cache.getHits() + " hits, " + cache.getMisses() + " misses");
+		}
+		
 		// print report
 		printReport(selector.getFeatureVector(), vectorSet);
 		
@@ -6,16 +6,19 @@ import select.FeatureSelection;
 import select.extract.ChernoffLinearDiscriminantAnalysis;
 import util.FeatureScaler;
 import util.LibSVMVectorSetReader;
+import util.Parallel;
 import util.UniformFeatureScaler;
 import util.VectorSet;
-import util.VectorSetReader;
 import util.io.ModelWriter;
 import classify.Classifier;
+import classify.StreamingTrainable;
+import classify.bayes.NormalFactorClassifier;
 import classify.bayes.NormalLinearClassifier;
 import classify.bayes.NormalMLEClassifier;
 import classify.bayes.NormalRegularizedClassifier;
 import classify.knn.KNNClassifier;
 import classify.parzen.ParzenWindowClassifier;
+import classify.svm.LinearSupportVectorClassifier;
 import classify.svm.SupportVectorClassifier;
 
 /**
@@ -35,9 +38,11 @@ public class Train {
 		System.err.println("    knn [k]               : k-NN classifier with k neighbors");
 		System.err.println("    parzen [r]            : Parzen Window classifier with radius r");
 		System.err.println("    bayes [-linear] | \n" +
-		                   "      [-regularize alpha] : Bayes classifier, either quadratic (default),\n" +
-		                   "                            linear, or regularized");
+		                   "      [-regularize alpha] | \n" +
+		                   "      [-factor k]         : Bayes classifier, either quadratic (default),\n" +
+		                   "                            linear, regularized, or with k factors");
 		System.err.println("    svm [c gamma]         : Support-Vector-Machine with parameters c and gamma");
+		System.err.println("    svm -linear [c]       : linear Support-Vector-Machine with parameter c");
 	}
 	
 	private static void export(Classifier cl, FeatureSelection selection, 
@@ -93,6 +98,10 @@ public class Train {
 				double alpha = Double.parseDouble(args[argp + 2]);
 				classifier = new NormalRegularizedClassifier(alpha);
 				argp += 2;
+			} else if(args[argp + 1].equals("-factor")) {
+				int rank = Integer.parseInt(args[argp + 2]);
+				classifier = new NormalFactorClassifier(rank);
+				argp += 2;
 			} else {
 				usage();
 				System.exit(1);				
@@ -106,6 +115,18 @@ public class Train {
 				argp++;
 			}
 			classifier = new ParzenWindowClassifier(radius, ParzenWindowClassifier.KernelType.NORMAL);
+		} else if(args[argp].equalsIgnoreCase("svm") && args[argp + 1].equals("-linear")) {
+			argp++;
+			
+			if(args.length == argp + 3) {
+				classifier = new LinearSupportVectorClassifier();
+			} else {
+				classifier = new LinearSupportVectorClassifier(Double.parseDouble(args[argp + 1]));
+				argp++;
+			}
+			
+			// train the one-against-rest problems concurrently
+			((LinearSupportVectorClassifier)classifier).setThreads(Parallel.getDefaultThreads());
 		} else if(args[argp].equalsIgnoreCase("svm")) {
 			if(args.length == argp + 3) {
 				classifier = new SupportVectorClassifier();
@@ -116,16 +137,34 @@ public class Train {
 				
 				argp += 2;
 			}
+			
+			// train the one-against-one problems concurrently
+			((SupportVectorClassifier)classifier).setThreads(Parallel.getDefaultThreads());
 		} else {
 			usage();
 			System.exit(1);
 		}
 		argp++;
 		
-		VectorSetReader r = new LibSVMVectorSetReader(args[argp]);
+		LibSVMVectorSetReader r = new LibSVMVectorSetReader(args[argp]);
 		argp++;
 		VectorSet trainingData = null;
 		
+		if(!useLda && classifier instanceof StreamingTrainable) {
+			/*
+			 * Normal Bayes classifiers only need the sufficient statistics
+			 * of every class. Do not keep the training data in memory.
+			 */
+			try {
+				((StreamingTrainable)classifier).train(r, Parallel.getDefaultThreads());
+				export(classifier, null, null, args[argp]);
+			} catch(IOException e) {
+				System.err.println("Cannot train classifier: " + e.getMessage());
+				System.exit(1);
+			}
+			return;
+		}
+		
 		try {
 			trainingData = r.parse();
 		} catch(IOException e) {
@@ -0,0 +1,46 @@
+package classify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import util.ClassDescriptor;
+import util.Parallel;
+
+/**
+ * This implements batch classification for predictors, whose
+ * single-vector classification is thread safe. The batch is split
+ * into chunks of at least BATCH_SIZE vectors, which are classified
+ * concurrently.
+ * 
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public abstract class AbstractPredictor implements Predictor {
+	/** The minimum number of vectors classified by one task. */
+	protected static final int BATCH_SIZE = 64;
+	
+	public ClassDescriptor[] classify(final double[][] vectors, int threads) {
+		final ClassDescriptor[] result = new ClassDescriptor[vectors.length];
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		
+		int chunk = Math.max(BATCH_SIZE, (vectors.length + threads - 1) / Math.max(threads, 1));
+		
+		for(int start = 0; start < vectors.length; start += chunk) {
+			final int from = start;
+			final int to = Math.min(start + chunk, vectors.length);
+			
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					for(int i = from; i < to; i++) {
+						result[i] = classify(vectors[i]);
+					}
+					return null;
+				}
+			});
+		}
+		
+		Parallel.invokeAll(tasks, threads);
+		
+		return result;
+	}
+}
@@ -0,0 +1,614 @@
+package classify;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import reporting.ClassificationLogger;
+import select.FeatureSelection;
+import util.ClassDescriptor;
+import util.Parallel;
+import util.VectorSet;
+
+/**
+ * This validator estimates the classification error by the bootstrap.
+ * B training sets of size n are drawn with replacement from the n
+ * input vectors. Every replicate is trained, and the vectors, which
+ * were not drawn (out-of-bag), are classified. On average, 36.8 % of
+ * the vectors are out-of-bag. The out-of-bag classifications are
+ * passed to the logger.
+ *
+ * <br><br>
+ * The leave-one-out bootstrap error Err<sup>(1)</sup> is the mean over
+ * all vectors of the error rate of a vector, taken over the replicates
+ * where it was out-of-bag. It is biased upwards, since only 63.2 % of
+ * the distinct vectors are used for training. The resubstitution error
+ * err, obtained by training and classifying the whole set, is biased
+ * downwards. The .632 estimate combines both:
+ * <pre>
+ * Err(.632) = 0.368 * err + 0.632 * Err(1)
+ * </pre>
+ * The .632+ estimate puts more weight on Err<sup>(1)</sup>, if the
+ * classifier overfits, i.e. if err is much smaller than Err<sup>(1)</sup>.
+ * With the no-information error rate gamma, where p_k is the fraction of
+ * class k among the vectors and q_k the fraction of resubstitution
+ * results assigned to class k,
+ * <pre>
+ * gamma      = sum(p_k * (1 - q_k))
+ * Err(1)'    = min(Err(1), gamma)
+ * R'         = (Err(1)' - err) / (gamma - err)
+ * Err(.632+) = Err(.632) + (Err(1)' - err) * 0.368 * 0.632 * R' / (1 - 0.368 * R')
+ * </pre>
+ * where R' is 0, unless Err(1)' and gamma are greater than err, and
+ * Err(.632) is built from the unlimited Err<sup>(1)</sup>. If
+ * Err<sup>(1)</sup> exceeds gamma, this is 0.632 * Err(1) + 0.368 * gamma.
+ *
+ * <br><br>
+ * The standard errors of the estimates are jackknife-after-bootstrap
+ * estimates. Leaving out vector i, the replicates where i was
+ * out-of-bag are bootstrap samples of the remaining n - 1 vectors, so
+ * Err<sup>(1)</sup> is evaluated from these replicates and the other
+ * vectors alone. The resubstitution error and gamma are evaluated
+ * without vector i, but the classifier is not retrained. With the
+ * estimates T<sub>(i)</sub> and their mean T<sub>(.)</sub>
+ * <pre>
+ * SE = sqrt((n - 1) / n * sum((T_(i) - T_(.))^2))
+ * </pre>
+ * The confidence intervals are normal intervals T +- z * SE. Since each
+ * leave-one-out estimate uses only 36.8 % of the replicates, B should
+ * be at least some hundreds; a small B overestimates the standard
+ * errors.
+ *
+ * <br><br>
+ * Replicates only hold indices of the input vectors. The training set
+ * of a replicate references the input vectors; only vectors drawn more
+ * than once are copied, since a vector set cannot contain the same
+ * vector twice. If a ClassifierFactory is given, the replicates are
+ * processed concurrently, each with its own classifier. The draws only
+ * depend on the seed and the contents of the vector set, hence the
+ * estimates do not depend on the number of threads.
+ *
+ * <br><br>
+ * See B. Efron and R. Tibshirani
+ *     "Improvements on Cross-Validation: The .632+ Bootstrap Method"
+ *     Journal of the American Statistical Association
+ *     Vol. 92, No. 438, pp. 548--560
+ *     1997
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public class BootstrapValidator implements Validator {
+	private final int replicates;
+	private Classifier classifier;
+	private ClassifierFactory factory;
+	private FeatureSelection selection;
+	private ClassificationLogger logger;
+	private double confidence;
+	private int threads;
+	private long seed;
+
+	private double apparentError;
+	private double bootstrapError;
+	private double noInformationError;
+	private double standardError632;
+	private double standardError632Plus;
+
+	/**
+	 * Create a new bootstrap validator.
+	 *
+	 * @param replicates the number of bootstrap replicates B.
+	 */
+	public BootstrapValidator(int replicates) {
+		this.replicates = replicates;
+		this.confidence = 0.95;
+		this.threads = 1;
+		this.seed = 0;
+	}
+
+	/**
+	 * Set the classifier, that is retrained for every replicate. The
+	 * replicates are processed sequentially.
+	 */
+	public void setClassifier(Classifier classifier) {
+		this.classifier = classifier;
+		this.factory = null;
+	}
+
+	/**
+	 * Set a factory, which creates a new classifier for every replicate.
+	 * This allows to process the replicates concurrently.
+	 *
+	 * @param factory
+	 */
+	public void setClassifierFactory(ClassifierFactory factory) {
+		this.factory = factory;
+		this.classifier = null;
+	}
+
+	public void setFeatureSelection(FeatureSelection selection) {
+		this.selection = selection;
+	}
+
+	public void setLogger(ClassificationLogger logger) {
+		this.logger = logger;
+	}
+
+	/**
+	 * Set the level of the confidence intervals. The default is 0.95.
+	 *
+	 * @param confidence a value in (0,1).
+	 */
+	public void setConfidence(double confidence) {
+		this.confidence = confidence;
+	}
+
+	/**
+	 * Set the number of worker threads. It only takes effect, if a
+	 * ClassifierFactory is used and no feature selection is set.
+	 *
+	 * @param threads the number of threads. The default is 1.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Set the seed of the random draws.
+	 *
+	 * @param seed
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Run the bootstrap and log the out-of-bag results.
+	 */
+	public void validate(VectorSet data) {
+		final VectorSet set = data;
+		final List<double[]> vectors = getVectors(data);
+		final int n = vectors.size();
+		List<Callable<int[]>> tasks = new ArrayList<Callable<int[]>>();
+
+		/* the resubstitution error */
+		tasks.add(new Callable<int[]>() {
+			public int[] call() {
+				int[] all = new int[n];
+
+				for(int i = 0; i < n; i++) {
+					all[i] = i;
+				}
+
+				return evaluate(set, vectors, all, all, false);
+			}
+		});
+
+		Random random = new Random(seed);
+
+		for(int b = 0; b < replicates; b++) {
+			final long replicateSeed = random.nextLong();
+
+			tasks.add(new Callable<int[]>() {
+				public int[] call() {
+					return replicate(set, vectors, new Random(replicateSeed));
+				}
+			});
+		}
+
+		boolean concurrent = factory != null && selection == null;
+		List<int[]> results = Parallel.invokeAll(tasks, concurrent ? threads : 1);
+
+		/*
+		 * Every result holds pairs of a vector index and a flag, which
+		 * is 1 for a misclassification. The resubstitution result holds
+		 * the index of the resulting class instead.
+		 */
+		List<ClassDescriptor> classes = new ArrayList<ClassDescriptor>(data.getClassDescriptors());
+		int[] resulting = new int[classes.size()];
+		int[] target = new int[classes.size()];
+		int[] apparent = results.get(0);
+		int errors = 0;
+
+		for(int i = 0; i < n; i++) {
+			ClassDescriptor t = data.getData().get(vectors.get(i));
+			int k = apparent[2 * i + 1];
+
+			target[classes.indexOf(t)]++;
+
+			if(k >= 0) {
+				resulting[k]++;
+			}
+
+			if(k < 0 || !classes.get(k).equals(t)) {
+				errors++;
+			}
+		}
+
+		apparentError = (double)errors / n;
+		noInformationError = getNoInformationError(target, resulting, n);
+
+		/* the leave-one-out bootstrap error */
+		List<int[]> replicateResults = results.subList(1, results.size());
+		bootstrapError = getBootstrapError(replicateResults, n, -1);
+
+		/*
+		 * The jackknife-after-bootstrap: leave out every vector i, and
+		 * reevaluate the estimates without it.
+		 */
+		List<List<int[]>> outOfBag = new ArrayList<List<int[]>>();
+		double[] jackknife632 = new double[n];
+		double[] jackknife632Plus = new double[n];
+
+		for(int i = 0; i < n; i++) {
+			outOfBag.add(new ArrayList<int[]>());
+		}
+
+		// the replicates, where i is out-of-bag
+		for(int[] r: replicateResults) {
+			for(int j = 0; j < r.length; j += 2) {
+				outOfBag.get(r[j]).add(r);
+			}
+		}
+
+		for(int i = 0; i < n; i++) {
+			int t = classes.indexOf(data.getData().get(vectors.get(i)));
+			int k = apparent[2 * i + 1];
+			boolean wrong = k < 0 || k != t;
+			double e = (double)(errors - (wrong ? 1 : 0)) / (n - 1);
+			double b = getBootstrapError(outOfBag.get(i), n, i);
+
+			target[t]--;
+			if(k >= 0) {
+				resulting[k]--;
+			}
+
+			double gamma = getNoInformationError(target, resulting, n - 1);
+
+			target[t]++;
+			if(k >= 0) {
+				resulting[k]++;
+			}
+
+			jackknife632[i] = estimate632(e, b);
+			jackknife632Plus[i] = estimate632Plus(e, b, gamma);
+		}
+
+		standardError632 = getJackknifeError(jackknife632);
+		standardError632Plus = getJackknifeError(jackknife632Plus);
+	}
+
+	/**
+	 * Get the resubstitution error, i.e. the error of classifying the
+	 * training set.
+	 *
+	 * @return a value in [0,1].
+	 */
+	public double getApparentError() {
+		return apparentError;
+	}
+
+	/**
+	 * Get the leave-one-out bootstrap error Err<sup>(1)</sup>.
+	 *
+	 * @return a value in [0,1].
+	 */
+	public double getBootstrapError() {
+		return bootstrapError;
+	}
+
+	/**
+	 * Get the no-information error rate gamma.
+	 *
+	 * @return a value in [0,1].
+	 */
+	public double getNoInformationError() {
+		return noInformationError;
+	}
+
+	/**
+	 * Get the .632 estimate of the error.
+	 *
+	 * @return a value in [0,1].
+	 */
+	public double getEstimate632() {
+		return estimate632(apparentError, bootstrapError);
+	}
+
+	/**
+	 * Get the .632+ estimate of the error.
+	 *
+	 * @return a value in [0,1].
+	 */
+	public double getEstimate632Plus() {
+		return estimate632Plus(apparentError, bootstrapError, noInformationError);
+	}
+
+	/**
+	 * Get the jackknife-after-bootstrap standard error of the .632
+	 * estimate.
+	 *
+	 * @return the standard error, or NaN, if it cannot be estimated.
+	 */
+	public double getStandardError632() {
+		return standardError632;
+	}
+
+	/**
+	 * Get the jackknife-after-bootstrap standard error of the .632+
+	 * estimate.
+	 *
+	 * @return the standard error, or NaN, if it cannot be estimated.
+	 */
+	public double getStandardError632Plus() {
+		return standardError632Plus;
+	}
+
+	/**
+	 * Get the normal confidence interval of the .632 estimate, limited
+	 * to [0,1].
+	 *
+	 * @return the lower and the upper bound.
+	 */
+	public double[] getConfidenceInterval632() {
+		return getInterval(getEstimate632(), standardError632);
+	}
+
+	/**
+	 * Get the normal confidence interval of the .632+ estimate, limited
+	 * to [0,1].
+	 *
+	 * @return the lower and the upper bound.
+	 */
+	public double[] getConfidenceInterval632Plus() {
+		return getInterval(getEstimate632Plus(), standardError632Plus);
+	}
+
+
+	/*
+	 * Draw one replicate, and evaluate its out-of-bag vectors.
+	 */
+	private int[] replicate(VectorSet data, List<double[]> vectors, Random random) {
+		int n = vectors.size();
+		int[] drawn = new int[n];
+		boolean[] used = new boolean[n];
+		int m = n;
+
+		for(int j = 0; j < n; j++) {
+			drawn[j] = random.nextInt(n);
+
+			if(!used[drawn[j]]) {
+				used[drawn[j]] = true;
+				m--;
+			}
+		}
+
+		int[] outOfBag = new int[m];
+		m = 0;
+
+		for(int i = 0; i < n; i++) {
+			if(!used[i]) {
+				outOfBag[m++] = i;
+			}
+		}
+
+		return evaluate(data, vectors, drawn, outOfBag, true);
+	}
+
+	/*
+	 * Train on the drawn vectors and classify the test vectors. If
+	 * errors is true, the result holds an error flag for every test
+	 * vector, otherwise the index of the resulting class.
+	 */
+	private int[] evaluate(VectorSet data, List<double[]> vectors, int[] drawn, int[] test, boolean errors) {
+		Map<double[], ClassDescriptor> all = data.getData();
+		Map<double[], ClassDescriptor> training = new LinkedHashMap<double[], ClassDescriptor>();
+		boolean[] used = new boolean[vectors.size()];
+
+		for(int j: drawn) {
+			double[] v = vectors.get(j);
+
+			// the same vector cannot be added twice, copies keep the order
+			training.put(used[j] ? v.clone() : v, all.get(v));
+			used[j] = true;
+		}
+
+		Classifier cl = factory != null ? factory.newInstance() : classifier;
+		VectorSet trainingSet = new VectorSet(training, data.getFeatureLables());
+		Predictor predictor;
+
+		if(selection != null) {
+			selection.initialize(trainingSet);
+			predictor = cl.train(selection.getMappedData());
+		} else {
+			predictor = cl.train(trainingSet);
+		}
+
+		List<ClassDescriptor> classes = new ArrayList<ClassDescriptor>(data.getClassDescriptors());
+		int[] result = new int[2 * test.length];
+
+		for(int j = 0; j < test.length; j++) {
+			double[] v = vectors.get(test[j]);
+			ClassDescriptor d;
+
+			if(selection != null) {
+				d = predictor.classify(selection.mapVector(v));
+			} else {
+				d = predictor.classify(v);
+			}
+
+			result[2 * j] = test[j];
+
+			if(errors) {
+				result[2 * j + 1] = all.get(v).equals(d) ? 0 : 1;
+
+				if(logger != null) {
+					logger.log(v, all.get(v), d);
+				}
+			} else {
+				result[2 * j + 1] = classes.indexOf(d);
+			}
+		}
+
+		cl.clearTrainingData();
+
+		return result;
+	}
+
+	/*
+	 * The input vectors in a reproducible order: by class, and
+	 * lexicographically within a class.
+	 */
+	private static List<double[]> getVectors(VectorSet data) {
+		final Map<double[], ClassDescriptor> all = data.getData();
+		final Comparator<double[]> order = new KFoldValidator.VectorCompare();
+		List<double[]> vectors = new ArrayList<double[]>(all.keySet());
+
+		Collections.sort(vectors, new Comparator<double[]>() {
+			public int compare(double[] a, double[] b) {
+				int c = all.get(a).toString().compareTo(all.get(b).toString());
+
+				return c != 0 ? c : order.compare(a, b);
+			}
+		});
+
+		// create cached data before the set is shared by threads
+		data.getClassDescriptors();
+
+		return vectors;
+	}
+
+	/*
+	 * Get Err(1) from the given replicates, leaving out the vector with
+	 * the given index, or none, if it is negative. Vectors, which are
+	 * never out-of-bag, are not counted.
+	 */
+	private static double getBootstrapError(List<int[]> replicates, int n, int left) {
+		int[] outOfBag = new int[n];
+		int[] wrong = new int[n];
+
+		for(int[] r: replicates) {
+			for(int j = 0; j < r.length; j += 2) {
+				outOfBag[r[j]]++;
+				wrong[r[j]] += r[j + 1];
+			}
+		}
+
+		double sum = 0.0;
+		int m = 0;
+
+		for(int i = 0; i < n; i++) {
+			if(i != left && outOfBag[i] > 0) {
+				sum += (double)wrong[i] / outOfBag[i];
+				m++;
+			}
+		}
+
+		return m > 0 ? sum / m : Double.NaN;
+	}
+
+	/*
+	 * gamma = sum(p_k * (1 - q_k))
+	 */
+	private static double getNoInformationError(int[] target, int[] resulting, int n) {
+		double gamma = 0.0;
+
+		for(int k = 0; k < target.length; k++) {
+			gamma += (double)target[k] / n * (1.0 - (double)resulting[k] / n);
+		}
+
+		return gamma;
+	}
+
+	/*
+	 * SE = sqrt((n - 1) / n * sum((T_(i) - T_(.))^2)), skipping undefined
+	 * values.
+	 */
+	private static double getJackknifeError(double[] values) {
+		double sum = 0.0;
+		int n = 0;
+
+		for(double v: values) {
+			if(!Double.isNaN(v)) {
+				sum += v;
+				n++;
+			}
+		}
+
+		if(n < 2) {
+			return Double.NaN;
+		}
+
+		double mean = sum / n;
+		double squares = 0.0;
+
+		for(double v: values) {
+			if(!Double.isNaN(v)) {
+				squares += (v - mean) * (v - mean);
+			}
+		}
+
+		return Math.sqrt((n - 1.0) / n * squares);
+	}
+
+	private static double estimate632(double apparent, double bootstrap) {
+		return 0.368 * apparent + 0.632 * bootstrap;
+	}
+
+	private static double estimate632Plus(double apparent, double bootstrap, double gamma) {
+		double limited = Math.min(bootstrap, gamma);
+		double r = 0.0;
+
+		if(limited > apparent && gamma > apparent) {
+			r = (limited - apparent) / (gamma - apparent);
+		}
+
+		return estimate632(apparent, bootstrap)
+			+ (limited - apparent) * 0.368 * 0.632 * r / (1.0 - 0.368 * r);
+	}
+
+	/*
+	 * Get the normal interval estimate +- z * se within [0,1].
+	 */
+	private double[] getInterval(double estimate, double se) {
+		double z = getNormalQuantile(1.0 - (1.0 - confidence) / 2.0);
+
+		return new double[] {Math.max(0.0, estimate - z * se), Math.min(1.0, estimate + z * se)};
+	}
+
+	/*
+	 * The quantile function of the standard normal distribution, by
+	 * the rational approximation of P. J. Acklam, which has a relative
+	 * error below 1.2e-9.
+	 */
+	private static double getNormalQuantile(double p) {
+		final double[] a = {-3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+				1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00};
+		final double[] b = {-5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+				6.680131188771972e+01, -1.328068155288572e+01};
+		final double[] c = {-7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+				-2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00};
+		final double[] d = {7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+				3.754408661907416e+00};
+		final double low = 0.02425;
+
+		if(p < low || p > 1.0 - low) {
+			// the tails
+			double q = Math.sqrt(-2.0 * Math.log(p < low ? p : 1.0 - p));
+			double x = (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+				/ ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1.0);
+
+			return p < low ? x : -x;
+		}
+
+		double q = p - 0.5;
+		double r = q * q;
+
+		return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q
+			/ (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1.0);
+	}
+}
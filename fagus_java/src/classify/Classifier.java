@@ -23,8 +23,18 @@ public interface Classifier {
 	/**
 	 * Set the training data.
 	 * @param trainingSet The training data to use.
+	 * @return the trained model. It is not affected by later calls
+	 *         of train or clearTrainingData, and it may be shared
+	 *         by several threads.
 	 */
-	void train(VectorSet trainingSet);
+	Predictor train(VectorSet trainingSet);
+	
+	/**
+	 * Get the current model of this classifier, e.g. after it has
+	 * been read from a model file. See train.
+	 * @return the trained model.
+	 */
+	Predictor getPredictor();
 	
 	/**
 	 * Discard training data. I.e. reset the classifier.
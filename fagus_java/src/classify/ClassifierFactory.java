@@ -0,0 +1,20 @@
+package classify;
+
+/**
+ * This creates new, untrained classifiers with fixed parameters.
+ * Validators use it to obtain a separate classifier for every
+ * concurrently processed training set, since classifiers hold their
+ * training state and cannot be shared between threads.
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public interface ClassifierFactory {
+
+	/**
+	 * Create a new classifier. Every call must return a new instance
+	 * with the same parameters.
+	 *
+	 * @return an untrained classifier.
+	 */
+	Classifier newInstance();
+}
@@ -1,13 +1,16 @@
 package classify;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.Callable;
 
 import reporting.ClassificationLogger;
 import select.FeatureSelection;
 
 import util.ClassDescriptor;
+import util.Parallel;
 import util.VectorSet;
 
 
@@ -16,14 +19,28 @@ import util.VectorSet;
  * using the Leave-One-Out method for error estimation.
  * For every element in the training set, all other elements
  * are used as training set, and the element is classified. 
- * The results are logged to a Reporter.
+ * The results are logged to a Reporter. If the classifier
+ * provides a closed-form Leave-One-Out procedure, and no feature
+ * selection is used, the classifier is not retrained at all.
+ * 
+ * <br><br>
+ * If a ClassifierFactory is given, the held-out elements are split
+ * into chunks, which are processed concurrently. Every chunk uses its
+ * own classifier. The training set of an element always contains the
+ * other elements in the same order, and the results are logged in the
+ * same order, regardless of the number of threads. Hence, the results
+ * are exactly the same as in the sequential case.
  * 
  * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
  */
 public class CrossValidator implements Validator {
+	private static final int CHUNKS_PER_THREAD = 4;
+	
 	private Classifier classifier;
+	private ClassifierFactory factory;
 	private FeatureSelection selection;
 	private ClassificationLogger logger;
+	private int threads = 1;
 	
 	
 	/**
@@ -32,6 +49,17 @@ public class CrossValidator implements Validator {
 	public void setClassifier(Classifier classifier) {
 		this.classifier = classifier;
 	}
+	
+	/**
+	 * Set a factory, which creates the classifiers used by the worker
+	 * threads. The classifier set by setClassifier is still used for
+	 * the closed-form Leave-One-Out procedure, if available.
+	 * 
+	 * @param factory
+	 */
+	public void setClassifierFactory(ClassifierFactory factory) {
+		this.factory = factory;
+	}
 
 	public void setFeatureSelection(FeatureSelection selection) {
 		this.selection = selection;
@@ -41,38 +69,119 @@ public class CrossValidator implements Validator {
 		this.logger = logger;
 	}
 	
+	/**
+	 * Set the number of worker threads. It only takes effect, if a
+	 * ClassifierFactory is used and no feature selection is set,
+	 * since neither the classifier nor the feature selection can be
+	 * shared by several threads.
+	 * 
+	 * @param threads the number of threads. The default is 1.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+	
 	/**
 	 * Run the actual iteration and log data.
 	 */
 	public void validate(VectorSet trainingSet) {
-		Map<double[], ClassDescriptor> data = trainingSet.getData();
+		if(classifier == null && factory != null) {
+			classifier = factory.newInstance();
+		}
 		
-		/*
-		 * Note that we have to copy the keySet to prevent from
-		 * ConcurrentModificationException.
-		 */
-		Set<double[]> vectors = new HashSet<double[]>(data.keySet());
-
-		for(double[] vector: vectors) {
-			ClassDescriptor descr = trainingSet.remove(vector);
-			ClassDescriptor result;
+		if(selection == null && classifier instanceof LeaveOneOutEstimator) {
+			LeaveOneOutEstimator estimator = (LeaveOneOutEstimator)classifier;
 			
-			if(selection != null) {
-				selection.initialize(trainingSet);
-				VectorSet extractedTrainingSet = selection.getMappedData();
-				classifier.train(extractedTrainingSet);
-				result = classifier.classify(selection.mapVector(vector));
-			} else {
-				classifier.train(trainingSet);
-				result = classifier.classify(vector);
+			if(estimator.canLeaveOneOut(trainingSet)) {
+				estimator.leaveOneOut(trainingSet, logger);
+				return;
 			}
+		}
+		
+		final VectorSet data = trainingSet;
+		final List<double[]> vectors = new ArrayList<double[]>(data.getData().keySet());
+		final ClassDescriptor[] results = new ClassDescriptor[vectors.size()];
+		
+		boolean concurrent = factory != null && selection == null && threads > 1;
+		int n = vectors.size();
+		int chunks = concurrent ? Math.min(n, threads * CHUNKS_PER_THREAD) : 1;
+		
+		final int[] bounds = new int[chunks + 1];
+		for(int c = 0; c <= chunks; c++) {
+			bounds[c] = (int)((long)n * c / chunks);
+		}
+		
+		/*
+		 * Chunks are logged in order. A finished chunk is logged as soon
+		 * as all preceding chunks have been logged.
+		 */
+		final boolean[] finished = new boolean[chunks];
+		final int[] next = new int[1];
+		
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		
+		for(int c = 0; c < chunks; c++) {
+			final int chunk = c;
+			final Classifier cl = concurrent ? factory.newInstance() : classifier;
 			
-			if(logger != null) {
-				logger.log(vector, descr, result);
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					for(int i = bounds[chunk]; i < bounds[chunk + 1]; i++) {
+						results[i] = classifyHeldOut(cl, data, vectors, i);
+					}
+					
+					synchronized(finished) {
+						finished[chunk] = true;
+						
+						while(next[0] < finished.length && finished[next[0]]) {
+							int k = next[0]++;
+							
+							for(int i = bounds[k]; i < bounds[k + 1] && logger != null; i++) {
+								double[] v = vectors.get(i);
+								logger.log(v, data.getData().get(v), results[i]);
+							}
+						}
+					}
+					return null;
+				}
+			});
+		}
+		
+		Parallel.invokeAll(tasks, concurrent ? threads : 1);
+	}
+	
+	
+	/*
+	 * Train a classifier on all vectors but one, and classify the
+	 * remaining vector. The training set is a new view of the data,
+	 * so that the data is never modified and can be shared by all
+	 * threads.
+	 */
+	private ClassDescriptor classifyHeldOut(Classifier cl, VectorSet data, List<double[]> vectors, int index) {
+		Map<double[], ClassDescriptor> all = data.getData();
+		Map<double[], ClassDescriptor> training = new LinkedHashMap<double[], ClassDescriptor>(2 * vectors.size());
+		
+		for(int j = 0; j < vectors.size(); j++) {
+			if(j != index) {
+				double[] v = vectors.get(j);
+				training.put(v, all.get(v));
 			}
-			
-			classifier.clearTrainingData();
-			trainingSet.add(vector, descr);
 		}
+		
+		VectorSet trainingSet = new VectorSet(training, data.getFeatureLables());
+		double[] vector = vectors.get(index);
+		ClassDescriptor result;
+		
+		if(selection != null) {
+			selection.initialize(trainingSet);
+			VectorSet extractedTrainingSet = selection.getMappedData();
+			result = cl.train(extractedTrainingSet).classify(selection.mapVector(vector));
+		} else {
+			result = cl.train(trainingSet).classify(vector);
+		}
+		
+		cl.clearTrainingData();
+		
+		return result;
 	}
 }
@@ -0,0 +1,260 @@
+package classify;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import reporting.ClassificationLogger;
+import select.FeatureSelection;
+import util.ClassDescriptor;
+import util.Parallel;
+import util.VectorSet;
+
+/**
+ * This validator estimates the classification error by stratified
+ * k-fold cross validation. The vectors of every class are distributed
+ * evenly among k folds. Every fold is classified once, using the other
+ * k - 1 folds as training set. The procedure may be repeated with
+ * different random partitions, in which case every vector is logged
+ * once per repetition.
+ *
+ * <br><br>
+ * The partition only depends on the seed and the contents of the
+ * vector set, not on the order of its hash map. If a ClassifierFactory
+ * is given, the folds are trained and classified concurrently, each
+ * with its own classifier, and the results are logged concurrently. With a
+ * single classifier or a feature selection, which cannot be shared by
+ * several threads, the folds are processed one after another.
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public class KFoldValidator implements Validator {
+	private final int folds;
+	private Classifier classifier;
+	private ClassifierFactory factory;
+	private FeatureSelection selection;
+	private ClassificationLogger logger;
+	private int repetitions;
+	private int threads;
+	private long seed;
+
+	/**
+	 * Create a new k-fold cross validator.
+	 *
+	 * @param folds the number of folds k.
+	 */
+	public KFoldValidator(int folds) {
+		this.folds = folds;
+		this.repetitions = 1;
+		this.threads = 1;
+		this.seed = 0;
+	}
+
+	/**
+	 * Set the classifier, that is retrained for every fold. The folds
+	 * are processed sequentially.
+	 */
+	public void setClassifier(Classifier classifier) {
+		this.classifier = classifier;
+		this.factory = null;
+	}
+
+	/**
+	 * Set a factory, which creates a new classifier for every fold.
+	 * This allows to process the folds concurrently.
+	 *
+	 * @param factory
+	 */
+	public void setClassifierFactory(ClassifierFactory factory) {
+		this.factory = factory;
+		this.classifier = null;
+	}
+
+	public void setFeatureSelection(FeatureSelection selection) {
+		this.selection = selection;
+	}
+
+	public void setLogger(ClassificationLogger logger) {
+		this.logger = logger;
+	}
+
+	/**
+	 * Set the number of repetitions with different partitions.
+	 * The default is 1.
+	 *
+	 * @param repetitions
+	 */
+	public void setRepetitions(int repetitions) {
+		this.repetitions = repetitions;
+	}
+
+	/**
+	 * Set the number of worker threads. It only takes effect, if a
+	 * ClassifierFactory is used and no feature selection is set.
+	 *
+	 * @param threads the number of threads. The default is 1.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Set the seed of the random partitions.
+	 *
+	 * @param seed
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Run the cross validation and log the results.
+	 */
+	public void validate(VectorSet data) {
+		Random random = new Random(seed);
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+
+		for(int r = 0; r < repetitions; r++) {
+			VectorSet[][] splits = split(data, folds, random);
+
+			for(int k = 0; k < folds; k++) {
+				final VectorSet training = splits[k][0];
+				final VectorSet test = splits[k][1];
+
+				tasks.add(new Callable<Object>() {
+					public Object call() {
+						validateFold(training, test);
+						return null;
+					}
+				});
+			}
+		}
+
+		boolean concurrent = factory != null && selection == null;
+		Parallel.invokeAll(tasks, concurrent ? threads : 1);
+	}
+
+
+	/**
+	 * Split a vector set into stratified folds. The vectors of each
+	 * class are sorted, shuffled, and then assigned to the folds in
+	 * turn. Hence, the sizes of any two folds differ by at most one,
+	 * and the partition is reproducible for a given random generator.
+	 * The vectors of every set are kept in the order of assignment, so
+	 * that classifiers, which depend on the order of their training
+	 * vectors, are reproducible too.
+	 *
+	 * @param data the vectors.
+	 * @param folds the number of folds.
+	 * @param random the random generator used for shuffling.
+	 * @return for every fold, the training set and the test set.
+	 */
+	public static VectorSet[][] split(VectorSet data, int folds, Random random) {
+		List<Map<double[], ClassDescriptor>> parts = new ArrayList<Map<double[], ClassDescriptor>>();
+
+		for(int k = 0; k < folds; k++) {
+			parts.add(new LinkedHashMap<double[], ClassDescriptor>());
+		}
+
+		Map<ClassDescriptor, List<double[]>> inverted = data.getInvertedData();
+		List<ClassDescriptor> classes = new ArrayList<ClassDescriptor>(inverted.keySet());
+
+		Collections.sort(classes, new Comparator<ClassDescriptor>() {
+			public int compare(ClassDescriptor a, ClassDescriptor b) {
+				return a.toString().compareTo(b.toString());
+			}
+		});
+
+		int next = 0;
+
+		for(ClassDescriptor c: classes) {
+			List<double[]> vectors = new ArrayList<double[]>(inverted.get(c));
+
+			// the order of the hash map is not reproducible
+			Collections.sort(vectors, new VectorCompare());
+			Collections.shuffle(vectors, random);
+
+			for(double[] v: vectors) {
+				parts.get(next).put(v, c);
+				next = (next + 1) % folds;
+			}
+		}
+
+		VectorSet[][] splits = new VectorSet[folds][2];
+
+		for(int k = 0; k < folds; k++) {
+			Map<double[], ClassDescriptor> training = new LinkedHashMap<double[], ClassDescriptor>();
+
+			for(int j = 0; j < folds; j++) {
+				if(j != k) {
+					training.putAll(parts.get(j));
+				}
+			}
+
+			splits[k][0] = new VectorSet(training, data.getFeatureLables());
+			splits[k][1] = new VectorSet(parts.get(k), data.getFeatureLables());
+
+			// create cached data before the sets are shared by threads
+			splits[k][0].getClassDescriptors();
+		}
+
+		return splits;
+	}
+
+
+	/*
+	 * Train on one training set, classify the test set, and pass
+	 * the results to the logger.
+	 */
+	private void validateFold(VectorSet training, VectorSet test) {
+		Classifier cl = factory != null ? factory.newInstance() : classifier;
+		Map<double[], ClassDescriptor> data = test.getData();
+
+		Predictor predictor;
+
+		if(selection != null) {
+			selection.initialize(training);
+			predictor = cl.train(selection.getMappedData());
+		} else {
+			predictor = cl.train(training);
+		}
+
+		for(double[] v: data.keySet()) {
+			ClassDescriptor result;
+
+			if(selection != null) {
+				result = predictor.classify(selection.mapVector(v));
+			} else {
+				result = predictor.classify(v);
+			}
+
+			if(logger != null) {
+				logger.log(v, data.get(v), result);
+			}
+		}
+
+		cl.clearTrainingData();
+	}
+
+
+	/*
+	 * Lexicographic order of vectors.
+	 */
+	static class VectorCompare implements Comparator<double[]> {
+		public int compare(double[] a, double[] b) {
+			for(int i = 0; i < a.length; i++) {
+				int c = Double.compare(a[i], b[i]);
+
+				if(c != 0) {
+					return c;
+				}
+			}
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package classify;
+
+import reporting.ClassificationLogger;
+import util.VectorSet;
+
+/**
+ * Classifiers implementing this interface are able to run a
+ * Leave-One-Out error estimation on their own, without being
+ * retrained for every single sample. This is usually possible if
+ * removing one sample from the training set only changes the
+ * model by a small amount, which can be computed in closed form.
+ * The CrossValidator will use this shortcut whenever possible.
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public interface LeaveOneOutEstimator {
+
+	/**
+	 * Determine, whether the closed-form Leave-One-Out procedure
+	 * is applicable to a given set of vectors. If it is not, the
+	 * caller has to fall back to retraining the classifier for
+	 * every sample.
+	 *
+	 * @param data the set of vectors to validate.
+	 * @return true, if leaveOneOut may be called for this set.
+	 */
+	boolean canLeaveOneOut(VectorSet data);
+
+	/**
+	 * Run the Leave-One-Out procedure. Every vector in the set is
+	 * classified by a model that was trained on all other vectors,
+	 * and the result is logged. The predictions are the same as if
+	 * the classifier was retrained for every sample.
+	 *
+	 * @param data the set of vectors to validate.
+	 * @param logger the logger receiving the results. Might be null.
+	 */
+	void leaveOneOut(VectorSet data, ClassificationLogger logger);
+}
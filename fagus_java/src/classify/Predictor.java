@@ -0,0 +1,32 @@
+package classify;
+
+import util.ClassDescriptor;
+
+/**
+ * This is a trained classification model. Unlike a Classifier, a
+ * predictor cannot be retrained. Its state is fixed on creation, so
+ * that a single instance may be shared by any number of threads.
+ * Predictors are returned by Classifier.train and 
+ * Classifier.getPredictor.
+ * 
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public interface Predictor {
+	/**
+	 * Do a classification for a feature vector f. This method
+	 * may be called concurrently.
+	 * 
+	 * @param f The feature vector to classify.
+	 * @return A descriptor for the class that f was assigned to.
+	 */
+	ClassDescriptor classify(double[] f);
+	
+	/**
+	 * Classify a batch of feature vectors concurrently.
+	 * 
+	 * @param vectors the vectors to classify.
+	 * @param threads the number of threads to use.
+	 * @return the class descriptors, in the order of the vectors.
+	 */
+	ClassDescriptor[] classify(double[][] vectors, int threads);
+}
@@ -0,0 +1,29 @@
+package classify;
+
+import java.io.IOException;
+
+import util.StreamingVectorSetReader;
+
+/**
+ * Classifiers implementing this interface can be trained straight
+ * from a reader, without building a VectorSet. Memory usage then does
+ * not depend on the number of training vectors, e.g. if the classifier
+ * only needs some statistics of every class.
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public interface StreamingTrainable extends Classifier {
+
+	/**
+	 * Perform the training phase straight from a reader. The vectors
+	 * are parsed concurrently. If the classifier needs the vectors
+	 * themselves in some cases, the reader is parsed once more into a
+	 * VectorSet, which is used for training instead.
+	 *
+	 * @param reader the reader providing the training data.
+	 * @param threads the number of parsing threads.
+	 * @return the trained model.
+	 * @throws IOException
+	 */
+	Predictor train(StreamingVectorSetReader reader, int threads) throws IOException;
+}
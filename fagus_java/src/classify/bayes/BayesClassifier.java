@@ -1,17 +1,24 @@
 package classify.bayes;
 
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
 import math.statistics.MultivariateDistribution;
+import math.statistics.SufficientStatistics;
 
 import util.ClassDescriptor;
+import util.StreamingVectorSetReader;
+import util.VectorHandler;
 import util.VectorSet;
 
+import classify.AbstractPredictor;
 import classify.Classifier;
+import classify.Predictor;
 
 /**
  * This is a basic implementation of a bayesian classifier.
@@ -19,45 +26,39 @@ import classify.Classifier;
  * during the training phase. A classification uses these functions
  * and yields the class descriptor with the highest density.
  * 
+ * <br><br>
+ * The training phase builds new maps of distributions and priors,
+ * which replace the current ones as a whole, together with the
+ * predictor. The maps are not modified afterwards, so several
+ * threads may train and classify with the same instance.
+ * 
  * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
  */
 public abstract class BayesClassifier implements Classifier {
 	/**
 	 * For every class there is a distribution function which is
-	 * used for classification. This map should be constructed 
-	 * in the training phase of derived classes.
+	 * used for classification. This is the map of the latest
+	 * training, see setModel. It must not be modified.
 	 */
 	protected Map<ClassDescriptor, MultivariateDistribution> distributions;
 	/**
 	 * The a priori probabilities of each class. They are estimated
-	 * using the provided training data.
+	 * using the provided training data. This is the map of the
+	 * latest training, see setModel. It must not be modified.
 	 */
 	protected Map<ClassDescriptor, Double> priors;
 	
 	private final boolean usePriors;
+	private volatile Predictor model;
 	
 	/**
 	 * Create a new BayesClassifier.
 	 */
 	protected BayesClassifier() {
-		distributions = new HashMap<ClassDescriptor, MultivariateDistribution>();
-		priors = new HashMap<ClassDescriptor, Double>();
-	
-		/*
-		 * Load properties file and check, whether or not a priori
-		 * probabilities should be considered.
-		 */
-		boolean b;
-		try {
-			Properties props = new Properties();
-			props.load(new FileInputStream("resources/Bayes.properties"));
-			
-			b = Boolean.parseBoolean(props.getProperty("useAPrioriProbabilities"));
-		} catch(Exception e) {
-			b = true;
-		}
+		usePriors = usesPriorsByDefault();
 		
-		usePriors = b;
+		setModel(new HashMap<ClassDescriptor, MultivariateDistribution>(),
+				new HashMap<ClassDescriptor, Double>());
 	}
 	
 	/**
@@ -68,6 +69,45 @@ public abstract class BayesClassifier implements Classifier {
 	 * @return a class descriptor for the class f was assigned to.
 	 */
 	public ClassDescriptor classify(double[] f) {
+		return model.classify(f);
+	}
+	
+	/**
+	 * Get the current model. It is not affected by later trainings.
+	 * 
+	 * @return the trained model.
+	 */
+	public Predictor getPredictor() {
+		return model;
+	}
+	
+	/**
+	 * Replace the current model. The maps must not be modified
+	 * afterwards. The distributions and the priors are replaced
+	 * at once, so that no thread sees one without the other.
+	 * 
+	 * @param distributions the distribution of every class.
+	 * @param priors the a-priori probability of every class.
+	 * @return the new model.
+	 */
+	protected synchronized Predictor setModel(Map<ClassDescriptor, MultivariateDistribution> distributions,
+			Map<ClassDescriptor, Double> priors) {
+		this.distributions = distributions;
+		this.priors = priors;
+		this.model = new BayesPredictor(distributions, priors, usePriors);
+		
+		return model;
+	}
+	
+	
+	/*
+	 * Evaluate the discriminant function of every class and return
+	 * the class with the highest value.
+	 */
+	private static ClassDescriptor classify(double[] f, 
+			Map<ClassDescriptor, MultivariateDistribution> distributions,
+			Map<ClassDescriptor, Double> priors, boolean usePriors) {
+		
 		double maxDensity = Double.NEGATIVE_INFINITY;
 		ClassDescriptor d = null;
 		
@@ -105,9 +145,11 @@ public abstract class BayesClassifier implements Classifier {
 	 * 
 	 * @param trainingSet The data to use for training data.
 	 */
-	public void train(VectorSet trainingSet) {
+	public Predictor train(VectorSet trainingSet) {
 		int dimension = trainingSet.getDimension();
 		int n = trainingSet.getData().size();
+		Map<ClassDescriptor, MultivariateDistribution> distributions = new HashMap<ClassDescriptor, MultivariateDistribution>();
+		Map<ClassDescriptor, Double> priors = new HashMap<ClassDescriptor, Double>();
 		
 		/*
 		 * Init prior values.
@@ -118,19 +160,181 @@ public abstract class BayesClassifier implements Classifier {
 			priors.put(d, (double)data.get(d).size()/n);
 		}
 
-		doTrain(trainingSet.getInvertedData(), dimension);
+		doTrain(data, dimension, priors, distributions);
+		
+		return setModel(distributions, priors);
+	}
+	
+	/**
+	 * Adjust the distribution parameters using the given training set.
+	 * 
+	 * @param data Provides training vectors for every known class.
+	 * @param dimension A training vector's dimension.
+	 * @param priors the a-priori probabilities of the classes.
+	 * @param distributions the map to put the distribution of every
+	 *        class into. It is empty.
+	 */
+	protected abstract void doTrain(Map<ClassDescriptor, List<double[]>> data, int dimension,
+			Map<ClassDescriptor, Double> priors, Map<ClassDescriptor, MultivariateDistribution> distributions);
+	
+	/**
+	 * Get the sufficient statistics of every class (the number of
+	 * samples, the mean, and the scatter matrix) straight from a
+	 * reader, for classifiers implementing StreamingTrainable. Memory
+	 * usage does not depend on the number of training vectors. Each
+	 * parsing thread accumulates statistics of its own, which are
+	 * merged afterwards.
+	 * 
+	 * @param reader the reader providing the training data.
+	 * @param threads the number of parsing threads.
+	 * @return the statistics of every class.
+	 * @throws IOException
+	 */
+	protected static Map<ClassDescriptor, SufficientStatistics> getStatistics(StreamingVectorSetReader reader, int threads) throws IOException {
+		StatisticsHandler[] handlers = new StatisticsHandler[Math.max(threads, 1)];
+		for(int i = 0; i < handlers.length; i++) {
+			handlers[i] = new StatisticsHandler();
+		}
+		
+		reader.parse(handlers);
+		
+		Map<ClassDescriptor, SufficientStatistics> statistics = handlers[0].statistics;
+		
+		for(int i = 1; i < handlers.length; i++) {
+			for(ClassDescriptor c: handlers[i].statistics.keySet()) {
+				SufficientStatistics s = handlers[i].statistics.get(c);
+				
+				if(statistics.containsKey(c)) {
+					statistics.get(c).merge(s);
+				} else {
+					statistics.put(c, s);
+				}
+			}
+		}
+		
+		return statistics;
+	}
+	
+	/**
+	 * Get the dimension of the vectors, the statistics are accumulated
+	 * from.
+	 * 
+	 * @param statistics the statistics of every class.
+	 * @return the dimension, or 0 if there are no classes.
+	 */
+	protected static int getDimension(Map<ClassDescriptor, SufficientStatistics> statistics) {
+		int dimension = 0;
+		
+		for(SufficientStatistics s: statistics.values()) {
+			dimension = s.getDimension();
+		}
+		
+		return dimension;
+	}
+	
+	/**
+	 * Get the a-priori probabilities of the classes, estimated from
+	 * their numbers of samples.
+	 * 
+	 * @param statistics the statistics of every class.
+	 * @return the priors of every class.
+	 */
+	protected static Map<ClassDescriptor, Double> getPriors(Map<ClassDescriptor, SufficientStatistics> statistics) {
+		Map<ClassDescriptor, Double> priors = new HashMap<ClassDescriptor, Double>();
+		long n = 0;
+		
+		for(SufficientStatistics s: statistics.values()) {
+			n += s.getCount();
+		}
+		
+		for(ClassDescriptor c: statistics.keySet()) {
+			priors.put(c, (double)statistics.get(c).getCount()/n);
+		}
+		
+		return priors;
 	}
-	 
-	protected abstract void doTrain(Map<ClassDescriptor, List<double[]>> data, int dimension);
 
 	/**
 	 * Clear available training information.
 	 */
 	public void clearTrainingData() {
-		distributions.clear();
+		setModel(new HashMap<ClassDescriptor, MultivariateDistribution>(),
+				new HashMap<ClassDescriptor, Double>());
 	}
 	
 	public boolean suggestsScaling() {
 		return false;
 	}
+	
+	/**
+	 * Determine, whether a-priori probabilities are added to the
+	 * discriminant functions.
+	 * 
+	 * @return true, if priors are considered for classification.
+	 */
+	protected boolean usesPriors() {
+		return usePriors;
+	}
+	
+	/**
+	 * Load the properties file and check, whether or not a priori
+	 * probabilities should be considered. Every Bayes classifier reads
+	 * this setting once, when it is created.
+	 * 
+	 * @return true, if priors are to be considered. This is the
+	 *         default, if the properties file cannot be read.
+	 */
+	static boolean usesPriorsByDefault() {
+		try {
+			Properties props = new Properties();
+			props.load(new FileInputStream("resources/Bayes.properties"));
+			
+			return Boolean.parseBoolean(props.getProperty("useAPrioriProbabilities"));
+		} catch(Exception e) {
+			return true;
+		}
+	}
+	
+	
+	/*
+	 * The model of a Bayes classifier. The maps are copied, keeping
+	 * the order of the classes, so that ties are resolved the same
+	 * way as by the classifier.
+	 */
+	private static class BayesPredictor extends AbstractPredictor {
+		private final Map<ClassDescriptor, MultivariateDistribution> distributions;
+		private final Map<ClassDescriptor, Double> priors;
+		private final boolean usePriors;
+		
+		BayesPredictor(Map<ClassDescriptor, MultivariateDistribution> distributions,
+				Map<ClassDescriptor, Double> priors, boolean usePriors) {
+			this.distributions = new LinkedHashMap<ClassDescriptor, MultivariateDistribution>(distributions);
+			this.priors = new HashMap<ClassDescriptor, Double>(priors);
+			this.usePriors = usePriors;
+		}
+		
+		public ClassDescriptor classify(double[] f) {
+			return BayesClassifier.classify(f, distributions, priors, usePriors);
+		}
+	}
+	
+	/*
+	 * This accumulates the statistics of the vectors parsed by a
+	 * single thread.
+	 */
+	private static class StatisticsHandler implements VectorHandler {
+		private final Map<ClassDescriptor, SufficientStatistics> statistics 
+			= new HashMap<ClassDescriptor, SufficientStatistics>();
+		
+		public void handle(double[] vector, ClassDescriptor c) {
+			SufficientStatistics s = statistics.get(c);
+			
+			if(s == null) {
+				s = new SufficientStatistics(vector.length);
+				statistics.put(c, s);
+			}
+			
+			s.add(vector);
+		}
+	}
 }
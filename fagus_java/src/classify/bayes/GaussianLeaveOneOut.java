@@ -0,0 +1,341 @@
+package classify.bayes;
+
+import java.util.List;
+import java.util.Map;
+
+import math.MatrixManipulation;
+import math.statistics.MaximumLikelihoodEstimation;
+
+import reporting.ClassificationLogger;
+import util.ClassDescriptor;
+import util.VectorSet;
+
+/**
+ * This is a closed-form Leave-One-Out procedure for normal Bayes
+ * classifiers. It covers the quadratic, the linear, and the
+ * regularized classifier, since all of them use covariance matrices
+ * of the form
+ *
+ * <pre>
+ * Sigma_j = alpha * S_j + (1 - alpha) * Sigma
+ * </pre>
+ *
+ * where S_j is the covariance matrix of class j and Sigma is the
+ * common covariance matrix. Removing a sample x from class k
+ * changes the mean and the covariance matrix of this class by
+ * <pre>
+ * d    := x - mu_k
+ * mu_k' = mu_k - d / (n_k - 1)
+ * S_k'  = r_k * (S_k - c_k * d . d<sup>T</sup>)
+ * r_k  := (n_k - 1) / (n_k - 2)
+ * c_k  := n_k / (n_k - 1)<sup>2</sup>
+ * </pre>
+ * and the common covariance matrix by
+ * <pre>
+ * Sigma' = P_k - g_k / (N - 1) * d . d<sup>T</sup>
+ * P_k   := (N * Sigma + S_k / (n_k - 2)) / (N - 1)
+ * g_k   := n_k / (n_k - 2)
+ * </pre>
+ * Hence, each covariance matrix of the held-out model is a rank-one
+ * downdate of a matrix, that depends on the class of the held-out
+ * sample only. These matrices are inverted once. The discriminant
+ * of every held-out sample is then obtained using the Sherman-Morrison
+ * formula and the matrix determinant lemma
+ * <pre>
+ * (M - gamma * d . d<sup>T</sup>)<sup>-1</sup> = M<sup>-1</sup> + gamma * M<sup>-1</sup> . d . d<sup>T</sup> . M<sup>-1</sup> / (1 - gamma * q)
+ * |M - gamma * d . d<sup>T</sup>|   = |M| * (1 - gamma * q)
+ * q := d<sup>T</sup> . M<sup>-1</sup> . d
+ * </pre>
+ * at a cost of O(c * d<sup>2</sup>) operations per sample, where
+ * c is the number of classes and d is the dimension.
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+class GaussianLeaveOneOut {
+	private final double alpha;
+	private final boolean usePriors;
+
+	/**
+	 * Create a new Leave-One-Out procedure.
+	 *
+	 * @param alpha the regularization parameter. 1 is equal to a
+	 *        quadratic classifier, 0 is equal to a linear one.
+	 * @param usePriors true, if a-priori probabilities should be
+	 *        added to the discriminant.
+	 */
+	GaussianLeaveOneOut(double alpha, boolean usePriors) {
+		this.alpha = alpha;
+		this.usePriors = usePriors;
+	}
+
+	/**
+	 * Check whether the closed form can be applied. Every class must
+	 * keep at least two samples (i.e. a valid covariance matrix) when
+	 * one of its samples is left out.
+	 *
+	 * @param data the training data.
+	 * @return true, if the closed form is applicable.
+	 */
+	static boolean isApplicable(VectorSet data) {
+		Map<ClassDescriptor, List<double[]>> d = data.getInvertedData();
+
+		for(ClassDescriptor c: d.keySet()) {
+			if(d.get(c).size() < 3) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Run the Leave-One-Out procedure and log the results.
+	 *
+	 * @param trainingSet the data to validate.
+	 * @param logger the logger. Might be null.
+	 */
+	void run(VectorSet trainingSet, ClassificationLogger logger) {
+		final Map<ClassDescriptor, List<double[]>> data = trainingSet.getInvertedData();
+		final int dimension = trainingSet.getDimension();
+		final int nClasses = data.size();
+
+		ClassDescriptor[] classes = new ClassDescriptor[nClasses];
+		classes = data.keySet().toArray(classes);
+
+		int total = 0;
+		int[] n = new int[nClasses];
+		double[][] mean = new double[nClasses][];
+		double[][][] cov = new double[nClasses][][];
+
+		for(int k = 0; k < nClasses; k++) {
+			List<double[]> samples = data.get(classes[k]);
+			n[k] = samples.size();
+			mean[k] = MaximumLikelihoodEstimation.getMean(samples, dimension);
+			cov[k] = MaximumLikelihoodEstimation.getCovariance(samples, mean[k]);
+			total += n[k];
+		}
+
+		/*
+		 * ownBase[k] is the matrix of class k, otherBase[k][j] the matrix
+		 * of class j, when a sample of class k is left out. Both are
+		 * downdated by the rank-one terms ownCoeff[k] and otherCoeff[k].
+		 */
+		Inverse[] ownBase = new Inverse[nClasses];
+		Inverse[][] otherBase = new Inverse[nClasses][nClasses];
+		double[] ownCoeff = new double[nClasses];
+		double[] otherCoeff = new double[nClasses];
+
+		Inverse[] classInverse = null;
+		if(alpha == 1.0) {
+			// quadratic classifier: the class matrices do not depend on k
+			classInverse = new Inverse[nClasses];
+			for(int j = 0; j < nClasses; j++) {
+				classInverse[j] = new Inverse(cov[j]);
+			}
+		}
+
+		double[][] common = null;
+		if(alpha < 1.0) {
+			common = new double[dimension][dimension];
+			for(int j = 0; j < nClasses; j++) {
+				addScaled(common, cov[j], n[j]);
+			}
+		}
+
+		for(int k = 0; k < nClasses; k++) {
+			double r = (n[k] - 1.0) / (n[k] - 2.0);
+			double c = n[k] / ((n[k] - 1.0) * (n[k] - 1.0));
+			double g = n[k] / (n[k] - 2.0);
+
+			ownCoeff[k] = alpha * r * c + (1.0 - alpha) * g / (total - 1.0);
+			otherCoeff[k] = (1.0 - alpha) * g / (total - 1.0);
+
+			if(alpha == 1.0) {
+				ownBase[k] = classInverse[k].scale(r);
+				otherBase[k] = classInverse;
+				continue;
+			}
+
+			// P_k = (N * Sigma + S_k / (n_k - 2)) / (N - 1)
+			double[][] p = new double[dimension][dimension];
+			addScaled(p, common, 1.0 / (total - 1.0));
+			addScaled(p, cov[k], 1.0 / ((n[k] - 2.0) * (total - 1.0)));
+
+			if(alpha == 0.0) {
+				// linear classifier: all classes share the same matrix
+				ownBase[k] = new Inverse(p);
+				for(int j = 0; j < nClasses; j++) {
+					otherBase[k][j] = ownBase[k];
+				}
+				continue;
+			}
+
+			double[][] m = new double[dimension][dimension];
+			addScaled(m, cov[k], alpha * r);
+			addScaled(m, p, 1.0 - alpha);
+			ownBase[k] = new Inverse(m);
+
+			for(int j = 0; j < nClasses; j++) {
+				if(j != k) {
+					m = new double[dimension][dimension];
+					addScaled(m, cov[j], alpha);
+					addScaled(m, p, 1.0 - alpha);
+					otherBase[k][j] = new Inverse(m);
+				}
+			}
+		}
+
+		double[] d = new double[dimension];
+		double[] v = new double[dimension];
+		double[] pd = new double[dimension];
+
+		for(int k = 0; k < nClasses; k++) {
+			for(double[] x: data.get(classes[k])) {
+				for(int i = 0; i < dimension; i++) {
+					d[i] = x[i] - mean[k][i];
+				}
+
+				double maxDensity = Double.NEGATIVE_INFINITY;
+				ClassDescriptor result = null;
+				Inverse last = null;
+				double q = 0.0;
+
+				for(int j = 0; j < nClasses; j++) {
+					double density;
+
+					if(j == k) {
+						/*
+						 * x - mu_k' = d * n_k / (n_k - 1), hence the
+						 * Mahalanobis distance is a multiple of q / (1 - gamma * q).
+						 */
+						Inverse base = ownBase[k];
+						q = base.multiply(d, d, pd);
+						last = base;
+
+						double den = 1.0 - ownCoeff[k] * q;
+						double s = n[k] / (n[k] - 1.0);
+
+						density = -(s * s * q / den + base.lnDet + Math.log(den)) / 2.0;
+
+						if(usePriors) {
+							density += Math.log((n[k] - 1.0) / (total - 1.0));
+						}
+					} else {
+						Inverse base = otherBase[k][j];
+
+						for(int i = 0; i < dimension; i++) {
+							v[i] = x[i] - mean[j][i];
+						}
+
+						if(otherCoeff[k] == 0.0) {
+							density = -(base.multiply(v, v, null) + base.lnDet) / 2.0;
+						} else {
+							if(base != last) {
+								q = base.multiply(d, d, pd);
+								last = base;
+							}
+
+							double den = 1.0 - otherCoeff[k] * q;
+							double w = 0.0;
+							double a = base.multiply(v, v, null);
+
+							for(int i = 0; i < dimension; i++) {
+								w += v[i] * pd[i];
+							}
+
+							density = -(a + otherCoeff[k] * w * w / den
+									+ base.lnDet + Math.log(den)) / 2.0;
+						}
+
+						if(usePriors) {
+							density += Math.log(n[j] / (total - 1.0));
+						}
+					}
+
+					if(Double.isNaN(density)) {
+						throw new ArithmeticException("Computation of density for class "
+								+ classes[j] + " contains numerical errors");
+					}
+
+					if(density > maxDensity) {
+						maxDensity = density;
+						result = classes[j];
+					}
+				}
+
+				if(logger != null) {
+					logger.log(x, classes[k], result);
+				}
+			}
+		}
+	}
+
+
+	/*
+	 * a = a + f * b
+	 */
+	private static void addScaled(double[][] a, double[][] b, double f) {
+		for(int i = 0; i < a.length; i++) {
+			for(int j = 0; j < a.length; j++) {
+				a[i][j] += f * b[i][j];
+			}
+		}
+	}
+
+
+	/*
+	 * This holds the inverse and the log-determinant of a symmetric matrix.
+	 */
+	private static class Inverse {
+		private final double[][] inverse;
+		private final double lnDet;
+
+		Inverse(double[][] a) {
+			inverse = new double[a.length][a.length];
+			lnDet = MatrixManipulation.getInverseAndLogDeterminant(a, inverse);
+		}
+
+		private Inverse(double[][] inverse, double lnDet) {
+			this.inverse = inverse;
+			this.lnDet = lnDet;
+		}
+
+		/*
+		 * Get the inverse of f * A.
+		 */
+		Inverse scale(double f) {
+			double[][] a = new double[inverse.length][inverse.length];
+
+			for(int i = 0; i < a.length; i++) {
+				for(int j = 0; j < a.length; j++) {
+					a[i][j] = inverse[i][j] / f;
+				}
+			}
+
+			return new Inverse(a, lnDet + a.length * Math.log(f));
+		}
+
+		/*
+		 * Get u^T . A^-1 . v. If av is not null, A^-1 . v is stored there.
+		 */
+		double multiply(double[] u, double[] v, double[] av) {
+			double result = 0.0;
+
+			for(int i = 0; i < inverse.length; i++) {
+				double tmp = 0.0;
+
+				for(int j = 0; j < inverse.length; j++) {
+					tmp += inverse[i][j] * v[j];
+				}
+
+				if(av != null) {
+					av[i] = tmp;
+				}
+
+				result += u[i] * tmp;
+			}
+
+			return result;
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package classify.bayes;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import math.statistics.FactorNormalDistribution;
+import math.statistics.MaximumLikelihoodEstimation;
+import math.statistics.MultivariateDistribution;
+
+import util.ClassDescriptor;
+import util.io.Export;
+import util.io.ExportVisitor;
+import util.io.Import;
+import util.io.ModelType;
+
+/**
+ * This is a Bayes classifier for high-dimensional normal data. Each
+ * class covariance matrix is restricted to a low-rank part plus a
+ * diagonal part, i.e. a factor analysis model. Unlike the quadratic
+ * classifier, no d x d matrix is estimated or inverted, so memory and
+ * classification costs grow linearly with the dimension. This makes
+ * the classifier applicable to ill-posed problems, where the dimension
+ * exceeds the number of samples per class.
+ *
+ * <br><br>
+ * See Chapter 12.2 "Probabilistic PCA" of
+ *     C. Bishop
+ *     "Pattern Recognition and Machine Learning"
+ *     Springer, 2006
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public class NormalFactorClassifier extends BayesClassifier {
+	private final int rank;
+	private int dimension;
+
+	/**
+	 * Create a new classifier.
+	 *
+	 * @param rank the number of factors of each class distribution.
+	 */
+	public NormalFactorClassifier(int rank) {
+		this.rank = rank;
+	}
+
+	/**
+	 * The training phase estimates a mean vector and a factor model
+	 * for every class.
+	 *
+	 * @param data Provides training vectors for every known class.
+	 * @param dimension A training vector's dimension.
+	 */
+	@Override
+	protected void doTrain(Map<ClassDescriptor, List<double[]>> data, int dimension,
+			Map<ClassDescriptor, Double> priors, Map<ClassDescriptor, MultivariateDistribution> distributions) {
+		this.dimension = dimension;
+
+		for(ClassDescriptor d: data.keySet()) {
+			List<double[]> samples = data.get(d);
+			double[] mean = MaximumLikelihoodEstimation.getMean(samples, dimension);
+
+			double[][] s = new double[samples.size()][dimension];
+			s = samples.toArray(s);
+
+			distributions.put(d, new FactorNormalDistribution(mean, s, rank));
+		}
+	}
+
+	@Export(ModelType.CLASSIFIER)
+	public void export(ExportVisitor visitor) {
+		/*
+		 * Export the a-priori probabilities, the mean vectors, the
+		 * factor loadings, and the uniquenesses as class specific
+		 * parameters.
+		 */
+		ExportVisitor.Parameters params = visitor.newParametersInstance();
+
+		params.setParameter("type", "Bayes Factor Analysis");
+		params.setParameter("dimension", Integer.toString(dimension));
+		params.setParameter("rank", Integer.toString(rank));
+
+		visitor.setModel(this.getClass().getName(), params);
+
+		for(ClassDescriptor c: distributions.keySet()) {
+			FactorNormalDistribution dist = (FactorNormalDistribution)distributions.get(c);
+
+			params = visitor.newParametersInstance();
+			params.setParameter("prior", Double.toString(priors.get(c)));
+			params.setParameter("mean", dist.getMean());
+			params.setParameter("loadings", dist.getLoadings());
+			params.setParameter("uniquenesses", dist.getUniquenesses());
+
+			visitor.addClass(c.toString(), params);
+		}
+	}
+
+	/**
+	 * Create a new instance of a factor analysis Bayes classifier.
+	 *
+	 * @param model must contain the rank.
+	 * @param classes each class must at least contain the mean vector,
+	 *        the loadings, and the uniquenesses.
+	 * @return a factor analysis Bayes classifier.
+	 */
+	@Import(ModelType.CLASSIFIER)
+	public static BayesClassifier newInstance(Map<String, Object> model, Map<ClassDescriptor, Map<String, Object>> classes) {
+		int rank = Integer.parseInt((String)model.get("rank"));
+		NormalFactorClassifier classifier = new NormalFactorClassifier(rank);
+
+		Map<ClassDescriptor, MultivariateDistribution> distributions = new HashMap<ClassDescriptor, MultivariateDistribution>();
+		Map<ClassDescriptor, Double> priors = new HashMap<ClassDescriptor, Double>();
+		
+		for(ClassDescriptor c: classes.keySet()) {
+			double[] mean = (double[])classes.get(c).get("mean");
+			double[][] loadings = (double[][])classes.get(c).get("loadings");
+			double[] uniquenesses = (double[])classes.get(c).get("uniquenesses");
+			Double prior = new Double((String)classes.get(c).get("prior"));
+
+			MultivariateDistribution d = new FactorNormalDistribution(mean, loadings, uniquenesses);
+			distributions.put(c, d);
+			priors.put(c, prior);
+			classifier.dimension = mean.length;
+		}
+
+		classifier.setModel(distributions, priors);
+		
+		return classifier;
+	}
+}
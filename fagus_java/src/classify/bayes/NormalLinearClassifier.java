@@ -1,5 +1,6 @@
 package classify.bayes;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -7,20 +8,29 @@ import java.util.Map;
 import math.statistics.MultivariateDistribution;
 import math.statistics.MaximumLikelihoodEstimation;
 import math.statistics.MultivariateNormalDistribution;
+import math.statistics.SufficientStatistics;
+
+import reporting.ClassificationLogger;
 
 import util.ClassDescriptor;
+import util.StreamingVectorSetReader;
+import util.VectorSet;
 import util.io.Export;
 import util.io.ExportVisitor;
 import util.io.Import;
 import util.io.ModelType;
 
+import classify.LeaveOneOutEstimator;
+import classify.Predictor;
+import classify.StreamingTrainable;
+
 /**
  * This is a simple bayesian classifier for gaussian data, that is
  * restricted to linear class boundaries.
  * 
  * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
  */
-public class NormalLinearClassifier extends BayesClassifier {
+public class NormalLinearClassifier extends BayesClassifier implements LeaveOneOutEstimator, StreamingTrainable {
 
 	private int dimension;
 	
@@ -32,9 +42,43 @@ public class NormalLinearClassifier extends BayesClassifier {
 	 * @param dimension A training vector's dimension.
 	 */
 	@Override
-	protected void doTrain(Map<ClassDescriptor, List<double[]>> data, int dimension) {
-		this.dimension = dimension;
+	protected void doTrain(Map<ClassDescriptor, List<double[]>> data, int dimension,
+			Map<ClassDescriptor, Double> priors, Map<ClassDescriptor, MultivariateDistribution> distributions) {
+		Map<ClassDescriptor, double[]> means = new HashMap<ClassDescriptor, double[]>();
+		Map<ClassDescriptor, double[][]> covariances = new HashMap<ClassDescriptor, double[][]>();
+
+		for(ClassDescriptor d: data.keySet()) {
+			double[] mean = MaximumLikelihoodEstimation.getMean(data.get(d), dimension);
+			
+			means.put(d, mean);
+			covariances.put(d, MaximumLikelihoodEstimation.getCovariance(data.get(d), mean));
+		}
+		
+		createDistributions(means, covariances, dimension, priors, distributions);
+	}
+	
+	public Predictor train(StreamingVectorSetReader reader, int threads) throws IOException {
+		Map<ClassDescriptor, SufficientStatistics> statistics = getStatistics(reader, threads);
+		Map<ClassDescriptor, Double> priors = getPriors(statistics);
+		Map<ClassDescriptor, MultivariateDistribution> distributions = new HashMap<ClassDescriptor, MultivariateDistribution>();
 		Map<ClassDescriptor, double[]> means = new HashMap<ClassDescriptor, double[]>();
+		Map<ClassDescriptor, double[][]> covariances = new HashMap<ClassDescriptor, double[][]>();
+
+		for(ClassDescriptor d: statistics.keySet()) {
+			means.put(d, statistics.get(d).getMean());
+			covariances.put(d, statistics.get(d).getCovariance());
+		}
+		
+		createDistributions(means, covariances, getDimension(statistics), priors, distributions);
+		
+		return setModel(distributions, priors);
+	}
+	
+	
+	private void createDistributions(Map<ClassDescriptor, double[]> means, 
+			Map<ClassDescriptor, double[][]> covariances, int dimension,
+			Map<ClassDescriptor, Double> priors, Map<ClassDescriptor, MultivariateDistribution> distributions) {
+		this.dimension = dimension;
 
 		/*
 		 * Get the average of all covariance matrices.
@@ -45,10 +89,9 @@ public class NormalLinearClassifier extends BayesClassifier {
 		 */
 		double[][] covariance = new double[dimension][dimension];
 
-		for(ClassDescriptor d: data.keySet()) {
+		for(ClassDescriptor d: means.keySet()) {
 			double p = priors.get(d);
-			double[] mean = MaximumLikelihoodEstimation.getMean(data.get(d), dimension);
-			double[][] cov = MaximumLikelihoodEstimation.getCovariance(data.get(d), mean);
+			double[][] cov = covariances.get(d);
 			
 			for(int i = 0; i < dimension; i++) {
 				covariance[i][i] += p * cov[i][i];
@@ -58,11 +101,9 @@ public class NormalLinearClassifier extends BayesClassifier {
 					covariance[j][i] += u;
 				}
 			}
-			
-			means.put(d, mean);
 		}
 		
-		for(ClassDescriptor d: data.keySet()) {
+		for(ClassDescriptor d: means.keySet()) {
 			MultivariateDistribution dist = new MultivariateNormalDistribution(means.get(d), covariance);
 
 			// add to superclass' distributions set
@@ -70,7 +111,14 @@ public class NormalLinearClassifier extends BayesClassifier {
 		}
 	}
 
+	public boolean canLeaveOneOut(VectorSet data) {
+		return GaussianLeaveOneOut.isApplicable(data);
+	}
 	
+	public void leaveOneOut(VectorSet data, ClassificationLogger logger) {
+		new GaussianLeaveOneOut(0.0, usesPriors()).run(data, logger);
+	}
+
 	@Export(ModelType.CLASSIFIER)
 	public void export(ExportVisitor visitor) {
 		/*
@@ -119,15 +167,20 @@ public class NormalLinearClassifier extends BayesClassifier {
 		BayesClassifier classifier = new NormalMLEClassifier();
 		double[][] cov = (double[][])model.get("covariance");
 		
+		Map<ClassDescriptor, MultivariateDistribution> distributions = new HashMap<ClassDescriptor, MultivariateDistribution>();
+		Map<ClassDescriptor, Double> priors = new HashMap<ClassDescriptor, Double>();
+		
 		for(ClassDescriptor c: classes.keySet()) {
 			double[] mean = (double[])classes.get(c).get("mean");
 			Double prior = new Double((String)classes.get(c).get("prior"));
 			
 			MultivariateDistribution d = new MultivariateNormalDistribution(mean, cov);
-			classifier.distributions.put(c, d);
-			classifier.priors.put(c, prior);
+			distributions.put(c, d);
+			priors.put(c, prior);
 		}
 		
+		classifier.setModel(distributions, priors);
+		
 		return classifier;
 	}
 }
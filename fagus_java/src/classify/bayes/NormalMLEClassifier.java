@@ -1,5 +1,7 @@
 package classify.bayes;
 
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
 
@@ -7,13 +9,22 @@ import math.statistics.MultivariateDistribution;
 import math.statistics.MaximumLikelihoodEstimation;
 import math.statistics.MultivariateNormalDistribution;
 import math.statistics.SmallSampleSizeNormalDistribution;
+import math.statistics.SufficientStatistics;
+
+import reporting.ClassificationLogger;
 
 import util.ClassDescriptor;
+import util.StreamingVectorSetReader;
+import util.VectorSet;
 import util.io.Export;
 import util.io.ExportVisitor;
 import util.io.Import;
 import util.io.ModelType;
 
+import classify.LeaveOneOutEstimator;
+import classify.Predictor;
+import classify.StreamingTrainable;
+
 /**
  * This classifier is a very basic type of a Bayesian classifier.
  * Each class is assumed to have a normal distribution describing
@@ -24,7 +35,7 @@ import util.io.ModelType;
  * 
  * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
  */
-public class NormalMLEClassifier extends BayesClassifier {
+public class NormalMLEClassifier extends BayesClassifier implements LeaveOneOutEstimator, StreamingTrainable {
 
 	private int dimension;
 	
@@ -36,7 +47,8 @@ public class NormalMLEClassifier extends BayesClassifier {
 	 * @param dimension A training vector's dimension.
 	 */
 	@Override
-	protected void doTrain(Map<ClassDescriptor, List<double[]>> data, int dimension) {
+	protected void doTrain(Map<ClassDescriptor, List<double[]>> data, int dimension,
+			Map<ClassDescriptor, Double> priors, Map<ClassDescriptor, MultivariateDistribution> distributions) {
 		this.dimension = dimension;
 
 		for(ClassDescriptor d: data.keySet()) {
@@ -59,6 +71,55 @@ public class NormalMLEClassifier extends BayesClassifier {
 		}
 	}
 	
+	/**
+	 * Training from sufficient statistics requires a full covariance
+	 * matrix for every class, i.e. at least as many samples as
+	 * dimensions. Otherwise, the small sample size distribution of
+	 * doTrain needs the samples themselves.
+	 */
+	public Predictor train(StreamingVectorSetReader reader, int threads) throws IOException {
+		Map<ClassDescriptor, SufficientStatistics> statistics = getStatistics(reader, threads);
+		Map<ClassDescriptor, MultivariateDistribution> distributions = new HashMap<ClassDescriptor, MultivariateDistribution>();
+		int dimension = getDimension(statistics);
+		
+		for(SufficientStatistics s: statistics.values()) {
+			if(s.getCount() < dimension) {
+				return train(reader.parse());
+			}
+		}
+		
+		this.dimension = dimension;
+		
+		for(ClassDescriptor d: statistics.keySet()) {
+			SufficientStatistics s = statistics.get(d);
+			
+			distributions.put(d, new MultivariateNormalDistribution(s.getMean(), s.getCovariance()));
+		}
+		
+		return setModel(distributions, getPriors(statistics));
+	}
+	
+	/**
+	 * The closed-form Leave-One-Out procedure requires every held-out
+	 * model to use a full covariance matrix. This is not the case, if
+	 * some class falls back to a small sample size distribution.
+	 */
+	public boolean canLeaveOneOut(VectorSet data) {
+		Map<ClassDescriptor, List<double[]>> d = data.getInvertedData();
+		
+		for(ClassDescriptor c: d.keySet()) {
+			if(d.get(c).size() - 1 < data.getDimension()) {
+				return false;
+			}
+		}
+		
+		return GaussianLeaveOneOut.isApplicable(data);
+	}
+	
+	public void leaveOneOut(VectorSet data, ClassificationLogger logger) {
+		new GaussianLeaveOneOut(1.0, usesPriors()).run(data, logger);
+	}
+	
 	@Export(ModelType.CLASSIFIER)
 	public void export(ExportVisitor visitor) {
 		/*
@@ -95,16 +156,21 @@ public class NormalMLEClassifier extends BayesClassifier {
 	public static BayesClassifier newInstance(Map<String, Object> model, Map<ClassDescriptor, Map<String, Object>> classes) {
 		BayesClassifier classifier = new NormalMLEClassifier();
 		
+		Map<ClassDescriptor, MultivariateDistribution> distributions = new HashMap<ClassDescriptor, MultivariateDistribution>();
+		Map<ClassDescriptor, Double> priors = new HashMap<ClassDescriptor, Double>();
+		
 		for(ClassDescriptor c: classes.keySet()) {
 			double[] mean = (double[])classes.get(c).get("mean");
 			double[][] cov = (double[][])classes.get(c).get("covariance");
 			Double prior = new Double((String)classes.get(c).get("prior"));
 			
 			MultivariateDistribution d = new MultivariateNormalDistribution(mean, cov);
-			classifier.distributions.put(c, d);
-			classifier.priors.put(c, prior);
+			distributions.put(c, d);
+			priors.put(c, prior);
 		}
 		
+		classifier.setModel(distributions, priors);
+		
 		return classifier;
 	}
 
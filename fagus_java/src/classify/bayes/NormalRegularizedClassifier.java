@@ -1,5 +1,6 @@
 package classify.bayes;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -7,18 +8,30 @@ import java.util.Map;
 import math.statistics.MaximumLikelihoodEstimation;
 import math.statistics.MultivariateDistribution;
 import math.statistics.MultivariateNormalDistribution;
+import math.statistics.SufficientStatistics;
+
+import reporting.ClassificationLogger;
 
 import util.ClassDescriptor;
+import util.StreamingVectorSetReader;
+import util.VectorSet;
 import util.io.Export;
 import util.io.ExportVisitor;
 import util.io.Import;
 import util.io.ModelType;
 
+import classify.LeaveOneOutEstimator;
+import classify.Predictor;
+import classify.StreamingTrainable;
+
 /**
  * This class provides an extension to a quadratic and linear Bayes
  * classifier. A regularization term interpolates the common covariance
  * matrix (as used for linear classification) and the class-specific
- * covariance matrices (as used in quadratic classification).
+ * covariance matrices (as used in quadratic classification). An 
+ * optional second parameter shrinks the result towards a multiple of
+ * the identity matrix, which is Friedman's second regularization
+ * parameter.
  * 
  * <br><br>
  * See Chapter 4.3.1 "Regularized Discriminant Analysis" of,
@@ -28,8 +41,9 @@ import util.io.ModelType;
  *     
  * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
  */
-public class NormalRegularizedClassifier extends BayesClassifier {
+public class NormalRegularizedClassifier extends BayesClassifier implements LeaveOneOutEstimator, StreamingTrainable {
 	private final double regularization;
+	private final double shrinkage;
 	private int dimension;
 	
 	/**
@@ -41,11 +55,30 @@ public class NormalRegularizedClassifier extends BayesClassifier {
 	 *        classifier, while 1 is equal to a quadratic one.
 	 */
 	public NormalRegularizedClassifier(double regularization) {
+		this(regularization, 0.0);
+	}
+	
+	/**
+	 * Create a new regularized Bayes classifier with both parameters
+	 * of Regularized Discriminant Analysis. Each covariance matrix is
+	 * obtained by
+	 * 
+	 * Sigma_k(alpha) = alpha * Sigma_k + (1 - alpha) * Sigma
+	 * Sigma_k(alpha, gamma) = (1 - gamma) * Sigma_k(alpha) + gamma * trace(Sigma_k(alpha)) / d * I
+	 * 
+	 * @param regularization a value in [0,1]. 0 is equal to a linear
+	 *        classifier, while 1 is equal to a quadratic one.
+	 * @param shrinkage a value in [0,1]. 0 turns shrinkage off, 1 results
+	 *        in scalar covariance matrices.
+	 */
+	public NormalRegularizedClassifier(double regularization, double shrinkage) {
 		this.regularization = regularization;
+		this.shrinkage = shrinkage;
 	}
 	
 	@Override
-	protected void doTrain(Map<ClassDescriptor, List<double[]>> data, int dimension) {
+	protected void doTrain(Map<ClassDescriptor, List<double[]>> data, int dimension,
+			Map<ClassDescriptor, Double> priors, Map<ClassDescriptor, MultivariateDistribution> distributions) {
 		this.dimension = dimension;
 		
 		Map<ClassDescriptor, double[]> means = new HashMap<ClassDescriptor, double[]>();
@@ -59,13 +92,47 @@ public class NormalRegularizedClassifier extends BayesClassifier {
 			covariances.put(d, cov);
 		}
 		
-		regularize(covariances);
+		regularize(covariances, dimension, priors);
 		
 		for(ClassDescriptor d: data.keySet()) {
 			distributions.put(d, new MultivariateNormalDistribution(means.get(d), covariances.get(d)));
 		}
 	}
 
+	public Predictor train(StreamingVectorSetReader reader, int threads) throws IOException {
+		Map<ClassDescriptor, SufficientStatistics> statistics = getStatistics(reader, threads);
+		Map<ClassDescriptor, Double> priors = getPriors(statistics);
+		Map<ClassDescriptor, MultivariateDistribution> distributions = new HashMap<ClassDescriptor, MultivariateDistribution>();
+		
+		this.dimension = getDimension(statistics);
+		
+		Map<ClassDescriptor, double[][]> covariances = new HashMap<ClassDescriptor, double[][]>();
+		
+		for(ClassDescriptor d: statistics.keySet()) {
+			covariances.put(d, statistics.get(d).getCovariance());
+		}
+		
+		regularize(covariances, dimension, priors);
+		
+		for(ClassDescriptor d: statistics.keySet()) {
+			distributions.put(d, new MultivariateNormalDistribution(statistics.get(d).getMean(), covariances.get(d)));
+		}
+		
+		return setModel(distributions, priors);
+	}
+
+	public boolean canLeaveOneOut(VectorSet data) {
+		/*
+		 * The shrinkage term is not a rank-one update of the held-out
+		 * covariance matrices. 
+		 */
+		return shrinkage == 0.0 && GaussianLeaveOneOut.isApplicable(data);
+	}
+	
+	public void leaveOneOut(VectorSet data, ClassificationLogger logger) {
+		new GaussianLeaveOneOut(regularization, usesPriors()).run(data, logger);
+	}
+
 	@Export(ModelType.CLASSIFIER)
 	public void export(ExportVisitor visitor) {
 		/*
@@ -110,21 +177,26 @@ public class NormalRegularizedClassifier extends BayesClassifier {
 		 */
 		BayesClassifier classifier = new NormalMLEClassifier();
 		
+		Map<ClassDescriptor, MultivariateDistribution> distributions = new HashMap<ClassDescriptor, MultivariateDistribution>();
+		Map<ClassDescriptor, Double> priors = new HashMap<ClassDescriptor, Double>();
+		
 		for(ClassDescriptor c: classes.keySet()) {
 			double[] mean = (double[])classes.get(c).get("mean");
 			double[][] cov = (double[][])classes.get(c).get("covariance");
 			Double prior = new Double((String)classes.get(c).get("prior"));
 			
 			MultivariateDistribution d = new MultivariateNormalDistribution(mean, cov);
-			classifier.distributions.put(c, d);
-			classifier.priors.put(c, prior);
+			distributions.put(c, d);
+			priors.put(c, prior);
 		}
 		
+		classifier.setModel(distributions, priors);
+		
 		return classifier;
 	}
 
 	
-	private void regularize(Map<ClassDescriptor, double[][]> covariances) {
+	private void regularize(Map<ClassDescriptor, double[][]> covariances, int dimension, Map<ClassDescriptor, Double> priors) {
 		
 		double[][] commonCovariance = new double[dimension][dimension];
 		
@@ -158,7 +230,34 @@ public class NormalRegularizedClassifier extends BayesClassifier {
 					cov[i][j] = cov[j][i] = u;
 				}
 			}
+			
+			if(shrinkage > 0.0) {
+				shrink(cov, shrinkage);
+			}
 		}		
 	}
+	
+	
+	/**
+	 * Shrink a covariance matrix towards a multiple of the identity 
+	 * matrix with the same trace.
+	 * 
+	 * @param cov the matrix. It is modified in place.
+	 * @param shrinkage the shrinkage parameter in [0,1].
+	 */
+	private static void shrink(double[][] cov, double shrinkage) {
+		double trace = 0.0;
+		
+		for(int i = 0; i < cov.length; i++) {
+			trace += cov[i][i];
+		}
+		
+		for(int i = 0; i < cov.length; i++) {
+			for(int j = 0; j < cov.length; j++) {
+				cov[i][j] *= (1.0 - shrinkage);
+			}
+			cov[i][i] += shrinkage * trace / cov.length;
+		}
+	}
 
 }
@@ -0,0 +1,316 @@
+package classify.bayes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import Jama.EigenvalueDecomposition;
+import Jama.Matrix;
+
+import math.statistics.MaximumLikelihoodEstimation;
+
+import util.ClassDescriptor;
+import util.Parallel;
+import util.VectorSet;
+
+/**
+ * This class evaluates a whole grid of parameters of the regularized
+ * Bayes classifier on a validation set, without retraining the
+ * classifier for every grid point. The class means, the class
+ * covariance matrices, and the common covariance matrix are estimated
+ * only once. For every value of the regularization parameter alpha,
+ * each regularized class covariance matrix is decomposed once. Since
+ * shrinkage towards a multiple of the identity matrix does not change
+ * the eigenvectors, i.e.
+ *
+ * <pre>
+ * (1 - gamma) * Sigma_k(alpha) + gamma * t / d * I = Phi . diag((1 - gamma) * lambda_i + gamma * t / d) . Phi<sup>T</sup>
+ * </pre>
+ *
+ * all values of the shrinkage parameter gamma share this decomposition.
+ * The validation vectors are projected onto the eigenvectors once, so
+ * each additional value of gamma costs O(d) per vector and class. The
+ * pairs of alpha and classes are processed concurrently.
+ *
+ * <br><br>
+ * See J. Friedman
+ *     "Regularized Discriminant Analysis"
+ *     Journal of the American Statistical Association
+ *     vol 84 pp. 165--175
+ *     1989
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public class RegularizationPath {
+	private final double[] alphas;
+	private final double[] gammas;
+	private int threads;
+
+	private double[][] errors;
+	private int bestAlpha;
+	private int bestGamma;
+	private NormalRegularizedClassifier bestClassifier;
+
+	/**
+	 * Create a new path for a grid of parameters.
+	 *
+	 * @param alphas values of the regularization parameter, each in [0,1].
+	 * @param gammas values of the shrinkage parameter, each in [0,1].
+	 */
+	public RegularizationPath(double[] alphas, double[] gammas) {
+		this.alphas = alphas;
+		this.gammas = gammas;
+		this.threads = Parallel.getDefaultThreads();
+	}
+
+	/**
+	 * Create a new path for the regularization parameter only.
+	 *
+	 * @param alphas values of the regularization parameter, each in [0,1].
+	 */
+	public RegularizationPath(double[] alphas) {
+		this(alphas, new double[] {0.0});
+	}
+
+	/**
+	 * Set the number of worker threads.
+	 *
+	 * @param threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Evaluate all grid points. Afterwards, the classifier of the
+	 * grid point with the lowest validation error is trained on the
+	 * training set.
+	 *
+	 * @param trainingSet the data used for parameter estimation.
+	 * @param validationSet the data used for error estimation.
+	 */
+	public void run(VectorSet trainingSet, VectorSet validationSet) {
+		final Map<ClassDescriptor, List<double[]>> data = trainingSet.getInvertedData();
+		final int dimension = trainingSet.getDimension();
+		final int nClasses = data.size();
+		final int total = trainingSet.getData().size();
+		final boolean usePriors = BayesClassifier.usesPriorsByDefault();
+
+		final ClassDescriptor[] classes = data.keySet().toArray(new ClassDescriptor[nClasses]);
+		final double[] p = new double[nClasses];
+		final double[][] means = new double[nClasses][];
+		final double[][][] covariances = new double[nClasses][][];
+		final double[][] common = new double[dimension][dimension];
+
+		for(int k = 0; k < nClasses; k++) {
+			List<double[]> samples = data.get(classes[k]);
+			p[k] = (double)samples.size() / total;
+			means[k] = MaximumLikelihoodEstimation.getMean(samples, dimension);
+			covariances[k] = MaximumLikelihoodEstimation.getCovariance(samples, means[k]);
+
+			for(int i = 0; i < dimension; i++) {
+				for(int j = 0; j < dimension; j++) {
+					common[i][j] += p[k] * covariances[k][i][j];
+				}
+			}
+		}
+
+		final Map<double[], ClassDescriptor> validation = validationSet.getData();
+		final double[][] vectors = validation.keySet().toArray(new double[validation.size()][]);
+
+		/*
+		 * For every alpha and class, get the discriminants of all validation
+		 * vectors for all values of gamma.
+		 */
+		List<Callable<double[][]>> tasks = new ArrayList<Callable<double[][]>>();
+
+		for(int a = 0; a < alphas.length; a++) {
+			for(int k = 0; k < nClasses; k++) {
+				final double alpha = alphas[a];
+				final int c = k;
+
+				tasks.add(new Callable<double[][]>() {
+					public double[][] call() {
+						double prior = usePriors ? Math.log(p[c]) : 0.0;
+						return getDiscriminants(covariances[c], common, means[c], alpha, prior, vectors);
+					}
+				});
+			}
+		}
+
+		List<double[][]> discriminants = Parallel.invokeAll(tasks, threads);
+
+		errors = new double[alphas.length][gammas.length];
+		bestAlpha = -1;
+		bestGamma = -1;
+
+		for(int a = 0; a < alphas.length; a++) {
+			for(int g = 0; g < gammas.length; g++) {
+				int wrong = 0;
+
+				for(int v = 0; v < vectors.length; v++) {
+					double max = Double.NEGATIVE_INFINITY;
+					int result = -1;
+
+					for(int k = 0; k < nClasses; k++) {
+						double density = discriminants.get(a * nClasses + k)[g][v];
+
+						if(Double.isNaN(density)) {
+							// this grid point is numerically unstable
+							result = -1;
+							wrong = -1;
+							break;
+						}
+
+						if(density > max) {
+							max = density;
+							result = k;
+						}
+					}
+
+					if(wrong < 0) {
+						break;
+					}
+
+					if(result < 0 || classes[result] != validation.get(vectors[v])) {
+						wrong++;
+					}
+				}
+
+				if(wrong < 0) {
+					errors[a][g] = Double.NaN;
+				} else {
+					errors[a][g] = (double)wrong / vectors.length;
+
+					if(bestAlpha < 0 || errors[a][g] < errors[bestAlpha][bestGamma]) {
+						bestAlpha = a;
+						bestGamma = g;
+					}
+				}
+			}
+		}
+
+		if(bestAlpha < 0) {
+			throw new ArithmeticException("No grid point yields a valid classifier");
+		}
+
+		bestClassifier = new NormalRegularizedClassifier(alphas[bestAlpha], gammas[bestGamma]);
+		bestClassifier.train(trainingSet);
+	}
+
+	/**
+	 * Get the validation error rates of all grid points. The first
+	 * index refers to alpha, the second one to gamma. Grid points
+	 * that cause numerical errors have an error of NaN.
+	 *
+	 * @return the error rates.
+	 */
+	public double[][] getErrors() {
+		return errors;
+	}
+
+	/**
+	 * Get the regularization parameter of the best grid point.
+	 *
+	 * @return
+	 */
+	public double getBestRegularization() {
+		return alphas[bestAlpha];
+	}
+
+	/**
+	 * Get the shrinkage parameter of the best grid point.
+	 *
+	 * @return
+	 */
+	public double getBestShrinkage() {
+		return gammas[bestGamma];
+	}
+
+	/**
+	 * Get the classifier of the best grid point, trained on the
+	 * training set.
+	 *
+	 * @return
+	 */
+	public NormalRegularizedClassifier getBestClassifier() {
+		return bestClassifier;
+	}
+
+
+	/*
+	 * Get the discriminants of a single class for all validation vectors and
+	 * values of gamma. The result is indexed by gamma and vector.
+	 */
+	private double[][] getDiscriminants(double[][] cov, double[][] common, double[] mean,
+			double alpha, double prior, double[][] vectors) {
+
+		final int dimension = mean.length;
+		double[][] m = new double[dimension][dimension];
+
+		for(int i = 0; i < dimension; i++) {
+			for(int j = 0; j < dimension; j++) {
+				m[i][j] = alpha * cov[i][j] + (1.0 - alpha) * common[i][j];
+			}
+		}
+
+		EigenvalueDecomposition eig = new EigenvalueDecomposition(new Matrix(m));
+		double[] eigenvalues = eig.getRealEigenvalues();
+		double[][] eigenvectors = eig.getV().getArray();
+
+		double trace = 0.0;
+		for(int i = 0; i < dimension; i++) {
+			trace += eigenvalues[i];
+		}
+
+		/*
+		 * Project every vector onto the eigenvectors. The squared
+		 * projections are shared by all values of gamma.
+		 */
+		double[][] z = new double[vectors.length][dimension];
+		double[] diff = new double[dimension];
+
+		for(int v = 0; v < vectors.length; v++) {
+			for(int j = 0; j < dimension; j++) {
+				diff[j] = vectors[v][j] - mean[j];
+			}
+
+			for(int i = 0; i < dimension; i++) {
+				double u = 0.0;
+
+				for(int j = 0; j < dimension; j++) {
+					u += eigenvectors[j][i] * diff[j];
+				}
+
+				z[v][i] = u * u;
+			}
+		}
+
+		double[][] result = new double[gammas.length][vectors.length];
+		double[] inverseEigenvalues = new double[dimension];
+
+		for(int g = 0; g < gammas.length; g++) {
+			double lnDet = 0.0;
+
+			for(int i = 0; i < dimension; i++) {
+				double lambda = (1.0 - gammas[g]) * eigenvalues[i] + gammas[g] * trace / dimension;
+
+				lnDet += Math.log(lambda);
+				inverseEigenvalues[i] = 1.0 / lambda;
+			}
+
+			for(int v = 0; v < vectors.length; v++) {
+				double a = 0.0;
+
+				for(int i = 0; i < dimension; i++) {
+					a += z[v][i] * inverseEigenvalues[i];
+				}
+
+				result[g][v] = prior - (a + lnDet) / 2.0;
+			}
+		}
+
+		return result;
+	}
+}
@@ -13,7 +13,9 @@ import util.io.Export;
 import util.io.ExportVisitor;
 import util.io.Import;
 import util.io.ModelType;
+import classify.AbstractPredictor;
 import classify.Classifier;
+import classify.Predictor;
 
 /**
  * This class provides a classifier using the k-Nearest-Neighbor
@@ -33,6 +35,7 @@ public class KNNClassifier implements Classifier {
 	protected final Metrics metrics;
 	protected ClassDescriptor[] classes;
 	protected VectorSet trainingData;
+	private KNNPredictor predictor;
 	
 	
 	/**
@@ -71,44 +74,28 @@ public class KNNClassifier implements Classifier {
 	 * @return A descriptor for the class that f was assigned to.
 	 */
 	public ClassDescriptor classify(double[] f) {
-		/* 
-		 * It's important to keep track of the actual distances
-		 * while creating the selection. This is required to
-		 * kick out the proper vector when inserting a new one.
-		 */
-		SortedMap<Double, ClassDescriptor> selection = new TreeMap<Double, ClassDescriptor>();
-		
-		/*
-		 * Loop across the training set an calculate the distance
-		 * to each of its elements.
-		 */
-		for(Map.Entry<double[], ClassDescriptor> trainingEntry: trainingData.getData().entrySet()) {
-			double result = metrics.getDistance(f, trainingEntry.getKey());
-			
-			if(selection.size() < k) {
-				// selection is not full so far
-				selection.put(new Double(result), trainingEntry.getValue());
-			} else if(result < selection.lastKey().doubleValue()) {
-				// selection is full but contains at least one
-				// vector with a greater distance
-				selection.remove(selection.lastKey());
-				selection.put(new Double(result), trainingEntry.getValue());
-			}
-		}
-		
-		return getHighestFrequency(selection);
+		return predictor.classify(f);
 	}
 	
 	/**
 	 * Set the training data for this classifier.
 	 * @param trainingData The training data to use.
+	 * @return the trained model. It holds references to the training
+	 *         vectors, which must not be modified.
 	 */
-	public void train(VectorSet trainingSet) {
+	public Predictor train(VectorSet trainingSet) {
 		Set<ClassDescriptor> cs = trainingSet.getClassDescriptors();
 		classes = new ClassDescriptor[cs.size()];
 		classes = cs.toArray(classes);
 		
 		this.trainingData = trainingSet;
+		this.predictor = new KNNPredictor(k, metrics, classes, trainingSet.getData());
+		
+		return predictor;
+	}
+	
+	public Predictor getPredictor() {
+		return predictor;
 	}
 	
 	/**
@@ -116,6 +103,7 @@ public class KNNClassifier implements Classifier {
 	 */
 	public void clearTrainingData() {
 		this.trainingData = null;
+		this.predictor = null;
 	}
 	
 	public boolean suggestsScaling() {
@@ -190,46 +178,102 @@ public class KNNClassifier implements Classifier {
 
 	
 	/*
-	 * Get the class descriptor with the most occurrences within
-	 * the selections. If two or more elements have the same number
-	 * of occurrences, a decision based on the sum of differences
-	 * is made.
+	 * The model of a kNN classifier. The training vectors and their
+	 * classes are copied to arrays, in the order of the training set.
 	 */
-	private ClassDescriptor getHighestFrequency(Map<Double, ClassDescriptor> selection) {
-		int nclasses = classes.length;
-		int[] frequencies = new int[nclasses];
-		double[] difference = new double[nclasses];
-
-		// TODO: improve running time 
-		// currently: O(c*k) where c is the number of classes
-
-		//init
-		for(int i = 0; i < frequencies.length; i++) {
-			frequencies[i] = 0;
-			difference[i] = 0.0;
+	private static class KNNPredictor extends AbstractPredictor {
+		private final int k;
+		private final Metrics metrics;
+		private final ClassDescriptor[] classes;
+		private final double[][] vectors;
+		private final ClassDescriptor[] labels;
+		
+		KNNPredictor(int k, Metrics metrics, ClassDescriptor[] classes, Map<double[], ClassDescriptor> data) {
+			this.k = k;
+			this.metrics = metrics;
+			this.classes = classes;
+			this.vectors = new double[data.size()][];
+			this.labels = new ClassDescriptor[data.size()];
+			
+			int i = 0;
+			for(Map.Entry<double[], ClassDescriptor> entry: data.entrySet()) {
+				vectors[i] = entry.getKey();
+				labels[i] = entry.getValue();
+				i++;
+			}
 		}
 		
-		//for every class count the occurrence of this class
-		for(int i = 0; i < nclasses; i++) {
-			for(Map.Entry<Double, ClassDescriptor> entry: selection.entrySet()) {
-				if(entry.getValue().equals(classes[i])) {
-					frequencies[i]++;
-					difference[i] += entry.getKey().doubleValue(); 
+		public ClassDescriptor classify(double[] f) {
+			/* 
+			 * It's important to keep track of the actual distances
+			 * while creating the selection. This is required to
+			 * kick out the proper vector when inserting a new one.
+			 */
+			SortedMap<Double, ClassDescriptor> selection = new TreeMap<Double, ClassDescriptor>();
+			
+			/*
+			 * Loop across the training set an calculate the distance
+			 * to each of its elements.
+			 */
+			for(int i = 0; i < vectors.length; i++) {
+				double result = metrics.getDistance(f, vectors[i]);
+				
+				if(selection.size() < k) {
+					// selection is not full so far
+					selection.put(new Double(result), labels[i]);
+				} else if(result < selection.lastKey().doubleValue()) {
+					// selection is full but contains at least one
+					// vector with a greater distance
+					selection.remove(selection.lastKey());
+					selection.put(new Double(result), labels[i]);
 				}
 			}
+			
+			return getHighestFrequency(selection);
 		}
 		
-		int max = 0;
+		/*
+		 * Get the class descriptor with the most occurrences within
+		 * the selections. If two or more elements have the same number
+		 * of occurrences, a decision based on the sum of differences
+		 * is made.
+		 */
+		private ClassDescriptor getHighestFrequency(Map<Double, ClassDescriptor> selection) {
+			int nclasses = classes.length;
+			int[] frequencies = new int[nclasses];
+			double[] difference = new double[nclasses];
+
+			// TODO: improve running time 
+			// currently: O(c*k) where c is the number of classes
+
+			//init
+			for(int i = 0; i < frequencies.length; i++) {
+				frequencies[i] = 0;
+				difference[i] = 0.0;
+			}
 		
-		for(int i = 1; i < nclasses; i++) {
-			if(frequencies[i] > frequencies[max]) {
-				max = i;
-			} else if( (frequencies[i] == frequencies[max]) && 
-					   (difference[i] < difference[max]) ) {
-				max = i;
+			//for every class count the occurrence of this class
+			for(int i = 0; i < nclasses; i++) {
+				for(Map.Entry<Double, ClassDescriptor> entry: selection.entrySet()) {
+					if(entry.getValue().equals(classes[i])) {
+						frequencies[i]++;
+						difference[i] += entry.getKey().doubleValue(); 
+					}
+				}
 			}
-		}
 		
-		return classes[max];
+			int max = 0;
+		
+			for(int i = 1; i < nclasses; i++) {
+				if(frequencies[i] > frequencies[max]) {
+					max = i;
+				} else if( (frequencies[i] == frequencies[max]) && 
+						   (difference[i] < difference[max]) ) {
+					max = i;
+				}
+			}
+		
+			return classes[max];
+		}
 	}
 }
@@ -1,10 +1,12 @@
 package classify.parzen;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import math.statistics.MaximumLikelihoodEstimation;
+import math.statistics.MultivariateDistribution;
 
 import util.ClassDescriptor;
 import util.io.Export;
@@ -69,8 +71,8 @@ public class ParzenWindowClassifier extends BayesClassifier {
 	}
 	
 	@Override
-	protected void doTrain(Map<ClassDescriptor, List<double[]>> data,
-			int dimension) {
+	protected void doTrain(Map<ClassDescriptor, List<double[]>> data, int dimension,
+			Map<ClassDescriptor, Double> priors, Map<ClassDescriptor, MultivariateDistribution> distributions) {
 		
 		this.dimension = dimension;
 		
@@ -83,7 +85,8 @@ public class ParzenWindowClassifier extends BayesClassifier {
 
 			Kernel kernel = type.getKernel(cov, radius);
 			
-			distributions.put(c, new ParzenDistribution(kernel, data.get(c)));
+			// copy the list, since the training set may be modified later on
+			distributions.put(c, new ParzenDistribution(kernel, new ArrayList<double[]>(data.get(c))));
 		}
 	}
 
@@ -149,6 +152,7 @@ public class ParzenWindowClassifier extends BayesClassifier {
 		}
 		
 		classifier = new ParzenWindowClassifier(radius, type);
+		Map<ClassDescriptor, MultivariateDistribution> distributions = new HashMap<ClassDescriptor, MultivariateDistribution>();
 		
 		for(ClassDescriptor c: classes.keySet()) {
 			double[][] a = (double[][])classes.get(c).get("vectors");
@@ -164,9 +168,11 @@ public class ParzenWindowClassifier extends BayesClassifier {
 			
 			Kernel kernel = type.getKernel(cov, radius);
 			
-			classifier.distributions.put(c, new ParzenDistribution(kernel, l));
+			distributions.put(c, new ParzenDistribution(kernel, l));
 		}
 		
+		classifier.setModel(distributions, new HashMap<ClassDescriptor, Double>());
+		
 		return classifier;
 	}
 
@@ -0,0 +1,337 @@
+package classify.svm;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+
+import util.ClassDescriptor;
+import util.Parallel;
+import util.VectorSet;
+import classify.KFoldValidator;
+
+/**
+ * This class searches the parameters C and gamma of a
+ * SupportVectorClassifier. Every point of a grid is evaluated by a
+ * stratified k-fold cross validation. The grid is given by exponents
+ * to the base 2, as suggested by the LibSVM authors. After evaluating
+ * the initial grid, it is refined around the best point a number of
+ * times, halving the step size each time.
+ *
+ * <br><br>
+ * All pairs of grid points and folds are trained concurrently. If a
+ * precomputed kernel matrix is used, the kernel values are computed
+ * once per gamma and shared by all values of C and all folds. In this
+ * case, the grid points are processed one gamma at a time. LibSVM does
+ * not allow to initialize the solver with the alphas of a previous
+ * solution, so each point is trained from scratch.
+ *
+ * <br><br>
+ * See C. Hsu, C. Chang, and C. Lin
+ *     "A Practical Guide to Support Vector Classification"
+ *     Technical Report
+ *     National Taiwan University
+ *     2003
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public class GridSearch {
+	private final double[] log2C;
+	private final double[] log2Gamma;
+	private int folds;
+	private int threads;
+	private int refinements;
+	private long seed;
+	private boolean precomputed;
+
+	private Map<String, Result> results;
+	private Result best;
+	private SupportVectorClassifier bestClassifier;
+
+	/**
+	 * Create a new grid search.
+	 *
+	 * @param log2C the exponents of C, in ascending order.
+	 * @param log2Gamma the exponents of gamma, in ascending order.
+	 */
+	public GridSearch(double[] log2C, double[] log2Gamma) {
+		this.log2C = log2C;
+		this.log2Gamma = log2Gamma;
+		this.folds = 5;
+		this.threads = Parallel.getDefaultThreads();
+		this.refinements = 0;
+		this.seed = 0;
+		this.precomputed = false;
+	}
+
+	/**
+	 * Set the number of folds of the cross validation. The default is 5.
+	 *
+	 * @param folds
+	 */
+	public void setFolds(int folds) {
+		this.folds = folds;
+	}
+
+	/**
+	 * Set the number of worker threads.
+	 *
+	 * @param threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Set the number of refinement steps around the best grid point.
+	 * The default is 0, i.e. only the initial grid is evaluated.
+	 *
+	 * @param refinements
+	 */
+	public void setRefinements(int refinements) {
+		this.refinements = refinements;
+	}
+
+	/**
+	 * Set the seed used for assigning vectors to folds.
+	 *
+	 * @param seed
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Choose, whether a precomputed kernel matrix is used. This needs
+	 * O(n<sup>2</sup>) memory. See KernelMatrix.
+	 *
+	 * @param precomputed
+	 */
+	public void setPrecomputed(boolean precomputed) {
+		this.precomputed = precomputed;
+	}
+
+	/**
+	 * Run the grid search. Afterwards, a classifier with the best
+	 * parameters is trained on all data.
+	 *
+	 * @param data the data used for cross validation and training.
+	 */
+	public void run(VectorSet data) {
+		final VectorSet[][] splits = KFoldValidator.split(data, folds, new Random(seed));
+		final KernelMatrix kernel = precomputed ? new KernelMatrix(data, threads) : null;
+
+		results = new HashMap<String, Result>();
+		best = null;
+
+		List<double[]> points = new ArrayList<double[]>();
+		for(double c: log2C) {
+			for(double g: log2Gamma) {
+				points.add(new double[] {c, g});
+			}
+		}
+		evaluate(points, splits, kernel, data.getData().size());
+
+		double stepC = getStep(log2C);
+		double stepGamma = getStep(log2Gamma);
+
+		for(int r = 0; r < refinements; r++) {
+			stepC /= 2.0;
+			stepGamma /= 2.0;
+
+			double c = best.log2C;
+			double g = best.log2Gamma;
+
+			points = new ArrayList<double[]>();
+			for(int i = -1; i <= 1; i++) {
+				for(int j = -1; j <= 1; j++) {
+					points.add(new double[] {c + i * stepC, g + j * stepGamma});
+				}
+			}
+			evaluate(points, splits, kernel, data.getData().size());
+		}
+
+		bestClassifier = new SupportVectorClassifier(best.getC(), best.getGamma());
+		bestClassifier.setThreads(threads);
+		bestClassifier.train(data);
+	}
+
+	/**
+	 * Get the classifier with the best parameters, trained on all data.
+	 *
+	 * @return
+	 */
+	public SupportVectorClassifier getBestClassifier() {
+		return bestClassifier;
+	}
+
+	/**
+	 * Get the grid point with the lowest error rate.
+	 *
+	 * @return
+	 */
+	public Result getBestResult() {
+		return best;
+	}
+
+	/**
+	 * Get all evaluated grid points, ordered by C and gamma.
+	 *
+	 * @return the error surface.
+	 */
+	public List<Result> getResults() {
+		List<Result> list = new ArrayList<Result>(results.values());
+		Collections.sort(list);
+
+		return list;
+	}
+
+	/**
+	 * Print the error surface in CSV format.
+	 *
+	 * @param out
+	 */
+	public void printResults(PrintStream out) {
+		out.println("log2(c),log2(gamma),error");
+
+		for(Result r: getResults()) {
+			out.println(r.log2C + "," + r.log2Gamma + "," + r.error);
+		}
+	}
+
+
+	/*
+	 * Evaluate all grid points, that have not been evaluated yet.
+	 */
+	private void evaluate(List<double[]> points, final VectorSet[][] splits,
+			final KernelMatrix kernel, int n) {
+
+		Map<Double, List<double[]>> byGamma = new TreeMap<Double, List<double[]>>();
+
+		for(double[] p: points) {
+			if(results.containsKey(getKey(p[0], p[1]))) {
+				continue;
+			}
+
+			// without a kernel matrix, all points are processed at once
+			Double key = new Double(kernel == null ? 0.0 : p[1]);
+
+			if(!byGamma.containsKey(key)) {
+				byGamma.put(key, new ArrayList<double[]>());
+			}
+			byGamma.get(key).add(p);
+		}
+
+		for(List<double[]> group: byGamma.values()) {
+			if(kernel != null) {
+				kernel.setGamma(Math.pow(2.0, group.get(0)[1]));
+			}
+
+			List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+
+			for(double[] p: group) {
+				final double c = Math.pow(2.0, p[0]);
+				final double gamma = Math.pow(2.0, p[1]);
+
+				for(int k = 0; k < splits.length; k++) {
+					final VectorSet training = splits[k][0];
+					final VectorSet test = splits[k][1];
+
+					tasks.add(new Callable<Integer>() {
+						public Integer call() {
+							SupportVectorClassifier classifier = new SupportVectorClassifier(c, gamma);
+							classifier.setKernelMatrix(kernel);
+							classifier.train(training);
+
+							int wrong = 0;
+							Map<double[], ClassDescriptor> d = test.getData();
+
+							for(double[] v: d.keySet()) {
+								if(classifier.classify(v) != d.get(v)) {
+									wrong++;
+								}
+							}
+
+							return wrong;
+						}
+					});
+				}
+			}
+
+			List<Integer> wrong = Parallel.invokeAll(tasks, threads);
+
+			for(int i = 0; i < group.size(); i++) {
+				int sum = 0;
+
+				for(int k = 0; k < splits.length; k++) {
+					sum += wrong.get(i * splits.length + k);
+				}
+
+				double[] p = group.get(i);
+				Result r = new Result(p[0], p[1], (double)sum / n);
+				results.put(getKey(p[0], p[1]), r);
+
+				/*
+				 * Ties are broken in favor of smaller C, which gives
+				 * smoother decision boundaries, independent of the order
+				 * of evaluation.
+				 */
+				if(best == null || r.error < best.error 
+						|| (r.error == best.error && r.compareTo(best) < 0)) {
+					best = r;
+				}
+			}
+		}
+	}
+
+	private static double getStep(double[] grid) {
+		return grid.length > 1 ? Math.abs(grid[1] - grid[0]) : 1.0;
+	}
+
+	private static String getKey(double log2C, double log2Gamma) {
+		return log2C + ":" + log2Gamma;
+	}
+
+
+	/**
+	 * The cross validation error of a single grid point.
+	 */
+	public static class Result implements Comparable<Result> {
+		private final double log2C;
+		private final double log2Gamma;
+		private final double error;
+
+		Result(double log2C, double log2Gamma, double error) {
+			this.log2C = log2C;
+			this.log2Gamma = log2Gamma;
+			this.error = error;
+		}
+
+		public double getC() {
+			return Math.pow(2.0, log2C);
+		}
+
+		public double getGamma() {
+			return Math.pow(2.0, log2Gamma);
+		}
+
+		public double getError() {
+			return error;
+		}
+
+		public int compareTo(Result o) {
+			if(log2C != o.log2C) {
+				return log2C < o.log2C ? -1 : 1;
+			}
+			if(log2Gamma != o.log2Gamma) {
+				return log2Gamma < o.log2Gamma ? -1 : 1;
+			}
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,243 @@
+package classify.svm;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import libsvm.svm_node;
+
+import util.Parallel;
+import util.VectorSet;
+
+/**
+ * This holds the RBF kernel matrix of a fixed set of vectors in the
+ * form used by LibSVM's PRECOMPUTED kernel type. Row i is an array of
+ * n + 1 nodes, where the first node holds the serial number i + 1 and
+ * node j + 1 holds K(x_i, x_j). Since LibSVM looks up kernel values by
+ * serial number, any subset of rows is a valid training problem. A
+ * SupportVectorClassifier using this matrix can therefore be trained
+ * on every fold of a cross validation without computing a single
+ * kernel value.
+ *
+ * <br><br>
+ * The squared distances are computed once, in blocks and concurrently.
+ * The kernel values for a given gamma are derived from them by
+ * <pre>
+ * K(x_i, x_j) = exp(-gamma * |x_i - x_j|<sup>2</sup>)
+ * </pre>
+ * Changing gamma overwrites the kernel values in place, so classifiers
+ * using different values of gamma must not be trained concurrently on
+ * the same matrix. Trained classifiers are not affected, since they
+ * compute the kernel values of the vectors they classify from the
+ * distances.
+ *
+ * <br><br>
+ * The rows hold n * (n + 1) node objects, since LibSVM needs them for
+ * training, and the distances take another n<sup>2</sup> / 2 values.
+ * This is about 32 bytes per pair of vectors on a 64 bit JVM, e.g.
+ * 800 MB for 5000 vectors, which limits this approach to a few
+ * thousand vectors.
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public class KernelMatrix {
+	private static final int BLOCK_SIZE = 64;
+
+	private final double[][] vectors;
+	private final Map<double[], Integer> serials;
+	private final double[][] distances;
+	private final svm_node[][] rows;
+	private final int threads;
+	private double gamma;
+
+	/**
+	 * Create a kernel matrix for all vectors of a set.
+	 *
+	 * @param data the vectors.
+	 * @param threads the number of threads used for computing distances
+	 *        and kernel values.
+	 */
+	public KernelMatrix(VectorSet data, int threads) {
+		this(data.getData().keySet().toArray(new double[data.getData().size()][]), threads);
+	}
+
+	/**
+	 * Create a kernel matrix for an array of vectors. Vectors are
+	 * identified by reference, like in a VectorSet.
+	 *
+	 * @param vectors the vectors.
+	 * @param threads the number of threads used for computing distances
+	 *        and kernel values.
+	 */
+	public KernelMatrix(double[][] vectors, int threads) {
+		final int n = vectors.length;
+
+		this.vectors = vectors;
+		this.threads = threads;
+		this.gamma = Double.NaN;
+
+		serials = new IdentityHashMap<double[], Integer>();
+		for(int i = 0; i < n; i++) {
+			serials.put(vectors[i], i);
+		}
+
+		// the lower triangular matrix, without the zero diagonal
+		distances = new double[n][];
+		rows = new svm_node[n][n + 1];
+
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+
+		for(int start = 0; start < n; start += BLOCK_SIZE) {
+			final int from = start;
+			final int to = Math.min(start + BLOCK_SIZE, n);
+
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					computeDistances(from, to);
+					return null;
+				}
+			});
+		}
+
+		Parallel.invokeAll(tasks, threads);
+	}
+
+	/**
+	 * Get the number of vectors.
+	 * @return
+	 */
+	public int size() {
+		return vectors.length;
+	}
+
+	/**
+	 * Get the position of a vector in this matrix.
+	 *
+	 * @param vector the vector.
+	 * @return the row of the vector, or -1 if it is not part of this matrix.
+	 */
+	public int getIndex(double[] vector) {
+		Integer i = serials.get(vector);
+		return i == null ? -1 : i.intValue();
+	}
+
+	/**
+	 * Get a row of the kernel matrix for the current gamma.
+	 *
+	 * @param i the row.
+	 * @return the row in LibSVM's PRECOMPUTED format. It must not be modified.
+	 */
+	public svm_node[] getRow(int i) {
+		return rows[i];
+	}
+
+	/**
+	 * Get the squared Euclidean distance of two vectors of this matrix.
+	 *
+	 * @param i
+	 * @param j
+	 * @return
+	 */
+	public double getDistance(int i, int j) {
+		if(i == j) {
+			return 0.0;
+		}
+
+		return i > j ? distances[i][j] : distances[j][i];
+	}
+
+	/**
+	 * Get a vector of this matrix.
+	 *
+	 * @param i
+	 * @return
+	 */
+	public double[] getVector(int i) {
+		return vectors[i];
+	}
+
+	/**
+	 * Get the kernel parameter, the kernel values are computed for.
+	 * @return
+	 */
+	public double getGamma() {
+		return gamma;
+	}
+
+	/**
+	 * Compute all kernel values for a given gamma. Nothing is done,
+	 * if the values are already computed for this gamma.
+	 *
+	 * @param gamma the RBF kernel parameter.
+	 */
+	public synchronized void setGamma(final double gamma) {
+		if(gamma == this.gamma) {
+			return;
+		}
+
+		final int n = vectors.length;
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+
+		for(int start = 0; start < n; start += BLOCK_SIZE) {
+			final int from = start;
+			final int to = Math.min(start + BLOCK_SIZE, n);
+
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					for(int i = from; i < to; i++) {
+						svm_node[] row = rows[i];
+
+						for(int j = 0; j < n; j++) {
+							row[j + 1].value = Math.exp(-gamma * getDistance(i, j));
+						}
+					}
+					return null;
+				}
+			});
+		}
+
+		Parallel.invokeAll(tasks, threads);
+		this.gamma = gamma;
+	}
+
+
+	/*
+	 * Compute the distances of rows [from, to) to all preceding vectors,
+	 * processing columns in blocks to keep them in the cache. Also
+	 * allocate the nodes of these rows.
+	 */
+	private void computeDistances(int from, int to) {
+		for(int i = from; i < to; i++) {
+			distances[i] = new double[i];
+
+			svm_node[] row = rows[i];
+			for(int j = 0; j < row.length; j++) {
+				row[j] = new svm_node();
+				row[j].index = j;
+			}
+			row[0].value = i + 1;
+		}
+
+		for(int block = 0; block < to; block += BLOCK_SIZE) {
+			int end = Math.min(block + BLOCK_SIZE, to);
+
+			for(int i = from; i < to; i++) {
+				double[] x = vectors[i];
+				double[] d = distances[i];
+
+				for(int j = block; j < end && j < i; j++) {
+					double[] y = vectors[j];
+					double sum = 0.0;
+
+					for(int k = 0; k < x.length; k++) {
+						double u = x[k] - y[k];
+						sum += u * u;
+					}
+					d[j] = sum;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,444 @@
+package classify.svm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import util.ClassDescriptor;
+import util.Parallel;
+import util.VectorSet;
+import util.io.Export;
+import util.io.ExportVisitor;
+import util.io.Import;
+import util.io.ModelType;
+import classify.AbstractPredictor;
+import classify.Classifier;
+import classify.Predictor;
+
+/**
+ * This is a linear support vector machine, trained by dual coordinate
+ * descent. Unlike the kernel SVM of LibSVM, no kernel values are
+ * computed or cached. One pass over the training data costs
+ * O(number of non-zero features), so the classifier is applicable to
+ * very large training sets. The model is a plain weight matrix, and
+ * classifying a vector costs one scalar product per class.
+ *
+ * <br><br>
+ * For every class, a binary problem (one-against-rest) with labels
+ * y<sub>i</sub> in {-1, +1} is solved. The dual of the L1-loss SVM
+ * <pre>
+ * min  alpha<sup>T</sup> . Q . alpha / 2 - sum(alpha)
+ * s.t. 0 &lt;= alpha_i &lt;= C
+ * Q_ij := y_i * y_j * x_i<sup>T</sup> . x_j
+ * </pre>
+ * is minimized one variable at a time, while keeping
+ * w = sum(y_i * alpha_i * x_i) up to date:
+ * <pre>
+ * G      = y_i * w<sup>T</sup> . x_i - 1
+ * alpha' = min(max(alpha_i - G / Q_ii, 0), C)
+ * w'     = w + (alpha' - alpha_i) * y_i * x_i
+ * </pre>
+ * The bias is handled by appending a constant feature 1 to every
+ * vector. The binary problems are independent and solved concurrently.
+ *
+ * <br><br>
+ * See C. Hsieh, K. Chang, C. Lin, S. Keerthi, and S. Sundararajan
+ *     "A Dual Coordinate Descent Method for Large-scale Linear SVM"
+ *     Proceedings of the 25th International Conference on Machine Learning
+ *     pp. 408--415
+ *     2008
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public class LinearSupportVectorClassifier implements Classifier {
+	private final double c;
+	private double epsilon;
+	private int maxIterations;
+	private int threads;
+	private long seed;
+
+	private Model model;
+
+	/**
+	 * Create a new linear SVM with C = 1.
+	 */
+	public LinearSupportVectorClassifier() {
+		this(1.0);
+	}
+
+	/**
+	 * Create a new linear SVM.
+	 *
+	 * @param c the penalty parameter C.
+	 */
+	public LinearSupportVectorClassifier(double c) {
+		this.c = c;
+		this.epsilon = 0.1;
+		this.maxIterations = 1000;
+		this.threads = 1;
+		this.seed = 0;
+	}
+
+	/**
+	 * Set the stopping tolerance. Training of a binary problem stops,
+	 * if the projected gradient of all variables lies within an
+	 * interval of this width. The default is 0.1, as in LIBLINEAR.
+	 *
+	 * @param epsilon
+	 */
+	public void setEpsilon(double epsilon) {
+		this.epsilon = epsilon;
+	}
+
+	/**
+	 * Set the maximum number of passes over the training data per
+	 * binary problem. The default is 1000.
+	 *
+	 * @param maxIterations
+	 */
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * Set the number of threads used for training. Every thread
+	 * solves the binary problems of different classes.
+	 *
+	 * @param threads the number of threads. The default is 1.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Set the seed of the random order, in which the variables are
+	 * visited.
+	 *
+	 * @param seed
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Get the weight vector of a class. The last element is the bias.
+	 *
+	 * @param d the class.
+	 * @return the weights, or null if the class is unknown.
+	 */
+	public double[] getWeights(ClassDescriptor d) {
+		for(int k = 0; k < model.classes.length; k++) {
+			if(model.classes[k].equals(d)) {
+				return model.weights[k];
+			}
+		}
+
+		return null;
+	}
+
+
+	/**
+	 * Assign a vector to the class with the largest decision value
+	 * w<sup>T</sup> . x + b. This method does not modify the model
+	 * and may be called concurrently.
+	 *
+	 * @param f the vector to classify.
+	 * @return a class descriptor for the class f was assigned to.
+	 */
+	public ClassDescriptor classify(double[] f) {
+		return model.classify(f);
+	}
+
+	public Predictor getPredictor() {
+		return model;
+	}
+
+	public void clearTrainingData() {
+	}
+
+	public boolean suggestsScaling() {
+		return true;
+	}
+
+	/**
+	 * Train one binary problem per class. The training vectors are
+	 * stored in sparse form once and shared by all problems.
+	 *
+	 * @param trainingSet the training data.
+	 */
+	public Predictor train(VectorSet trainingSet) {
+		Map<double[], ClassDescriptor> data = trainingSet.getData();
+		final int n = data.size();
+		final int dimension = trainingSet.getDimension();
+		final ClassDescriptor[] classes = trainingSet.getClassDescriptors().toArray(new ClassDescriptor[0]);
+
+		final int[][] index = new int[n][];
+		final double[][] value = new double[n][];
+		final int[] label = new int[n];
+		final double[] diagonal = new double[n];
+
+		int i = 0;
+		for(double[] v: data.keySet()) {
+			int m = 0;
+			for(int j = 0; j < dimension; j++) {
+				if(v[j] != 0.0) {
+					m++;
+				}
+			}
+
+			index[i] = new int[m];
+			value[i] = new double[m];
+
+			// Q_ii includes the constant bias feature
+			diagonal[i] = 1.0;
+
+			m = 0;
+			for(int j = 0; j < dimension; j++) {
+				if(v[j] != 0.0) {
+					index[i][m] = j;
+					value[i][m] = v[j];
+					diagonal[i] += v[j] * v[j];
+					m++;
+				}
+			}
+
+			ClassDescriptor d = data.get(v);
+			for(int k = 0; k < classes.length; k++) {
+				if(classes[k].equals(d)) {
+					label[i] = k;
+					break;
+				}
+			}
+			i++;
+		}
+
+		/*
+		 * A two class problem needs only one binary classifier. The
+		 * second one would yield the negated weights.
+		 */
+		int problems = classes.length == 2 ? 1 : classes.length;
+		List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>();
+
+		for(int k = 0; k < problems; k++) {
+			final int positive = k;
+
+			tasks.add(new Callable<double[]>() {
+				public double[] call() {
+					return solve(index, value, label, diagonal, dimension, positive);
+				}
+			});
+		}
+
+		List<double[]> result = Parallel.invokeAll(tasks, threads);
+		double[][] weights = new double[classes.length][];
+
+		for(int k = 0; k < problems; k++) {
+			weights[k] = result.get(k);
+		}
+
+		if(classes.length == 2) {
+			weights[1] = new double[dimension + 1];
+
+			for(int j = 0; j <= dimension; j++) {
+				weights[1][j] = -weights[0][j];
+			}
+		}
+
+		model = new Model(classes, weights, dimension);
+
+		return model;
+	}
+
+
+	/*
+	 * Solve the binary problem of one class against all others by
+	 * dual coordinate descent with random permutations and shrinking.
+	 * Variables at a bound, whose gradient points out of the feasible
+	 * region, are removed from the active set. If the active set has
+	 * converged, all variables are checked again.
+	 */
+	private double[] solve(int[][] index, double[][] value, int[] label,
+			double[] diagonal, int dimension, int positive) {
+		int n = index.length;
+		double[] w = new double[dimension + 1];
+		double[] alpha = new double[n];
+		int[] y = new int[n];
+		int[] active = new int[n];
+		Random random = new Random(seed + positive);
+
+		for(int i = 0; i < n; i++) {
+			y[i] = label[i] == positive ? 1 : -1;
+			active[i] = i;
+		}
+
+		int size = n;
+		double maxOld = Double.POSITIVE_INFINITY;
+		double minOld = Double.NEGATIVE_INFINITY;
+
+		for(int iteration = 0; iteration < maxIterations; iteration++) {
+			double maxNew = Double.NEGATIVE_INFINITY;
+			double minNew = Double.POSITIVE_INFINITY;
+
+			for(int s = 0; s < size; s++) {
+				int t = s + random.nextInt(size - s);
+				int tmp = active[s];
+				active[s] = active[t];
+				active[t] = tmp;
+			}
+
+			for(int s = 0; s < size; s++) {
+				int i = active[s];
+				int[] idx = index[i];
+				double[] val = value[i];
+
+				double g = w[dimension];
+				for(int k = 0; k < idx.length; k++) {
+					g += w[idx[k]] * val[k];
+				}
+				g = g * y[i] - 1.0;
+
+				double pg = 0.0;
+
+				if(alpha[i] == 0.0) {
+					if(g > maxOld) {
+						// shrink: the variable will most likely stay at 0
+						size--;
+						active[s] = active[size];
+						active[size] = i;
+						s--;
+						continue;
+					}
+					pg = Math.min(g, 0.0);
+				} else if(alpha[i] == c) {
+					if(g < minOld) {
+						size--;
+						active[s] = active[size];
+						active[size] = i;
+						s--;
+						continue;
+					}
+					pg = Math.max(g, 0.0);
+				} else {
+					pg = g;
+				}
+
+				maxNew = Math.max(maxNew, pg);
+				minNew = Math.min(minNew, pg);
+
+				if(pg != 0.0) {
+					double old = alpha[i];
+					alpha[i] = Math.min(Math.max(old - g / diagonal[i], 0.0), c);
+
+					double delta = (alpha[i] - old) * y[i];
+					for(int k = 0; k < idx.length; k++) {
+						w[idx[k]] += delta * val[k];
+					}
+					w[dimension] += delta;
+				}
+			}
+
+			if(maxNew - minNew <= epsilon) {
+				if(size == n) {
+					break;
+				}
+
+				// check all variables before stopping
+				size = n;
+				maxOld = Double.POSITIVE_INFINITY;
+				minOld = Double.NEGATIVE_INFINITY;
+				continue;
+			}
+
+			maxOld = maxNew <= 0.0 ? Double.POSITIVE_INFINITY : maxNew;
+			minOld = minNew >= 0.0 ? Double.NEGATIVE_INFINITY : minNew;
+		}
+
+		return w;
+	}
+
+
+	@Export(ModelType.CLASSIFIER)
+	public void export(ExportVisitor visitor) {
+		/*
+		 * Export the weight vector of every class. The bias is
+		 * the last element.
+		 */
+		ExportVisitor.Parameters params = visitor.newParametersInstance();
+		params.setParameter("type", "Linear SVM");
+		params.setParameter("c", Double.toString(c));
+		params.setParameter("dimension", Integer.toString(model.dimension));
+
+		visitor.setModel(this.getClass().getName(), params);
+
+		for(int k = 0; k < model.classes.length; k++) {
+			params = visitor.newParametersInstance();
+			params.setParameter("weights", model.weights[k]);
+
+			visitor.addClass(model.classes[k].toString(), params);
+		}
+	}
+
+	/**
+	 * Create a new instance of a linear SVM.
+	 *
+	 * @param model must contain C and the dimension.
+	 * @param classes each class must contain its weight vector.
+	 * @return a trained linear SVM.
+	 */
+	@Import(ModelType.CLASSIFIER)
+	public static LinearSupportVectorClassifier newInstance(Map<String, Object> model, Map<ClassDescriptor, Map<String, Object>> classes) {
+		LinearSupportVectorClassifier classifier = new LinearSupportVectorClassifier(
+				Double.parseDouble((String)model.get("c")));
+
+		int dimension = Integer.parseInt((String)model.get("dimension"));
+		ClassDescriptor[] c = classes.keySet().toArray(new ClassDescriptor[0]);
+		double[][] weights = new double[c.length][];
+
+		for(int k = 0; k < c.length; k++) {
+			weights[k] = (double[])classes.get(c[k]).get("weights");
+		}
+
+		classifier.model = new Model(c, weights, dimension);
+
+		return classifier;
+	}
+
+
+	/*
+	 * The weight vectors of all classes.
+	 */
+	private static class Model extends AbstractPredictor {
+		private final ClassDescriptor[] classes;
+		private final double[][] weights;
+		private final int dimension;
+
+		Model(ClassDescriptor[] classes, double[][] weights, int dimension) {
+			this.classes = classes;
+			this.weights = weights;
+			this.dimension = dimension;
+		}
+
+		public ClassDescriptor classify(double[] f) {
+			int max = 0;
+			double best = Double.NEGATIVE_INFINITY;
+
+			for(int k = 0; k < weights.length; k++) {
+				double[] w = weights[k];
+				double u = w[dimension];
+
+				for(int j = 0; j < dimension; j++) {
+					u += w[j] * f[j];
+				}
+
+				if(u > best) {
+					best = u;
+					max = k;
+				}
+			}
+
+			return classes[max];
+		}
+	}
+}
@@ -1,7 +1,10 @@
 package classify.svm;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 
 import libsvm.svm;
 import libsvm.svm_model;
@@ -9,11 +12,14 @@ import libsvm.svm_node;
 import libsvm.svm_parameter;
 import libsvm.svm_problem;
 import util.ClassDescriptor;
+import util.Parallel;
 import util.VectorSet;
 import util.io.Export;
 import util.io.ExportVisitor;
 import util.io.ModelType;
+import classify.AbstractPredictor;
 import classify.Classifier;
+import classify.Predictor;
 
 /**
  * This Classifier uses the LibSVM Java bindings. The classifier
@@ -22,10 +28,11 @@ import classify.Classifier;
  * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
  */
 public class SupportVectorClassifier implements Classifier {
-	private svm_model model;
 	private svm_parameter param;
-	private Map<Double, ClassDescriptor> classes;
-	private int[] indices;
+	private boolean sparse;
+	private KernelMatrix kernel;
+	private int threads;
+	private Model model;
 	
 	/**
 	 * Create a new SVM Classifier with default parameters.
@@ -56,23 +63,93 @@ public class SupportVectorClassifier implements Classifier {
 		param.nr_weight = 0;
 		param.weight_label = new int[0];
 		param.weight = new double[0];
+		
+		sparse = true;
+		threads = 1;
+	}
+	
+	
+	/**
+	 * Set the number of threads used for training. If more than one
+	 * thread is used for a multi-class problem, the one-against-one
+	 * binary problems are trained concurrently, instead of calling
+	 * LibSVM for the whole problem. The predictions are the same.
+	 * Note, that classification of a vector is more expensive in this
+	 * case, since the binary models do not share kernel values of 
+	 * common support vectors.
+	 * 
+	 * @param threads the number of threads. The default is 1.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
 	}
 	
 	
+	/**
+	 * Choose, whether vectors are passed to LibSVM in sparse form,
+	 * i.e. without zero-valued features. This does not change the
+	 * results, since missing features are treated as zeros by LibSVM,
+	 * but kernel evaluations only cost O(number of non-zero features).
+	 * Sparse mode is the default. The setting takes effect with the
+	 * next training phase.
+	 * 
+	 * @param sparse true for sparse mode, false for dense mode.
+	 */
+	public void setSparse(boolean sparse) {
+		this.sparse = sparse;
+	}
+	
+	/**
+	 * Use a precomputed kernel matrix. If all training vectors are part
+	 * of this matrix, the classifier is trained using LibSVM's PRECOMPUTED
+	 * kernel type and no kernel values are computed during training.
+	 * This is useful, if the classifier is trained many times on subsets
+	 * of the same data, e.g. during cross validation or model selection.
+	 * Otherwise, the RBF kernel is used as usual.
+	 * 
+	 * @param kernel the kernel matrix, or null to turn precomputation off.
+	 */
+	public void setKernelMatrix(KernelMatrix kernel) {
+		this.kernel = kernel;
+	}
+	
+	/**
+	 * Determine, whether the current model was trained in sparse mode.
+	 * 
+	 * @return true, if zero-valued features are omitted.
+	 */
+	public boolean isSparse() {
+		return model.sparse;
+	}
+	
+	
+	/**
+	 * Classify a feature vector. The svm_node array passed to LibSVM
+	 * is owned by the calling thread and reused for every query, so
+	 * this method may be called concurrently.
+	 * 
+	 * @param f the vector to classify.
+	 * @return a class descriptor for the class f was assigned to.
+	 */
 	public ClassDescriptor classify(double[] f) {
-		double result;
-		
-		svm_node[] v = new svm_node[f.length];
-		
-		for(int i = 0; i < f.length; i++) {
-			v[i] = new svm_node();
-			v[i].index = indices[i];
-			v[i].value = f[i];
-		}
-		
-		result = svm.svm_predict(model, v);
-		
-		return classes.get(result);
+		return model.classify(f);
+	}
+	
+	/**
+	 * Classify a batch of feature vectors concurrently. The model
+	 * is not modified by the classification, hence all threads
+	 * share the same model.
+	 * 
+	 * @param vectors the vectors to classify.
+	 * @param threads the number of threads to use.
+	 * @return the class descriptors, in the order of the vectors.
+	 */
+	public ClassDescriptor[] classify(double[][] vectors, int threads) {
+		return model.classify(vectors, threads);
+	}
+	
+	public Predictor getPredictor() {
+		return model;
 	}
 
 	
@@ -84,44 +161,405 @@ public class SupportVectorClassifier implements Classifier {
 	}
 
 	
-	public void train(VectorSet trainingSet) {
+	public Predictor train(VectorSet trainingSet) {
 		final Map<double[], ClassDescriptor> data = trainingSet.getData();
 		final int dimension = trainingSet.getDimension();
 		final int n = data.size();
+		final Model m = new Model();
+		
+		if(param.gamma == 0) {
+			param.gamma = 1.0 / dimension;
+		}
 		
-		classes = new TreeMap<Double, ClassDescriptor>();
+		m.classes = new TreeMap<Double, ClassDescriptor>();
 		for(ClassDescriptor d: trainingSet.getClassDescriptors()) {
-			classes.put(new Double(d.toString()), d);
+			m.classes.put(new Double(d.toString()), d);
 		}
 		
-		indices = new int[dimension];
+		m.indices = new int[dimension];
 		for(int j = 0; j < dimension; j++) {
-			indices[j] = Integer.parseInt(trainingSet.getFeatureLabel(j));
+			m.indices[j] = Integer.parseInt(trainingSet.getFeatureLabel(j));
 		}
 		
 		svm_problem problem = new svm_problem();
 		
 		problem.l = n;
-		problem.x = new svm_node[n][dimension];
+		problem.x = new svm_node[n][];
 		problem.y = new double[n];
+		m.sparse = sparse;
+		
+		if(kernel != null) {
+			int[] rows = new int[n];
+			
+			int i = 0;
+			for(double[] v: data.keySet()) {
+				rows[i] = kernel.getIndex(v);
+				
+				if(rows[i] < 0) {
+					break;
+				}
+				i++;
+			}
+			
+			if(i == n) {
+				m.kernel = kernel;
+				m.trainingRows = rows;
+			}
+		}
 		
 		int i = 0;
 		for(double[] v: data.keySet()) {
-			for(int j = 0; j < dimension; j++) {
-				problem.x[i][j] = new svm_node();
-				problem.x[i][j].index = indices[j];
-				problem.x[i][j].value = v[j];
+			if(m.kernel != null) {
+				problem.x[i] = m.kernel.getRow(m.trainingRows[i]);
+			} else {
+				problem.x[i] = m.getNodes(v);
 			}
 			
 			problem.y[i] = Double.parseDouble(data.get(v).toString());
 			i++;
 		}
 		
-		if(param.gamma == 0) {
-			param.gamma = 1.0 / dimension;
+		svm_parameter p = param;
+		
+		if(m.kernel != null) {
+			/*
+			 * Train on rows of the kernel matrix. Our own parameters are
+			 * not changed, since they still describe an RBF kernel.
+			 */
+			m.kernel.setGamma(param.gamma);
+			m.gamma = param.gamma;
+			
+			p = (svm_parameter)param.clone();
+			p.kernel_type = svm_parameter.PRECOMPUTED;
+		}
+		
+		m.labels = getLabels(problem);
+		
+		if(threads > 1 && m.labels.length > 2) {
+			trainPairwise(m, problem, p);
+		} else {
+			m.model = svm.svm_train(problem, p);
+			
+			m.labels = new int[svm.svm_get_nr_class(m.model)];
+			svm.svm_get_labels(m.model, m.labels);
+		}
+		
+		model = m;
+		
+		return m;
+	}
+	
+	
+	/*
+	 * Get the labels in the order of their first occurrence, which is
+	 * the order used by LibSVM.
+	 */
+	private static int[] getLabels(svm_problem problem) {
+		List<Integer> list = new ArrayList<Integer>();
+		
+		for(int i = 0; i < problem.l; i++) {
+			Integer label = new Integer((int)problem.y[i]);
+			
+			if(!list.contains(label)) {
+				list.add(label);
+			}
+		}
+		
+		int[] result = new int[list.size()];
+		for(int i = 0; i < result.length; i++) {
+			result[i] = list.get(i);
+		}
+		
+		return result;
+	}
+	
+	/*
+	 * Train the binary one-against-one problems concurrently. LibSVM
+	 * creates the problem of classes i < j from the samples of class
+	 * i followed by the samples of class j, both in their original 
+	 * order. This is repeated here, so that every binary model is the
+	 * same as the corresponding part of LibSVM's multi-class model.
+	 */
+	private void trainPairwise(Model m, svm_problem problem, final svm_parameter p) {
+		final int[] labels = m.labels;
+		final int c = labels.length;
+		List<List<Integer>> members = new ArrayList<List<Integer>>();
+		
+		for(int i = 0; i < c; i++) {
+			members.add(new ArrayList<Integer>());
+		}
+		
+		for(int i = 0; i < problem.l; i++) {
+			for(int k = 0; k < c; k++) {
+				if((int)problem.y[i] == labels[k]) {
+					members.get(k).add(i);
+					break;
+				}
+			}
+		}
+		
+		List<Callable<svm_model>> tasks = new ArrayList<Callable<svm_model>>();
+		
+		for(int i = 0; i < c; i++) {
+			for(int j = i + 1; j < c; j++) {
+				final svm_problem sub = new svm_problem();
+				List<Integer> a = members.get(i);
+				List<Integer> b = members.get(j);
+				
+				sub.l = a.size() + b.size();
+				sub.x = new svm_node[sub.l][];
+				sub.y = new double[sub.l];
+				
+				int k = 0;
+				for(int s: a) {
+					sub.x[k] = problem.x[s];
+					sub.y[k++] = problem.y[s];
+				}
+				for(int s: b) {
+					sub.x[k] = problem.x[s];
+					sub.y[k++] = problem.y[s];
+				}
+				
+				tasks.add(new Callable<svm_model>() {
+					public svm_model call() {
+						return svm.svm_train(sub, p);
+					}
+				});
+			}
 		}
 		
-		model = svm.svm_train(problem, param);
+		List<svm_model> models = Parallel.invokeAll(tasks, threads);
+		
+		svm_model[] pairModels = models.toArray(new svm_model[models.size()]);
+		boolean[] pairSwapped = new boolean[pairModels.length];
+		
+		int[] pairLabels = new int[2];
+		int k = 0;
+		
+		for(int i = 0; i < c; i++) {
+			for(int j = i + 1; j < c; j++) {
+				// a positive decision value votes for the model's first label
+				svm.svm_get_labels(pairModels[k], pairLabels);
+				pairSwapped[k] = pairLabels[0] != labels[i];
+				k++;
+			}
+		}
+		
+		m.pairModels = pairModels;
+		m.pairSwapped = pairSwapped;
+	}
+	
+	/*
+	 * The trained model. Its fields are set during training, and never
+	 * changed afterwards. Classification only modifies the buffers, of
+	 * which every thread has its own.
+	 */
+	private static class Model extends AbstractPredictor {
+		svm_model model;
+		svm_model[] pairModels;
+		boolean[] pairSwapped;
+		Map<Double, ClassDescriptor> classes;
+		int[] indices;
+		int[] labels;
+		boolean sparse;
+		KernelMatrix kernel;
+		double gamma;
+		int[] trainingRows;
+		
+		private final ThreadLocal<Buffer> buffers = new ThreadLocal<Buffer>() {
+			protected Buffer initialValue() {
+				return new Buffer(indices, labels.length, sparse);
+			}
+		};
+		
+		public ClassDescriptor classify(double[] f) {
+			return classify(f, buffers.get());
+		}
+		
+		/*
+		 * Classify a vector using a given buffer. The votes of the
+		 * one-against-one classifiers are counted as done by svm_predict,
+		 * but without allocating the vote arrays.
+		 */
+		private ClassDescriptor classify(double[] f, Buffer buffer) {
+			svm_node[] v;
+			
+			if(kernel != null) {
+				v = getKernelRow(f, buffer);
+			} else if(sparse) {
+				int m = 0;
+				
+				for(int i = 0; i < f.length; i++) {
+					if(f[i] != 0.0) {
+						buffer.nodes[m].index = indices[i];
+						buffer.nodes[m].value = f[i];
+						m++;
+					}
+				}
+				
+				v = buffer.getView(m);
+			} else {
+				v = buffer.getView(f.length);
+				
+				for(int i = 0; i < f.length; i++) {
+					v[i].value = f[i];
+				}
+			}
+			
+			if(labels.length == 1) {
+				return classes.get(new Double(labels[0]));
+			}
+			
+			if(pairModels != null) {
+				for(int i = 0; i < pairModels.length; i++) {
+					svm.svm_predict_values(pairModels[i], v, buffer.pairValue);
+					buffer.decisionValues[i] = pairSwapped[i] ? -buffer.pairValue[0] : buffer.pairValue[0];
+				}
+			} else {
+				svm.svm_predict_values(model, v, buffer.decisionValues);
+			}
+			
+			int[] votes = buffer.votes;
+			for(int i = 0; i < votes.length; i++) {
+				votes[i] = 0;
+			}
+			
+			int p = 0;
+			for(int i = 0; i < labels.length; i++) {
+				for(int j = i + 1; j < labels.length; j++) {
+					if(buffer.decisionValues[p++] > 0) {
+						votes[i]++;
+					} else {
+						votes[j]++;
+					}
+				}
+			}
+			
+			int max = 0;
+			for(int i = 1; i < labels.length; i++) {
+				if(votes[i] > votes[max]) {
+					max = i;
+				}
+			}
+			
+			return classes.get(new Double(labels[max]));
+		}
+
+		/*
+		 * Get the kernel values of a vector and all training vectors in
+		 * LibSVM's PRECOMPUTED format. The values are computed from the
+		 * distances, which never change, rather than taken from a row of
+		 * the kernel matrix. The rows are overwritten, when the matrix is
+		 * switched to another gamma, possibly while this model classifies.
+		 */
+		private svm_node[] getKernelRow(double[] f, Buffer buffer) {
+			int s = kernel.getIndex(f);
+			
+			if(buffer.kernelRow == null) {
+				buffer.kernelRow = new svm_node[kernel.size() + 1];
+				
+				for(int i = 0; i < buffer.kernelRow.length; i++) {
+					buffer.kernelRow[i] = new svm_node();
+					buffer.kernelRow[i].index = i;
+				}
+			}
+			
+			svm_node[] row = buffer.kernelRow;
+			
+			for(int t: trainingRows) {
+				double d;
+				
+				if(s >= 0) {
+					d = kernel.getDistance(s, t);
+				} else {
+					double[] x = kernel.getVector(t);
+					
+					d = 0.0;
+					for(int k = 0; k < f.length; k++) {
+						double u = f[k] - x[k];
+						d += u * u;
+					}
+				}
+				
+				row[t + 1].value = Math.exp(-gamma * d);
+			}
+			
+			return row;
+		}
+		
+		/*
+		 * Convert a training vector to an array of nodes. In sparse mode,
+		 * zero-valued features are omitted.
+		 */
+		private svm_node[] getNodes(double[] v) {
+			int m = v.length;
+			
+			if(sparse) {
+				m = 0;
+				for(int j = 0; j < v.length; j++) {
+					if(v[j] != 0.0) {
+						m++;
+					}
+				}
+			}
+			
+			svm_node[] x = new svm_node[m];
+			
+			int k = 0;
+			for(int j = 0; j < v.length; j++) {
+				if(!sparse || v[j] != 0.0) {
+					x[k] = new svm_node();
+					x[k].index = indices[j];
+					x[k].value = v[j];
+					k++;
+				}
+			}
+			
+			return x;
+		}
+	}
+	
+	
+	/*
+	 * The per-thread memory used for classification. LibSVM takes the
+	 * number of features from the length of the node array. Hence, there
+	 * is an array for every number of non-zero features, all of them
+	 * sharing the same node objects. In dense mode, the node indices are
+	 * set once, only the values change between queries.
+	 */
+	private static class Buffer {
+		final svm_node[] nodes;
+		final svm_node[][] views;
+		final double[] decisionValues;
+		final int[] votes;
+		final double[] pairValue = new double[1];
+		svm_node[] kernelRow;
+		
+		Buffer(int[] indices, int nClasses, boolean sparse) {
+			nodes = new svm_node[indices.length];
+			views = new svm_node[indices.length + 1][];
+			
+			for(int i = 0; i < indices.length; i++) {
+				nodes[i] = new svm_node();
+				nodes[i].index = indices[i];
+			}
+			
+			if(!sparse) {
+				views[indices.length] = nodes;
+			}
+			
+			decisionValues = new double[nClasses * (nClasses - 1) / 2];
+			votes = new int[nClasses];
+		}
+		
+		svm_node[] getView(int length) {
+			if(views[length] == null) {
+				views[length] = new svm_node[length];
+				System.arraycopy(nodes, 0, views[length], 0, length);
+			}
+			
+			return views[length];
+		}
 	}
 	
 	
@@ -130,6 +568,7 @@ public class SupportVectorClassifier implements Classifier {
 		ExportVisitor.Parameters params = visitor.newParametersInstance();
 		params.setParameter("c", Double.toString(param.C));
 		params.setParameter("gamma", Double.toString(param.gamma));
+		params.setParameter("sparse", Boolean.toString(model.sparse));
 
 		/*
 		 * FIXME: LibSVM has a weird design that prevents me from accessing
@@ -0,0 +1,233 @@
+package math;
+
+/**
+ * This is a Cholesky decomposition L . L<sup>T</sup> of the submatrix
+ * of a symmetric matrix A, that consists of the rows and columns of a
+ * base subset of indices. The decomposition of the submatrix extended
+ * by one more index j, i.e. with an additional row and column, is
+ * obtained by bordering:
+ * <pre>
+ *          | L    0 |
+ * L_j  =   | l^T  d |
+ *
+ * l = L<sup>-1</sup> . A[base][j]
+ * d = sqrt(A[j][j] - l<sup>T</sup> . l)
+ * </pre>
+ * This costs O(k<sup>2</sup>) for a base of size k, whereas a new
+ * decomposition costs O(k<sup>3</sup>). The log of the determinant of
+ * the extended matrix is log|A[base][base]| + 2 log(d). Quadratic forms
+ * v<sup>T</sup> . A<sup>-1</sup> . v are extended in the same way: if
+ * z = L<sup>-1</sup> . v[base], the extended form adds
+ * ((v[j] - l<sup>T</sup> . z) / d)<sup>2</sup>.
+ *
+ * <br><br>
+ * Only the elements of A in the rows of the base and of the indices
+ * bordered with are read, so A may be a matrix, whose elements are
+ * computed on demand.
+ *
+ * <br><br>
+ * The decomposition is not modified by bordering, so several threads
+ * may extend it concurrently.
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public class BorderedCholesky {
+	private final SymmetricMatrix a;
+	private final int[] base;
+	private final double[][] l;
+	private final boolean positiveDefinite;
+	private final double logDeterminant;
+
+	/**
+	 * Decompose the base submatrix.
+	 *
+	 * @param a a symmetric matrix.
+	 * @param base the indices of the rows and columns of the submatrix.
+	 */
+	public BorderedCholesky(double[][] a, int[] base) {
+		this(new DenseSymmetricMatrix(a), base);
+	}
+
+	/**
+	 * Decompose the base submatrix.
+	 *
+	 * @param a a symmetric matrix.
+	 * @param base the indices of the rows and columns of the submatrix.
+	 */
+	public BorderedCholesky(SymmetricMatrix a, int[] base) {
+		final int k = base.length;
+		final double[][] s = a.getSubMatrix(base, base);
+		boolean pd = true;
+		double logDet = 0.0;
+
+		this.a = a;
+		this.base = base;
+		this.l = new double[k][];
+
+		for(int i = 0; i < k && pd; i++) {
+			l[i] = new double[i + 1];
+
+			for(int j = 0; j <= i; j++) {
+				double u = s[i][j];
+
+				for(int m = 0; m < j; m++) {
+					u -= l[i][m] * l[j][m];
+				}
+
+				if(j < i) {
+					l[i][j] = u / l[j][j];
+				} else if(u > 0.0) {
+					l[i][i] = Math.sqrt(u);
+					logDet += 2.0 * Math.log(l[i][i]);
+				} else {
+					pd = false;
+				}
+			}
+		}
+
+		this.positiveDefinite = pd;
+		this.logDeterminant = logDet;
+	}
+
+	/**
+	 * Return, whether the base submatrix is positive definite. Otherwise,
+	 * the decomposition does not exist, and no other method may be used.
+	 *
+	 * @return
+	 */
+	public boolean isPositiveDefinite() {
+		return positiveDefinite;
+	}
+
+	/**
+	 * Get the log of the determinant of the base submatrix.
+	 *
+	 * @return
+	 */
+	public double getLogDeterminant() {
+		return logDeterminant;
+	}
+
+	/**
+	 * Get the smallest squared diagonal element of L. These are the
+	 * Schur complements of the leading submatrices, hence a small value
+	 * indicates a nearly singular base submatrix.
+	 *
+	 * @return
+	 */
+	public double getMinimumPivot() {
+		double min = Double.POSITIVE_INFINITY;
+
+		for(int i = 0; i < l.length; i++) {
+			min = Math.min(min, l[i][i] * l[i][i]);
+		}
+
+		return min;
+	}
+
+	/**
+	 * Solve L . z = v[base] by forward substitution.
+	 *
+	 * @param v a vector of the dimension of A.
+	 * @return z
+	 */
+	public double[] solve(double[] v) {
+		double[] w = new double[base.length];
+
+		for(int i = 0; i < w.length; i++) {
+			w[i] = v[base[i]];
+		}
+
+		return forward(w);
+	}
+
+	/*
+	 * Solve L . z = w by forward substitution.
+	 */
+	private double[] forward(double[] w) {
+		final int k = base.length;
+		double[] z = new double[k];
+
+		for(int i = 0; i < k; i++) {
+			double s = w[i];
+
+			for(int m = 0; m < i; m++) {
+				s -= l[i][m] * z[m];
+			}
+
+			z[i] = s / l[i][i];
+		}
+
+		return z;
+	}
+
+	/**
+	 * Get the inverse of the base submatrix, which is
+	 * L<sup>-T</sup> . L<sup>-1</sup>. This costs O(k<sup>3</sup>).
+	 *
+	 * @return the inverse, with rows and columns in the order of the base.
+	 */
+	public double[][] getInverse() {
+		final int k = base.length;
+		double[][] li = new double[k][k]; // L^(-1), lower triangular
+		double[][] inverse = new double[k][k];
+
+		for(int j = 0; j < k; j++) {
+			li[j][j] = 1.0 / l[j][j];
+
+			for(int i = j + 1; i < k; i++) {
+				double s = 0.0;
+
+				for(int m = j; m < i; m++) {
+					s -= l[i][m] * li[m][j];
+				}
+
+				li[i][j] = s / l[i][i];
+			}
+		}
+
+		for(int i = 0; i < k; i++) {
+			for(int j = 0; j <= i; j++) {
+				double s = 0.0;
+
+				for(int m = i; m < k; m++) {
+					s += li[m][i] * li[m][j];
+				}
+
+				inverse[i][j] = inverse[j][i] = s;
+			}
+		}
+
+		return inverse;
+	}
+
+	/**
+	 * Get the new row l = L<sup>-1</sup> . A[base][j] of the
+	 * decomposition extended by index j.
+	 *
+	 * @param j an index not in the base.
+	 * @return l
+	 */
+	public double[] getBorder(int j) {
+		return forward(a.getSubMatrix(new int[] {j}, base)[0]);
+	}
+
+	/**
+	 * Get the square d<sup>2</sup> = A[j][j] - l<sup>T</sup> . l of the
+	 * new diagonal element. The extended matrix is positive definite,
+	 * if and only if this is positive.
+	 *
+	 * @param j an index not in the base.
+	 * @param border the result of getBorder(j).
+	 * @return d<sup>2</sup>
+	 */
+	public double getSchurComplement(int j, double[] border) {
+		double s = a.getSubMatrix(new int[] {j}, new int[] {j})[0][0];
+
+		for(double x: border) {
+			s -= x * x;
+		}
+
+		return s;
+	}
+}
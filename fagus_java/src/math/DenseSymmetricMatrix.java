@@ -0,0 +1,45 @@
+package math;
+
+/**
+ * This is a symmetric matrix held in an array.
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public class DenseSymmetricMatrix implements SymmetricMatrix {
+	private final double[][] a;
+
+	/**
+	 * Wrap an array. The array is not copied.
+	 *
+	 * @param a a symmetric matrix.
+	 */
+	public DenseSymmetricMatrix(double[][] a) {
+		this.a = a;
+	}
+
+	/**
+	 * Get the wrapped array.
+	 * @return
+	 */
+	public double[][] getArray() {
+		return a;
+	}
+
+	public int getDimension() {
+		return a.length;
+	}
+
+	public double[][] getSubMatrix(int[] rows, int[] columns) {
+		double[][] result = new double[rows.length][columns.length];
+
+		for(int i = 0; i < rows.length; i++) {
+			final double[] row = a[rows[i]];
+
+			for(int j = 0; j < columns.length; j++) {
+				result[i][j] = row[columns[j]];
+			}
+		}
+
+		return result;
+	}
+}
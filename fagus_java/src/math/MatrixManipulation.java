@@ -60,6 +60,49 @@ public class MatrixManipulation {
 	}
 
 	
+	/**
+	 * Calculate the inverse and the logarithm of the determinant of a
+	 * symmetric, positive definite matrix simultaneously. Both are obtained
+	 * from an eigenvalue decomposition, in the same way as the inverse
+	 * covariance of a MultivariateNormalDistribution. That is
+	 * 
+	 * ln|A| = ln(lambda_1) + ... + ln(lambda_n)
+	 * A<sup>-1</sup> = (phi_1 . phi_1^T) / lambda_1 + ... + (phi_n . phi_n^T) / lambda_n
+	 * 
+	 * @param a a symmetric matrix.
+	 * @param inverse an n x n array initialized with zeros. It will
+	 *        hold the inverse of A afterwards.
+	 * @return the natural logarithm of the determinant of A.
+	 */
+	public static double getInverseAndLogDeterminant(double[][] a, double[][] inverse) {
+		EigenvalueDecomposition eig = new EigenvalueDecomposition(new Matrix(a));
+		double[] eigenvalues = eig.getRealEigenvalues();
+		double[][] eigenvectors = eig.getV().getArray();
+		final int n = a.length;
+		
+		double lnDet = 0.0;
+		
+		for(int i = 0; i < n; i++) {
+			double lambda = eigenvalues[i];
+			lnDet += Math.log(lambda);
+			
+			for(int j = 0; j < n; j++) {
+				// diagonal element
+				inverse[j][j] += eigenvectors[j][i] * eigenvectors[j][i] / lambda;
+				
+				// other elements - matrix is symetric
+				for(int k = 0; k < j; k++) {
+					double u = eigenvectors[j][i] * eigenvectors[k][i] / lambda;
+					inverse[j][k] += u;
+					inverse[k][j] += u;
+				}
+			}
+		}
+		
+		return lnDet;
+	}
+
+	
 	/**
 	 * Calculate A . B . A^T where B is symmetric matrix and A is
 	 * a square matrix of dimension n x n. The resulting matrix is 
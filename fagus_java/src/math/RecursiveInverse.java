@@ -0,0 +1,329 @@
+package math;
+
+/**
+ * This is the inverse P of the submatrix A[config][config] of a
+ * symmetric matrix A, together with the log of the determinant of the
+ * submatrix. The inverse of the submatrix with one index removed or
+ * added is derived from P in O(k<sup>2</sup>), instead of inverting the
+ * new submatrix in O(k<sup>3</sup>).
+ *
+ * <br><br>
+ * Removing the index at position r is a Schur complement downdate:
+ * <pre>
+ * P'  = P[-r][-r] - P[-r][r] . P[r][-r] / P[r][r]
+ * ln|A'| = ln|A| + ln(P[r][r])
+ * </pre>
+ * Adding an index j borders the inverse. With a = A[config][j],
+ * b = P . a and s = A[j][j] - a<sup>T</sup> . b:
+ * <pre>
+ *        | P + b . b<sup>T</sup> / s   -b / s |
+ * P'  =  | -b<sup>T</sup> / s           1 / s |
+ *
+ * ln|A'| = ln|A| + ln(s)
+ * </pre>
+ * The quadratic form v<sup>T</sup> . P' . v of a derived inverse follows
+ * from the one of its parent in O(k). It decreases by
+ * (P[r] . v)<sup>2</sup> / P[r][r] when removing, and increases by
+ * (v[j] - b<sup>T</sup> . v)<sup>2</sup> / s when adding an index.
+ * Therefore, a derived inverse only builds its matrix, when it is
+ * derived from itself. Searches usually discard most derived inverses
+ * without doing so.
+ *
+ * <br><br>
+ * Instances are immutable, apart from building their matrix, which is
+ * synchronized. Several threads may derive inverses from the same
+ * parent.
+ *
+ * See Chapter 10 "Feature Extraction and Linar Mapping for Classification"
+ *     in K. Fukunaga
+ *     "Introduction to statistical pattern recognition"
+ *     2nd edition
+ *     Academic Press 1990
+ *     page 498ff
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public class RecursiveInverse {
+	// the smallest pivot, for which a matrix is not considered singular
+	private static final double MINIMUM_PIVOT = 10e-10;
+	
+	private final SymmetricMatrix a;
+	private final int[] config;
+	private final boolean positiveDefinite;
+	private final double logDeterminant;
+	private double[][] inverse;
+
+	// the parent and the derivation, until the matrix has been built
+	private RecursiveInverse parent;
+	private final int[] parentConfig;
+	private final int removed;     // position in the parent, or -1
+	private final double[] row;    // P[r] of the parent, when removing
+	private final double[] border; // b, when adding
+	private final double schur;    // s, when adding
+
+	/**
+	 * Invert the submatrix A[config][config] by a Cholesky decomposition.
+	 * If it is not positive definite, or nearly singular, the inverse is
+	 * not computed, but inverses derived from it may be.
+	 *
+	 * @param a a symmetric matrix.
+	 * @param config the indices of the rows and columns of the submatrix.
+	 */
+	public RecursiveInverse(double[][] a, int[] config) {
+		this(new DenseSymmetricMatrix(a), config);
+	}
+
+	/**
+	 * Invert the submatrix A[config][config] of a matrix, whose elements
+	 * may be computed on demand. Only the rows of the configurations
+	 * are read.
+	 *
+	 * @param a a symmetric matrix.
+	 * @param config the indices of the rows and columns of the submatrix.
+	 */
+	public RecursiveInverse(SymmetricMatrix a, int[] config) {
+		BorderedCholesky cholesky = new BorderedCholesky(a, config);
+
+		this.a = a;
+		this.config = config;
+		this.positiveDefinite = cholesky.isPositiveDefinite() && cholesky.getMinimumPivot() >= MINIMUM_PIVOT;
+		this.logDeterminant = positiveDefinite ? cholesky.getLogDeterminant() : Double.NaN;
+		this.inverse = positiveDefinite ? cholesky.getInverse() : null;
+
+		this.parentConfig = null;
+		this.removed = -1;
+		this.row = null;
+		this.border = null;
+		this.schur = 0.0;
+	}
+
+	/*
+	 * Remove the index at position r of the parent.
+	 */
+	private RecursiveInverse(RecursiveInverse parent, int r) {
+		final int k = parent.config.length - 1;
+
+		this.a = parent.a;
+		this.config = new int[k];
+		System.arraycopy(parent.config, 0, config, 0, r);
+		System.arraycopy(parent.config, r + 1, config, r, k - r);
+
+		this.parent = parent;
+		this.parentConfig = parent.config;
+		this.removed = r;
+		this.row = parent.inverse[r].clone();
+		this.border = null;
+		this.schur = 0.0;
+
+		this.positiveDefinite = row[r] > 0.0;
+		this.logDeterminant = parent.logDeterminant + Math.log(row[r]);
+	}
+
+	/*
+	 * Add the index j to the parent.
+	 */
+	private RecursiveInverse(RecursiveInverse parent, int j, double[] border, double schur) {
+		final int k = parent.config.length;
+
+		this.a = parent.a;
+		this.config = new int[k + 1];
+		System.arraycopy(parent.config, 0, config, 0, k);
+		config[k] = j;
+
+		this.parent = parent;
+		this.parentConfig = parent.config;
+		this.removed = -1;
+		this.row = null;
+		this.border = border;
+		this.schur = schur;
+
+		this.positiveDefinite = schur >= MINIMUM_PIVOT;
+		this.logDeterminant = parent.logDeterminant + Math.log(schur);
+	}
+
+	/**
+	 * Get the indices of the rows and columns of the submatrix.
+	 * @return
+	 */
+	public int[] getConfig() {
+		return config;
+	}
+
+	/**
+	 * Return, whether the submatrix is positive definite and not nearly
+	 * singular. Otherwise, the log of the determinant and the quadratic
+	 * forms are undefined.
+	 * @return
+	 */
+	public boolean isPositiveDefinite() {
+		return positiveDefinite;
+	}
+
+	/**
+	 * Get the log of the determinant of the submatrix.
+	 * @return
+	 */
+	public double getLogDeterminant() {
+		return logDeterminant;
+	}
+
+	/**
+	 * Get the inverse of the submatrix with the index removed.
+	 *
+	 * @param index an index in the configuration.
+	 * @return
+	 */
+	public RecursiveInverse getReduced(int index) {
+		int r = 0;
+
+		while(config[r] != index) {
+			r++;
+		}
+
+		if(!positiveDefinite) {
+			int[] reduced = new int[config.length - 1];
+			System.arraycopy(config, 0, reduced, 0, r);
+			System.arraycopy(config, r + 1, reduced, r, reduced.length - r);
+
+			return new RecursiveInverse(a, reduced);
+		}
+
+		expand();
+		return new RecursiveInverse(this, r);
+	}
+
+	/**
+	 * Get the inverse of the submatrix with the index added.
+	 *
+	 * @param index an index not in the configuration.
+	 * @return
+	 */
+	public RecursiveInverse getExtended(int index) {
+		final int k = config.length;
+		int[] extended = new int[k + 1];
+		System.arraycopy(config, 0, extended, 0, k);
+		extended[k] = index;
+
+		if(!positiveDefinite) {
+			return new RecursiveInverse(a, extended);
+		}
+
+		expand();
+
+		// A[index][config] and A[index][index]
+		final double[] column = a.getSubMatrix(new int[] {index}, extended)[0];
+		double[] b = new double[k];
+		double s = column[k];
+
+		for(int i = 0; i < k; i++) {
+			double u = 0.0;
+
+			for(int m = 0; m < k; m++) {
+				u += inverse[i][m] * column[m];
+			}
+
+			b[i] = u;
+			s -= column[i] * u;
+		}
+
+		return new RecursiveInverse(this, index, b, s);
+	}
+
+	/**
+	 * Get the quadratic form v<sup>T</sup> . P . v, in O(k<sup>2</sup>).
+	 *
+	 * @param v a vector of the dimension of A.
+	 * @return
+	 */
+	public double getQuadraticForm(double[] v) {
+		expand();
+
+		double diagonal = 0.0;
+		double offDiagonal = 0.0;
+
+		for(int i = 0; i < config.length; i++) {
+			diagonal += v[config[i]] * v[config[i]] * inverse[i][i];
+
+			for(int j = i + 1; j < config.length; j++) {
+				offDiagonal += v[config[i]] * v[config[j]] * inverse[i][j];
+			}
+		}
+
+		return diagonal + 2.0 * offDiagonal;
+	}
+
+	/**
+	 * Get the quadratic form v<sup>T</sup> . P . v from the quadratic form
+	 * of the parent, in O(k). If this inverse has not been derived from
+	 * a parent, the quadratic form is computed from scratch.
+	 *
+	 * @param v a vector of the dimension of A.
+	 * @param parentForm the quadratic form of v and the parent.
+	 * @return
+	 */
+	public double getQuadraticForm(double[] v, double parentForm) {
+		if(row != null) {
+			double u = 0.0;
+
+			for(int i = 0; i < parentConfig.length; i++) {
+				u += row[i] * v[parentConfig[i]];
+			}
+
+			return parentForm - u * u / row[removed];
+		} else if(border != null) {
+			double u = v[config[config.length - 1]];
+
+			for(int i = 0; i < parentConfig.length; i++) {
+				u -= border[i] * v[parentConfig[i]];
+			}
+
+			return parentForm + u * u / schur;
+		}
+
+		return getQuadraticForm(v);
+	}
+
+
+	/*
+	 * Build the matrix of a derived inverse. The parent has been built
+	 * before this inverse was derived from it.
+	 */
+	private synchronized void expand() {
+		if(parent == null) {
+			return;
+		}
+
+		parent.expand();
+
+		final double[][] p = parent.inverse;
+		final int k = config.length;
+		double[][] q = new double[k][k];
+
+		if(row != null) {
+			for(int i = 0; i < k; i++) {
+				int pi = i < removed ? i : i + 1;
+
+				for(int j = i; j < k; j++) {
+					int pj = j < removed ? j : j + 1;
+
+					q[i][j] = q[j][i] = p[pi][pj] - row[pi] * row[pj] / row[removed];
+				}
+			}
+		} else {
+			final int n = k - 1;
+
+			for(int i = 0; i < n; i++) {
+				for(int j = i; j < n; j++) {
+					q[i][j] = q[j][i] = p[i][j] + border[i] * border[j] / schur;
+				}
+
+				q[i][n] = q[n][i] = -border[i] / schur;
+			}
+
+			q[n][n] = 1.0 / schur;
+		}
+
+		inverse = q;
+		parent = null;
+	}
+}
@@ -0,0 +1,28 @@
+package math;
+
+/**
+ * This is a symmetric matrix, which is read by submatrices. Algorithms
+ * on subsets of the rows and columns, like BorderedCholesky, only read
+ * the elements of the subset. Hence, implementations need not hold the
+ * whole matrix, but may compute the elements on demand.
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public interface SymmetricMatrix {
+
+	/**
+	 * Get the number of rows, which equals the number of columns.
+	 * @return
+	 */
+	int getDimension();
+
+	/**
+	 * Get the submatrix A[rows][columns]. The result is a new array,
+	 * which may be modified by the caller.
+	 *
+	 * @param rows the indices of the rows.
+	 * @param columns the indices of the columns.
+	 * @return a rows.length x columns.length matrix.
+	 */
+	double[][] getSubMatrix(int[] rows, int[] columns);
+}
@@ -0,0 +1,44 @@
+package math;
+
+/**
+ * This is the weighted sum of symmetric matrices, e.g. the mixture of
+ * two covariance matrices. Its elements are not stored, but summed up
+ * from the submatrices of the summands, whenever they are read.
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public class SymmetricMatrixSum implements SymmetricMatrix {
+	private final SymmetricMatrix[] matrices;
+	private final double[] weights;
+
+	/**
+	 * Create the sum of weights[i] * matrices[i].
+	 *
+	 * @param matrices matrices of the same dimension.
+	 * @param weights one weight per matrix.
+	 */
+	public SymmetricMatrixSum(SymmetricMatrix[] matrices, double[] weights) {
+		this.matrices = matrices;
+		this.weights = weights;
+	}
+
+	public int getDimension() {
+		return matrices[0].getDimension();
+	}
+
+	public double[][] getSubMatrix(int[] rows, int[] columns) {
+		double[][] result = new double[rows.length][columns.length];
+
+		for(int m = 0; m < matrices.length; m++) {
+			final double[][] s = matrices[m].getSubMatrix(rows, columns);
+
+			for(int i = 0; i < rows.length; i++) {
+				for(int j = 0; j < columns.length; j++) {
+					result[i][j] += weights[m] * s[i][j];
+				}
+			}
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,332 @@
+package math.statistics;
+
+import java.util.Random;
+
+import Jama.CholeskyDecomposition;
+import Jama.EigenvalueDecomposition;
+import Jama.Matrix;
+import Jama.QRDecomposition;
+
+/**
+ * This is a multivariate normal distribution with a covariance matrix
+ * of the form
+ * <pre>
+ * Sigma = W . W<sup>T</sup> + Psi
+ * </pre>
+ * where W is a d x k matrix of factor loadings and Psi is a diagonal
+ * matrix of uniquenesses. Such a distribution needs O(d * k) memory
+ * instead of O(d<sup>2</sup>), and its discriminant can be evaluated
+ * in O(d * k) operations using the Woodbury identity
+ * <pre>
+ * Sigma<sup>-1</sup> = Psi<sup>-1</sup> - L . C<sup>-1</sup> . L<sup>T</sup>
+ * L := Psi<sup>-1</sup> . W
+ * C := I + W<sup>T</sup> . Psi<sup>-1</sup> . W
+ * </pre>
+ * and the matrix determinant lemma
+ * <pre>
+ * ln|Sigma| = ln|Psi| + ln|C|
+ * </pre>
+ * It is particularly suited for problems, where the dimension exceeds
+ * the number of samples, since the full covariance matrix is never
+ * formed.
+ *
+ * <br><br>
+ * The parameters are estimated by the iterated principal factor method.
+ * In every iteration, W is obtained from the k leading eigenvectors of
+ * S - Psi, where S is the sample covariance matrix, and Psi is updated
+ * to diag(S - W . W<sup>T</sup>). The iteration stops, once no
+ * uniqueness changes by more than a relative tolerance, or after a
+ * fixed number of iterations. The eigenvectors are found by a
+ * randomized subspace iteration, which only needs products with the
+ * centered sample matrix.
+ *
+ * <br><br>
+ * See N. Halko, P. Martinsson, and J. Tropp
+ *     "Finding Structure with Randomness: Probabilistic Algorithms for
+ *     Constructing Approximate Matrix Decompositions"
+ *     SIAM Review
+ *     vol 53 pp. 217--288
+ *     2011
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public class FactorNormalDistribution implements MultivariateDistribution {
+	private static final int ITERATIONS = 20;     // the maximum number of iterations
+	private static final double TOLERANCE = 1E-6; // the relative change of Psi at convergence
+	private static final int OVERSAMPLING = 5;
+	private static final long SEED = 0x5eedL;
+
+	private final int dimension;
+	private final double[] mean;
+	private double[][] loadings;
+	private double[] uniquenesses;
+
+	private double[][] l;
+	private double[][] inverseC;
+	private double lnCovarianceDeterminant;
+
+	/**
+	 * Create a new distribution with given parameters.
+	 *
+	 * @param mean the mean vector.
+	 * @param loadings the d x k matrix of factor loadings.
+	 * @param uniquenesses the diagonal of Psi. All values must be positive.
+	 */
+	public FactorNormalDistribution(double[] mean, double[][] loadings, double[] uniquenesses) {
+		this.mean = mean;
+		this.dimension = mean.length;
+		this.loadings = loadings;
+		this.uniquenesses = uniquenesses;
+		init();
+	}
+
+	/**
+	 * Estimate a distribution from a set of samples.
+	 *
+	 * @param mean the mean vector of the samples.
+	 * @param samples the samples.
+	 * @param rank the number of factors. It is reduced to the rank of
+	 *        the sample covariance matrix, if necessary.
+	 */
+	public FactorNormalDistribution(double[] mean, double[][] samples, int rank) {
+		this.mean = mean;
+		this.dimension = mean.length;
+
+		int n = samples.length;
+		int k = Math.max(0, Math.min(rank, Math.min(n - 1, dimension)));
+
+		/*
+		 * Create the centered sample matrix X, scaled such that
+		 * S = X^T . X
+		 */
+		double f = 1.0 / Math.sqrt(n - 1.0);
+		Matrix x = new Matrix(n, dimension);
+		double[] variance = new double[dimension];
+		double averageVariance = 0.0;
+
+		for(int i = 0; i < n; i++) {
+			for(int j = 0; j < dimension; j++) {
+				double u = (samples[i][j] - mean[j]) * f;
+				x.set(i, j, u);
+				variance[j] += u * u;
+			}
+		}
+
+		for(int j = 0; j < dimension; j++) {
+			averageVariance += variance[j] / dimension;
+		}
+
+		/*
+		 * Uniquenesses are bounded from below, so that Psi is always
+		 * invertible, even for constant features.
+		 */
+		double bound = averageVariance > 0.0 ? averageVariance * 1E-6 : 1E-6;
+
+		uniquenesses = new double[dimension];
+		loadings = new double[dimension][k];
+
+		if(k == 0) {
+			for(int j = 0; j < dimension; j++) {
+				uniquenesses[j] = Math.max(variance[j], bound);
+			}
+			init();
+			return;
+		}
+
+		// start with a random subspace
+		int m = Math.min(k + OVERSAMPLING, dimension);
+		Random random = new Random(SEED);
+		Matrix q = new Matrix(dimension, m);
+
+		for(int i = 0; i < dimension; i++) {
+			for(int j = 0; j < m; j++) {
+				q.set(i, j, random.nextGaussian());
+			}
+		}
+
+		// Psi = 0 in the first iteration, i.e. principal components
+		double[] psi = new double[dimension];
+
+		boolean converged = false;
+
+		for(int iteration = 0; iteration < ITERATIONS && !converged; iteration++) {
+			/*
+			 * One step of subspace iteration with A = S - Psi. The
+			 * previous basis is used as a starting point, hence the
+			 * subspace is refined while Psi converges.
+			 */
+			Matrix aq = times(x, psi, q);
+			q = new QRDecomposition(aq).getQ();
+			aq = times(x, psi, q);
+
+			// Rayleigh-Ritz projection B = Q^T . A . Q
+			Matrix b = q.transpose().times(aq);
+			b = b.plus(b.transpose()).times(0.5);
+
+			EigenvalueDecomposition eig = b.eig();
+			double[] eigenvalues = eig.getRealEigenvalues();
+			Matrix u = q.times(eig.getV());
+
+			/*
+			 * Jama returns ascending eigenvalues. The k largest ones
+			 * are at the end.
+			 */
+			for(int j = 0; j < k; j++) {
+				int c = m - 1 - j;
+				double s = Math.sqrt(Math.max(eigenvalues[c], 0.0));
+
+				for(int i = 0; i < dimension; i++) {
+					loadings[i][j] = u.get(i, c) * s;
+				}
+			}
+
+			converged = true;
+
+			for(int i = 0; i < dimension; i++) {
+				double communality = 0.0;
+
+				for(int j = 0; j < k; j++) {
+					communality += loadings[i][j] * loadings[i][j];
+				}
+
+				uniquenesses[i] = Math.max(variance[i] - communality, bound);
+				converged &= Math.abs(uniquenesses[i] - psi[i]) <= TOLERANCE * uniquenesses[i];
+				psi[i] = uniquenesses[i];
+			}
+
+			q = u;
+		}
+
+		init();
+	}
+
+	/**
+	 * Return the discriminant of this distribution.
+	 * <pre>
+	 * g(x) := - (r<sup>T</sup> . Psi<sup>-1</sup> . r - u<sup>T</sup> . C<sup>-1</sup> . u + ln|Sigma|) / 2
+	 * r := x - mu
+	 * u := L<sup>T</sup> . r
+	 * </pre>
+	 *
+	 * @param vector evalutate descriminant at this point.
+	 * @return the result.
+	 */
+	public double getDiscriminant(double[] vector) {
+		int k = inverseC.length;
+		double a = 0.0;
+		double[] u = new double[k];
+
+		for(int i = 0; i < dimension; i++) {
+			double r = vector[i] - mean[i];
+			a += r * r / uniquenesses[i];
+
+			for(int j = 0; j < k; j++) {
+				u[j] += l[i][j] * r;
+			}
+		}
+
+		for(int i = 0; i < k; i++) {
+			double tmp = 0.0;
+
+			for(int j = 0; j < k; j++) {
+				tmp += inverseC[i][j] * u[j];
+			}
+			a -= tmp * u[i];
+		}
+
+		return -(a + lnCovarianceDeterminant) / 2;
+	}
+
+	/**
+	 * Get the discrimiant value, assuming that the class has
+	 * a given a-priori probability. The
+	 * <pre>
+	 * log(prior)
+	 * </pre>
+	 * is added to the standard discriminant function.
+	 */
+	public double getDiscriminant(double[] vector, double prior) {
+		return getDiscriminant(vector) + Math.log(prior);
+	}
+
+	/**
+	 * Get the mean vector of this distribution.
+	 * @return
+	 */
+	public double[] getMean() {
+		return mean;
+	}
+
+	/**
+	 * Get the factor loadings W.
+	 * @return
+	 */
+	public double[][] getLoadings() {
+		return loadings;
+	}
+
+	/**
+	 * Get the diagonal of Psi.
+	 * @return
+	 */
+	public double[] getUniquenesses() {
+		return uniquenesses;
+	}
+
+
+	/*
+	 * Get (X^T . X - Psi) . Q without forming the d x d matrix.
+	 */
+	private static Matrix times(Matrix x, double[] psi, Matrix q) {
+		Matrix result = x.transpose().times(x.times(q));
+
+		for(int i = 0; i < psi.length; i++) {
+			for(int j = 0; j < q.getColumnDimension(); j++) {
+				result.set(i, j, result.get(i, j) - psi[i] * q.get(i, j));
+			}
+		}
+
+		return result;
+	}
+
+	private void init() {
+		int k = loadings.length == 0 ? 0 : loadings[0].length;
+
+		l = new double[dimension][k];
+		lnCovarianceDeterminant = 0.0;
+
+		for(int i = 0; i < dimension; i++) {
+			lnCovarianceDeterminant += Math.log(uniquenesses[i]);
+
+			for(int j = 0; j < k; j++) {
+				l[i][j] = loadings[i][j] / uniquenesses[i];
+			}
+		}
+
+		// C = I + W^T . Psi^-1 . W is symmetric and positive definite
+		Matrix c = Matrix.identity(k, k);
+
+		for(int i = 0; i < k; i++) {
+			for(int j = 0; j <= i; j++) {
+				double u = 0.0;
+
+				for(int t = 0; t < dimension; t++) {
+					u += loadings[t][i] * l[t][j];
+				}
+
+				// Jama requires an exactly symmetric matrix
+				c.set(i, j, c.get(i, j) + u);
+				c.set(j, i, c.get(i, j));
+			}
+		}
+
+		CholeskyDecomposition chol = c.chol();
+		Matrix lower = chol.getL();
+
+		for(int i = 0; i < k; i++) {
+			lnCovarianceDeterminant += 2.0 * Math.log(lower.get(i, i));
+		}
+
+		inverseC = chol.solve(Matrix.identity(k, k)).getArray();
+	}
+}
@@ -0,0 +1,307 @@
+package math.statistics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import math.SymmetricMatrix;
+import util.Parallel;
+
+/**
+ * This is a covariance matrix, whose elements are estimated on demand.
+ * Searches which only evaluate subsets of k &lt;&lt; d features, like
+ * forward selections, only read the elements of the explored features.
+ * The whole d x d matrix, which requires O(d<sup>2</sup>) memory and
+ * O(n d<sup>2</sup>) time, is never estimated.
+ *
+ * <br><br>
+ * The matrix is split into square blocks of BLOCK_SIZE rows and
+ * columns, and a block is estimated, when one of its elements is read
+ * for the first time. Since the matrix is symmetric, only the blocks
+ * on and above the diagonal are estimated. The vectors are held by
+ * features, so that each element is a scalar product of two arrays.
+ * If a submatrix requires enough new blocks to pay off for starting
+ * threads, they are estimated concurrently. The number of blocks kept
+ * is limited, the least recently used blocks are evicted and estimated
+ * again, if required.
+ *
+ * <br><br>
+ * The estimate is the same as MaximumLikelihoodEstimation.getCovariance.
+ * Several classes may be pooled into the within-class scatter, see
+ * Scatter.getWithinClassScatter. Several threads may read the matrix
+ * concurrently. If they require the same new block at the same time,
+ * it is estimated twice.
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public class LazyCovarianceMatrix implements SymmetricMatrix {
+	/**
+	 * The number of rows and columns of a block.
+	 */
+	public static final int BLOCK_SIZE = 32;
+
+	// the multiplications per block times the number of new blocks,
+	// below which passing them to other threads costs more than estimating them
+	private static final double PARALLEL_WORK = 1e6;
+
+	private final int dimension;
+	private final int nBlocks;      // blocks per row
+	private final double[][] data;  // the scaled deviations from the means, by feature
+	private final Blocks blocks;
+	private int threads = 1;
+
+	/**
+	 * Create the covariance matrix of a sample set.
+	 *
+	 * @param vectors the sample set.
+	 * @param mean the mean of the sample set.
+	 * @param capacity the maximum number of elements kept. At least one
+	 *        block is kept.
+	 */
+	public LazyCovarianceMatrix(Collection<double[]> vectors, double[] mean, int capacity) {
+		this(toList(vectors), new double[][] {mean}, new double[] {1.0}, capacity);
+	}
+
+	/**
+	 * Create the within-class scatter of several sample sets, i.e. the
+	 * sum of their covariance matrices weighted by p.
+	 *
+	 * @param classes the sample sets.
+	 * @param mean the means of the sample sets.
+	 * @param p the a-priori probabilities of the sample sets.
+	 * @param capacity the maximum number of elements kept. At least one
+	 *        block is kept.
+	 */
+	public LazyCovarianceMatrix(List<? extends Collection<double[]>> classes, double[][] mean, double[] p, int capacity) {
+		int n = 0;
+
+		for(Collection<double[]> c: classes) {
+			n += c.size();
+		}
+
+		this.dimension = mean[0].length;
+		this.nBlocks = (dimension + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		this.data = new double[dimension][n];
+		this.blocks = new Blocks(Math.max(1, capacity / (BLOCK_SIZE * BLOCK_SIZE)));
+
+		/*
+		 * With x_v scaled by sqrt(p_c / (n_c - 1)), every element is the
+		 * scalar product of two rows of data.
+		 */
+		int v = 0;
+
+		for(int c = 0; c < classes.size(); c++) {
+			Collection<double[]> vectors = classes.get(c);
+			double scale = Math.sqrt(p[c] / (vectors.size() - 1));
+
+			for(double[] x: vectors) {
+				for(int i = 0; i < dimension; i++) {
+					data[i][v] = scale * (x[i] - mean[c][i]);
+				}
+				v++;
+			}
+		}
+	}
+
+	/**
+	 * Set the number of threads used to estimate the blocks of a
+	 * submatrix.
+	 *
+	 * @param threads the number of threads. The default is 1.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public int getDimension() {
+		return dimension;
+	}
+
+	/**
+	 * Get the number of blocks currently kept.
+	 * @return
+	 */
+	public int getBlockCount() {
+		synchronized(blocks) {
+			return blocks.size();
+		}
+	}
+
+	public double[][] getSubMatrix(int[] rows, int[] columns) {
+		// the positions of the block rows and columns in the local table
+		int[] rowBlock = getBlockIndices(rows);
+		int[] columnBlock = getBlockIndices(columns);
+		int[] rowBlocks = getDistinct(rowBlock);
+		int[] columnBlocks = getDistinct(columnBlock);
+		int[] rowPosition = getPositions(rowBlock, rowBlocks);
+		int[] columnPosition = getPositions(columnBlock, columnBlocks);
+
+		double[][][][] table = new double[rowBlocks.length][columnBlocks.length][][];
+		List<Callable<double[][]>> tasks = new ArrayList<Callable<double[][]>>();
+		List<Long> missing = new ArrayList<Long>();
+
+		// a symmetric read requires the blocks (i,j) and (j,i), which are the same
+		for(int i = 0; i < rowBlocks.length; i++) {
+			for(int j = 0; j < columnBlocks.length; j++) {
+				final int b1 = Math.min(rowBlocks[i], columnBlocks[j]);
+				final int b2 = Math.max(rowBlocks[i], columnBlocks[j]);
+				Long key = (long)b1 * nBlocks + b2;
+
+				synchronized(blocks) {
+					table[i][j] = blocks.get(key);
+				}
+
+				if(table[i][j] == null && !missing.contains(key)) {
+					missing.add(key);
+					tasks.add(new Callable<double[][]>() {
+						public double[][] call() {
+							return getBlock(b1, b2);
+						}
+					});
+				}
+			}
+		}
+
+		double work = (double)BLOCK_SIZE * BLOCK_SIZE * data[0].length * tasks.size();
+		List<double[][]> estimated = Parallel.invokeAll(tasks, work < PARALLEL_WORK ? 1 : threads);
+
+		synchronized(blocks) {
+			for(int m = 0; m < estimated.size(); m++) {
+				blocks.put(missing.get(m), estimated.get(m));
+			}
+		}
+
+		for(int i = 0; i < rowBlocks.length; i++) {
+			for(int j = 0; j < columnBlocks.length; j++) {
+				if(table[i][j] == null) {
+					Long key = (long)Math.min(rowBlocks[i], columnBlocks[j]) * nBlocks
+						+ Math.max(rowBlocks[i], columnBlocks[j]);
+
+					table[i][j] = estimated.get(missing.indexOf(key));
+				}
+			}
+		}
+
+		double[][] result = new double[rows.length][columns.length];
+
+		for(int i = 0; i < rows.length; i++) {
+			final int r = rows[i] % BLOCK_SIZE;
+
+			for(int j = 0; j < columns.length; j++) {
+				final int c = columns[j] % BLOCK_SIZE;
+				final double[][] block = table[rowPosition[i]][columnPosition[j]];
+
+				// blocks below the diagonal are read transposed
+				result[i][j] = rowBlock[i] <= columnBlock[j] ? block[r][c] : block[c][r];
+			}
+		}
+
+		return result;
+	}
+
+
+	/*
+	 * Estimate the block in block row b1 and block column b2 >= b1.
+	 */
+	private double[][] getBlock(int b1, int b2) {
+		final int r0 = b1 * BLOCK_SIZE;
+		final int c0 = b2 * BLOCK_SIZE;
+		final int rows = Math.min(BLOCK_SIZE, dimension - r0);
+		final int columns = Math.min(BLOCK_SIZE, dimension - c0);
+		double[][] block = new double[rows][columns];
+
+		for(int i = 0; i < rows; i++) {
+			final double[] x = data[r0 + i];
+
+			// only the upper half of a diagonal block is estimated
+			for(int j = b1 == b2 ? i : 0; j < columns; j++) {
+				final double[] y = data[c0 + j];
+				double u = 0.0;
+
+				for(int v = 0; v < x.length; v++) {
+					u += x[v] * y[v];
+				}
+
+				block[i][j] = u;
+
+				if(b1 == b2) {
+					block[j][i] = u;
+				}
+			}
+		}
+
+		return block;
+	}
+
+	private static int[] getBlockIndices(int[] indices) {
+		int[] result = new int[indices.length];
+
+		for(int i = 0; i < indices.length; i++) {
+			result[i] = indices[i] / BLOCK_SIZE;
+		}
+
+		return result;
+	}
+
+	/*
+	 * Get the distinct values of an array in ascending order.
+	 */
+	private static int[] getDistinct(int[] values) {
+		int[] sorted = values.clone();
+		int n = 0;
+
+		Arrays.sort(sorted);
+
+		for(int i = 0; i < sorted.length; i++) {
+			if(i == 0 || sorted[i] != sorted[i - 1]) {
+				sorted[n++] = sorted[i];
+			}
+		}
+
+		int[] result = new int[n];
+		System.arraycopy(sorted, 0, result, 0, n);
+
+		return result;
+	}
+
+	private static int[] getPositions(int[] values, int[] distinct) {
+		int[] result = new int[values.length];
+
+		for(int i = 0; i < values.length; i++) {
+			result[i] = Arrays.binarySearch(distinct, values[i]);
+		}
+
+		return result;
+	}
+
+	private static List<Collection<double[]>> toList(Collection<double[]> vectors) {
+		List<Collection<double[]>> list = new ArrayList<Collection<double[]>>();
+		list.add(vectors);
+
+		return list;
+	}
+
+
+	/*
+	 * The blocks kept, which removes the least recently used block
+	 * if it is full.
+	 */
+	private static class Blocks extends LinkedHashMap<Long, double[][]> {
+		private static final long serialVersionUID = 1L;
+		private final int capacity;
+
+		Blocks(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, double[][]> eldest) {
+			return size() > capacity;
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package math.statistics;
+
+/**
+ * This class accumulates the sufficient statistics of a normal
+ * distribution, i.e. the number of samples, the mean vector, and the
+ * scatter matrix, one sample at a time. Samples need not be kept in
+ * memory. Statistics of disjoint sample sets can be merged, so that
+ * several parts of a data set can be processed independently.
+ *
+ * <br><br>
+ * Samples are added by Welford's update
+ * <pre>
+ * delta = x - mu
+ * mu'   = mu + delta / (n + 1)
+ * M'    = M + delta . (x - mu')<sup>T</sup>
+ * </pre>
+ * and two sets a and b are merged by
+ * <pre>
+ * delta = mu_b - mu_a
+ * mu    = mu_a + delta * n_b / (n_a + n_b)
+ * M     = M_a + M_b + delta . delta<sup>T</sup> * n_a * n_b / (n_a + n_b)
+ * </pre>
+ * which is numerically more stable than summing up x and
+ * x . x<sup>T</sup>.
+ *
+ * <br><br>
+ * See T. Chan, G. Golub, and R. LeVeque
+ *     "Updating Formulae and a Pairwise Algorithm for Computing Sample Variances"
+ *     Technical Report STAN-CS-79-773
+ *     Stanford University
+ *     1979
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public class SufficientStatistics {
+	private final int dimension;
+	private final double[] mean;
+	private final double[][] scatter;
+	private long n;
+
+	/**
+	 * Create empty statistics for vectors of a given dimension.
+	 *
+	 * @param dimension
+	 */
+	public SufficientStatistics(int dimension) {
+		this.dimension = dimension;
+		this.mean = new double[dimension];
+		this.scatter = new double[dimension][dimension];
+		this.n = 0;
+	}
+
+	/**
+	 * Add a single sample.
+	 *
+	 * @param vector the sample.
+	 */
+	public void add(double[] vector) {
+		double[] delta = new double[dimension];
+
+		n++;
+		for(int i = 0; i < dimension; i++) {
+			delta[i] = vector[i] - mean[i];
+			mean[i] += delta[i] / n;
+		}
+
+		for(int i = 0; i < dimension; i++) {
+			/*
+			 * Only the upper triangular matrix is updated.
+			 * The scatter matrix is symmetric.
+			 */
+			for(int j = i; j < dimension; j++) {
+				scatter[i][j] += delta[i] * (vector[j] - mean[j]);
+			}
+		}
+	}
+
+	/**
+	 * Merge the statistics of another, disjoint set of samples
+	 * into this one.
+	 *
+	 * @param other the other statistics. They remain unchanged.
+	 */
+	public void merge(SufficientStatistics other) {
+		if(other.n == 0) {
+			return;
+		}
+
+		long total = n + other.n;
+		double f = (double)n * other.n / total;
+		double[] delta = new double[dimension];
+
+		for(int i = 0; i < dimension; i++) {
+			delta[i] = other.mean[i] - mean[i];
+			mean[i] += delta[i] * other.n / total;
+		}
+
+		for(int i = 0; i < dimension; i++) {
+			for(int j = i; j < dimension; j++) {
+				scatter[i][j] += other.scatter[i][j] + delta[i] * delta[j] * f;
+			}
+		}
+
+		n = total;
+	}
+
+	/**
+	 * Get the number of samples.
+	 * @return
+	 */
+	public long getCount() {
+		return n;
+	}
+
+	/**
+	 * Get the dimension of the samples.
+	 * @return
+	 */
+	public int getDimension() {
+		return dimension;
+	}
+
+	/**
+	 * Get the mean of all samples.
+	 *
+	 * @return a copy of the mean vector.
+	 */
+	public double[] getMean() {
+		double[] result = new double[dimension];
+		System.arraycopy(mean, 0, result, 0, dimension);
+
+		return result;
+	}
+
+	/**
+	 * Get the covariance matrix of all samples. Like
+	 * MaximumLikelihoodEstimation.getCovariance, this is the
+	 * unbiased estimate
+	 * <pre>
+	 * Sigma = M / (n - 1)
+	 * </pre>
+	 *
+	 * @return a new covariance matrix.
+	 */
+	public double[][] getCovariance() {
+		double[][] covariance = new double[dimension][dimension];
+
+		for(int i = 0; i < dimension; i++) {
+			for(int j = i; j < dimension; j++) {
+				covariance[i][j] = covariance[j][i] = scatter[i][j] / (n - 1);
+			}
+		}
+
+		return covariance;
+	}
+}
@@ -1,17 +1,68 @@
 package reporting;
 
-import java.util.List;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import util.ClassDescriptor;
 
 /**
- * Create a report from classification log data.
+ * Create a report from classification log data. By default, only a
+ * confusion matrix of counts is kept, i.e. for every pair of target
+ * class and resulting class, the number of classifications. The
+ * classified vectors are not referenced, so memory usage does not
+ * depend on the number of classifications. Optionally, every single
+ * classification is kept as a LogEntry.
+ *
+ * <br><br>
+ * Several threads may log concurrently. Every thread counts into a
+ * matrix of its own, which is created on its first classification.
+ * Hence, logging does not need any locks, except when a class is seen
+ * for the first time. The matrices of all threads are summed up when
+ * the counts are read. The counts are complete, once all logging
+ * threads have finished.
+ *
  * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
  */
 public class ClassificationLogger {
-	protected List<LogEntry> logList = new ArrayList<LogEntry>();
-	
+	private final boolean keepEntries;
+	private final Queue<LogEntry> entries = new ConcurrentLinkedQueue<LogEntry>();
+
+	private final Map<ClassDescriptor, Integer> indices = new ConcurrentHashMap<ClassDescriptor, Integer>();
+	private final List<ClassDescriptor> classes = new ArrayList<ClassDescriptor>();
+	private final List<Counts> stripes = new ArrayList<Counts>();
+
+	private final ThreadLocal<Counts> local = new ThreadLocal<Counts>() {
+		protected Counts initialValue() {
+			Counts c = new Counts();
+
+			synchronized(stripes) {
+				stripes.add(c);
+			}
+			return c;
+		}
+	};
+
+	/**
+	 * Create a new logger, which only counts classifications.
+	 */
+	public ClassificationLogger() {
+		this(false);
+	}
+
+	/**
+	 * Create a new logger.
+	 *
+	 * @param keepEntries if true, every classification is kept and
+	 *        can be obtained by getData.
+	 */
+	public ClassificationLogger(boolean keepEntries) {
+		this.keepEntries = keepEntries;
+	}
+
 	/**
 	 * Log a classification event.
 	 * @param vector The classified vector.
@@ -19,11 +70,167 @@ public class ClassificationLogger {
 	 * @param result The actual value.
 	 */
 	public void log(double[] vector, ClassDescriptor target, ClassDescriptor result) {
-		logList.add(new LogEntry(vector, target, result));
+		local.get().add(getIndex(target), getIndex(result));
+
+		if(keepEntries) {
+			entries.add(new LogEntry(vector, target, result));
+		}
 	}
-	
+
+	/**
+	 * Get all logged classifications. The order is only defined,
+	 * if a single thread logged all of them.
+	 *
+	 * @return
+	 * @throws UnsupportedOperationException if this logger does not
+	 *         keep entries.
+	 */
 	public List<LogEntry> getData() {
-		return logList;
+		if(!keepEntries) {
+			throw new UnsupportedOperationException("Log entries are not kept by this logger");
+		}
+
+		return new ArrayList<LogEntry>(entries);
+	}
+
+	/**
+	 * Get all classes, that occurred as target or result, in the
+	 * order of their first occurrence. This is the order of the
+	 * rows and columns of the confusion matrix.
+	 *
+	 * @return
+	 */
+	public ClassDescriptor[] getClasses() {
+		synchronized(classes) {
+			return classes.toArray(new ClassDescriptor[classes.size()]);
+		}
+	}
+
+	/**
+	 * Get the confusion matrix. Rows are target classes, columns are
+	 * resulting classes, in the order of getClasses().
+	 *
+	 * @return the number of classifications for every pair of classes.
+	 */
+	public long[][] getConfusionMatrix() {
+		int n = getClasses().length;
+		long[][] result = new long[n][n];
+
+		synchronized(stripes) {
+			for(Counts c: stripes) {
+				c.addTo(result);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Get the number of classifications of a target class, that
+	 * resulted in a given class.
+	 *
+	 * @param target
+	 * @param result
+	 * @return
+	 */
+	public long getCount(ClassDescriptor target, ClassDescriptor result) {
+		Integer t = indices.get(target);
+		Integer r = indices.get(result);
+
+		if(t == null || r == null) {
+			return 0;
+		}
+
+		return getConfusionMatrix()[t][r];
+	}
+
+	/**
+	 * Get the total number of classifications.
+	 * @return
+	 */
+	public long getTotal() {
+		long total = 0;
+
+		for(long[] row: getConfusionMatrix()) {
+			for(long x: row) {
+				total += x;
+			}
+		}
+
+		return total;
+	}
+
+	/**
+	 * Get the number of correct classifications, i.e. the trace
+	 * of the confusion matrix.
+	 * @return
+	 */
+	public long getCorrect() {
+		long[][] m = getConfusionMatrix();
+		long correct = 0;
+
+		for(int i = 0; i < m.length; i++) {
+			correct += m[i][i];
+		}
+
+		return correct;
+	}
+
+
+	/*
+	 * Get the index of a class. New classes are appended.
+	 */
+	private int getIndex(ClassDescriptor d) {
+		Integer i = indices.get(d);
+
+		if(i == null) {
+			synchronized(classes) {
+				i = indices.get(d);
+
+				if(i == null) {
+					i = classes.size();
+					classes.add(d);
+					indices.put(d, i);
+				}
+			}
+		}
+
+		return i;
 	}
 
+
+	/*
+	 * The counts of a single thread. Only the owning thread writes,
+	 * and the matrix grows with the number of classes seen so far.
+	 */
+	private static class Counts {
+		private long[][] counts = new long[0][0];
+
+		void add(int target, int result) {
+			int n = Math.max(target, result) + 1;
+
+			if(n > counts.length) {
+				long[][] c = new long[Math.max(n, 2 * counts.length)][Math.max(n, 2 * counts.length)];
+
+				for(int i = 0; i < counts.length; i++) {
+					System.arraycopy(counts[i], 0, c[i], 0, counts.length);
+				}
+
+				counts = c;
+			}
+
+			counts[target][result]++;
+		}
+
+		void addTo(long[][] result) {
+			long[][] c = counts;
+			int n = Math.min(c.length, result.length);
+
+			for(int i = 0; i < n; i++) {
+				for(int j = 0; j < n; j++) {
+					result[i][j] += c[i][j];
+				}
+			}
+		}
+	}
 }
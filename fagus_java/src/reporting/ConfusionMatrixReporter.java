@@ -55,38 +55,35 @@ public class ConfusionMatrixReporter implements Reporter {
 	private Map<ClassDescriptor, Map<ClassDescriptor, Double>> getConfusionMatrix(ClassificationLogger logger) {
 		Map<ClassDescriptor, Map<ClassDescriptor, Double>> result =
 			new HashMap<ClassDescriptor, Map<ClassDescriptor, Double>>();
-		Map<ClassDescriptor, Integer> classSizes =
+		Map<ClassDescriptor, Integer> indices =
 			new HashMap<ClassDescriptor, Integer>();
+		ClassDescriptor[] logged = logger.getClasses();
+		long[][] counts = logger.getConfusionMatrix();
 		
-		/* Initialize map */
-		for(ClassDescriptor d: classes) {
-			HashMap<ClassDescriptor, Double> entry = new HashMap<ClassDescriptor, Double>();
-
-			for(ClassDescriptor d1: classes) {
-				entry.put(d1, 0.0);
-			}
-			
-			result.put(d, entry);
-			classSizes.put(d, 0);
-		}
-		
-		/* parse log data */
-		for(LogEntry entry: logger.getData()) {
-			Double d = result.get(entry.target).get(entry.result);
-			result.get(entry.target).put(entry.result, d + 1);
-			
-			int n = classSizes.get(entry.target);
-			classSizes.put(entry.target, n + 1);
+		for(int i = 0; i < logged.length; i++) {
+			indices.put(logged[i], i);
 		}
 		
-		/* divide by class size */
+		/* divide counts by class size */
 		for(ClassDescriptor t: classes) {
-			double size = classSizes.get(t);
+			HashMap<ClassDescriptor, Double> entry = new HashMap<ClassDescriptor, Double>();
+			Integer i = indices.get(t);
+			double size = 0.0;
+			
+			if(i != null) {
+				for(long n: counts[i]) {
+					size += n;
+				}
+			}
 			
 			for(ClassDescriptor r: classes) {
-				Double d = result.get(t).get(r);
-				result.get(t).put(r, d / size);
+				Integer j = indices.get(r);
+				double n = (i != null && j != null) ? counts[i][j] : 0.0;
+				
+				entry.put(r, n / size);
 			}
+			
+			result.put(t, entry);
 		}
 		
 		return result;
@@ -1,25 +1,34 @@
 package reporting;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import util.ClassDescriptor;
 
 public class ProgressClassificationLogger extends ClassificationLogger {
 	private final int sampleSize;
-	private int status;
+	private final AtomicInteger status;
 	private ProgressBar bar;
 	
 	public ProgressClassificationLogger(int sampleSize) {
 		this.sampleSize = sampleSize;
-		status = 0;
+		status = new AtomicInteger();
 		bar = new ProgressBar();
 	}
 	
 	@Override
 	public void log(double[] vector, ClassDescriptor target, ClassDescriptor result) {
 		super.log(vector, target, result);
-		status++;
+		int s = status.incrementAndGet();
+		
+		/* only redraw, if the bar changes by at least 0.1 % */
+		if((s - 1) * 1000L / sampleSize == s * 1000L / sampleSize && s != sampleSize) {
+			return;
+		}
 		
 		// TODO: use Observer interface for status bar.
-		bar.setStatus((double)status/sampleSize);
-		bar.print();
+		synchronized(bar) {
+			bar.setStatus((double)status.get()/sampleSize);
+			bar.print();
+		}
 	}
 }
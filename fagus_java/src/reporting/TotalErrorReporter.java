@@ -22,16 +22,8 @@ public class TotalErrorReporter implements Reporter {
 	 * @param logger an object holding logging information.
 	 * @return
 	 */
-	public static int getSuccessNumber(ClassificationLogger logger) {
-		int classifiedTrue = 0;
-
-		for(LogEntry entry: logger.getData()) {
-			if(entry.result.equals(entry.target)) {
-				classifiedTrue++;
-			}
-		}
-
-		return classifiedTrue;
+	public static long getSuccessNumber(ClassificationLogger logger) {
+		return logger.getCorrect();
 	}
 	
 	/**
@@ -40,7 +32,7 @@ public class TotalErrorReporter implements Reporter {
 	 * @return a value in [0,1]
 	 */
 	public static double getSuccessRate(ClassificationLogger logger) {
-		return (double)getSuccessNumber(logger) / logger.getData().size();
+		return (double)getSuccessNumber(logger) / logger.getTotal();
 	}
 	
 	public static double getErrorRate(ClassificationLogger logger) {
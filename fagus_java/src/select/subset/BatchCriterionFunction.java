@@ -0,0 +1,24 @@
+package select.subset;
+
+/**
+ * This is a criterion function, which evaluates a batch of subsets
+ * at once. All subsets of a batch consist of a common base and one
+ * additional feature, as in every step of a forward selection. This
+ * allows to do the work depending on the base only once per batch.
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public interface BatchCriterionFunction extends CriterionFunction {
+
+	/**
+	 * Get the criterion values of the subsets base + candidates[i].
+	 * The values are the same as those of getCriterionValue(int[]),
+	 * apart from rounding errors.
+	 *
+	 * @param base the features common to all subsets.
+	 * @param candidates the features added to the base, one at a time.
+	 * @param out receives the criterion value of the i-th subset at
+	 *        index i.
+	 */
+	void getCriterionValues(int[] base, int[] candidates, double[] out);
+}
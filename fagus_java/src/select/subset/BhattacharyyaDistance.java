@@ -7,6 +7,12 @@ import java.util.Map;
 import Jama.EigenvalueDecomposition;
 import Jama.Matrix;
 
+import math.BorderedCholesky;
+import math.DenseSymmetricMatrix;
+import math.RecursiveInverse;
+import math.SymmetricMatrix;
+import math.SymmetricMatrixSum;
+import math.statistics.LazyCovarianceMatrix;
 import math.statistics.MaximumLikelihoodEstimation;
 
 import util.ClassDescriptor;
@@ -19,6 +25,23 @@ import util.VectorSet;
  * only applicable for two class problems.
  * 
  * <br><br>
+ * Batches of subsets with a common base are evaluated by bordering
+ * the Cholesky decompositions of the three covariance matrices of the
+ * base. Adding a feature adds one term to the quadratic form and to
+ * each log determinant, which costs O(k<sup>2</sup>) per subset.
+ * 
+ * <br><br>
+ * The recursive states may remove a feature, as in recursive Branch
+ * &amp; Bound, or add one, as in forward searches. Both transitions
+ * derive the inverses and log determinants from the parent state in
+ * O(k<sup>2</sup>), see RecursiveInverse.
+ * 
+ * <br><br>
+ * The covariance matrices may be estimated on demand, see
+ * DeferredCriterionFunction. The mixture is not stored in this case,
+ * but read from the class covariances.
+ * 
+ * <br><br>
  * See Chapter 3.4 "Upper Bounds on the Bayes Error" 
  *     in K. Fukunaga
  *     "Introduction to statistical pattern recognition"
@@ -27,15 +50,21 @@ import util.VectorSet;
  *     
  * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
  */
-public class BhattacharyyaDistance implements RecursiveCriterionFunction {
+public class BhattacharyyaDistance implements RecursiveCriterionFunction,
+		ConcurrentCriterionFunction, BatchCriterionFunction, DeferredCriterionFunction {
 
 	private int dimension;
 	private double[] mean; // mean2 - mean1
-	private double[][] covariance1;
-	private double[][] covariance2;
-	private double[][] covarianceMixture; // (cov1 + cov2) / 2;
+	private SymmetricMatrix covariance1;
+	private SymmetricMatrix covariance2;
+	private SymmetricMatrix covarianceMixture; // (cov1 + cov2) / 2;
 	
 	private int[] allFeatures;
+	private int capacity = 0;
+	
+	public void setDeferredEstimation(int capacity) {
+		this.capacity = capacity;
+	}
 	
 	/**
 	 * Get the criterion value. Higher values indicate better
@@ -121,19 +150,9 @@ public class BhattacharyyaDistance implements RecursiveCriterionFunction {
 		 *  
 		 * SigmaMix = (Sigma1 + Sigma2) / 2
 		 */
-		double[][] covMix;
-		double[][] cov1;
-		double[][] cov2;
-		
-		if(features.length < dimension) {
-			covMix = getSubMatrix(features, covarianceMixture);
-			cov1 = getSubMatrix(features, covariance1);
-			cov2 = getSubMatrix(features, covariance2);
-		} else {
-			covMix = covarianceMixture;
-			cov1 = covariance1;
-			cov2 = covariance2;
-		}
+		double[][] covMix = covarianceMixture.getSubMatrix(features, features);
+		double[][] cov1 = covariance1.getSubMatrix(features, features);
+		double[][] cov2 = covariance2.getSubMatrix(features, features);
 		
 		/*
 		 * Calculate the log of the determinant and the inverse of
@@ -209,6 +228,67 @@ public class BhattacharyyaDistance implements RecursiveCriterionFunction {
 		
 	}
 	
+	/**
+	 * Get the criterion values of the subsets base + candidates[i].
+	 */
+	public void getCriterionValues(int[] base, int[] candidates, double[] out) {
+		BorderedCholesky mix = new BorderedCholesky(covarianceMixture, base);
+		BorderedCholesky cov1 = new BorderedCholesky(covariance1, base);
+		BorderedCholesky cov2 = new BorderedCholesky(covariance2, base);
+		boolean pd = mix.isPositiveDefinite() && cov1.isPositiveDefinite() && cov2.isPositiveDefinite();
+		
+		// a nearly singular base is evaluated directly, like its candidates
+		pd = pd && Math.min(mix.getMinimumPivot(), Math.min(cov1.getMinimumPivot(), cov2.getMinimumPivot())) >= 10e-10;
+		
+		// z = L^(-1) . mean, the quadratic form of the base is z^T . z
+		double[] z = pd ? mix.solve(mean) : null;
+		double q = 0.0;
+		
+		for(int k = 0; pd && k < z.length; k++) {
+			q += z[k] * z[k];
+		}
+		
+		for(int i = 0; i < candidates.length; i++) {
+			int j = candidates[i];
+			
+			if(!pd) {
+				out[i] = getCriterionValue(append(base, j));
+				continue;
+			}
+			
+			double[] border = mix.getBorder(j);
+			double dMix = mix.getSchurComplement(j, border);
+			double d1 = cov1.getSchurComplement(j, cov1.getBorder(j));
+			double d2 = cov2.getSchurComplement(j, cov2.getBorder(j));
+			
+			if(dMix < 10e-10 || d1 < 10e-10 || d2 < 10e-10) {
+				out[i] = getCriterionValue(append(base, j));
+				continue;
+			}
+			
+			double u = mean[j];
+			
+			for(int k = 0; k < border.length; k++) {
+				u -= border[k] * z[k];
+			}
+			
+			double quadratic = q + u * u / dMix;
+			double lnCovMixDet = mix.getLogDeterminant() + Math.log(dMix);
+			double lnCovDet = (cov1.getLogDeterminant() + Math.log(d1) + cov2.getLogDeterminant() + Math.log(d2)) / 2.0;
+			
+			// mu = 1/8 * mean^T . SigmaMix^-1 . mean + 1/2 * (ln|SigmaMix| - (ln|Sigma1| + ln|Sigma2|) / 2)
+			out[i] = quadratic / 8.0 + (lnCovMixDet - lnCovDet) / 2.0;
+		}
+	}
+	
+	/**
+	 * Subsets are evaluated on submatrices of their own, so
+	 * several subsets may be evaluated concurrently.
+	 */
+	public boolean isThreadSafe() {
+		return true;
+	}
+	
 	public void initialize(int dimension, VectorSet data) {
 		this.dimension = dimension;
 		allFeatures = new int[dimension];
@@ -230,18 +310,30 @@ public class BhattacharyyaDistance implements RecursiveCriterionFunction {
 			mean[i] = m2[i] - m1[i];
 		}
 		
-		covariance1 = MaximumLikelihoodEstimation.getCovariance(d.get(c1), m1);
-		covariance2 = MaximumLikelihoodEstimation.getCovariance(d.get(c2), m2);
+		if(capacity > 0) {
+			covariance1 = new LazyCovarianceMatrix(d.get(c1), m1, capacity);
+			covariance2 = new LazyCovarianceMatrix(d.get(c2), m2, capacity);
+			covarianceMixture = new SymmetricMatrixSum(
+					new SymmetricMatrix[] {covariance1, covariance2}, new double[] {0.5, 0.5});
+			return;
+		}
+		
+		double[][] cov1 = MaximumLikelihoodEstimation.getCovariance(d.get(c1), m1);
+		double[][] cov2 = MaximumLikelihoodEstimation.getCovariance(d.get(c2), m2);
 		
 		// SigmaMix = (Sigma1 + Sigma2) / 2
-		covarianceMixture = new double[dimension][dimension];
+		double[][] covMix = new double[dimension][dimension];
 		for(int i = 0; i < dimension; i++) {
-			covarianceMixture[i][i] = (covariance1[i][i] + covariance2[i][i]) / 2.0;
+			covMix[i][i] = (cov1[i][i] + cov2[i][i]) / 2.0;
 			
 			for(int j = i + 1; j < dimension; j++) {
-				covarianceMixture[i][j] = covarianceMixture[j][i] = (covariance1[i][j] + covariance2[i][j]) / 2.0;
+				covMix[i][j] = covMix[j][i] = (cov1[i][j] + cov2[i][j]) / 2.0;
 			}
 		}
+		
+		covariance1 = new DenseSymmetricMatrix(cov1);
+		covariance2 = new DenseSymmetricMatrix(cov2);
+		covarianceMixture = new DenseSymmetricMatrix(covMix);
 	}
 
 	
@@ -261,22 +353,30 @@ public class BhattacharyyaDistance implements RecursiveCriterionFunction {
 	}
 	
 	
-	/*
-	 * Get a matrix from an original matrix with all elements not in
-	 * the feature vector left out. 
+	/**
+	 * Get the state for a subset, e.g. the initial candidate of a
+	 * forward search.
+	 */
+	public RecursiveCriterionFunction.State getCriterionState(int[] features) {
+		return new BhattacharyyaState(features);
+	}
+	
+	
+	/**
+	 * Get the state for the parent subset plus one feature.
 	 */
-	private double[][] getSubMatrix(int[] features, double[][] orig) {
-		double[][] subMatrix = new double[features.length][features.length];
+	public RecursiveCriterionFunction.State getExtendedCriterionState(int feature, RecursiveCriterionFunction.State parentState) {
+		return new BhattacharyyaState((BhattacharyyaState)parentState, feature);
+	}
+	
+	
+	private static int[] append(int[] base, int feature) {
+		int[] features = new int[base.length + 1];
 		
-		for(int i = 0; i < features.length; i++) {
-			subMatrix[i][i] = orig[features[i]][features[i]];
-			
-			for(int j = i + 1; j < features.length; j++) {
-				subMatrix[i][j] = subMatrix[j][i] = orig[features[i]][features[j]];
-			}			
-		}
+		System.arraycopy(base, 0, features, 0, base.length);
+		features[base.length] = feature;
 		
-		return subMatrix;
+		return features;
 	}
 	
 	
@@ -320,45 +420,40 @@ public class BhattacharyyaDistance implements RecursiveCriterionFunction {
 	
 	
 	/*
-	 * This is the state class for recursive Branch & Bound. The inverse
-	 * can be calculated from the inverse of the parent node. The determinant
-	 * can be calculated from the inverse of the current node, the determinant
-	 * of the parent node, and the original matrix.
-	 * 
-	 * See Chapter 10 "Feature Extraction and Linar Mapping for Classification"
-	 *     in K. Fukunaga
-	 *     "Introduction to statistical pattern recognition"
-	 *     2nd edition
-	 *     Academic Press 1990
-	 *     page 498ff
+	 * This is the state class for recursive Branch & Bound and forward
+	 * searches. The inverses and log determinants of the three covariance
+	 * matrices are derived from those of the parent node, see
+	 * RecursiveInverse. So is the quadratic form of the mean difference.
 	 */
 	private class BhattacharyyaState implements RecursiveCriterionFunction.State {
-		private final int[] config;
-		private final double[][] inverseCovMix;
-		private final double lnCovMixDet;
-		private final double[][] inverseCov1;
-		private final double[][] inverseCov2;
-		private final double lnCov1Det;
-		private final double lnCov2Det;
+		private final RecursiveInverse covMix;
+		private final RecursiveInverse cov1;
+		private final RecursiveInverse cov2;
+		private final double quadratic; // mean^T . SigmaMix^-1 . mean
 		private final double value;
 		private final int feature;
+		private final int addedFeature;
 		
 		/*
 		 * Get the state for the root node (with all features present).
 		 */
 		public BhattacharyyaState() {
+			this(allFeatures);
+		}
+		
+		
+		/*
+		 * Get the state for a node with the given features present.
+		 */
+		public BhattacharyyaState(int[] features) {
 			this.feature = -1;
-			this.config = allFeatures;
+			this.addedFeature = -1;
 			
-			inverseCovMix = new double[dimension][dimension];
-			lnCovMixDet = getInverseAndLogDeterminant(covarianceMixture, inverseCovMix);
-			
-			inverseCov1 = new double[dimension][dimension];
-			lnCov1Det = getInverseAndLogDeterminant(covariance1, inverseCov1);
-			
-			inverseCov2 = new double[dimension][dimension];
-			lnCov2Det = getInverseAndLogDeterminant(covariance2, inverseCov2);
+			covMix = new RecursiveInverse(covarianceMixture, features);
+			cov1 = new RecursiveInverse(covariance1, features);
+			cov2 = new RecursiveInverse(covariance2, features);
 			
+			quadratic = covMix.isPositiveDefinite() ? covMix.getQuadraticForm(mean) : Double.NaN;
 			value = getBhattacharyyaDistance();
 		}
 		
@@ -368,35 +463,29 @@ public class BhattacharyyaDistance implements RecursiveCriterionFunction {
 		 */
 		public BhattacharyyaState(int feature, BhattacharyyaState parentState) {
 			this.feature = feature;
+			this.addedFeature = -1;
 			
-			final int n = parentState.config.length - 1;
-			config = new int[n];
-			int indexInParent = 0;
-			int[] newIndex = new int[n];
+			covMix = parentState.covMix.getReduced(feature);
+			cov1 = parentState.cov1.getReduced(feature);
+			cov2 = parentState.cov2.getReduced(feature);
 			
-			for(int i = 0; i < n; i++) {
-				if(parentState.config[i] == feature) {
-					indexInParent = i;
-					
-					for(; i < n; i++) {
-						newIndex[i] = i + 1;
-						config[i] = parentState.config[i + 1];
-					}
-				} else {
-					newIndex[i] = i;
-					config[i] = parentState.config[i];
-				}
-			}
+			quadratic = covMix.isPositiveDefinite() ? covMix.getQuadraticForm(mean, parentState.quadratic) : Double.NaN;
+			value = getBhattacharyyaDistance();
+		}
+		
+		
+		/*
+		 * Get the state for the parent node extended by a feature.
+		 */
+		public BhattacharyyaState(BhattacharyyaState parentState, int feature) {
+			this.feature = -1;
+			this.addedFeature = feature;
 			
-			// for every matrix, calculate the child inverse and determinant from it's parent
-			inverseCovMix = getChildInverse(parentState.inverseCovMix, indexInParent, newIndex);
-			inverseCov1 = getChildInverse(parentState.inverseCov1, indexInParent, newIndex);
-			inverseCov2 = getChildInverse(parentState.inverseCov2, indexInParent, newIndex);
+			covMix = parentState.covMix.getExtended(feature);
+			cov1 = parentState.cov1.getExtended(feature);
+			cov2 = parentState.cov2.getExtended(feature);
 			
-			lnCovMixDet = getChildDeterminant(inverseCovMix, covarianceMixture, parentState.lnCovMixDet);
-			lnCov1Det = getChildDeterminant(inverseCov1, covariance1, parentState.lnCov1Det);
-			lnCov2Det = getChildDeterminant(inverseCov2, covariance2, parentState.lnCov2Det);
-		
+			quadratic = covMix.isPositiveDefinite() ? covMix.getQuadraticForm(mean, parentState.quadratic) : Double.NaN;
 			value = getBhattacharyyaDistance();
 		}
 		
@@ -408,69 +497,30 @@ public class BhattacharyyaDistance implements RecursiveCriterionFunction {
 		}
 		
 		public int[] getConfig() {
-			return config;
+			return covMix.getConfig();
 		}
 		
 		public int getRemovedFeature() {
 			return feature;
 		}
 		
-		private double getBhattacharyyaDistance() {
-			double mu1 = 0.0;
-			double mu2 = 0.0;
-			
-			for(int i = 0; i < config.length; i++) {
-				mu1 += mean[config[i]] * mean[config[i]] * inverseCovMix[i][i];
-			}
-			
-			mu1 = mu1 / 2.0;
-			
-			for(int i = 0; i < config.length - 1; i++) {
-				for(int j = i + 1; j < config.length; j++) {
-					mu1 += mean[config[i]] * mean[config[j]] * inverseCovMix[i][j];
-				}
-			}
-			
-			mu1 = mu1 / 4.0;
-			
-			mu2 = (lnCov1Det + lnCov2Det) / 2.0;
-			mu2 = (lnCovMixDet - mu2) / 2.0;
-			
-			return mu1 + mu2;			
+		public int getAddedFeature() {
+			return addedFeature;
 		}
 		
-		private double[][] getChildInverse(double[][] parentInverse, int indexInParent, int[] newIndex) {
-			double[][] a = getSubMatrix(newIndex, parentInverse);
-			
-			for(int i = 0; i < config.length; i++) {
-				a[i][i] -= (parentInverse[indexInParent][newIndex[i]] * parentInverse[indexInParent][newIndex[i]]) / parentInverse[indexInParent][indexInParent];
-				
-				for(int j = i + 1; j < config.length; j++) {
-					double u = (parentInverse[indexInParent][newIndex[i]] * parentInverse[indexInParent][newIndex[j]]) / parentInverse[indexInParent][indexInParent];
-					a[i][j] -= u;
-					a[j][i] -= u;
-				}
-			}
-			
-			return a;
-		}
-		
-		private double getChildDeterminant(double[][] childInverse, double[][] orig, double parentDet) {
-			double d = 0.0;
+		private double getBhattacharyyaDistance() {
+			int[] config = covMix.getConfig();
 			
-			for(int i = 0; i < config.length - 1; i++) {
-				for(int j = i + 1; j < config.length; j++) {
-					d += orig[feature][config[i]] * orig[feature][config[j]] * childInverse[i][j];
-				}
+			if(config.length == 0) {
+				return 0.0;
 			}
 			
-			d = d * 2;
-			
-			for(int i = 0; i < config.length; i++) {
-				d += orig[feature][config[i]] * orig[feature][config[i]] * childInverse[i][i];
+			if(!(covMix.isPositiveDefinite() && cov1.isPositiveDefinite() && cov2.isPositiveDefinite())) {
+				return getCriterionValue(config);
 			}
 			
-			return parentDet - Math.log(orig[feature][feature] - d);
+			// mu = 1/8 * mean^T . SigmaMix^-1 . mean + 1/2 * (ln|SigmaMix| - (ln|Sigma1| + ln|Sigma2|) / 2)
+			return quadratic / 8.0 + (covMix.getLogDeterminant() - (cov1.getLogDeterminant() + cov2.getLogDeterminant()) / 2.0) / 2.0;
 		}
 	}
 }
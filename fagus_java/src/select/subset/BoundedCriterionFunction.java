@@ -0,0 +1,24 @@
+package select.subset;
+
+/**
+ * This is a criterion function, which is able to stop the evaluation
+ * of a subset early, if its criterion value is certainly lower than a
+ * given bound. This is useful for search algorithms, which are only
+ * interested in the best of several subsets, and which know the best
+ * criterion value found so far.
+ * 
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public interface BoundedCriterionFunction extends CriterionFunction {
+
+	/**
+	 * Get the criterion for a subset of features, or an upper bound of
+	 * the criterion, which is lower than a given bound.
+	 * 
+	 * @param features the indices of the features in this subset.
+	 * @param bound the criterion value, the subset has to exceed.
+	 * @return either the exact criterion value, or an upper bound,
+	 *         which is lower than bound.
+	 */
+	BoundedValue getCriterionValue(int[] features, double bound);
+}
@@ -0,0 +1,17 @@
+package select.subset;
+
+/**
+ * The result of a bounded criterion function. If the evaluation was
+ * stopped early, the value is only an upper bound of the criterion.
+ * 
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public class BoundedValue {
+	public final double value;
+	public final boolean exact;
+	
+	public BoundedValue(double value, boolean exact) {
+		this.value = value;
+		this.exact = exact;
+	}
+}
@@ -0,0 +1,375 @@
+package select.subset;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import util.VectorSet;
+
+/**
+ * This criterion function caches the criterion values of another
+ * criterion function. Search algorithms like floating searches,
+ * the oscillating search or genetic algorithms evaluate the same
+ * subsets many times. The cache is keyed by the set of features,
+ * hence the order of the features in a subset does not matter.
+ *
+ * <br><br>
+ * The number of cached values is limited. The cache is split into
+ * segments, each of which has its own lock and evicts its least
+ * recently used values. The capacity is distributed over the segments,
+ * whose capacities differ by one value at most, hence a capacity below
+ * the number of segments leaves some segments without values. Several
+ * threads may use the cache concurrently. If two threads evaluate the
+ * same uncached subset at the same time, it is evaluated twice.
+ *
+ * <br><br>
+ * A cache is created by newInstance, which implements the same kinds
+ * of evaluation as the cached function, so that searches evaluate
+ * subsets the same way, whether the function is cached or not:
+ * <ul>
+ * <li>If the cached function is a RecursiveCriterionFunction, the
+ * states are passed on to it. They are neither looked up nor cached,
+ * since a search carrying states derives every state once. Batches are
+ * passed on, if it is a BatchCriterionFunction too.</li>
+ * <li>Otherwise, if it is a BoundedCriterionFunction, only exact
+ * values are cached. Bounds are preferred to batches, since they let
+ * a search stop evaluating subsets early.</li>
+ * <li>Otherwise, if it is a BatchCriterionFunction, batches are
+ * passed on to it without the cached subsets.</li>
+ * </ul>
+ * The cache is thread-safe, if the cached function is.
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public class CachingCriterionFunction implements ConcurrentCriterionFunction {
+	private static final int SEGMENTS = 16;
+
+	private final CriterionFunction f;
+	private final Segment[] segments;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Create a new cache, which only evaluates single subsets. See
+	 * newInstance for a cache of the same kind as the cached function.
+	 *
+	 * @param f the criterion function to cache.
+	 * @param capacity the maximum number of cached values.
+	 */
+	protected CachingCriterionFunction(CriterionFunction f, int capacity) {
+		this.f = f;
+		this.segments = new Segment[SEGMENTS];
+
+		for(int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment(capacity / SEGMENTS + (i < capacity % SEGMENTS ? 1 : 0));
+		}
+	}
+
+	/**
+	 * Create a new cache, which implements the same kinds of evaluation
+	 * as the cached function.
+	 *
+	 * @param f the criterion function to cache.
+	 * @param capacity the maximum number of cached values.
+	 * @return the cache.
+	 */
+	public static CachingCriterionFunction newInstance(CriterionFunction f, int capacity) {
+		if(f instanceof RecursiveCriterionFunction) {
+			if(f instanceof BatchCriterionFunction) {
+				return new RecursiveBatchCache((RecursiveCriterionFunction)f, capacity);
+			}
+
+			return new RecursiveCache((RecursiveCriterionFunction)f, capacity);
+		}
+
+		if(f instanceof BoundedCriterionFunction) {
+			return new BoundedCache((BoundedCriterionFunction)f, capacity);
+		}
+
+		if(f instanceof BatchCriterionFunction) {
+			return new BatchCache((BatchCriterionFunction)f, capacity);
+		}
+
+		return new CachingCriterionFunction(f, capacity);
+	}
+
+	/**
+	 * Initialize the cached function. This clears the cache and the
+	 * statistics.
+	 */
+	public void initialize(int dimension, VectorSet data) {
+		f.initialize(dimension, data);
+
+		for(Segment s: segments) {
+			synchronized(s) {
+				s.clear();
+			}
+		}
+
+		hits.set(0);
+		misses.set(0);
+	}
+
+	public double getCriterionValue() {
+		return f.getCriterionValue();
+	}
+
+	public double getCriterionValue(int[] features) {
+		BitSet key = getKey(features);
+		Double value = get(key);
+
+		if(value == null) {
+			value = f.getCriterionValue(features);
+			put(key, value);
+		}
+
+		return value;
+	}
+
+	/*
+	 * Get a cached value, or evaluate the subset with the given bound.
+	 */
+	BoundedValue getCachedValue(BoundedCriterionFunction f, int[] features, double bound) {
+		BitSet key = getKey(features);
+		Double value = get(key);
+
+		if(value != null) {
+			return new BoundedValue(value, true);
+		}
+
+		BoundedValue v = f.getCriterionValue(features, bound);
+
+		if(v.exact) {
+			put(key, v.value);
+		}
+
+		return v;
+	}
+
+	/*
+	 * Get the cached values of the subsets base + candidates, and
+	 * evaluate the others as a batch.
+	 */
+	void getCachedValues(BatchCriterionFunction f, int[] base, int[] candidates, double[] out) {
+		BitSet baseKey = getKey(base);
+		BitSet[] keys = new BitSet[candidates.length];
+		List<Integer> missing = new ArrayList<Integer>();
+
+		for(int i = 0; i < candidates.length; i++) {
+			keys[i] = (BitSet)baseKey.clone();
+			keys[i].set(candidates[i]);
+
+			Double value = get(keys[i]);
+
+			if(value == null) {
+				missing.add(i);
+			} else {
+				out[i] = value;
+			}
+		}
+
+		if(missing.isEmpty()) {
+			return;
+		}
+
+		int[] c = new int[missing.size()];
+		double[] values = new double[missing.size()];
+
+		for(int m = 0; m < c.length; m++) {
+			c[m] = candidates[missing.get(m)];
+		}
+
+		f.getCriterionValues(base, c, values);
+
+		for(int m = 0; m < c.length; m++) {
+			int i = missing.get(m);
+
+			out[i] = values[m];
+			put(keys[i], values[m]);
+		}
+	}
+
+	public boolean isThreadSafe() {
+		return f instanceof ConcurrentCriterionFunction &&
+			((ConcurrentCriterionFunction)f).isThreadSafe();
+	}
+
+	/**
+	 * Get the number of values found in the cache.
+	 * @return
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Get the number of values, that had to be computed.
+	 * @return
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Get the number of cached values.
+	 * @return
+	 */
+	public int size() {
+		int size = 0;
+
+		for(Segment s: segments) {
+			synchronized(s) {
+				size += s.size();
+			}
+		}
+
+		return size;
+	}
+
+
+	private static BitSet getKey(int[] features) {
+		BitSet key = new BitSet();
+
+		for(int i: features) {
+			key.set(i);
+		}
+
+		return key;
+	}
+
+	private Segment getSegment(BitSet key) {
+		int h = key.hashCode();
+
+		// spread the bits, since the hash code of a bit set is a xor of words
+		h ^= (h >>> 20) ^ (h >>> 12);
+		h ^= (h >>> 7) ^ (h >>> 4);
+
+		return segments[h & (SEGMENTS - 1)];
+	}
+
+	private Double get(BitSet key) {
+		Segment s = getSegment(key);
+		Double value;
+
+		synchronized(s) {
+			value = s.get(key);
+		}
+
+		if(value == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+
+		return value;
+	}
+
+	private void put(BitSet key, double value) {
+		Segment s = getSegment(key);
+
+		synchronized(s) {
+			s.put(key, value);
+		}
+	}
+
+
+	/*
+	 * A cache of a bounded criterion function.
+	 */
+	private static class BoundedCache extends CachingCriterionFunction implements BoundedCriterionFunction {
+		private final BoundedCriterionFunction f;
+
+		BoundedCache(BoundedCriterionFunction f, int capacity) {
+			super(f, capacity);
+			this.f = f;
+		}
+
+		public BoundedValue getCriterionValue(int[] features, double bound) {
+			return getCachedValue(f, features, bound);
+		}
+	}
+
+	/*
+	 * A cache of a batch criterion function.
+	 */
+	private static class BatchCache extends CachingCriterionFunction implements BatchCriterionFunction {
+		private final BatchCriterionFunction f;
+
+		BatchCache(BatchCriterionFunction f, int capacity) {
+			super(f, capacity);
+			this.f = f;
+		}
+
+		public void getCriterionValues(int[] base, int[] candidates, double[] out) {
+			getCachedValues(f, base, candidates, out);
+		}
+	}
+
+	/*
+	 * A cache of a recursive criterion function. The states are
+	 * passed on.
+	 */
+	private static class RecursiveCache extends CachingCriterionFunction implements RecursiveCriterionFunction {
+		private final RecursiveCriterionFunction f;
+
+		RecursiveCache(RecursiveCriterionFunction f, int capacity) {
+			super(f, capacity);
+			this.f = f;
+		}
+
+		public State getCriterionState() {
+			return f.getCriterionState();
+		}
+
+		public State getCriterionState(int feature, State parentState) {
+			return f.getCriterionState(feature, parentState);
+		}
+
+		public State getCriterionState(int[] features) {
+			return f.getCriterionState(features);
+		}
+
+		public State getExtendedCriterionState(int feature, State parentState) {
+			return f.getExtendedCriterionState(feature, parentState);
+		}
+	}
+
+	/*
+	 * A cache of a recursive criterion function, which evaluates
+	 * batches too.
+	 */
+	private static class RecursiveBatchCache extends RecursiveCache implements BatchCriterionFunction {
+		private final BatchCriterionFunction f;
+
+		RecursiveBatchCache(RecursiveCriterionFunction f, int capacity) {
+			super(f, capacity);
+			this.f = (BatchCriterionFunction)f;
+		}
+
+		public void getCriterionValues(int[] base, int[] candidates, double[] out) {
+			getCachedValues(f, base, candidates, out);
+		}
+	}
+
+	/*
+	 * A part of the cache, which removes its least recently used
+	 * value if it is full.
+	 */
+	private static class Segment extends LinkedHashMap<BitSet, Double> {
+		private static final long serialVersionUID = 1L;
+		private final int capacity;
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<BitSet, Double> eldest) {
+			return size() > capacity;
+		}
+	}
+}
@@ -5,50 +5,179 @@ import java.util.Map;
 
 import Jama.Matrix;
 
+import math.DenseSymmetricMatrix;
+import math.SymmetricMatrix;
+import math.SymmetricMatrixSum;
+import math.statistics.LazyCovarianceMatrix;
 import math.statistics.MaximumLikelihoodEstimation;
 import math.statistics.Scatter;
 import util.ClassDescriptor;
 import util.VectorSet;
 
-public class ChernoffCriterion implements CriterionFunction {
+/**
+ * The Chernoff criterion is the trace of the heteroscedastic Chernoff
+ * matrix of Loog and Duin, which generalizes the Fisher criterion to
+ * classes with different covariance matrices.
+ * 
+ * <br><br>
+ * The trace does not depend on the within-class scatter, which is
+ * used to whiten the class covariances. For classes i and j with
+ * the co-class scatter S_ij = (p_i S_i + p_j S_j) / (p_i + p_j) and
+ * the mean difference m_ij = m_i - m_j, it is
+ * <pre>
+ * sum_(i &lt; j) p_i p_j m_ij^T . S_ij^(-1) . m_ij
+ *            + (p_i + p_j) ln|S_ij| - p_i ln|S_i| - p_j ln|S_j|
+ * </pre>
+ * Hence, a subset is evaluated by one Cholesky decomposition of every
+ * class covariance, which is shared by all pairs of the class, and one
+ * of every co-class scatter, instead of the matrix square roots,
+ * logarithms and inverses of the Chernoff matrix. The pairs may be
+ * evaluated concurrently. The Chernoff matrix is only used, if some
+ * of the matrices is (nearly) singular for the subset.
+ * 
+ * <br><br>
+ * The recursive states hold the inverses and log determinants of
+ * the class covariances and the co-class scatters, and derive them
+ * from the parent state, see RecursiveInverse.
+ * 
+ * <br><br>
+ * The class covariances may be estimated on demand, see
+ * DeferredCriterionFunction. The co-class scatters are not stored
+ * in this case, but read from the class covariances.
+ * 
+ * <br><br>
+ * See M. Loog and R.P.W. Duin
+ *     "Linear Dimensionality Reduction via a Heteroscedastic Extension
+ *     of LDA: The Chernoff Criterion"
+ *     IEEE Transactions on Pattern Analysis and Machine Intelligence
+ *     Vol. 26, No. 6, pp. 732--739
+ *     IEEE, 2004
+ * 
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public class ChernoffCriterion implements ConcurrentCriterionFunction,
+		RecursiveCriterionFunction, DeferredCriterionFunction {
 	private int dimension;
 	private int nClasses;
 	private double[] p;
 	private double[][] mean;
-	private double[][][] covariance;
+	private SymmetricMatrix[] covariance;
+	private SymmetricMatrix[] coClassScatter; // S_ij for every pair i < j
+	private double[][] meanDifference;   // m_i - m_j for every pair i < j
+	private ClassPairMatrices matrices;
 	private int[] allFeatures;
+	private int threads = 1;
+	private int capacity = 0;
+	
+	/**
+	 * Set the number of threads used to evaluate the class pairs of a
+	 * subset. This pays off for many classes, unless the subsets are
+	 * already evaluated concurrently, e.g. by a NestedSubsetAlgorithm.
+	 * Deferred estimations use the threads as well.
+	 * 
+	 * @param threads the number of threads. The default is 1.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+	
+	public void setDeferredEstimation(int capacity) {
+		this.capacity = capacity;
+	}
 	
 	public double getCriterionValue() {
 		return getCriterionValue(allFeatures);
 	}
 
 	public double getCriterionValue(int[] features) {
-		double[][] mean1;
-		double[][][] cov1;
+		if(features.length == 0) {
+			return 0.0;
+		}
+		
+		ClassPairMatrices.Terms t = matrices.getTerms(features, threads);
+		
+		if(t == null) {
+			return getChernoffMatrixValue(features);
+		}
+		
+		return getChernoffCriterion(t);
+	}
+	
+	/*
+	 * sum_(i < j) p_i p_j m_ij^T . S_ij^(-1) . m_ij
+	 *            + (p_i + p_j) ln|S_ij| - p_i ln|S_i| - p_j ln|S_j|
+	 */
+	private double getChernoffCriterion(ClassPairMatrices.Terms t) {
+		double result = 0.0;
+		
+		for(int c1 = 0, i = 0; c1 < nClasses - 1; c1++) {
+			for(int c2 = c1 + 1; c2 < nClasses; c2++, i++) {
+				result += p[c1] * p[c2] * t.quadratic[i]
+					+ (p[c1] + p[c2]) * t.pairLogDeterminant[i]
+					- p[c1] * t.classLogDeterminant[c1]
+					- p[c2] * t.classLogDeterminant[c2];
+			}
+		}
+		
+		return result;
+	}
+	
+	/*
+	 * Get the trace of the Chernoff matrix, which also handles singular
+	 * matrices.
+	 */
+	private double getChernoffMatrixValue(int[] features) {
+		double[][] mean1 = new double[nClasses][features.length];
+		double[][][] cov1 = new double[nClasses][][];
 		
-		if(features.length < dimension) {
-			mean1 = new double[nClasses][features.length];
-			cov1 = new double[nClasses][features.length][features.length];
+		for(int c = 0; c < nClasses; c++) {
+			cov1[c] = covariance[c].getSubMatrix(features, features);
 			
-			for(int c = 0; c < nClasses; c++) {
-				for(int i = 0; i < features.length; i++) {
-					mean1[c][i] = mean[c][features[i]];
-					cov1[c][i][i] = covariance[c][i][i];
-					
-					for(int j = i + 1; j < features.length; j++) {
-						cov1[c][i][j] = cov1[c][j][i] = covariance[c][i][j];
-					}
-				}
+			for(int i = 0; i < features.length; i++) {
+				mean1[c][i] = mean[c][features[i]];
 			}
-		} else {
-			mean1 = mean;
-			cov1 = covariance;
 		}
 		double[][] chernoffMatrix = Scatter.getChernoffMatrix(cov1, mean1, p);
 		
 		return (new Matrix(chernoffMatrix)).trace();
 	}
 
+	/**
+	 * Get the initial state for recursive Branch &amp; Bound.
+	 */
+	public RecursiveCriterionFunction.State getCriterionState() {
+		return new ChernoffState(allFeatures);
+	}
+	
+	/**
+	 * Get a successor state for recursive Branch &amp; Bound.
+	 */
+	public RecursiveCriterionFunction.State getCriterionState(int feature, RecursiveCriterionFunction.State parentState) {
+		return new ChernoffState(feature, (ChernoffState)parentState);
+	}
+	
+	/**
+	 * Get the state for a subset, e.g. the initial candidate of a
+	 * forward search.
+	 */
+	public RecursiveCriterionFunction.State getCriterionState(int[] features) {
+		return new ChernoffState(features);
+	}
+	
+	/**
+	 * Get the state for the parent subset plus one feature.
+	 */
+	public RecursiveCriterionFunction.State getExtendedCriterionState(int feature, RecursiveCriterionFunction.State parentState) {
+		return new ChernoffState((ChernoffState)parentState, feature);
+	}
+	
+	/**
+	 * Always true. The class statistics are only read.
+	 */
+	public boolean isThreadSafe() {
+		return true;
+	}
+
 	public void initialize(int dimension, VectorSet data) {
 		this.dimension = dimension;
 		this.nClasses = data.getClassDescriptors().size();
@@ -57,20 +186,130 @@ public class ChernoffCriterion implements CriterionFunction {
 		
 		p = new double[nClasses];           // class propabilities
 		mean = new double[nClasses][];    // means
-		covariance = new double[nClasses][][]; // covariance matrices
+		covariance = new SymmetricMatrix[nClasses]; // covariance matrices
+		double[][][] cov = new double[nClasses][][];
 
 		int i = 0;
 		for(ClassDescriptor c: d.keySet()) {
 			p[i] = (double)d.get(c).size() / totalVectors;
 			mean[i] = MaximumLikelihoodEstimation.getMean(d.get(c), dimension);
-			covariance[i] = MaximumLikelihoodEstimation.getCovariance(d.get(c), mean[i]);
+			
+			if(capacity > 0) {
+				LazyCovarianceMatrix lazy = new LazyCovarianceMatrix(d.get(c), mean[i], capacity);
+				lazy.setThreads(threads);
+				covariance[i] = lazy;
+			} else {
+				cov[i] = MaximumLikelihoodEstimation.getCovariance(d.get(c), mean[i]);
+				covariance[i] = new DenseSymmetricMatrix(cov[i]);
+			}
 			i++;
 		}
 		
+		int pairs = nClasses * (nClasses - 1) / 2;
+		coClassScatter = new SymmetricMatrix[pairs];
+		meanDifference = new double[pairs][dimension];
+		
+		i = 0;
+		for(int c1 = 0; c1 < nClasses - 1; c1++) {
+			for(int c2 = c1 + 1; c2 < nClasses; c2++) {
+				if(capacity > 0) {
+					double u = p[c1] + p[c2];
+					
+					coClassScatter[i] = new SymmetricMatrixSum(new SymmetricMatrix[] {covariance[c1], covariance[c2]},
+							new double[] {p[c1] / u, p[c2] / u});
+				} else {
+					coClassScatter[i] = new DenseSymmetricMatrix(Scatter.getCoClassScatter(cov, p, c1, c2));
+				}
+				
+				for(int j = 0; j < dimension; j++) {
+					meanDifference[i][j] = mean[c1][j] - mean[c2][j];
+				}
+				i++;
+			}
+		}
+		
+		matrices = new ClassPairMatrices(covariance, coClassScatter, meanDifference);
+		
 		allFeatures = new int[dimension];
 		for(i = 0; i < dimension; i++) {
 			allFeatures[i] = i;
 		}
 	}
 
+	
+	/*
+	 * The state of a subset. If any of the matrices is singular for
+	 * the subset, the criterion value is computed from the Chernoff
+	 * matrix, and the states derived from this one start from scratch.
+	 */
+	private class ChernoffState implements RecursiveCriterionFunction.State {
+		private final ClassPairMatrices.Inverses inverses; // S_i and S_ij
+		private final double value;
+		private final int feature;
+		private final int addedFeature;
+		
+		/*
+		 * Get the state for a node with the given features present.
+		 */
+		public ChernoffState(int[] features) {
+			this.feature = -1;
+			this.addedFeature = -1;
+			
+			inverses = matrices.getInverses(features);
+			value = getChernoffCriterion();
+		}
+		
+		/*
+		 * Get the state for a child node.
+		 */
+		public ChernoffState(int feature, ChernoffState parentState) {
+			this.feature = feature;
+			this.addedFeature = -1;
+			
+			inverses = parentState.inverses.getReduced(feature);
+			value = getChernoffCriterion();
+		}
+		
+		/*
+		 * Get the state for the parent node extended by a feature.
+		 */
+		public ChernoffState(ChernoffState parentState, int feature) {
+			this.feature = -1;
+			this.addedFeature = feature;
+			
+			inverses = parentState.inverses.getExtended(feature);
+			value = getChernoffCriterion();
+		}
+		
+		public double getValue() {
+			return value;
+		}
+		
+		public int[] getConfig() {
+			return inverses.getConfig();
+		}
+		
+		public int getRemovedFeature() {
+			return feature;
+		}
+		
+		public int getAddedFeature() {
+			return addedFeature;
+		}
+		
+		private double getChernoffCriterion() {
+			int[] config = getConfig();
+			ClassPairMatrices.Terms t = inverses.getTerms();
+			
+			if(config.length == 0) {
+				return 0.0;
+			}
+			
+			if(t == null) {
+				return getCriterionValue(config);
+			}
+			
+			return ChernoffCriterion.this.getChernoffCriterion(t);
+		}
+	}
 }
@@ -0,0 +1,303 @@
+package select.subset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import math.BorderedCholesky;
+import math.RecursiveInverse;
+import math.SymmetricMatrix;
+import util.Parallel;
+
+/**
+ * The matrices of a criterion, which combines the log determinants of
+ * a matrix S_i of every class with the log determinants of a matrix
+ * S_ij of every pair of classes i &lt; j and the quadratic forms
+ * m_ij^T . S_ij^(-1) . m_ij of the mean differences, e.g. the
+ * ChernoffCriterion and the MulticlassBhattacharyyaDistance.
+ *
+ * <br><br>
+ * The terms of a subset are obtained by one Cholesky decomposition of
+ * every matrix, which may be computed concurrently, or recursively from
+ * the terms of a parent subset, see Inverses.
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+class ClassPairMatrices {
+	// the work k^3 per matrix times the number of matrices, below which
+	// passing them to other threads costs more than evaluating the subset
+	private static final double PARALLEL_WORK = 1e6;
+
+	private final SymmetricMatrix[] classes;  // S_i
+	private final SymmetricMatrix[] pairs;    // S_ij for every pair i < j
+	private final double[][] meanDifference;  // m_i - m_j for every pair i < j
+
+	/**
+	 * @param classes the matrix of every class.
+	 * @param pairs the matrix of every pair of classes, in the order
+	 *        c1 &lt; c2.
+	 * @param meanDifference the mean difference of every pair of classes.
+	 */
+	ClassPairMatrices(SymmetricMatrix[] classes, SymmetricMatrix[] pairs, double[][] meanDifference) {
+		this.classes = classes;
+		this.pairs = pairs;
+		this.meanDifference = meanDifference;
+	}
+
+	/**
+	 * Get the terms of a non-empty subset. The matrices are decomposed
+	 * concurrently, if the subset is large enough.
+	 *
+	 * @param features the subset.
+	 * @param threads the maximum number of threads.
+	 * @return the terms, or null if some matrix is (nearly) singular.
+	 */
+	Terms getTerms(int[] features, int threads) {
+		final int[] f = features;
+		List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>();
+
+		// ln|S_i| for every class
+		for(final SymmetricMatrix s: classes) {
+			tasks.add(new Callable<double[]>() {
+				public double[] call() {
+					return new double[] {getLogDeterminant(new BorderedCholesky(s, f))};
+				}
+			});
+		}
+
+		// m_ij^T . S_ij^(-1) . m_ij and ln|S_ij| for every pair
+		for(int i = 0; i < pairs.length; i++) {
+			final int pair = i;
+
+			tasks.add(new Callable<double[]>() {
+				public double[] call() {
+					BorderedCholesky s = new BorderedCholesky(pairs[pair], f);
+					double q = 0.0;
+
+					if(!s.isPositiveDefinite()) {
+						return new double[] {Double.NaN, Double.NaN};
+					}
+
+					// |L^(-1) . m_ij|^2
+					for(double x: s.solve(meanDifference[pair])) {
+						q += x * x;
+					}
+
+					return new double[] {q, getLogDeterminant(s)};
+				}
+			});
+		}
+
+		double k = features.length;
+		List<double[]> values = Parallel.invokeAll(tasks,
+				k * k * k * tasks.size() < PARALLEL_WORK ? 1 : threads);
+		Terms t = new Terms(classes.length, pairs.length);
+
+		for(int c = 0; c < classes.length; c++) {
+			t.classLogDeterminant[c] = values.get(c)[0];
+		}
+
+		for(int i = 0; i < pairs.length; i++) {
+			t.quadratic[i] = values.get(classes.length + i)[0];
+			t.pairLogDeterminant[i] = values.get(classes.length + i)[1];
+		}
+
+		return t.isFinite() ? t : null;
+	}
+
+	/**
+	 * Get the inverses of the matrices for a subset.
+	 *
+	 * @param features the subset.
+	 * @return
+	 */
+	Inverses getInverses(int[] features) {
+		RecursiveInverse[] c = new RecursiveInverse[classes.length];
+		RecursiveInverse[] p = new RecursiveInverse[pairs.length];
+
+		for(int i = 0; i < c.length; i++) {
+			c[i] = new RecursiveInverse(classes[i], features);
+		}
+
+		for(int i = 0; i < p.length; i++) {
+			p[i] = new RecursiveInverse(pairs[i], features);
+		}
+
+		return new Inverses(c, p, null);
+	}
+
+	/*
+	 * Get the log of the determinant of a decomposed matrix, or NaN if
+	 * the matrix is (nearly) singular.
+	 */
+	private static double getLogDeterminant(BorderedCholesky s) {
+		if(!s.isPositiveDefinite() || s.getMinimumPivot() < 10e-10) {
+			return Double.NaN;
+		}
+
+		return s.getLogDeterminant();
+	}
+
+
+	/**
+	 * The log determinants and quadratic forms of a subset.
+	 */
+	static class Terms {
+		/**
+		 * ln|S_i| for every class.
+		 */
+		final double[] classLogDeterminant;
+		/**
+		 * ln|S_ij| for every pair of classes.
+		 */
+		final double[] pairLogDeterminant;
+		/**
+		 * m_ij^T . S_ij^(-1) . m_ij for every pair of classes.
+		 */
+		final double[] quadratic;
+
+		private Terms(int nClasses, int nPairs) {
+			classLogDeterminant = new double[nClasses];
+			pairLogDeterminant = new double[nPairs];
+			quadratic = new double[nPairs];
+		}
+
+		private boolean isFinite() {
+			for(double[] values: new double[][] {classLogDeterminant, pairLogDeterminant, quadratic}) {
+				for(double x: values) {
+					if(Double.isNaN(x)) {
+						return false;
+					}
+				}
+			}
+
+			return true;
+		}
+	}
+
+	/**
+	 * The inverses of the matrices for a subset, which are derived from
+	 * the inverses of a parent subset, see RecursiveInverse. They are
+	 * the recursive states of a criterion.
+	 */
+	class Inverses {
+		private final RecursiveInverse[] classInverse; // S_i
+		private final RecursiveInverse[] pairInverse;  // S_ij
+		private final double[] quadratic;              // m_ij^T . S_ij^(-1) . m_ij
+
+		private Inverses(RecursiveInverse[] classInverse, RecursiveInverse[] pairInverse, double[] parentForms) {
+			this.classInverse = classInverse;
+			this.pairInverse = pairInverse;
+			this.quadratic = getQuadraticForms(parentForms);
+		}
+
+		/**
+		 * Get the inverses of the subset without a feature.
+		 *
+		 * @param feature a feature of the subset.
+		 * @return
+		 */
+		Inverses getReduced(int feature) {
+			RecursiveInverse[] c = new RecursiveInverse[classInverse.length];
+			RecursiveInverse[] p = new RecursiveInverse[pairInverse.length];
+
+			for(int i = 0; i < c.length; i++) {
+				c[i] = classInverse[i].getReduced(feature);
+			}
+
+			for(int i = 0; i < p.length; i++) {
+				p[i] = pairInverse[i].getReduced(feature);
+			}
+
+			return new Inverses(c, p, quadratic);
+		}
+
+		/**
+		 * Get the inverses of the subset with another feature.
+		 *
+		 * @param feature a feature not in the subset.
+		 * @return
+		 */
+		Inverses getExtended(int feature) {
+			RecursiveInverse[] c = new RecursiveInverse[classInverse.length];
+			RecursiveInverse[] p = new RecursiveInverse[pairInverse.length];
+
+			for(int i = 0; i < c.length; i++) {
+				c[i] = classInverse[i].getExtended(feature);
+			}
+
+			for(int i = 0; i < p.length; i++) {
+				p[i] = pairInverse[i].getExtended(feature);
+			}
+
+			return new Inverses(c, p, quadratic);
+		}
+
+		/**
+		 * Get the subset.
+		 * @return
+		 */
+		int[] getConfig() {
+			return classInverse[0].getConfig();
+		}
+
+		/**
+		 * Get the terms of the subset.
+		 *
+		 * @return the terms, or null if some matrix is (nearly) singular.
+		 *         The inverses derived from these start from scratch then.
+		 */
+		Terms getTerms() {
+			if(quadratic == null) {
+				return null;
+			}
+
+			Terms t = new Terms(classInverse.length, pairInverse.length);
+
+			for(int c = 0; c < classInverse.length; c++) {
+				t.classLogDeterminant[c] = classInverse[c].getLogDeterminant();
+			}
+
+			for(int i = 0; i < pairInverse.length; i++) {
+				t.pairLogDeterminant[i] = pairInverse[i].getLogDeterminant();
+				t.quadratic[i] = quadratic[i];
+			}
+
+			return t;
+		}
+
+		private boolean isPositiveDefinite() {
+			for(RecursiveInverse a: classInverse) {
+				if(!a.isPositiveDefinite()) {
+					return false;
+				}
+			}
+
+			for(RecursiveInverse a: pairInverse) {
+				if(!a.isPositiveDefinite()) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		private double[] getQuadraticForms(double[] parentForms) {
+			if(!isPositiveDefinite()) {
+				return null;
+			}
+
+			double[] q = new double[pairInverse.length];
+
+			for(int i = 0; i < pairInverse.length; i++) {
+				if(parentForms == null) {
+					q[i] = pairInverse[i].getQuadraticForm(meanDifference[i]);
+				} else {
+					q[i] = pairInverse[i].getQuadraticForm(meanDifference[i], parentForms[i]);
+				}
+			}
+
+			return q;
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package select.subset;
+
+/**
+ * This is a criterion function, which may be able to evaluate several
+ * subsets concurrently. Search algorithms only evaluate subsets in
+ * several threads, if isThreadSafe returns true.
+ * 
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public interface ConcurrentCriterionFunction extends CriterionFunction {
+
+	/**
+	 * Return, whether getCriterionValue(int[]) may be called by several
+	 * threads at the same time, once the function has been initialized.
+	 * 
+	 * @return true, if the function is thread-safe.
+	 */
+	boolean isThreadSafe();
+}
@@ -1,12 +1,18 @@
 package select.subset;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import reporting.ClassificationLogger;
 import reporting.TotalErrorReporter;
 import classify.Classifier;
+import classify.ClassifierFactory;
 import classify.CrossValidator;
+import classify.LeaveOneOutEstimator;
 import util.ClassDescriptor;
 import util.VectorSet;
 
@@ -14,66 +20,198 @@ import util.VectorSet;
  * This criterion function will run a cross validation procedure
  * using some classifier architecture to estimate the criterion value
  * of a subset of features.
- * 
+ *
+ * <br><br>
+ * If a bound is given, the Leave-One-Out procedure races against it.
+ * The samples are classified in a fixed random order. As soon as the
+ * number of errors shows, that the success rate cannot reach the bound
+ * any more, the procedure stops, and the success rate assuming that all
+ * remaining samples are classified correctly is returned. Optionally,
+ * a sequential test stops even earlier: after every batch of samples,
+ * the Hoeffding bound
+ * <pre>
+ * p + sqrt(log(b / delta) / 2m)
+ * </pre>
+ * of the success rate p observed on m samples is compared with the
+ * bound, where b is the number of batches. Then, a subset is rejected
+ * wrongly with a probability of at most delta. Classifiers providing a
+ * closed-form Leave-One-Out procedure are always evaluated completely,
+ * since they do not classify the samples one by one.
+ *
+ * <br><br>
+ * If the criterion is created with a ClassifierFactory, every subset
+ * is evaluated by a new classifier, and several subsets may be
+ * evaluated concurrently.
+ *
  * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
  */
-public class CrossValidationCriterion implements CriterionFunction {
+public class CrossValidationCriterion implements BoundedCriterionFunction,
+		ConcurrentCriterionFunction {
 	private VectorSet original;
+	private List<double[]> order;
 	private final Classifier classifier;
-	
+	private final ClassifierFactory factory;
+	private int batchSize = 10;
+	private double delta = 0.0;
+
 	public CrossValidationCriterion(Classifier classifier) {
 		this.classifier = classifier;
+		this.factory = null;
+	}
+
+	/**
+	 * Create a criterion, which is able to evaluate subsets concurrently.
+	 *
+	 * @param factory creates a new classifier for every subset.
+	 */
+	public CrossValidationCriterion(ClassifierFactory factory) {
+		this.classifier = null;
+		this.factory = factory;
+	}
+
+	/**
+	 * Set the number of samples classified between two sequential
+	 * tests. The default is 10.
+	 *
+	 * @param batchSize
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Set the error probability of the sequential test. A value of 0
+	 * disables the test, which is the default. Then, subsets are only
+	 * rejected, if they certainly cannot reach the bound.
+	 *
+	 * @param delta a value in [0,1).
+	 */
+	public void setSignificance(double delta) {
+		this.delta = delta;
 	}
-	
+
 	public double getCriterionValue() {
 		/*
 		 * Do a cross validation on the original data.
 		 */
-		return validate(original);
+		return validate(newClassifier(), original);
 	}
 
 	public double getCriterionValue(int[] features) {
-		/*
-		 * Extract the desired components of each vector and
-		 * create a new VectorSet. This resulting set is used
-		 * for cross-validation.
-		 */
+		return getCriterionValue(features, Double.NEGATIVE_INFINITY).value;
+	}
+
+	public BoundedValue getCriterionValue(int[] features, double bound) {
+		VectorSet vectors = extract(features);
+		Classifier cl = newClassifier();
+
+		if(cl instanceof LeaveOneOutEstimator &&
+				((LeaveOneOutEstimator)cl).canLeaveOneOut(vectors)) {
+			return new BoundedValue(validate(cl, vectors), true);
+		}
+
+		return race(cl, vectors, bound);
+	}
+
+	public boolean isThreadSafe() {
+		return factory != null;
+	}
+
+	public void initialize(int dimension, VectorSet data) {
+		this.original = data;
+		this.order = new ArrayList<double[]>(data.getData().keySet());
+
+		// errors should be spread evenly over the samples
+		Collections.shuffle(order, new Random(0));
+	}
+
+
+	/*
+	 * Extract the desired components of each vector and
+	 * create a new VectorSet. The vectors are kept in the
+	 * order, in which they are classified.
+	 */
+	private VectorSet extract(int[] features) {
 		Map<double[], ClassDescriptor> origData = original.getData();
 		String[] origLabels = original.getFeatureLables();
-		Map<double[], ClassDescriptor> newData = new HashMap<double[], ClassDescriptor>();
+		Map<double[], ClassDescriptor> newData = new LinkedHashMap<double[], ClassDescriptor>();
 		String[] newLabels = new String[features.length];
-		
-		for(double[] v: origData.keySet()) {
+
+		for(double[] v: order) {
 			double[] v1 = new double[features.length];
-			
+
 			for(int i = 0; i < features.length; i++) {
 				v1[i] = v[features[i]];
 			}
-			
+
 			newData.put(v1, origData.get(v));
 		}
-		
+
 		for(int i = 0; i < features.length; i++) {
 			newLabels[i] = origLabels[features[i]];
 		}
-		
-		return validate(new VectorSet(newData, newLabels));
+
+		return new VectorSet(newData, newLabels);
 	}
 
-	public void initialize(int dimension, VectorSet data) {
-		this.original = data;
+	private Classifier newClassifier() {
+		return factory != null ? factory.newInstance() : classifier;
 	}
-	
-	
-	private double validate(VectorSet vectors) {
+
+	private double validate(Classifier cl, VectorSet vectors) {
 		CrossValidator cv = new CrossValidator();
 		ClassificationLogger log = new ClassificationLogger();
 
-		cv.setClassifier(classifier);
+		cv.setClassifier(cl);
 		cv.setLogger(log);
 		cv.validate(vectors);
-		
-		return TotalErrorReporter.getSuccessRate(log);		
+
+		return TotalErrorReporter.getSuccessRate(log);
+	}
+
+	/*
+	 * Leave-One-Out, until the bound cannot be reached any more.
+	 */
+	private BoundedValue race(Classifier classifier, VectorSet vectors, double bound) {
+		Map<double[], ClassDescriptor> data = vectors.getData();
+		List<double[]> samples = new ArrayList<double[]>(data.keySet());
+		int n = samples.size();
+		int batches = (n + batchSize - 1) / batchSize;
+		int errors = 0;
+
+		for(int i = 0; i < n; i++) {
+			double[] v = samples.get(i);
+			Map<double[], ClassDescriptor> training = new LinkedHashMap<double[], ClassDescriptor>(data);
+
+			training.remove(v);
+			classifier.train(new VectorSet(training, vectors.getFeatureLables()));
+
+			if(!data.get(v).equals(classifier.classify(v))) {
+				errors++;
+
+				double upper = (double)(n - errors) / n;
+
+				if(upper < bound) {
+					classifier.clearTrainingData();
+					return new BoundedValue(upper, false);
+				}
+			}
+
+			int m = i + 1;
+
+			if(delta > 0.0 && m % batchSize == 0 && m < n) {
+				double upper = (double)(m - errors) / m + Math.sqrt(Math.log(batches / delta) / (2.0 * m));
+
+				if(upper < bound) {
+					classifier.clearTrainingData();
+					return new BoundedValue(upper, false);
+				}
+			}
+		}
+
+		classifier.clearTrainingData();
+
+		return new BoundedValue((double)(n - errors) / n, true);
 	}
 
 }
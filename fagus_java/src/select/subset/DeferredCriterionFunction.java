@@ -0,0 +1,24 @@
+package select.subset;
+
+/**
+ * This is a criterion function, which may estimate its matrices on
+ * demand, instead of estimating all d x d elements on initialization.
+ * This is meant for searches, which only explore a small part of many
+ * features, like forward selections. Searches, which start with all
+ * features, like Branch &amp; Bound, read the whole matrices anyway.
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public interface DeferredCriterionFunction extends CriterionFunction {
+
+	/**
+	 * Estimate the matrices on demand from the next initialization on.
+	 * The elements are estimated in blocks, see LazyCovarianceMatrix,
+	 * and a limited number of them is kept per matrix.
+	 *
+	 * @param capacity the maximum number of elements kept per matrix,
+	 *        or 0 to estimate the whole matrices on initialization,
+	 *        which is the default.
+	 */
+	void setDeferredEstimation(int capacity);
+}
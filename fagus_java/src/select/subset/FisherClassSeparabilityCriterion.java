@@ -1,11 +1,17 @@
 package select.subset;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import Jama.EigenvalueDecomposition;
 import Jama.Matrix;
 
+import math.BorderedCholesky;
+import math.DenseSymmetricMatrix;
+import math.RecursiveInverse;
+import math.SymmetricMatrix;
+import math.statistics.LazyCovarianceMatrix;
 import math.statistics.MaximumLikelihoodEstimation;
 import math.statistics.Scatter;
 
@@ -19,6 +25,39 @@ import util.VectorSet;
  * within-class scatter.
  * 
  * <br><br>
+ * The between-class scatter is the sum of the outer products of the
+ * vectors b_c = sqrt(p_c) * (m_c - m), hence
+ * <pre>
+ * trace(Sw^(-1) . Sb) = sum_c |L^(-1) . b_c|^2
+ * </pre>
+ * where Sw = L . L<sup>T</sup> is the Cholesky decomposition of the
+ * within-class scatter. A subset is evaluated by one decomposition and
+ * a forward substitution per class, which costs about
+ * k<sup>3</sup>/3 operations. Only if the within-class scatter is
+ * (nearly) singular, the criterion is computed by two eigenvalue
+ * decompositions, see getCriterionValue(int[]).
+ * 
+ * <br><br>
+ * Batches of subsets with a common base are evaluated by bordering
+ * the Cholesky decomposition of the within-class scatter of the base.
+ * Adding a feature to the base adds one
+ * element to each of the vectors L<sup>-1</sup> . b_c, which costs
+ * O(k<sup>2</sup>) instead of two eigenvalue decompositions. If the
+ * within-class scatter of a subset is singular, it is evaluated by the
+ * eigenvalue decompositions as well.
+ * 
+ * <br><br>
+ * The recursive states hold the inverse of the within-class scatter
+ * and the terms b_c<sup>T</sup> . Sw<sup>-1</sup> . b_c of the trace.
+ * Both are derived from the parent state, when a feature is removed or
+ * added, see RecursiveInverse.
+ * 
+ * <br><br>
+ * The between-class scatter only requires O(c d) memory in this form.
+ * The within-class scatter may be estimated on demand, see
+ * DeferredCriterionFunction.
+ * 
+ * <br><br>
  * See Chapter 10 "Feature Extraction and Linear Mapping for Classification"
  *     in K. Fukunaga
  *     "Introduction to statistical pattern recognition"
@@ -27,11 +66,17 @@ import util.VectorSet;
  * 
  * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
  */
-public class FisherClassSeparabilityCriterion implements CriterionFunction {
-	private double[][] scatterWithin;
-	private double[][] scatterBetween;
+public class FisherClassSeparabilityCriterion implements ConcurrentCriterionFunction,
+		BatchCriterionFunction, RecursiveCriterionFunction, DeferredCriterionFunction {
+	private SymmetricMatrix scatterWithin;
+	private double[][] between;
 	private int dimension;
 	private int[] allFeatures;
+	private int capacity = 0;
+	
+	public void setDeferredEstimation(int capacity) {
+		this.capacity = capacity;
+	}
 	
 	/**
 	 * Get the criterion value for all features used in the
@@ -45,25 +90,40 @@ public class FisherClassSeparabilityCriterion implements CriterionFunction {
 	 * Get the criterion value for a subset of features.
 	 */
 	public double getCriterionValue(int[] features) {
-		double[][] sw, sb;
+		BorderedCholesky w = new BorderedCholesky(scatterWithin, features);
 		
-		if(features.length < dimension) {
-			// create new scatter matrices, including the desired features only
-			sw = new double[features.length][features.length];
-			sb = new double[features.length][features.length];
-			
+		if(!w.isPositiveDefinite() || w.getMinimumPivot() < 10e-10) {
+			return getSingularCriterionValue(features);
+		}
+		
+		// J = sum_c |L^(-1) . b_c|^2
+		double result = 0.0;
+		
+		for(double[] b: between) {
+			for(double x: w.solve(b)) {
+				result += x * x;
+			}
+		}
+		
+		return result;
+	}
+	
+	/*
+	 * Get the criterion value for a subset of features, whose
+	 * within-class scatter may be singular.
+	 */
+	private double getSingularCriterionValue(int[] features) {
+		// create new scatter matrices, including the desired features only
+		double[][] sw = scatterWithin.getSubMatrix(features, features);
+		double[][] sb = new double[features.length][features.length];
+		
+		for(double[] b: between) {
 			for(int i = 0; i < features.length; i++) {
-				sw[i][i] = scatterWithin[features[i]][features[i]];
-				sb[i][i] = scatterBetween[features[i]][features[i]];
-				
-				for(int j = i + 1; j < features.length; j++) {
-					sw[i][j] = sw[j][i] = scatterWithin[features[i]][features[j]];
-					sb[i][j] = sb[j][i] = scatterBetween[features[i]][features[j]];
+				for(int j = i; j < features.length; j++) {
+					sb[i][j] += b[features[i]] * b[features[j]];
+					sb[j][i] = sb[i][j];
 				}
 			}
-		} else {
-			sw = scatterWithin;
-			sb = scatterBetween;
 		}
 
 		/*
@@ -134,7 +194,95 @@ public class FisherClassSeparabilityCriterion implements CriterionFunction {
 	}
 
 	/**
-	 * Initialize scatter matrices.
+	 * Get the criterion values of the subsets base + candidates[i].
+	 */
+	public void getCriterionValues(int[] base, int[] candidates, double[] out) {
+		BorderedCholesky w = new BorderedCholesky(scatterWithin, base);
+		
+		if(!w.isPositiveDefinite() || w.getMinimumPivot() < 10e-10) {
+			for(int i = 0; i < candidates.length; i++) {
+				out[i] = getSingularCriterionValue(append(base, candidates[i]));
+			}
+			return;
+		}
+		
+		// z_c = L^(-1) . b_c and the criterion of the base
+		double[][] z = new double[between.length][];
+		double value = 0.0;
+		
+		for(int c = 0; c < between.length; c++) {
+			z[c] = w.solve(between[c]);
+			
+			for(double x: z[c]) {
+				value += x * x;
+			}
+		}
+		
+		for(int i = 0; i < candidates.length; i++) {
+			int j = candidates[i];
+			double[] border = w.getBorder(j);
+			double d = w.getSchurComplement(j, border);
+			
+			if(d < 10e-10) {
+				out[i] = getSingularCriterionValue(append(base, j));
+				continue;
+			}
+			
+			d = Math.sqrt(d);
+			out[i] = value;
+			
+			for(int c = 0; c < between.length; c++) {
+				double u = between[c][j];
+				
+				for(int k = 0; k < border.length; k++) {
+					u -= border[k] * z[c][k];
+				}
+				
+				u /= d;
+				out[i] += u * u;
+			}
+		}
+	}
+	
+	/**
+	 * Get the initial state for recursive Branch &amp; Bound.
+	 */
+	public RecursiveCriterionFunction.State getCriterionState() {
+		return new FisherState(allFeatures);
+	}
+	
+	/**
+	 * Get a successor state for recursive Branch &amp; Bound.
+	 */
+	public RecursiveCriterionFunction.State getCriterionState(int feature, RecursiveCriterionFunction.State parentState) {
+		return new FisherState(feature, (FisherState)parentState);
+	}
+	
+	/**
+	 * Get the state for a subset, e.g. the initial candidate of a
+	 * forward search.
+	 */
+	public RecursiveCriterionFunction.State getCriterionState(int[] features) {
+		return new FisherState(features);
+	}
+	
+	/**
+	 * Get the state for the parent subset plus one feature.
+	 */
+	public RecursiveCriterionFunction.State getExtendedCriterionState(int feature, RecursiveCriterionFunction.State parentState) {
+		return new FisherState((FisherState)parentState, feature);
+	}
+	
+	/**
+	 * The scatter matrices are not modified after initialization.
+	 */
+	public boolean isThreadSafe() {
+		return true;
+	}
+
+	/**
+	 * Initialize scatter matrices. If the estimation is deferred, only
+	 * the class means are estimated here.
 	 */
 	public void initialize(int dimension, VectorSet data) {
 		this.dimension = dimension;
@@ -144,23 +292,156 @@ public class FisherClassSeparabilityCriterion implements CriterionFunction {
 		
 		double[] p = new double[nClasses];           // class propabilities
 		double[][] mean = new double[nClasses][];    // means
-		double[][][] cov = new double[nClasses][][]; // covariance matrices
+		List<List<double[]>> classes = new ArrayList<List<double[]>>();
 
 		int i = 0;
 		for(ClassDescriptor c: d.keySet()) {
 			p[i] = (double)d.get(c).size() / totalVectors;
 			mean[i] = MaximumLikelihoodEstimation.getMean(d.get(c), dimension);
-			cov[i] = MaximumLikelihoodEstimation.getCovariance(d.get(c), mean[i]);
+			classes.add(d.get(c));
 			i++;
 		}
 		
-		scatterWithin = Scatter.getWithinClassScatter(cov, p);
-		scatterBetween = Scatter.getBetweenClassScatter(mean, p);
+		if(capacity > 0) {
+			scatterWithin = new LazyCovarianceMatrix(classes, mean, p, capacity);
+		} else {
+			double[][][] cov = new double[nClasses][][]; // covariance matrices
+			
+			for(i = 0; i < nClasses; i++) {
+				cov[i] = MaximumLikelihoodEstimation.getCovariance(classes.get(i), mean[i]);
+			}
+			
+			scatterWithin = new DenseSymmetricMatrix(Scatter.getWithinClassScatter(cov, p));
+		}
+		
+		// Sb = sum_c b_c . b_c^T
+		double[] globalMean = new double[dimension];
+		between = new double[nClasses][dimension];
+		
+		for(int c = 0; c < nClasses; c++) {
+			for(int j = 0; j < dimension; j++) {
+				globalMean[j] += p[c] * mean[c][j];
+			}
+		}
+		
+		for(int c = 0; c < nClasses; c++) {
+			for(int j = 0; j < dimension; j++) {
+				between[c][j] = Math.sqrt(p[c]) * (mean[c][j] - globalMean[j]);
+			}
+		}
 		
 		allFeatures = new int[dimension];
 		for(i = 0; i < dimension; i++) {
 			allFeatures[i] = i;
 		}
 	}
+	
+	
+	private static int[] append(int[] base, int feature) {
+		int[] features = new int[base.length + 1];
+		
+		System.arraycopy(base, 0, features, 0, base.length);
+		features[base.length] = feature;
+		
+		return features;
+	}
 
+	
+	/*
+	 * The state of a subset. If the within-class scatter of the subset
+	 * is singular, the criterion value is computed by the eigenvalue
+	 * decompositions, and the states derived from this one start from
+	 * scratch.
+	 */
+	private class FisherState implements RecursiveCriterionFunction.State {
+		private final RecursiveInverse within;
+		private final double[] terms; // b_c^T . Sw^-1 . b_c
+		private final double value;
+		private final int feature;
+		private final int addedFeature;
+		
+		/*
+		 * Get the state for a node with the given features present.
+		 */
+		public FisherState(int[] features) {
+			this.feature = -1;
+			this.addedFeature = -1;
+			
+			within = new RecursiveInverse(scatterWithin, features);
+			terms = getTerms(null);
+			value = getFisherCriterion();
+		}
+		
+		/*
+		 * Get the state for a child node.
+		 */
+		public FisherState(int feature, FisherState parentState) {
+			this.feature = feature;
+			this.addedFeature = -1;
+			
+			within = parentState.within.getReduced(feature);
+			terms = getTerms(parentState.terms);
+			value = getFisherCriterion();
+		}
+		
+		/*
+		 * Get the state for the parent node extended by a feature.
+		 */
+		public FisherState(FisherState parentState, int feature) {
+			this.feature = -1;
+			this.addedFeature = feature;
+			
+			within = parentState.within.getExtended(feature);
+			terms = getTerms(parentState.terms);
+			value = getFisherCriterion();
+		}
+		
+		public double getValue() {
+			return value;
+		}
+		
+		public int[] getConfig() {
+			return within.getConfig();
+		}
+		
+		public int getRemovedFeature() {
+			return feature;
+		}
+		
+		public int getAddedFeature() {
+			return addedFeature;
+		}
+		
+		private double[] getTerms(double[] parentTerms) {
+			if(!within.isPositiveDefinite()) {
+				return null;
+			}
+			
+			double[] t = new double[between.length];
+			
+			for(int c = 0; c < between.length; c++) {
+				if(parentTerms == null) {
+					t[c] = within.getQuadraticForm(between[c]);
+				} else {
+					t[c] = within.getQuadraticForm(between[c], parentTerms[c]);
+				}
+			}
+			
+			return t;
+		}
+		
+		private double getFisherCriterion() {
+			if(terms == null) {
+				return getCriterionValue(within.getConfig());
+			}
+			
+			double sum = 0.0;
+			
+			for(double t: terms) {
+				sum += t;
+			}
+			
+			return sum;
+		}
+	}
 }
@@ -0,0 +1,387 @@
+package select.subset;
+
+import java.util.List;
+import java.util.Map;
+
+import Jama.EigenvalueDecomposition;
+import Jama.Matrix;
+
+import math.DenseSymmetricMatrix;
+import math.SymmetricMatrix;
+import math.SymmetricMatrixSum;
+import math.statistics.LazyCovarianceMatrix;
+import math.statistics.MaximumLikelihoodEstimation;
+import util.ClassDescriptor;
+import util.VectorSet;
+
+/**
+ * This is the Bhattacharyya distance for more than two classes. The
+ * distances of all pairs of classes are combined either by their sum,
+ * weighted by the class probabilities, or by their minimum, i.e. the
+ * distance of the least separable pair. For classes i and j with the
+ * mixture S_ij = (S_i + S_j) / 2 and the mean difference m_ij the
+ * pairwise distance is
+ * <pre>
+ * B_ij = 1/8 m_ij^T . S_ij^(-1) . m_ij
+ *        + 1/2 (ln|S_ij| - (ln|S_i| + ln|S_j|) / 2)
+ *
+ * J = sum_(i &lt; j) p_i p_j B_ij     or     J = min_(i &lt; j) B_ij
+ * </pre>
+ * Both are monotonic, so the criterion may be used with Branch &amp;
+ * Bound. For two classes, the minimum equals the BhattacharyyaDistance.
+ *
+ * <br><br>
+ * A subset is evaluated by one Cholesky decomposition of every class
+ * covariance, whose log determinant is shared by all pairs of the
+ * class, and one of every mixture. The pairs may be evaluated
+ * concurrently. If some matrix is (nearly) singular for the subset,
+ * the determinants and inverses are restricted to the non-zero
+ * eigenvalues instead.
+ *
+ * <br><br>
+ * The recursive states hold the inverses and log determinants of the
+ * class covariances and the mixtures, and derive them from the parent
+ * state, see RecursiveInverse.
+ *
+ * <br><br>
+ * If the covariance matrices are estimated on demand, see
+ * DeferredCriterionFunction, the mixtures are not stored, but read
+ * from the class covariances.
+ *
+ * <br><br>
+ * See Chapter 3.4 "Upper Bounds on the Bayes Error"
+ *     in K. Fukunaga
+ *     "Introduction to statistical pattern recognition"
+ *     2nd edition
+ *     Academic Press 1990
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public class MulticlassBhattacharyyaDistance implements RecursiveCriterionFunction,
+		ConcurrentCriterionFunction, DeferredCriterionFunction {
+	
+	/**
+	 * The ways of combining the pairwise distances.
+	 */
+	public static enum Combination {WEIGHTED_SUM, MINIMUM}
+	
+	private final Combination combination;
+	private int dimension;
+	private int nClasses;
+	private double[] p;
+	private SymmetricMatrix[] covariance;
+	private SymmetricMatrix[] mixture;   // S_ij for every pair i < j
+	private double[][] meanDifference;   // m_i - m_j for every pair i < j
+	private ClassPairMatrices matrices;
+	private int[] allFeatures;
+	private int threads = 1;
+	private int capacity = 0;
+	
+	/**
+	 * Create a criterion, which sums up the pairwise distances weighted
+	 * by p_i p_j.
+	 */
+	public MulticlassBhattacharyyaDistance() {
+		this(Combination.WEIGHTED_SUM);
+	}
+	
+	/**
+	 * Create a criterion with the given combination of the pairwise
+	 * distances.
+	 *
+	 * @param combination
+	 */
+	public MulticlassBhattacharyyaDistance(Combination combination) {
+		this.combination = combination;
+	}
+	
+	/**
+	 * Set the number of threads used to evaluate the class pairs of a
+	 * subset. Only subsets with enough features and classes are split,
+	 * and nested searches already evaluate their candidates concurrently.
+	 * Deferred estimations use the threads as well.
+	 *
+	 * @param threads the number of threads. The default is 1.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+	
+	public void setDeferredEstimation(int capacity) {
+		this.capacity = capacity;
+	}
+	
+	public double getCriterionValue() {
+		return getCriterionValue(allFeatures);
+	}
+	
+	public double getCriterionValue(int[] features) {
+		if(features.length == 0) {
+			return 0.0;
+		}
+		
+		ClassPairMatrices.Terms t = matrices.getTerms(features, threads);
+		
+		if(t == null) {
+			return getSingularCriterionValue(features);
+		}
+		
+		return getDistance(t);
+	}
+	
+	/**
+	 * Get the initial state for recursive Branch &amp; Bound.
+	 */
+	public RecursiveCriterionFunction.State getCriterionState() {
+		return new BhattacharyyaState(allFeatures);
+	}
+	
+	/**
+	 * Get a successor state for recursive Branch &amp; Bound.
+	 */
+	public RecursiveCriterionFunction.State getCriterionState(int feature, RecursiveCriterionFunction.State parentState) {
+		return new BhattacharyyaState(feature, (BhattacharyyaState)parentState);
+	}
+	
+	/**
+	 * Get the state for a subset, e.g. the initial candidate of a
+	 * forward search.
+	 */
+	public RecursiveCriterionFunction.State getCriterionState(int[] features) {
+		return new BhattacharyyaState(features);
+	}
+	
+	/**
+	 * Get the state for the parent subset plus one feature.
+	 */
+	public RecursiveCriterionFunction.State getExtendedCriterionState(int feature, RecursiveCriterionFunction.State parentState) {
+		return new BhattacharyyaState((BhattacharyyaState)parentState, feature);
+	}
+	
+	/**
+	 * Always true. The class statistics are only read.
+	 */
+	public boolean isThreadSafe() {
+		return true;
+	}
+	
+	public void initialize(int dimension, VectorSet data) {
+		this.dimension = dimension;
+		this.nClasses = data.getClassDescriptors().size();
+		int totalVectors = data.getData().size();
+		Map<ClassDescriptor, List<double[]>> d = data.getInvertedData();
+		double[][] mean = new double[nClasses][];
+		
+		allFeatures = new int[dimension];
+		for(int i = 0; i < dimension; i++) {
+			allFeatures[i] = i;
+		}
+		
+		p = new double[nClasses];
+		covariance = new SymmetricMatrix[nClasses];
+		
+		int i = 0;
+		for(ClassDescriptor c: d.keySet()) {
+			p[i] = (double)d.get(c).size() / totalVectors;
+			mean[i] = MaximumLikelihoodEstimation.getMean(d.get(c), dimension);
+			
+			if(capacity > 0) {
+				LazyCovarianceMatrix cov = new LazyCovarianceMatrix(d.get(c), mean[i], capacity);
+				cov.setThreads(threads);
+				covariance[i] = cov;
+			} else {
+				covariance[i] = new DenseSymmetricMatrix(MaximumLikelihoodEstimation.getCovariance(d.get(c), mean[i]));
+			}
+			i++;
+		}
+		
+		int pairs = nClasses * (nClasses - 1) / 2;
+		mixture = new SymmetricMatrix[pairs];
+		meanDifference = new double[pairs][dimension];
+		
+		i = 0;
+		for(int c1 = 0; c1 < nClasses - 1; c1++) {
+			for(int c2 = c1 + 1; c2 < nClasses; c2++) {
+				for(int j = 0; j < dimension; j++) {
+					meanDifference[i][j] = mean[c1][j] - mean[c2][j];
+				}
+				
+				mixture[i] = new SymmetricMatrixSum(new SymmetricMatrix[] {covariance[c1], covariance[c2]},
+						new double[] {0.5, 0.5});
+				
+				// the mixture is stored, unless the estimation is deferred
+				if(capacity == 0) {
+					mixture[i] = new DenseSymmetricMatrix(mixture[i].getSubMatrix(allFeatures, allFeatures));
+				}
+				i++;
+			}
+		}
+		
+		matrices = new ClassPairMatrices(covariance, mixture, meanDifference);
+	}
+
+	
+	/*
+	 * Combine the pairwise distances, in the order c1 < c2.
+	 */
+	private double combine(double[] distance) {
+		double result = combination == Combination.MINIMUM ? Double.POSITIVE_INFINITY : 0.0;
+		
+		for(int c1 = 0, i = 0; c1 < nClasses - 1; c1++) {
+			for(int c2 = c1 + 1; c2 < nClasses; c2++, i++) {
+				if(combination == Combination.MINIMUM) {
+					result = Math.min(result, distance[i]);
+				} else {
+					result += p[c1] * p[c2] * distance[i];
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	/*
+	 * B_ij = 1/8 m_ij^T . S_ij^(-1) . m_ij + 1/2 (ln|S_ij| - (ln|S_i| + ln|S_j|) / 2)
+	 * for every pair, combined.
+	 */
+	private double getDistance(ClassPairMatrices.Terms t) {
+		double[] distance = new double[mixture.length];
+		
+		for(int c1 = 0, i = 0; c1 < nClasses - 1; c1++) {
+			for(int c2 = c1 + 1; c2 < nClasses; c2++, i++) {
+				distance[i] = t.quadratic[i] / 8.0 + (t.pairLogDeterminant[i]
+					- (t.classLogDeterminant[c1] + t.classLogDeterminant[c2]) / 2.0) / 2.0;
+			}
+		}
+		
+		return combine(distance);
+	}
+	
+	/*
+	 * Get the criterion value for a subset, for which some matrix is
+	 * singular. The log determinants are the sums of the logs of the
+	 * non-zero eigenvalues, and the inverses are pseudo-inverses.
+	 */
+	private double getSingularCriterionValue(int[] features) {
+		double[] logDet = new double[nClasses];
+		double[] distance = new double[mixture.length];
+		
+		for(int c = 0; c < nClasses; c++) {
+			EigenvalueDecomposition eig = new EigenvalueDecomposition(getSubMatrix(features, covariance[c]));
+			
+			for(double lambda: eig.getRealEigenvalues()) {
+				if(lambda >= 10e-10) {
+					logDet[c] += Math.log(lambda);
+				}
+			}
+		}
+		
+		for(int c1 = 0, i = 0; c1 < nClasses - 1; c1++) {
+			for(int c2 = c1 + 1; c2 < nClasses; c2++, i++) {
+				EigenvalueDecomposition eig = new EigenvalueDecomposition(getSubMatrix(features, mixture[i]));
+				double[] eigenvalues = eig.getRealEigenvalues();
+				double[][] eigenvectors = eig.getV().getArray();
+				double q = 0.0;
+				double lnMix = 0.0;
+				
+				for(int j = 0; j < eigenvalues.length; j++) {
+					if(eigenvalues[j] >= 10e-10) {
+						double u = 0.0;
+						
+						for(int k = 0; k < features.length; k++) {
+							u += eigenvectors[k][j] * meanDifference[i][features[k]];
+						}
+						
+						q += u * u / eigenvalues[j];
+						lnMix += Math.log(eigenvalues[j]);
+					}
+				}
+				
+				distance[i] = q / 8.0 + (lnMix - (logDet[c1] + logDet[c2]) / 2.0) / 2.0;
+			}
+		}
+		
+		return combine(distance);
+	}
+	
+	private static Matrix getSubMatrix(int[] features, SymmetricMatrix orig) {
+		return new Matrix(orig.getSubMatrix(features, features));
+	}
+
+	
+	/*
+	 * The state of a subset. If any of the matrices is singular for
+	 * the subset, the criterion value is computed from scratch, and the
+	 * states derived from this one start from scratch.
+	 */
+	private class BhattacharyyaState implements RecursiveCriterionFunction.State {
+		private final ClassPairMatrices.Inverses inverses; // S_i and S_ij
+		private final double value;
+		private final int feature;
+		private final int addedFeature;
+		
+		/*
+		 * Get the state for a node with the given features present.
+		 */
+		public BhattacharyyaState(int[] features) {
+			this.feature = -1;
+			this.addedFeature = -1;
+			
+			inverses = matrices.getInverses(features);
+			value = getDistance();
+		}
+		
+		/*
+		 * Get the state for a child node.
+		 */
+		public BhattacharyyaState(int feature, BhattacharyyaState parentState) {
+			this.feature = feature;
+			this.addedFeature = -1;
+			
+			inverses = parentState.inverses.getReduced(feature);
+			value = getDistance();
+		}
+		
+		/*
+		 * Get the state for the parent node extended by a feature.
+		 */
+		public BhattacharyyaState(BhattacharyyaState parentState, int feature) {
+			this.feature = -1;
+			this.addedFeature = feature;
+			
+			inverses = parentState.inverses.getExtended(feature);
+			value = getDistance();
+		}
+		
+		public double getValue() {
+			return value;
+		}
+		
+		public int[] getConfig() {
+			return inverses.getConfig();
+		}
+		
+		public int getRemovedFeature() {
+			return feature;
+		}
+		
+		public int getAddedFeature() {
+			return addedFeature;
+		}
+		
+		private double getDistance() {
+			int[] config = getConfig();
+			ClassPairMatrices.Terms t = inverses.getTerms();
+			
+			if(config.length == 0) {
+				return 0.0;
+			}
+			
+			if(t == null) {
+				return getCriterionValue(config);
+			}
+			
+			return MulticlassBhattacharyyaDistance.this.getDistance(t);
+		}
+	}
+}
@@ -3,6 +3,12 @@ package select.subset;
 /**
  * Criterion Function for use in recursive Branch \& Bound.
  * 
+ * <br><br>
+ * The states may also be extended by a feature, so that forward
+ * searches can carry the state of their candidate subset along, and
+ * derive the state of every candidate from it, instead of evaluating
+ * each candidate from scratch.
+ * 
  * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
  */
 public interface RecursiveCriterionFunction extends CriterionFunction {
@@ -26,6 +32,27 @@ public interface RecursiveCriterionFunction extends CriterionFunction {
 	 */
 	public State getCriterionState(int feature, State parentState);
 	
+	/**
+	 * Get the criterion state for an arbitrary subset of features.
+	 * This is the starting point of a forward search, hence the
+	 * subset may be empty.
+	 * 
+	 * @param features the indices of the features in the subset.
+	 * @return
+	 */
+	public State getCriterionState(int[] features);
+	
+	/**
+	 * Get the new state by means of the old state, with one more
+	 * feature.
+	 * 
+	 * @param feature the index of the feature to add to the
+	 * parent state.
+	 * @param parentState
+	 * @return
+	 */
+	public State getExtendedCriterionState(int feature, State parentState);
+	
 	/**
 	 * This interface acts as a data structure to hold the state
 	 * of the criterion function.
@@ -48,10 +75,18 @@ public interface RecursiveCriterionFunction extends CriterionFunction {
 		
 		/**
 		 * Get the feature that was removed from parent while creating
-		 * this node. If the current node is the root, a negative value
-		 * will be returned.
+		 * this node. If the current node is the root, or was created by
+		 * adding a feature, a negative value will be returned.
 		 * @return
 		 */
 		int getRemovedFeature();
+		
+		/**
+		 * Get the feature that was added to the parent while creating
+		 * this node. If the current node was not created by adding a
+		 * feature, a negative value will be returned.
+		 * @return
+		 */
+		int getAddedFeature();
 	}
 }
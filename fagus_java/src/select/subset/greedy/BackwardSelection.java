@@ -34,7 +34,7 @@ public class BackwardSelection extends NestedSubsetAlgorithm {
 		}
 		
 		for(int i = candidate.size(); i > targetSize; i--) {
-			worst = GreedySelection.getWorstFeature(f, candidate, selectionComparator);
+			worst = GreedySelection.getWorstFeature(f, candidate, selectionComparator, threads);
 			candidateValue = worst.value;
 			candidate.remove(worst.index);
 			addToFeatureSpace(worst.index);
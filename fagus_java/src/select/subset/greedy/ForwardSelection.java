@@ -3,12 +3,18 @@ package select.subset.greedy;
 import java.util.ArrayList;
 
 import select.subset.CriterionFunction;
+import select.subset.RecursiveCriterionFunction;
 
 /**
  * This is a greedy algorithm for feature subset selection. It 
  * starts with an empty subset and subsequently adds the feature,
  * that improves the criterion by the highest amount.
  * 
+ * <br><br>
+ * If the criterion function is a RecursiveCriterionFunction, the
+ * state of the candidate is carried along, and every step extends it
+ * by one feature. Batches are not used then, see GreedySelection.
+ * 
  * See Chapter 10.5 "Feature Subset Selection" 
  *     in K. Fukunaga
  *     "Introduction to statistical pattern recognition"
@@ -27,8 +33,11 @@ public class ForwardSelection extends NestedSubsetAlgorithm {
 			// no need to reduce feature space, since the candidate is empty
 		}
 		
+		RecursiveCriterionFunction.State state = GreedySelection.getCriterionState(f, candidate);
+		
 		for(int i = candidate.size(); i < targetSize; i++) {
-			best = GreedySelection.getBestFeature(f, features, candidate, selectionComparator);
+			best = GreedySelection.getBestFeature(f, features, candidate, state, selectionComparator, threads);
+			state = best.state;
 			candidateValue = best.value;
 			candidate.add(best.index);
 			removeFromFeatureSpace(best.index);
@@ -1,10 +1,58 @@
 package select.subset.greedy;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
 
+import select.subset.BatchCriterionFunction;
+import select.subset.BoundedCriterionFunction;
+import select.subset.BoundedValue;
+import select.subset.ConcurrentCriterionFunction;
 import select.subset.CriterionFunction;
+import select.subset.RecursiveCriterionFunction;
+import util.Parallel;
 
-
+/**
+ * Static methods to find the best feature to add to a subset, or the
+ * worst feature to remove from a subset.
+ * 
+ * <br><br>
+ * If the criterion function is thread-safe, the candidates may be
+ * evaluated concurrently. Every candidate subset has its own buffer.
+ * The best candidate is chosen afterwards by the SelectionComparator,
+ * in the same order as in the sequential case, hence the result does
+ * not depend on the number of threads. A bounded criterion function
+ * may stop the evaluation of a candidate, as soon as it falls below
+ * the value of any candidate evaluated before. When adding a feature,
+ * a batch criterion function evaluates all candidates with the same
+ * base subset at once, split into one batch per thread.
+ * 
+ * <br><br>
+ * If the search carries the recursive state of its current subset,
+ * the states of the candidates are derived from it, and the state of
+ * the chosen candidate is returned along with its value. This is the
+ * cheapest way to evaluate a candidate, if the criterion function is
+ * a RecursiveCriterionFunction.
+ *
+ * <br><br>
+ * Hence, there are two incremental ways to add a feature, and the
+ * search decides which one applies by passing a state or not:
+ * <ul>
+ * <li>A search, which carries states, extends the state of its subset
+ * by every candidate, also if the criterion function evaluates
+ * batches. No subset is decomposed from scratch then, and the next
+ * remove step derives its candidates from the chosen state, too.
+ * ForwardSelection and the SequentialForwardFloatingSearch carry
+ * states.</li>
+ * <li>A search without states evaluates the candidates as a batch,
+ * which decomposes the base once per step. The
+ * SequentialBackwardFloatingSearch adds features this way.</li>
+ * </ul>
+ * 
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
 public class GreedySelection {
 
 	/**
@@ -16,26 +64,60 @@ public class GreedySelection {
 	 * @return
 	 */
 	public static IndexValue getBestFeature(CriterionFunction f, Iterable<Integer> available, Collection<Integer> current, SelectionComparator selectionComparator) {
+		return getBestFeature(f, available, current, selectionComparator, 1);
+	}
+	
+	/**
+	 * Get the best features from a list of available features.
+	 * 
+	 * @param f a criterion function to meassure the effectiveness.
+	 * @param available a list of available features.
+	 * @param current a list of currently used features.
+	 * @param threads the number of threads used to evaluate candidates.
+	 * @return
+	 */
+	public static IndexValue getBestFeature(CriterionFunction f, Iterable<Integer> available, Collection<Integer> current, SelectionComparator selectionComparator, int threads) {
 		double best = Double.NEGATIVE_INFINITY;
 		Integer bestIndex = -1;
+		List<Integer> candidates = new ArrayList<Integer>();
+		List<BoundedValue> values;
+		
+		int[] base = new int[current.size()];
 		
-		// copy current best feature to new experiment vector
-		// leaving the last element empty
-		int[] vec = new int[current.size() + 1];
-
 		int i = 0;
-		for(Integer j: current) {
-			vec[i++] = j;
+		for(Integer k: current) {
+			base[i++] = k;
 		}
 		
 		for(Integer j: available) {
-			// insert j at the last position in the vector
-			vec[vec.length - 1] = j;
+			candidates.add(j);
+		}
+		
+		if(f instanceof BatchCriterionFunction) {
+			values = evaluate((BatchCriterionFunction)f, base, candidates, threads);
+		} else {
+			// copy current best feature to new experiment vectors
+			// and insert the candidate at the last position
+			List<int[]> subsets = new ArrayList<int[]>();
 			
-			double v = f.getCriterionValue(vec);
+			for(Integer j: candidates) {
+				int[] vec = new int[base.length + 1];
+				
+				System.arraycopy(base, 0, vec, 0, base.length);
+				vec[vec.length - 1] = j;
+				
+				subsets.add(vec);
+			}
+			
+			values = evaluate(f, subsets, threads);
+		}
+		
+		for(i = 0; i < candidates.size(); i++) {
+			Integer j = candidates.get(i);
+			BoundedValue v = values.get(i);
 			
-			if(selectionComparator.compare(j.intValue(), v, bestIndex.intValue(), best) > 0) {
-				best = v;
+			if(v.exact && selectionComparator.compare(j.intValue(), v.value, bestIndex.intValue(), best) > 0) {
+				best = v.value;
 				bestIndex = j;
 			}
 		}
@@ -44,6 +126,61 @@ public class GreedySelection {
 	}
 
 	
+	/**
+	 * Get the best features from a list of available features. If a
+	 * state of the current features is given, the states of the
+	 * candidates are derived from it, even if the criterion function
+	 * evaluates batches too. Otherwise, batches are preferred.
+	 * 
+	 * @param f a criterion function to meassure the effectiveness.
+	 * @param available a list of available features.
+	 * @param current a list of currently used features.
+	 * @param state the state of the current features, as returned by
+	 *        getCriterionState(f, current), or null.
+	 * @param threads the number of threads used to evaluate candidates.
+	 * @return the best feature, with the state of the extended subset,
+	 *         if a state was given.
+	 */
+	public static IndexValue getBestFeature(CriterionFunction f, Iterable<Integer> available, Collection<Integer> current, RecursiveCriterionFunction.State state, SelectionComparator selectionComparator, int threads) {
+		if(state == null) {
+			return getBestFeature(f, available, current, selectionComparator, threads);
+		}
+		
+		final RecursiveCriterionFunction r = (RecursiveCriterionFunction)f;
+		final RecursiveCriterionFunction.State parent = state;
+		List<Callable<RecursiveCriterionFunction.State>> tasks = new ArrayList<Callable<RecursiveCriterionFunction.State>>();
+		
+		for(final Integer j: available) {
+			// a state cannot be extended by a feature it already contains
+			if(current.contains(j)) {
+				continue;
+			}
+			
+			tasks.add(new Callable<RecursiveCriterionFunction.State>() {
+				public RecursiveCriterionFunction.State call() {
+					return r.getExtendedCriterionState(j, parent);
+				}
+			});
+		}
+		
+		double best = Double.NEGATIVE_INFINITY;
+		Integer bestIndex = -1;
+		RecursiveCriterionFunction.State bestState = null;
+		
+		for(RecursiveCriterionFunction.State child: evaluate(r, tasks, threads)) {
+			int j = child.getAddedFeature();
+			
+			if(selectionComparator.compare(j, child.getValue(), bestIndex.intValue(), best) > 0) {
+				best = child.getValue();
+				bestIndex = j;
+				bestState = child;
+			}
+		}
+		
+		return new IndexValue(best, bestIndex, bestState);
+	}
+
+	
 	/**
 	 * Search for the worst feature, according to some criterion function, from
 	 * a set of features.
@@ -53,10 +190,23 @@ public class GreedySelection {
 	 * @return
 	 */
 	public static IndexValue getWorstFeature(CriterionFunction f, Collection<Integer> current, SelectionComparator selectionComparator) {
+		return getWorstFeature(f, current, selectionComparator, 1);
+	}
+	
+	/**
+	 * Search for the worst feature, according to some criterion function, from
+	 * a set of features.
+	 * 
+	 * @param f 
+	 * @param current
+	 * @param threads the number of threads used to evaluate candidates.
+	 * @return
+	 */
+	public static IndexValue getWorstFeature(CriterionFunction f, Collection<Integer> current, SelectionComparator selectionComparator, int threads) {
 		double worst = Double.NEGATIVE_INFINITY;
 		int worstIndex = -1;
 		int[] all = new int[current.size()];
-		int[] vec = new int[current.size() - 1];
+		List<int[]> subsets = new ArrayList<int[]>();
 		
 		int j = 0;
 		for(Integer i: current) {
@@ -64,32 +214,208 @@ public class GreedySelection {
 		}
 		
 		for(int i = 0; i < current.size(); i++) {
+			int[] vec = new int[current.size() - 1];
+			
 			System.arraycopy(all, 0, vec, 0, i);
 			System.arraycopy(all, i+1, vec, i, current.size()-i-1);
+			
+			subsets.add(vec);
+		}
 		
-			double v = f.getCriterionValue(vec);
+		List<BoundedValue> values = evaluate(f, subsets, threads);
+		
+		for(int i = 0; i < current.size(); i++) {
+			BoundedValue v = values.get(i);
 			
 			int w = -1;
 			if(worstIndex >= 0) {
 				w = all[worstIndex];
 			}
 			
-			if(selectionComparator.compare(all[i], v, w, worst) > 0) {
+			if(v.exact && selectionComparator.compare(all[i], v.value, w, worst) > 0) {
 				worstIndex = i;
-				worst = v;
+				worst = v.value;
 			}
 		}
 		
 		return new IndexValue(worst, new Integer(all[worstIndex]));
 	}
 	
+	/**
+	 * Search for the worst feature, according to some criterion function, from
+	 * a set of features. If a state of the set is given, the states of the
+	 * candidates are derived from it.
+	 * 
+	 * @param f 
+	 * @param current
+	 * @param state the state of the current features, or null.
+	 * @param threads the number of threads used to evaluate candidates.
+	 * @return the worst feature, with the state of the reduced subset,
+	 *         if a state was given.
+	 */
+	public static IndexValue getWorstFeature(CriterionFunction f, Collection<Integer> current, RecursiveCriterionFunction.State state, SelectionComparator selectionComparator, int threads) {
+		if(state == null) {
+			return getWorstFeature(f, current, selectionComparator, threads);
+		}
+		
+		final RecursiveCriterionFunction r = (RecursiveCriterionFunction)f;
+		final RecursiveCriterionFunction.State parent = state;
+		List<Callable<RecursiveCriterionFunction.State>> tasks = new ArrayList<Callable<RecursiveCriterionFunction.State>>();
+		
+		for(final Integer i: current) {
+			tasks.add(new Callable<RecursiveCriterionFunction.State>() {
+				public RecursiveCriterionFunction.State call() {
+					return r.getCriterionState(i, parent);
+				}
+			});
+		}
+		
+		double worst = Double.NEGATIVE_INFINITY;
+		int worstIndex = -1;
+		RecursiveCriterionFunction.State worstState = null;
+		
+		for(RecursiveCriterionFunction.State child: evaluate(r, tasks, threads)) {
+			int i = child.getRemovedFeature();
+			
+			if(selectionComparator.compare(i, child.getValue(), worstIndex, worst) > 0) {
+				worst = child.getValue();
+				worstIndex = i;
+				worstState = child;
+			}
+		}
+		
+		return new IndexValue(worst, worstIndex, worstState);
+	}
+	
+	/**
+	 * Get the state of a subset, if the criterion function is a
+	 * RecursiveCriterionFunction. Searches may pass it to
+	 * getBestFeature and getWorstFeature, and continue with the
+	 * state of the chosen candidate.
+	 * 
+	 * @param f
+	 * @param current
+	 * @return the state, or null if the criterion function has none.
+	 */
+	public static RecursiveCriterionFunction.State getCriterionState(CriterionFunction f, Collection<Integer> current) {
+		if(!(f instanceof RecursiveCriterionFunction)) {
+			return null;
+		}
+		
+		int[] features = new int[current.size()];
+		
+		int i = 0;
+		for(Integer k: current) {
+			features[i++] = k;
+		}
+		
+		return ((RecursiveCriterionFunction)f).getCriterionState(features);
+	}
+	
+	
+	/*
+	 * Evaluate all subsets, concurrently if the criterion function is
+	 * thread-safe. A bounded criterion function may stop early, if the
+	 * subset cannot beat the best one evaluated so far. Such a subset
+	 * would lose the comparison anyway, as long as the selection
+	 * comparator never prefers a strictly lower criterion value.
+	 */
+	private static List<BoundedValue> evaluate(final CriterionFunction f, List<int[]> subsets, int threads) {
+		final AtomicLong best = new AtomicLong(Double.doubleToLongBits(Double.NEGATIVE_INFINITY));
+		List<Callable<BoundedValue>> tasks = new ArrayList<Callable<BoundedValue>>();
+		
+		for(final int[] vec: subsets) {
+			tasks.add(new Callable<BoundedValue>() {
+				public BoundedValue call() {
+					if(!(f instanceof BoundedCriterionFunction)) {
+						return new BoundedValue(f.getCriterionValue(vec), true);
+					}
+					
+					double bound = Double.longBitsToDouble(best.get());
+					BoundedValue v = ((BoundedCriterionFunction)f).getCriterionValue(vec, bound);
+					
+					// raise the bound for the remaining subsets
+					while(v.exact && v.value > bound) {
+						if(best.compareAndSet(Double.doubleToLongBits(bound), Double.doubleToLongBits(v.value))) {
+							break;
+						}
+						bound = Double.longBitsToDouble(best.get());
+					}
+					
+					return v;
+				}
+			});
+		}
+		
+		boolean concurrent = f instanceof ConcurrentCriterionFunction &&
+				((ConcurrentCriterionFunction)f).isThreadSafe();
+		
+		return Parallel.invokeAll(tasks, concurrent ? threads : 1);
+	}
+	
+	/*
+	 * Derive the states of all candidates, concurrently if the
+	 * criterion function is thread-safe.
+	 */
+	private static List<RecursiveCriterionFunction.State> evaluate(RecursiveCriterionFunction f, List<Callable<RecursiveCriterionFunction.State>> tasks, int threads) {
+		boolean concurrent = f instanceof ConcurrentCriterionFunction &&
+				((ConcurrentCriterionFunction)f).isThreadSafe();
+		
+		return Parallel.invokeAll(tasks, concurrent ? threads : 1);
+	}
+	
+	/*
+	 * Evaluate the subsets base + candidates in batches. Every thread
+	 * evaluates one batch.
+	 */
+	private static List<BoundedValue> evaluate(final BatchCriterionFunction f, final int[] base, List<Integer> candidates, int threads) {
+		boolean concurrent = f instanceof ConcurrentCriterionFunction &&
+				((ConcurrentCriterionFunction)f).isThreadSafe();
+		int n = candidates.size();
+		int batches = concurrent ? Math.max(1, Math.min(threads, n)) : 1;
+		List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>();
+		
+		for(int b = 0; b < batches; b++) {
+			final int[] batch = new int[n * (b + 1) / batches - n * b / batches];
+			
+			for(int i = 0; i < batch.length; i++) {
+				batch[i] = candidates.get(n * b / batches + i);
+			}
+			
+			tasks.add(new Callable<double[]>() {
+				public double[] call() {
+					double[] out = new double[batch.length];
+					
+					f.getCriterionValues(base, batch, out);
+					return out;
+				}
+			});
+		}
+		
+		List<BoundedValue> values = new ArrayList<BoundedValue>(n);
+		
+		for(double[] out: Parallel.invokeAll(tasks, batches)) {
+			for(double v: out) {
+				values.add(new BoundedValue(v, true));
+			}
+		}
+		
+		return values;
+	}
+	
 	public static class IndexValue {
 		public final double value;
 		public final Integer index;
+		public final RecursiveCriterionFunction.State state;
 		
 		public IndexValue(double value, Integer index) {
+			this(value, index, null);
+		}
+		
+		public IndexValue(double value, Integer index, RecursiveCriterionFunction.State state) {
 			this.value = value;
 			this.index = index;
+			this.state = state;
 		}
 	}
 
@@ -27,6 +27,7 @@ public abstract class NestedSubsetAlgorithm extends Observable implements
 	protected double candidateValue;
 	
 	protected SelectionComparator selectionComparator;
+	protected int threads = 1;
 	
 	public int[] getFeatureVector() {
 		int[] features = new int[candidate.size()];
@@ -65,6 +66,17 @@ public abstract class NestedSubsetAlgorithm extends Observable implements
 		this.selectionComparator = selectionComparator;
 	}
 	
+	/**
+	 * Set the number of threads used to evaluate the candidates of an
+	 * add or remove operation. It only takes effect, if the criterion
+	 * function is thread-safe.
+	 * 
+	 * @param threads the number of threads. The default is 1.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+	
 	public void run(VectorSet vectors, CriterionFunction f, int dropNrFeatures) {
 		final int n = vectors.getDimension();
 		final int targetSize = n - dropNrFeatures;
@@ -4,7 +4,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
-import java.util.SortedSet;
 import java.util.TreeSet;
 
 import select.subset.CriterionFunction;
@@ -59,6 +58,9 @@ public class OscillatingSearch extends NestedSubsetAlgorithm {
 		 */
 		delta = (int)(targetSize * DEFAULT_DELTA);
 		
+		// too small subsets cannot swing at all
+		done = delta < 1;
+		
 		double[] maxValues = new double[delta * 2 + 1];
 		for(int i = 0; i < maxValues.length; i++) {
 			maxValues[i] = Double.NEGATIVE_INFINITY;
@@ -71,12 +73,13 @@ public class OscillatingSearch extends NestedSubsetAlgorithm {
 		if(candidate == null) {
 			NestedSubsetAlgorithm fs = new ForwardSelection();
 			fs.setSelectionComparator(selectionComparator);
+			fs.setThreads(threads);
 			try {
 				fs.setFeatureSpace(((CloneableFeatureSpace)featureSpace).clone());
 			} catch(CloneNotSupportedException e) {
 				// cannot happen
 			}
-			fs.doRun(f, features, dimension, targetSize);
+			fs.doRun(f, fs.featureSpace, dimension, targetSize);
 			maxValues[delta] = fs.getCandidateValue();
 			
 			candidate = new TreeSet<Integer>();
@@ -93,7 +96,6 @@ public class OscillatingSearch extends NestedSubsetAlgorithm {
 		}
 		
 		while(!done) {
-			SortedSet<Integer> newAvailable;
 			NestedSubsetAlgorithm alg;
 			Collection<Integer> oldCandidate;
 			double v;
@@ -102,13 +104,14 @@ public class OscillatingSearch extends NestedSubsetAlgorithm {
 			case DOWNSWING:
 				//System.out.println("Down " + o);
 
-				newAvailable = new TreeSet<Integer>();
-				for(Integer feature: features) {
-					newAvailable.add(feature);
+				if(targetSize - o < 1) {
+					state = State.DOWNSWING_FAILED;
+					break;
 				}
 				
 				alg = new SequentialBackwardFloatingSearch();
 				alg.setSelectionComparator(selectionComparator);
+				alg.setThreads(threads);
 				try {
 					alg.setFeatureSpace(((CloneableFeatureSpace)featureSpace).clone());
 				} catch(CloneNotSupportedException e) {
@@ -120,7 +123,7 @@ public class OscillatingSearch extends NestedSubsetAlgorithm {
 				 * Drop o features.
 				 */
 				try {
-					alg.doRun(f, newAvailable, dimension, targetSize - o);
+					alg.doRun(f, alg.featureSpace, dimension, targetSize - o);
 					v = alg.getCandidateValue();
 				} catch(ArithmeticException e) {
 					state = State.DOWNSWING_FAILED;
@@ -142,6 +145,7 @@ public class OscillatingSearch extends NestedSubsetAlgorithm {
 				
 				alg = new SequentialForwardFloatingSearch();
 				alg.setSelectionComparator(selectionComparator);
+				alg.setThreads(threads);
 				try {
 					alg.setFeatureSpace(((CloneableFeatureSpace)featureSpace).clone());
 				} catch(CloneNotSupportedException e) {
@@ -153,7 +157,7 @@ public class OscillatingSearch extends NestedSubsetAlgorithm {
 				 * Add o new features.
 				 */
 				try {
-					alg.doRun(f, newAvailable, dimension, targetSize);
+					alg.doRun(f, alg.featureSpace, dimension, targetSize);
 					v = alg.getCandidateValue();
 				} catch(ArithmeticException e) {
 					state = State.DOWNSWING_FAILED;
@@ -198,13 +202,14 @@ public class OscillatingSearch extends NestedSubsetAlgorithm {
 			case UPSWING:
 				//System.out.println("Up " + o);
 				
-				newAvailable = new TreeSet<Integer>();
-				for(Integer feature: features) {
-					newAvailable.add(feature);
+				if(targetSize + o > dimension) {
+					state = State.UPSWING_FAILED;
+					break;
 				}
 				
 				alg = new SequentialForwardFloatingSearch();
 				alg.setSelectionComparator(selectionComparator);
+				alg.setThreads(threads);
 				try {
 					alg.setFeatureSpace(((CloneableFeatureSpace)featureSpace).clone());
 				} catch(CloneNotSupportedException e) {
@@ -216,7 +221,7 @@ public class OscillatingSearch extends NestedSubsetAlgorithm {
 				 * Add o new features.
 				 */
 				try {
-					alg.doRun(f, newAvailable, dimension, targetSize + o);
+					alg.doRun(f, alg.featureSpace, dimension, targetSize + o);
 					v = alg.getCandidateValue();
 				} catch(ArithmeticException e) {
 					state = State.UPSWING_FAILED;
@@ -238,6 +243,7 @@ public class OscillatingSearch extends NestedSubsetAlgorithm {
 				
 				alg = new SequentialBackwardFloatingSearch();
 				alg.setSelectionComparator(selectionComparator);
+				alg.setThreads(threads);
 				try {
 					alg.setFeatureSpace(((CloneableFeatureSpace)featureSpace).clone());
 				} catch(CloneNotSupportedException e) {
@@ -249,7 +255,7 @@ public class OscillatingSearch extends NestedSubsetAlgorithm {
 				 * Drop o features.
 				 */
 				try {
-					alg.doRun(f, newAvailable, dimension, targetSize);
+					alg.doRun(f, alg.featureSpace, dimension, targetSize);
 					v = alg.getCandidateValue();
 				} catch(ArithmeticException e) {
 					state = State.UPSWING_FAILED;
@@ -5,6 +5,25 @@ import java.util.List;
 
 import select.subset.CriterionFunction;
 
+/**
+ * The backward floating search starts with all features. It alternates
+ * removing the worst feature with adding back the best features, as
+ * long as this improves the subsets of the same size found before.
+ *
+ * <br><br>
+ * No recursive states are carried along, and the candidates of the
+ * add steps are evaluated as a batch, if the criterion function is a
+ * BatchCriterionFunction, see GreedySelection.
+ *
+ * See P. Pudil, F.J. Ferri, J. Novovicova and J. Kittler
+ *     "Floating Search Methods for Feature Selection with Nonmonotonic
+ *     Criterion Functions"
+ *     Pattern Recognition Letters
+ *     Vol. 15, pp. 1119--1125
+ *     1994
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
 public class SequentialBackwardFloatingSearch extends NestedSubsetAlgorithm {
 
 	@Override
@@ -30,7 +49,7 @@ public class SequentialBackwardFloatingSearch extends NestedSubsetAlgorithm {
 		 * are selected in a greedy way.
 		 */
 		if(i > targetSize) {
-			worst = GreedySelection.getWorstFeature(f, candidate, selectionComparator);
+			worst = GreedySelection.getWorstFeature(f, candidate, selectionComparator, threads);
 			candidateValue = worst.value;
 			candidate.remove(worst.index);
 			addToFeatureSpace(worst.index);
@@ -39,7 +58,7 @@ public class SequentialBackwardFloatingSearch extends NestedSubsetAlgorithm {
 		}
 		
 		if(i > targetSize) {
-			worst = GreedySelection.getWorstFeature(f, candidate, selectionComparator);
+			worst = GreedySelection.getWorstFeature(f, candidate, selectionComparator, threads);
 			candidateValue = worst.value;
 			candidate.remove(worst.index);
 			addToFeatureSpace(worst.index);
@@ -48,7 +67,7 @@ public class SequentialBackwardFloatingSearch extends NestedSubsetAlgorithm {
 		}
 		
 		while(i > targetSize) {
-			worst = GreedySelection.getWorstFeature(f, candidate, selectionComparator);
+			worst = GreedySelection.getWorstFeature(f, candidate, selectionComparator, threads);
 			
 			candidateValue = worst.value;
 			candidate.remove(worst.index);
@@ -56,7 +75,7 @@ public class SequentialBackwardFloatingSearch extends NestedSubsetAlgorithm {
 			i--;
 			criterionValues[i - targetSize] = worst.value;
 			
-			GreedySelection.IndexValue best = GreedySelection.getBestFeature(f, features, candidate, selectionComparator);
+			GreedySelection.IndexValue best = GreedySelection.getBestFeature(f, features, candidate, selectionComparator, threads);
 			while((i < n - 1) && (best.value < criterionValues[i - targetSize + 1])) {
 				candidateValue = best.value;
 				candidate.add(best.index);
@@ -65,7 +84,7 @@ public class SequentialBackwardFloatingSearch extends NestedSubsetAlgorithm {
 				
 				criterionValues[i-targetSize] = best.value;
 				
-				best = GreedySelection.getBestFeature(f, features, candidate, selectionComparator);
+				best = GreedySelection.getBestFeature(f, features, candidate, selectionComparator, threads);
 			}
 		}
 		
@@ -3,6 +3,7 @@ package select.subset.greedy;
 import java.util.ArrayList;
 
 import select.subset.CriterionFunction;
+import select.subset.RecursiveCriterionFunction;
 
 /**
  * The floating search is an improvement of greedy search. It is an
@@ -11,6 +12,11 @@ import select.subset.CriterionFunction;
  * afterwards. The algorithm produces suboptimal results, that are
  * usually close to the optimal solution.
  * 
+ * <br><br>
+ * If the criterion function is a RecursiveCriterionFunction, the
+ * state of the candidate is carried along both the add and the
+ * remove steps. Batches are not used then, see GreedySelection.
+ * 
  * See P. Pudil, F.J. Ferri, J. Novovicova and J. Kittler
  *     "Floating Search Methods for Feature Selection with Nonmonotonic
  *     Criterion Functions"
@@ -22,6 +28,14 @@ import select.subset.CriterionFunction;
  */
 public class SequentialForwardFloatingSearch extends NestedSubsetAlgorithm {
 	
+	/*
+	 * The values of recursive states depend on the path, by rounding
+	 * errors. A feature is only dropped, if this improves the value by
+	 * more than this relative amount. Otherwise, dropping and adding the
+	 * same feature again may loop forever.
+	 */
+	private static final double TOLERANCE = 1e-12;
+	
 	@Override
 	protected void doRun(CriterionFunction f, Iterable<Integer> available, int dimension, int targetSize) {
 		if(candidate == null) {
@@ -35,12 +49,15 @@ public class SequentialForwardFloatingSearch extends NestedSubsetAlgorithm {
 		int n = candidate.size();
 		int i = n;
 		
+		RecursiveCriterionFunction.State state = GreedySelection.getCriterionState(f, candidate);
+		
 		/*
 		 * The initial candidate contains two elements which
 		 * are selected in a greedy way.
 		 */
 		if(i < targetSize) {
-			best = GreedySelection.getBestFeature(f, available, candidate, selectionComparator);
+			best = GreedySelection.getBestFeature(f, available, candidate, state, selectionComparator, threads);
+			state = best.state;
 			candidateValue = best.value;
 			candidate.add(best.index);
 			removeFromFeatureSpace(best.index);
@@ -49,7 +66,8 @@ public class SequentialForwardFloatingSearch extends NestedSubsetAlgorithm {
 		}
 		
 		if(i < targetSize) {
-			best = GreedySelection.getBestFeature(f, available, candidate, selectionComparator);
+			best = GreedySelection.getBestFeature(f, available, candidate, state, selectionComparator, threads);
+			state = best.state;
 			candidateValue = best.value;
 			candidate.add(best.index);
 			removeFromFeatureSpace(best.index);
@@ -58,9 +76,10 @@ public class SequentialForwardFloatingSearch extends NestedSubsetAlgorithm {
 		}
 		
 		while(i < targetSize) {
-			best = GreedySelection.getBestFeature(f, available, candidate, selectionComparator);
+			best = GreedySelection.getBestFeature(f, available, candidate, state, selectionComparator, threads);
 			
 			// Add best feature
+			state = best.state;
 			candidateValue = best.value;
 			candidate.add(best.index);
 			removeFromFeatureSpace(best.index);
@@ -68,15 +87,16 @@ public class SequentialForwardFloatingSearch extends NestedSubsetAlgorithm {
 			criterionValues[targetSize - i] = best.value;
 			
 			// Now drop bad features, if any
-			GreedySelection.IndexValue worst = GreedySelection.getWorstFeature(f, candidate, selectionComparator);
-			while((i > n + 1) && (worst.value > criterionValues[targetSize - i + 1])) {
+			GreedySelection.IndexValue worst = GreedySelection.getWorstFeature(f, candidate, state, selectionComparator, threads);
+			while((i > n + 1) && (worst.value > criterionValues[targetSize - i + 1] + TOLERANCE * Math.abs(criterionValues[targetSize - i + 1]))) {
+				state = worst.state;
 				candidateValue = worst.value;
 				candidate.remove(worst.index);
 				addToFeatureSpace(worst.index);
 				i--;
 				criterionValues[targetSize - i] = worst.value;
 				
-				worst = GreedySelection.getWorstFeature(f, candidate, selectionComparator);
+				worst = GreedySelection.getWorstFeature(f, candidate, state, selectionComparator, threads);
 			}
 		}
 
@@ -40,12 +40,13 @@ public class DefaultClassDescriptor implements ClassDescriptor {
 	
 	/**
 	 * Get a new class descriptor with some label, or get a reference
-	 * to an existing instance with the same label.
+	 * to an existing instance with the same label. This method may be
+	 * called concurrently, e.g. by parsers running in several threads.
 	 * 
 	 * @param label
 	 * @return
 	 */
-	public static ClassDescriptor getInstance(String label) {
+	public static synchronized ClassDescriptor getInstance(String label) {
 		ClassDescriptor d;
 	
 		if(classes.containsKey(label)) {
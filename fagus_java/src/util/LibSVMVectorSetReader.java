@@ -4,11 +4,15 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -26,7 +30,9 @@ import java.util.regex.Pattern;
  * 
  * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
  */
-public class LibSVMVectorSetReader implements VectorSetReader {
+public class LibSVMVectorSetReader implements StreamingVectorSetReader {
+	private static final int CHUNK_SIZE = 1024;
+	
 	private final String inputFile;
 	private int dimension;
 	
@@ -55,76 +61,168 @@ public class LibSVMVectorSetReader implements VectorSetReader {
 	 * Parse contents and write it to a VectorSet.
 	 */
 	public VectorSet parse() throws IOException {
-		Map<double[], ClassDescriptor> result = new HashMap<double[], ClassDescriptor>();
+		final Map<double[], ClassDescriptor> result = new HashMap<double[], ClassDescriptor>();
 		BufferedReader stream = new BufferedReader(new FileReader(new File(inputFile)));
 		//int n = getDimension(stream);
 		Map<String, ClassDescriptor> classes = new HashMap<String, ClassDescriptor>();
 		String[] featureLabels = getFeatureLabels(stream);
 		
-//		StringBuilder regex = new StringBuilder("(\\S+)");
-//		for(int i = 0; i < dimension; i++) {
-//			regex.append("\\s+[^\\s:]+:(-?\\d+\\.?\\d*(?>[Ee]-?\\d+)?)");
-//		}
-//		regex.append("\\s*");
-//		
-//		Pattern p = Pattern.compile(regex.toString());
-		//Pattern p = Pattern.compile("\\s*[^\\s:]+:(-?\\d+\\.?\\d*(?>[Ee]-?\\d+)?)\\s*");
+		VectorHandler handler = new VectorHandler() {
+			public void handle(double[] vector, ClassDescriptor c) {
+				result.put(vector, c);
+			}
+		};
 		
 		String l = stream.readLine();
 		while(l != null) {
-			StringTokenizer st = new StringTokenizer(l, " :");
-			String label = st.nextToken();
-
-			if(st.hasMoreTokens()) {
-				ClassDescriptor c;
-
-				if(classes.containsKey(label)) {
-					c = classes.get(label);
-				} else {
-					c = DefaultClassDescriptor.getInstance(label);
-					classes.put(label, c);
-				}
-				
-				double[] v = new double[dimension];
+			parseLine(l, classes, handler);
+			l = stream.readLine();
+		}
+		stream.close();
+		
+		return new VectorSet(result, featureLabels);
+	}
+	
+	/**
+	 * Parse contents and pass every vector to a handler. Lines are
+	 * read by the calling thread and parsed by the handlers' threads
+	 * in chunks. The number of chunks waiting to be parsed is bounded,
+	 * so memory usage does not depend on the size of the input file.
+	 */
+	public void parse(VectorHandler[] handlers) throws IOException {
+		BufferedReader stream = new BufferedReader(new FileReader(new File(inputFile)));
+		getFeatureLabels(stream);
+		
+		try {
+			if(handlers.length == 1) {
+				Map<String, ClassDescriptor> classes = new HashMap<String, ClassDescriptor>();
 				
-				for(int i = 0; i < dimension; i++) {
-					st.nextToken();
+				String l = stream.readLine();
+				while(l != null) {
+					parseLine(l, classes, handlers[0]);
+					l = stream.readLine();
+				}
+			} else {
+				parseConcurrently(stream, handlers);
+			}
+		} finally {
+			stream.close();
+		}
+	}
+	
+	/*
+	 * Read chunks of lines and distribute them to one worker thread
+	 * per handler.
+	 */
+	private void parseConcurrently(BufferedReader stream, VectorHandler[] handlers) throws IOException {
+		final BlockingQueue<List<String>> queue = new ArrayBlockingQueue<List<String>>(2 * handlers.length);
+		final List<String> end = new ArrayList<String>();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread[] workers = new Thread[handlers.length];
+		
+		for(int i = 0; i < handlers.length; i++) {
+			final VectorHandler handler = handlers[i];
+			
+			workers[i] = new Thread() {
+				public void run() {
+					Map<String, ClassDescriptor> classes = new HashMap<String, ClassDescriptor>();
 					
-					String str = st.nextToken();
-					//Matcher m = p.matcher(str);
-					v[i] = Double.parseDouble(str);
+					try {
+						List<String> chunk = queue.take();
+						
+						while(chunk != end) {
+							/*
+							 * After a failure, chunks are still consumed, so
+							 * that the reading thread does not block.
+							 */
+							if(failure.get() == null) {
+								try {
+									for(String l: chunk) {
+										parseLine(l, classes, handler);
+									}
+								} catch(Throwable t) {
+									failure.compareAndSet(null, t);
+								}
+							}
+							chunk = queue.take();
+						}
+					} catch(InterruptedException e) {
+						failure.compareAndSet(null, e);
+					}
 				}
+			};
+			workers[i].start();
+		}
+		
+		try {
+			try {
+				List<String> chunk = new ArrayList<String>(CHUNK_SIZE);
+				String l = stream.readLine();
 				
-				result.put(v, c);
+				while(l != null && failure.get() == null) {
+					chunk.add(l);
+					
+					if(chunk.size() == CHUNK_SIZE) {
+						queue.put(chunk);
+						chunk = new ArrayList<String>(CHUNK_SIZE);
+					}
+					l = stream.readLine();
+				}
+				queue.put(chunk);
+			} finally {
+				for(int i = 0; i < workers.length; i++) {
+					queue.put(end);
+				}
+				for(Thread w: workers) {
+					w.join();
+				}
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while parsing " + inputFile);
+		}
+		
+		Throwable t = failure.get();
+		if(t instanceof RuntimeException) {
+			throw (RuntimeException)t;
+		} else if(t instanceof Error) {
+			throw (Error)t;
+		} else if(t != null) {
+			IOException e = new IOException("Parsing " + inputFile + " failed");
+			e.initCause(t);
+			throw e;
+		}
+	}
+	
+	/*
+	 * Parse a single line and pass the vector to a handler. Lines
+	 * without any vector elements are ignored. 
+	 */
+	private void parseLine(String l, Map<String, ClassDescriptor> classes, VectorHandler handler) {
+		StringTokenizer st = new StringTokenizer(l, " :");
+		String label = st.nextToken();
+
+		if(st.hasMoreTokens()) {
+			ClassDescriptor c;
+
+			if(classes.containsKey(label)) {
+				c = classes.get(label);
+			} else {
+				c = DefaultClassDescriptor.getInstance(label);
+				classes.put(label, c);
 			}
 			
+			double[] v = new double[dimension];
 			
-//			Matcher m = p.matcher(l);
-//			if(m.matches()) {
-//				double[] v = new double[dimension];
-//				String label = m.group(1);
-//				ClassDescriptor c;
-//				
-//				if(classes.containsKey(label)) {
-//					c = classes.get(label);
-//				} else {
-//					//create new class descriptor
-//					c = DefaultClassDescriptor.getInstance(label);
-//					classes.put(label, c);
-//				}
-//				
-//				for(int i = 0; i < dimension; i++) {
-//					v[i] = Double.parseDouble(m.group(i+2));
-//				}
-//				
-//				result.put(v, c);
-//			}
+			for(int i = 0; i < dimension; i++) {
+				st.nextToken();
+				
+				String str = st.nextToken();
+				v[i] = Double.parseDouble(str);
+			}
 			
-			l = stream.readLine();
+			handler.handle(v, c);
 		}
-		stream.close();
-		
-		return new VectorSet(result, featureLabels);
 	}
 
 	/*
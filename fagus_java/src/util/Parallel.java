@@ -0,0 +1,154 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class holds static methods for running independent tasks
+ * concurrently on a fixed number of threads. The worker threads are
+ * shared by all invocations and kept alive for a while after their
+ * last task, so that searches calling invokeAll for every step do not
+ * start new threads every time. Idle workers terminate on their own,
+ * and they do not keep the JVM from exiting, so that callers need not
+ * care about the life cycle of worker threads.
+ *
+ * <br><br>
+ * The calling thread runs tasks as well. Tasks which call invokeAll
+ * themselves, e.g. criterion functions evaluated concurrently by a
+ * search, run their tasks in their own thread, since all threads are
+ * busy already.
+ *
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public class Parallel {
+	// seconds an idle worker waits for further tasks
+	private static final long KEEP_ALIVE = 60;
+
+	private static final ExecutorService workers = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+			KEEP_ALIVE, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "Parallel-" + count.incrementAndGet());
+
+					t.setDaemon(true);
+					return t;
+				}
+			});
+
+	// whether the current thread runs tasks of some invocation
+	private static final ThreadLocal<Boolean> running = new ThreadLocal<Boolean>() {
+		protected Boolean initialValue() {
+			return Boolean.FALSE;
+		}
+	};
+
+	/**
+	 * Get the default number of worker threads. This is the number
+	 * of available processors.
+	 *
+	 * @return the number of processors available to the JVM.
+	 */
+	public static int getDefaultThreads() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Run a list of tasks and wait for all of them to finish. The
+	 * results are returned in the order of the tasks. If only one
+	 * thread is requested, or the calling thread runs tasks of another
+	 * invocation, the tasks are run in the calling thread.
+	 *
+	 * @param tasks the tasks to run.
+	 * @param threads the maximum number of threads, including the
+	 *        calling thread.
+	 * @return the results of the tasks.
+	 * @throws RuntimeException if some task failed. Runtime exceptions
+	 *         and errors thrown by tasks are passed on unchanged.
+	 */
+	public static <T> List<T> invokeAll(List<Callable<T>> tasks, int threads) {
+		if(threads <= 1 || tasks.size() <= 1 || running.get()) {
+			List<T> results = new ArrayList<T>(tasks.size());
+
+			for(Callable<T> task: tasks) {
+				try {
+					results.add(task.call());
+				} catch(RuntimeException e) {
+					throw e;
+				} catch(Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+
+			return results;
+		}
+
+		final List<Callable<T>> t = tasks;
+		final Object[] results = new Object[tasks.size()];
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Runnable runner = new Runnable() {
+			public void run() {
+				running.set(Boolean.TRUE);
+
+				try {
+					for(int i = next.getAndIncrement(); i < results.length; i = next.getAndIncrement()) {
+						results[i] = t.get(i).call();
+					}
+				} catch(Throwable e) {
+					failure.compareAndSet(null, e);
+					// skip the remaining tasks
+					next.set(results.length);
+				} finally {
+					running.set(Boolean.FALSE);
+				}
+			}
+		};
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+
+		for(int i = 1; i < Math.min(threads, tasks.size()); i++) {
+			futures.add(workers.submit(runner));
+		}
+
+		runner.run();
+
+		try {
+			for(Future<?> f: futures) {
+				f.get();
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for tasks", e);
+		} catch(ExecutionException e) {
+			failure.compareAndSet(null, e.getCause());
+		}
+
+		Throwable cause = failure.get();
+
+		if(cause instanceof RuntimeException) {
+			throw (RuntimeException)cause;
+		}
+		if(cause instanceof Error) {
+			throw (Error)cause;
+		}
+		if(cause != null) {
+			throw new RuntimeException(cause);
+		}
+
+		@SuppressWarnings("unchecked")
+		List<T> list = (List<T>)Arrays.asList(results);
+
+		return new ArrayList<T>(list);
+	}
+}
@@ -0,0 +1,25 @@
+package util;
+
+import java.io.IOException;
+
+/**
+ * Parser interface for data sets that are too large to be kept in
+ * memory. In addition to building a VectorSet, classes implementing
+ * this interface are able to pass every vector to a handler.
+ * 
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public interface StreamingVectorSetReader extends VectorSetReader {
+	
+	/**
+	 * Parse the input and pass every vector to one of the handlers.
+	 * Every handler is served by a thread of its own, so handlers
+	 * need not be thread-safe. Each vector is passed to exactly one
+	 * handler, but the order of the vectors is not preserved.
+	 * 
+	 * @param handlers the handlers. If there is only one handler, it
+	 *        is called from the calling thread.
+	 * @throws IOException
+	 */
+	public void parse(VectorHandler[] handlers) throws IOException;
+}
@@ -0,0 +1,18 @@
+package util;
+
+/**
+ * Callback interface for readers that do not build a VectorSet,
+ * but pass every parsed vector on as soon as it is available.
+ * 
+ * @author Leonhard Brunauer &lt;lbrunau@cosy.sbg.ac.at&gt;
+ */
+public interface VectorHandler {
+	
+	/**
+	 * Handle a single vector.
+	 * 
+	 * @param vector the vector. It is not used by the reader afterwards.
+	 * @param c the vector's class.
+	 */
+	public void handle(double[] vector, ClassDescriptor c);
+}
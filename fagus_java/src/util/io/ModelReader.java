@@ -9,6 +9,7 @@ import select.FeatureSelection;
 import util.FeatureScaler;
 
 import classify.Classifier;
+import classify.Predictor;
 
 /**
  * Read a classification model and initialize the classification
@@ -44,6 +45,16 @@ public class ModelReader {
 		return classifier;
 	}
 	
+	/**
+	 * Get the classification model in its immutable form. It may
+	 * be shared by several threads.
+	 * 
+	 * @return
+	 */
+	public Predictor getPredictor() {
+		return classifier.getPredictor();
+	}
+	
 	/**
 	 * Determine, whether feature selection is used.
 	 * 
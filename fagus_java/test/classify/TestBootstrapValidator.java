@@ -0,0 +1,151 @@
+package classify;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import util.ClassDescriptor;
+import util.DefaultClassDescriptor;
+import util.VectorSet;
+
+public class TestBootstrapValidator {
+	private static final double EPSILON = 1E-12;
+	private static final ClassDescriptor A = DefaultClassDescriptor.getInstance("1");
+	private static final ClassDescriptor B = DefaultClassDescriptor.getInstance("2");
+
+	/*
+	 * Four vectors (0), (1), (2), (3) of the classes A, A, B, B.
+	 */
+	private static VectorSet getSamples() {
+		Map<double[], ClassDescriptor> data = new LinkedHashMap<double[], ClassDescriptor>();
+
+		data.put(new double[] {0.0}, A);
+		data.put(new double[] {1.0}, A);
+		data.put(new double[] {2.0}, B);
+		data.put(new double[] {3.0}, B);
+
+		return new VectorSet(data, new String[] {"1"});
+	}
+
+	/*
+	 * This classifier knows the classes of its training vectors, hence
+	 * the resubstitution error is 0, and both classes are assigned to
+	 * half of the vectors. Other vectors are assigned to a fixed class,
+	 * so that every out-of-bag vector is either always or never
+	 * misclassified.
+	 */
+	private static class TableClassifier implements Classifier {
+		private final ClassDescriptor[] unknown;
+		private List<double[]> vectors = new ArrayList<double[]>();
+		private List<ClassDescriptor> classes = new ArrayList<ClassDescriptor>();
+
+		TableClassifier(ClassDescriptor[] unknown) {
+			this.unknown = unknown;
+		}
+
+		public ClassDescriptor classify(double[] f) {
+			for(int i = 0; i < vectors.size(); i++) {
+				if(Arrays.equals(vectors.get(i), f)) {
+					return classes.get(i);
+				}
+			}
+
+			return unknown[(int)f[0]];
+		}
+
+		public Predictor train(VectorSet trainingSet) {
+			vectors = new ArrayList<double[]>(trainingSet.getData().keySet());
+			classes = new ArrayList<ClassDescriptor>(trainingSet.getData().values());
+
+			return getPredictor();
+		}
+
+		public Predictor getPredictor() {
+			final List<double[]> v = vectors;
+			final List<ClassDescriptor> c = classes;
+
+			return new AbstractPredictor() {
+				public ClassDescriptor classify(double[] f) {
+					for(int i = 0; i < v.size(); i++) {
+						if(Arrays.equals(v.get(i), f)) {
+							return c.get(i);
+						}
+					}
+
+					return unknown[(int)f[0]];
+				}
+			};
+		}
+
+		public void clearTrainingData() {
+			vectors = new ArrayList<double[]>();
+			classes = new ArrayList<ClassDescriptor>();
+		}
+
+		public boolean suggestsScaling() {
+			return false;
+		}
+	}
+
+	private static BootstrapValidator validate(ClassDescriptor[] unknown) {
+		BootstrapValidator validator = new BootstrapValidator(50);
+
+		validator.setClassifier(new TableClassifier(unknown));
+		validator.setSeed(1);
+		validator.validate(getSamples());
+
+		return validator;
+	}
+
+	/*
+	 * err = 0, Err(1) = 1/4 and gamma = 1/2, hence R' = 1/2.
+	 */
+	@Test
+	public void testEstimates() {
+		BootstrapValidator v = validate(new ClassDescriptor[] {B, A, B, B});
+		double r = 0.5;
+
+		assertEquals(0.0, v.getApparentError(), EPSILON);
+		assertEquals(0.25, v.getBootstrapError(), EPSILON);
+		assertEquals(0.5, v.getNoInformationError(), EPSILON);
+		assertEquals(0.632 * 0.25, v.getEstimate632(), EPSILON);
+		assertEquals(0.632 * 0.25 + 0.25 * 0.368 * 0.632 * r / (1.0 - 0.368 * r),
+				v.getEstimate632Plus(), EPSILON);
+	}
+
+	/*
+	 * err = 0, Err(1) = 3/4 exceeds gamma = 1/2, hence R' = 1, and the
+	 * .632+ estimate is 0.632 * Err(1) + 0.368 * gamma.
+	 */
+	@Test
+	public void testOverfitting() {
+		BootstrapValidator v = validate(new ClassDescriptor[] {B, B, A, B});
+
+		assertEquals(0.0, v.getApparentError(), EPSILON);
+		assertEquals(0.75, v.getBootstrapError(), EPSILON);
+		assertEquals(0.5, v.getNoInformationError(), EPSILON);
+		assertEquals(0.632 * 0.75, v.getEstimate632(), EPSILON);
+		assertEquals(0.632 * 0.75 + 0.368 * 0.5, v.getEstimate632Plus(), EPSILON);
+	}
+
+	/*
+	 * The intervals are the estimates +- z * SE.
+	 */
+	@Test
+	public void testIntervals() {
+		BootstrapValidator v = validate(new ClassDescriptor[] {B, A, B, B});
+		double[] interval = v.getConfidenceInterval632();
+		double se = v.getStandardError632();
+
+		assertFalse(Double.isNaN(se));
+		assertTrue(se > 0.0);
+		assertEquals(Math.max(0.0, v.getEstimate632() - 1.959963985 * se), interval[0], 1E-8);
+		assertEquals(Math.min(1.0, v.getEstimate632() + 1.959963985 * se), interval[1], 1E-8);
+	}
+}
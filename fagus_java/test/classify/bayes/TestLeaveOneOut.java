@@ -0,0 +1,98 @@
+package classify.bayes;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import reporting.ClassificationLogger;
+import util.ClassDescriptor;
+import util.DefaultClassDescriptor;
+import util.VectorSet;
+import classify.Classifier;
+import classify.LeaveOneOutEstimator;
+
+public class TestLeaveOneOut {
+
+	private static VectorSet vectors;
+	private static final int N = 15;         // samples per class
+	private static final int DIMENSION = 4;
+	private static final int CLASSES = 3;
+	
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Random r = new Random(42);
+		Map<double[], ClassDescriptor> data = new HashMap<double[], ClassDescriptor>();
+		String[] labels = new String[DIMENSION];
+		
+		for(int c = 0; c < CLASSES; c++) {
+			ClassDescriptor d = DefaultClassDescriptor.getInstance(Integer.toString(c + 1));
+			
+			for(int i = 0; i < N + c; i++) {
+				double[] v = new double[DIMENSION];
+				
+				for(int j = 0; j < DIMENSION; j++) {
+					v[j] = r.nextGaussian() * (1.0 + 0.5 * c * j) + 0.7 * c;
+				}
+				
+				data.put(v, d);
+			}
+		}
+		
+		for(int j = 0; j < DIMENSION; j++) {
+			labels[j] = Integer.toString(j + 1);
+		}
+		
+		vectors = new VectorSet(data, labels);
+	}
+	
+	@Test
+	public void testQuadratic() {
+		check(new NormalMLEClassifier());
+	}
+
+	@Test
+	public void testLinear() {
+		check(new NormalLinearClassifier());
+	}
+
+	@Test
+	public void testRegularized() {
+		check(new NormalRegularizedClassifier(0.4));
+	}
+	
+	/*
+	 * Compare the closed-form Leave-One-Out procedure with retraining
+	 * the classifier for every sample.
+	 */
+	private void check(Classifier classifier) {
+		final Map<double[], ClassDescriptor> results = new HashMap<double[], ClassDescriptor>();
+		LeaveOneOutEstimator estimator = (LeaveOneOutEstimator)classifier;
+		
+		assertTrue(estimator.canLeaveOneOut(vectors));
+		
+		estimator.leaveOneOut(vectors, new ClassificationLogger() {
+			@Override
+			public void log(double[] vector, ClassDescriptor target, ClassDescriptor result) {
+				results.put(vector, result);
+			}
+		});
+		
+		assertEquals(vectors.getData().size(), results.size());
+		
+		for(double[] v: new ArrayList<double[]>(vectors.getData().keySet())) {
+			ClassDescriptor d = vectors.remove(v);
+			classifier.train(vectors);
+			
+			assertSame(classifier.classify(v), results.get(v));
+			
+			classifier.clearTrainingData();
+			vectors.add(v, d);
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package classify.bayes;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+
+import util.ClassDescriptor;
+import util.DefaultClassDescriptor;
+import util.Parallel;
+import util.VectorSet;
+import classify.Predictor;
+
+public class TestPredictor {
+	private static final int DIMENSION = 3;
+
+	private static VectorSet getSamples(int classes, long seed) {
+		Random r = new Random(seed);
+		Map<double[], ClassDescriptor> data = new HashMap<double[], ClassDescriptor>();
+		String[] labels = new String[DIMENSION];
+
+		for(int c = 0; c < classes; c++) {
+			ClassDescriptor d = DefaultClassDescriptor.getInstance(Integer.toString(c + 1));
+
+			for(int i = 0; i < 30; i++) {
+				double[] v = new double[DIMENSION];
+
+				for(int j = 0; j < DIMENSION; j++) {
+					v[j] = r.nextGaussian() * (1.0 + 0.2 * j) + 2.0 * c;
+				}
+
+				data.put(v, d);
+			}
+		}
+
+		for(int j = 0; j < DIMENSION; j++) {
+			labels[j] = Integer.toString(j + 1);
+		}
+
+		return new VectorSet(data, labels);
+	}
+
+	private static List<double[]> getProbes() {
+		Random r = new Random(11);
+		List<double[]> probes = new ArrayList<double[]>();
+
+		for(int i = 0; i < 100; i++) {
+			double[] v = new double[DIMENSION];
+
+			for(int j = 0; j < DIMENSION; j++) {
+				v[j] = r.nextGaussian() * 3.0 + 3.0;
+			}
+
+			probes.add(v);
+		}
+
+		return probes;
+	}
+
+	private static void assertSamePredictions(Predictor expected, Predictor actual) {
+		for(double[] v: getProbes()) {
+			assertEquals(expected.classify(v), actual.classify(v));
+		}
+	}
+
+	/*
+	 * Classes of a former training must not remain in the model, and
+	 * the former predictor must not change.
+	 */
+	@Test
+	public void testRetrain() {
+		BayesClassifier classifier = new NormalLinearClassifier();
+		VectorSet three = getSamples(3, 1);
+		VectorSet two = getSamples(2, 2);
+
+		Predictor p1 = classifier.train(three);
+		Predictor p2 = classifier.train(two);
+
+		assertSamePredictions(new NormalLinearClassifier().train(three), p1);
+		assertSamePredictions(new NormalLinearClassifier().train(two), p2);
+		assertSamePredictions(p2, classifier.getPredictor());
+	}
+
+	/*
+	 * Several threads train the same instance on different data.
+	 */
+	@Test
+	public void testConcurrentTraining() {
+		final BayesClassifier classifier = new NormalRegularizedClassifier(0.5);
+		final VectorSet[] data = new VectorSet[8];
+		Predictor[] expected = new Predictor[data.length];
+		List<Callable<Predictor>> tasks = new ArrayList<Callable<Predictor>>();
+
+		for(int i = 0; i < data.length; i++) {
+			final int k = i;
+
+			data[i] = getSamples(2 + i % 3, i);
+			expected[i] = new NormalRegularizedClassifier(0.5).train(data[i]);
+
+			tasks.add(new Callable<Predictor>() {
+				public Predictor call() {
+					return classifier.train(data[k]);
+				}
+			});
+		}
+
+		List<Predictor> actual = Parallel.invokeAll(tasks, 4);
+
+		for(int i = 0; i < data.length; i++) {
+			assertSamePredictions(expected[i], actual.get(i));
+		}
+	}
+}
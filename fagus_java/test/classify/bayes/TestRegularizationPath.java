@@ -0,0 +1,77 @@
+package classify.bayes;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import util.ClassDescriptor;
+import util.DefaultClassDescriptor;
+import util.VectorSet;
+
+public class TestRegularizationPath {
+	private static final int DIMENSION = 4;
+	private static final int CLASSES = 3;
+
+	private static VectorSet getSamples(int n, long seed) {
+		Random r = new Random(seed);
+		Map<double[], ClassDescriptor> data = new HashMap<double[], ClassDescriptor>();
+		String[] labels = new String[DIMENSION];
+
+		for(int c = 0; c < CLASSES; c++) {
+			ClassDescriptor d = DefaultClassDescriptor.getInstance(Integer.toString(c + 1));
+
+			for(int i = 0; i < n + 3 * c; i++) {
+				double[] v = new double[DIMENSION];
+
+				for(int j = 0; j < DIMENSION; j++) {
+					v[j] = r.nextGaussian() * (1.0 + 0.5 * c * j) + 0.6 * c;
+				}
+
+				data.put(v, d);
+			}
+		}
+
+		for(int j = 0; j < DIMENSION; j++) {
+			labels[j] = Integer.toString(j + 1);
+		}
+
+		return new VectorSet(data, labels);
+	}
+
+	/*
+	 * The error of every grid point is the error of the classifier
+	 * trained with its parameters.
+	 */
+	@Test
+	public void testErrors() {
+		VectorSet training = getSamples(12, 7);
+		VectorSet validation = getSamples(30, 8);
+		double[] alphas = {0.0, 0.3, 1.0};
+		double[] gammas = {0.0, 0.2, 0.9};
+		RegularizationPath path = new RegularizationPath(alphas, gammas);
+
+		path.setThreads(2);
+		path.run(training, validation);
+
+		for(int a = 0; a < alphas.length; a++) {
+			for(int g = 0; g < gammas.length; g++) {
+				NormalRegularizedClassifier classifier = new NormalRegularizedClassifier(alphas[a], gammas[g]);
+				int wrong = 0;
+
+				classifier.train(training);
+
+				for(Map.Entry<double[], ClassDescriptor> e: validation.getData().entrySet()) {
+					if(classifier.classify(e.getKey()) != e.getValue()) {
+						wrong++;
+					}
+				}
+
+				assertEquals((double)wrong / validation.getData().size(), path.getErrors()[a][g], 1E-12);
+			}
+		}
+	}
+}
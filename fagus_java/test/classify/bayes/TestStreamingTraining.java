@@ -0,0 +1,102 @@
+package classify.bayes;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+import org.junit.Test;
+
+import util.LibSVMVectorSetReader;
+import classify.Predictor;
+import classify.StreamingTrainable;
+
+public class TestStreamingTraining {
+	private static final int DIMENSION = 4;
+	private static final int THREADS = 3;
+
+	/*
+	 * Write a data set in the libSVM format, with the given number of
+	 * samples per class.
+	 */
+	private static String writeSamples(int[] n, long seed) throws IOException {
+		Random r = new Random(seed);
+		File f = File.createTempFile("streaming", ".txt");
+		PrintWriter out = new PrintWriter(new FileWriter(f));
+
+		f.deleteOnExit();
+
+		for(int c = 0; c < n.length; c++) {
+			for(int i = 0; i < n[c]; i++) {
+				out.print(c + 1);
+
+				for(int j = 0; j < DIMENSION; j++) {
+					out.print(" " + (j + 1) + ":" + (r.nextGaussian() * (1.0 + 0.3 * j) + 1.5 * c));
+				}
+
+				out.println();
+			}
+		}
+
+		out.close();
+
+		return f.getPath();
+	}
+
+	/*
+	 * Compare the predictions of the streaming and the VectorSet training.
+	 */
+	private static void check(String file, StreamingTrainable streamed, BayesClassifier parsed) throws IOException {
+		Predictor p1 = streamed.train(new LibSVMVectorSetReader(file), THREADS);
+		Predictor p2 = parsed.train(new LibSVMVectorSetReader(file).parse());
+		Random r = new Random(7);
+
+		for(int i = 0; i < 200; i++) {
+			double[] v = new double[DIMENSION];
+
+			for(int j = 0; j < DIMENSION; j++) {
+				v[j] = r.nextGaussian() * 2.0 + 1.5;
+			}
+
+			assertEquals(p2.classify(v), p1.classify(v));
+		}
+	}
+
+	@Test
+	public void testQuadratic() throws IOException {
+		check(writeSamples(new int[] {40, 50, 60}, 1), new NormalMLEClassifier(), new NormalMLEClassifier());
+	}
+
+	@Test
+	public void testLinear() throws IOException {
+		check(writeSamples(new int[] {40, 50, 60}, 2), new NormalLinearClassifier(), new NormalLinearClassifier());
+	}
+
+	@Test
+	public void testRegularized() throws IOException {
+		check(writeSamples(new int[] {40, 50, 60}, 6), new NormalRegularizedClassifier(0.4, 0.1), new NormalRegularizedClassifier(0.4, 0.1));
+	}
+
+	/*
+	 * A class with less samples than dimensions needs the samples
+	 * themselves, hence the reader is parsed into a VectorSet.
+	 */
+	@Test
+	public void testSmallSampleSize() throws IOException {
+		check(writeSamples(new int[] {40, 3, 60}, 3), new NormalMLEClassifier(), new NormalMLEClassifier());
+	}
+
+	/*
+	 * Classes of a former training must not remain in the model.
+	 */
+	@Test
+	public void testRetrain() throws IOException {
+		StreamingTrainable classifier = new NormalMLEClassifier();
+
+		classifier.train(new LibSVMVectorSetReader(writeSamples(new int[] {40, 50, 60}, 4)), THREADS);
+		check(writeSamples(new int[] {40, 50}, 5), classifier, new NormalMLEClassifier());
+	}
+}
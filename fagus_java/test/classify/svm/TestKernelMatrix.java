@@ -0,0 +1,107 @@
+package classify.svm;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import classify.Predictor;
+import util.ClassDescriptor;
+import util.DefaultClassDescriptor;
+import util.VectorSet;
+
+public class TestKernelMatrix {
+	private static final int DIMENSION = 3;
+	private static final int CLASSES = 3;
+
+	private static Map<double[], ClassDescriptor> getSamples(int n, long seed) {
+		Random r = new Random(seed);
+		Map<double[], ClassDescriptor> data = new HashMap<double[], ClassDescriptor>();
+
+		for(int c = 0; c < CLASSES; c++) {
+			ClassDescriptor d = DefaultClassDescriptor.getInstance(Integer.toString(c + 1));
+
+			for(int i = 0; i < n; i++) {
+				double[] v = new double[DIMENSION];
+
+				for(int j = 0; j < DIMENSION; j++) {
+					v[j] = r.nextGaussian() + (j == c ? 1.5 : 0.0);
+				}
+
+				data.put(v, d);
+			}
+		}
+
+		return data;
+	}
+
+	private static String[] getLabels() {
+		String[] labels = new String[DIMENSION];
+
+		for(int j = 0; j < DIMENSION; j++) {
+			labels[j] = Integer.toString(j + 1);
+		}
+
+		return labels;
+	}
+
+	/*
+	 * A classifier trained on the matrix classifies like one trained
+	 * without it, also after the matrix has been switched to another
+	 * gamma.
+	 */
+	@Test
+	public void testPredictor() {
+		Map<double[], ClassDescriptor> training = getSamples(15, 1);
+		Map<double[], ClassDescriptor> all = new HashMap<double[], ClassDescriptor>(training);
+		Map<double[], ClassDescriptor> test = getSamples(10, 2);
+
+		all.putAll(test);
+
+		KernelMatrix kernel = new KernelMatrix(new VectorSet(all, getLabels()), 2);
+		SupportVectorClassifier precomputed = new SupportVectorClassifier(2.0, 0.5);
+		SupportVectorClassifier direct = new SupportVectorClassifier(2.0, 0.5);
+
+		precomputed.setKernelMatrix(kernel);
+
+		Predictor p = precomputed.train(new VectorSet(training, getLabels()));
+		Predictor q = direct.train(new VectorSet(training, getLabels()));
+
+		kernel.setGamma(4.0);
+
+		for(double[] v: all.keySet()) {
+			assertEquals(q.classify(v), p.classify(v));
+		}
+
+		for(double[] v: getSamples(5, 3).keySet()) {
+			assertEquals(q.classify(v), p.classify(v));
+		}
+	}
+
+	@Test
+	public void testValues() {
+		Map<double[], ClassDescriptor> data = getSamples(4, 5);
+		KernelMatrix kernel = new KernelMatrix(new VectorSet(data, getLabels()), 1);
+
+		kernel.setGamma(0.3);
+
+		for(int i = 0; i < kernel.size(); i++) {
+			assertEquals(i + 1, (int)kernel.getRow(i)[0].value);
+
+			for(int j = 0; j < kernel.size(); j++) {
+				double d = 0.0;
+
+				for(int k = 0; k < DIMENSION; k++) {
+					double u = kernel.getVector(i)[k] - kernel.getVector(j)[k];
+					d += u * u;
+				}
+
+				assertEquals(d, kernel.getDistance(i, j), 1E-12);
+				assertEquals(Math.exp(-0.3 * d), kernel.getRow(i)[j + 1].value, 1E-12);
+			}
+		}
+	}
+}
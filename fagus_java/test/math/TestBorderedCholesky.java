@@ -0,0 +1,163 @@
+package math;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import Jama.Matrix;
+
+public class TestBorderedCholesky {
+	private static final int DIMENSION = 6;
+	private static final double EPSILON = 1E-9;
+
+	/*
+	 * A random positive definite matrix B . B^T + I.
+	 */
+	private static double[][] getMatrix(long seed) {
+		Random r = new Random(seed);
+		double[][] b = new double[DIMENSION][DIMENSION];
+
+		for(int i = 0; i < DIMENSION; i++) {
+			for(int j = 0; j < DIMENSION; j++) {
+				b[i][j] = r.nextGaussian();
+			}
+		}
+
+		Matrix m = new Matrix(b);
+
+		return m.times(m.transpose()).plus(Matrix.identity(DIMENSION, DIMENSION)).getArray();
+	}
+
+	private static Matrix getSubMatrix(double[][] a, int[] indices) {
+		return new Matrix(new DenseSymmetricMatrix(a).getSubMatrix(indices, indices));
+	}
+
+	private static int[] append(int[] base, int j) {
+		int[] features = new int[base.length + 1];
+
+		System.arraycopy(base, 0, features, 0, base.length);
+		features[base.length] = j;
+
+		return features;
+	}
+
+	@Test
+	public void testDecomposition() {
+		double[][] a = getMatrix(1);
+		int[] base = {4, 1, 3};
+		BorderedCholesky c = new BorderedCholesky(a, base);
+		Matrix s = getSubMatrix(a, base);
+		double[][] inverse = s.inverse().getArray();
+
+		assertTrue(c.isPositiveDefinite());
+		assertEquals(Math.log(s.det()), c.getLogDeterminant(), EPSILON);
+
+		for(int i = 0; i < base.length; i++) {
+			for(int j = 0; j < base.length; j++) {
+				assertEquals(inverse[i][j], c.getInverse()[i][j], EPSILON);
+			}
+		}
+	}
+
+	/*
+	 * |z|^2 = v^T . A^(-1) . v for the solution of L . z = v.
+	 */
+	@Test
+	public void testSolve() {
+		double[][] a = getMatrix(2);
+		int[] base = {0, 5, 2, 3};
+		BorderedCholesky c = new BorderedCholesky(a, base);
+		double[] v = {1.0, -2.0, 0.5, 3.0, 0.0, -1.5};
+		double[][] w = new double[base.length][1];
+		double form = 0.0;
+
+		for(int i = 0; i < base.length; i++) {
+			w[i][0] = v[base[i]];
+		}
+
+		for(double x: c.solve(v)) {
+			form += x * x;
+		}
+
+		Matrix m = new Matrix(w);
+
+		assertEquals(m.transpose().times(getSubMatrix(a, base).inverse()).times(m).get(0, 0), form, EPSILON);
+	}
+
+	/*
+	 * Bordering the decomposition gives the determinant and the quadratic
+	 * forms of the extended matrix.
+	 */
+	@Test
+	public void testBordering() {
+		double[][] a = getMatrix(3);
+		int[] base = {2, 0};
+		BorderedCholesky c = new BorderedCholesky(a, base);
+		double[] v = {0.3, 1.0, -2.0, 0.7, 1.1, -0.4};
+		double[] z = c.solve(v);
+		double baseForm = 0.0;
+
+		for(double x: z) {
+			baseForm += x * x;
+		}
+
+		for(int j: new int[] {1, 3, 4, 5}) {
+			BorderedCholesky extended = new BorderedCholesky(a, append(base, j));
+			double[] border = c.getBorder(j);
+			double d = c.getSchurComplement(j, border);
+			double u = v[j];
+
+			for(int k = 0; k < border.length; k++) {
+				u -= border[k] * z[k];
+			}
+
+			double form = 0.0;
+
+			for(double x: extended.solve(v)) {
+				form += x * x;
+			}
+
+			assertTrue(d > 0.0);
+			assertEquals(extended.getLogDeterminant(), c.getLogDeterminant() + Math.log(d), EPSILON);
+			assertEquals(form, baseForm + u * u / d, EPSILON);
+		}
+	}
+
+	@Test
+	public void testEmptyBase() {
+		double[][] a = getMatrix(4);
+		BorderedCholesky c = new BorderedCholesky(a, new int[0]);
+		double[] border = c.getBorder(3);
+
+		assertTrue(c.isPositiveDefinite());
+		assertEquals(0.0, c.getLogDeterminant(), EPSILON);
+		assertEquals(0, border.length);
+		assertEquals(a[3][3], c.getSchurComplement(3, border), EPSILON);
+	}
+
+	/*
+	 * A copied row and column gives a pivot near zero, a negative
+	 * diagonal element no decomposition at all.
+	 */
+	@Test
+	public void testSingular() {
+		double[][] a = getMatrix(5);
+
+		for(int i = 0; i < DIMENSION; i++) {
+			a[i][DIMENSION - 1] = a[i][0];
+			a[DIMENSION - 1][i] = a[0][i];
+		}
+		a[DIMENSION - 1][DIMENSION - 1] = a[0][0];
+
+		BorderedCholesky c = new BorderedCholesky(a, new int[] {0, 2, DIMENSION - 1});
+
+		assertTrue(!c.isPositiveDefinite() || c.getMinimumPivot() < 10e-10);
+		assertTrue(new BorderedCholesky(a, new int[] {0, 2}).getMinimumPivot() > 10e-10);
+
+		a[1][1] = -1.0;
+
+		assertFalse(new BorderedCholesky(a, new int[] {0, 1}).isPositiveDefinite());
+	}
+}
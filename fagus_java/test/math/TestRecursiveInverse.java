@@ -0,0 +1,138 @@
+package math;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import Jama.Matrix;
+
+public class TestRecursiveInverse {
+	private static final int DIMENSION = 6;
+	private static final double EPSILON = 1E-9;
+	private static final double[] V = {0.5, -1.0, 2.0, 0.3, -0.7, 1.2};
+
+	/*
+	 * A random positive definite matrix B . B^T + I.
+	 */
+	private static double[][] getMatrix(long seed) {
+		Random r = new Random(seed);
+		double[][] b = new double[DIMENSION][DIMENSION];
+
+		for(int i = 0; i < DIMENSION; i++) {
+			for(int j = 0; j < DIMENSION; j++) {
+				b[i][j] = r.nextGaussian();
+			}
+		}
+
+		Matrix m = new Matrix(b);
+
+		return m.times(m.transpose()).plus(Matrix.identity(DIMENSION, DIMENSION)).getArray();
+	}
+
+	/*
+	 * The same matrix, with the last row and column a copy of the first.
+	 */
+	private static double[][] getSingularMatrix(long seed) {
+		double[][] a = getMatrix(seed);
+
+		for(int i = 0; i < DIMENSION; i++) {
+			a[i][DIMENSION - 1] = a[i][0];
+			a[DIMENSION - 1][i] = a[0][i];
+		}
+		a[DIMENSION - 1][DIMENSION - 1] = a[0][0];
+
+		return a;
+	}
+
+	/*
+	 * Compare an inverse with the inverse of its submatrix by Jama.
+	 */
+	private static void assertInverse(double[][] a, RecursiveInverse p) {
+		int[] config = p.getConfig();
+		Matrix s = new Matrix(new DenseSymmetricMatrix(a).getSubMatrix(config, config));
+		Matrix v = new Matrix(config.length, 1);
+
+		for(int i = 0; i < config.length; i++) {
+			v.set(i, 0, V[config[i]]);
+		}
+
+		assertTrue(p.isPositiveDefinite());
+		assertEquals(Math.log(s.det()), p.getLogDeterminant(), EPSILON);
+		assertEquals(v.transpose().times(s.inverse()).times(v).get(0, 0), p.getQuadraticForm(V), EPSILON);
+	}
+
+	@Test
+	public void testInverse() {
+		double[][] a = getMatrix(1);
+
+		assertInverse(a, new RecursiveInverse(a, new int[] {3, 0, 5}));
+	}
+
+	@Test
+	public void testReduced() {
+		double[][] a = getMatrix(2);
+		RecursiveInverse p = new RecursiveInverse(a, new int[] {0, 1, 2, 3, 4, 5});
+		double form = p.getQuadraticForm(V);
+
+		for(int i = 0; i < DIMENSION; i++) {
+			RecursiveInverse q = p.getReduced(i);
+
+			assertEquals(DIMENSION - 1, q.getConfig().length);
+			assertEquals(q.getQuadraticForm(V), q.getQuadraticForm(V, form), EPSILON);
+			assertInverse(a, q);
+		}
+	}
+
+	@Test
+	public void testExtended() {
+		double[][] a = getMatrix(3);
+		RecursiveInverse p = new RecursiveInverse(a, new int[] {4, 1});
+		double form = p.getQuadraticForm(V);
+
+		for(int j: new int[] {0, 2, 3, 5}) {
+			RecursiveInverse q = p.getExtended(j);
+
+			assertEquals(j, q.getConfig()[2]);
+			assertEquals(q.getQuadraticForm(V), q.getQuadraticForm(V, form), EPSILON);
+			assertInverse(a, q);
+		}
+	}
+
+	/*
+	 * An inverse derived from derived inverses builds the matrices of
+	 * its ancestors.
+	 */
+	@Test
+	public void testDerivations() {
+		double[][] a = getMatrix(4);
+		RecursiveInverse p = new RecursiveInverse(a, new int[0]);
+
+		p = p.getExtended(2).getExtended(5).getExtended(0);
+		assertInverse(a, p);
+
+		p = p.getReduced(5).getExtended(3).getExtended(1).getReduced(2);
+		assertInverse(a, p);
+	}
+
+	/*
+	 * A singular submatrix has no inverse, but the inverses of its
+	 * regular submatrices and extensions are computed from scratch.
+	 */
+	@Test
+	public void testSingular() {
+		double[][] a = getSingularMatrix(5);
+		RecursiveInverse p = new RecursiveInverse(a, new int[] {0, 2});
+		RecursiveInverse q = p.getExtended(DIMENSION - 1);
+
+		assertInverse(a, p);
+		assertFalse(q.isPositiveDefinite());
+		assertFalse(new RecursiveInverse(a, q.getConfig()).isPositiveDefinite());
+		assertFalse(q.getExtended(3).isPositiveDefinite());
+
+		assertInverse(a, q.getReduced(0));
+		assertInverse(a, q.getReduced(DIMENSION - 1));
+		assertInverse(a, new RecursiveInverse(a, q.getConfig()).getReduced(0));
+	}
+}
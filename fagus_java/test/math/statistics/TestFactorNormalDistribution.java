@@ -0,0 +1,99 @@
+package math.statistics;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestFactorNormalDistribution {
+	private static final int DIMENSION = 10;
+	private static final double EPSILON = 1E-8;
+
+	/*
+	 * Samples of two factors and some noise.
+	 */
+	private static double[][] getSamples(int n, long seed) {
+		Random r = new Random(seed);
+		double[][] samples = new double[n][DIMENSION];
+
+		for(int i = 0; i < n; i++) {
+			double a = r.nextGaussian();
+			double b = r.nextGaussian();
+
+			for(int j = 0; j < DIMENSION; j++) {
+				samples[i][j] = a * (j + 1) - b * (j % 3) + 0.3 * (1 + j % 2) * r.nextGaussian() + 5.0;
+			}
+		}
+
+		return samples;
+	}
+
+	/*
+	 * Sigma = W . W^T + Psi
+	 */
+	private static double[][] getCovariance(FactorNormalDistribution f) {
+		double[][] w = f.getLoadings();
+		double[][] cov = new double[DIMENSION][DIMENSION];
+
+		for(int i = 0; i < DIMENSION; i++) {
+			for(int j = 0; j < DIMENSION; j++) {
+				for(int t = 0; t < w[i].length; t++) {
+					cov[i][j] += w[i][t] * w[j][t];
+				}
+			}
+
+			cov[i][i] += f.getUniquenesses()[i];
+		}
+
+		return cov;
+	}
+
+	/*
+	 * The discriminant obtained by the Woodbury identity is the
+	 * discriminant of the normal distribution with the fitted
+	 * covariance matrix.
+	 */
+	private static void assertDense(double[][] samples, int rank) {
+		double[] mean = new double[DIMENSION];
+
+		for(double[] v: samples) {
+			for(int j = 0; j < DIMENSION; j++) {
+				mean[j] += v[j] / samples.length;
+			}
+		}
+
+		FactorNormalDistribution f = new FactorNormalDistribution(mean, samples, rank);
+		MultivariateNormalDistribution dense = new MultivariateNormalDistribution(mean, getCovariance(f));
+
+		for(double[] v: getSamples(5, 99)) {
+			double expected = dense.getDiscriminant(v);
+
+			assertEquals(expected, f.getDiscriminant(v), EPSILON * Math.max(1.0, Math.abs(expected)));
+			assertEquals(dense.getDiscriminant(v, 0.3), f.getDiscriminant(v, 0.3), EPSILON * Math.max(1.0, Math.abs(expected)));
+		}
+	}
+
+	@Test
+	public void testDense() {
+		assertDense(getSamples(60, 1), 2);
+		assertDense(getSamples(60, 2), 4);
+	}
+
+	/*
+	 * Fewer samples than features.
+	 */
+	@Test
+	public void testSmallSample() {
+		assertDense(getSamples(6, 3), 2);
+		assertDense(getSamples(6, 4), 8);
+	}
+
+	/*
+	 * Without factors, the covariance matrix is diagonal.
+	 */
+	@Test
+	public void testNoFactors() {
+		assertDense(getSamples(20, 5), 0);
+	}
+}
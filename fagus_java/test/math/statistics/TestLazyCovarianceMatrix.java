@@ -0,0 +1,146 @@
+package math.statistics;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestLazyCovarianceMatrix {
+	// three blocks, the last one is not full
+	private static final int DIMENSION = 2 * LazyCovarianceMatrix.BLOCK_SIZE + 7;
+	private static final double EPSILON = 1E-9;
+
+	private static List<double[]> getSamples(int n, long seed) {
+		Random r = new Random(seed);
+		List<double[]> samples = new ArrayList<double[]>();
+
+		for(int i = 0; i < n; i++) {
+			double[] v = new double[DIMENSION];
+
+			for(int j = 0; j < DIMENSION; j++) {
+				v[j] = r.nextGaussian() * (1.0 + 0.01 * j) + 5.0;
+			}
+
+			// correlate features across the blocks
+			v[DIMENSION - 1] += v[3];
+			v[LazyCovarianceMatrix.BLOCK_SIZE] -= 0.5 * v[DIMENSION - 2];
+			samples.add(v);
+		}
+
+		return samples;
+	}
+
+	private static void assertSubMatrix(double[][] expected, LazyCovarianceMatrix lazy, int[] rows, int[] columns) {
+		double[][] actual = lazy.getSubMatrix(rows, columns);
+
+		assertEquals(rows.length, actual.length);
+
+		for(int i = 0; i < rows.length; i++) {
+			assertEquals(columns.length, actual[i].length);
+
+			for(int j = 0; j < columns.length; j++) {
+				assertEquals(expected[rows[i]][columns[j]], actual[i][j], EPSILON);
+			}
+		}
+	}
+
+	/*
+	 * Rows and columns in any order and block. Blocks below the diagonal
+	 * are read transposed from the blocks above.
+	 */
+	@Test
+	public void testSubMatrix() {
+		List<double[]> samples = getSamples(50, 1);
+		double[] mean = MaximumLikelihoodEstimation.getMean(samples, DIMENSION);
+		double[][] cov = MaximumLikelihoodEstimation.getCovariance(samples, mean);
+		LazyCovarianceMatrix lazy = new LazyCovarianceMatrix(samples, mean, DIMENSION * DIMENSION);
+		int[] features = {DIMENSION - 1, 3, LazyCovarianceMatrix.BLOCK_SIZE, 0, DIMENSION - 2, 40};
+
+		assertEquals(DIMENSION, lazy.getDimension());
+		assertSubMatrix(cov, lazy, features, features);
+		assertSubMatrix(cov, lazy, new int[] {DIMENSION - 1, 50}, new int[] {1, 2, 33});
+		assertSubMatrix(cov, lazy, new int[] {1, 2, 33}, new int[] {DIMENSION - 1, 50});
+		assertSubMatrix(cov, lazy, new int[] {5}, new int[] {5});
+	}
+
+	/*
+	 * Only the blocks on and above the diagonal are kept.
+	 */
+	@Test
+	public void testBlocks() {
+		List<double[]> samples = getSamples(20, 2);
+		double[] mean = MaximumLikelihoodEstimation.getMean(samples, DIMENSION);
+		int blockElements = LazyCovarianceMatrix.BLOCK_SIZE * LazyCovarianceMatrix.BLOCK_SIZE;
+		LazyCovarianceMatrix lazy = new LazyCovarianceMatrix(samples, mean, 9 * blockElements);
+
+		assertEquals(0, lazy.getBlockCount());
+		lazy.getSubMatrix(new int[] {1}, new int[] {2});
+		assertEquals(1, lazy.getBlockCount());
+		lazy.getSubMatrix(new int[] {DIMENSION - 1}, new int[] {0});
+		lazy.getSubMatrix(new int[] {0}, new int[] {DIMENSION - 1});
+		assertEquals(2, lazy.getBlockCount());
+
+		int[] all = new int[DIMENSION];
+
+		for(int i = 0; i < DIMENSION; i++) {
+			all[i] = i;
+		}
+
+		lazy.getSubMatrix(all, all);
+		assertEquals(6, lazy.getBlockCount());
+	}
+
+	/*
+	 * Evicted blocks are estimated again.
+	 */
+	@Test
+	public void testEviction() {
+		List<double[]> samples = getSamples(30, 3);
+		double[] mean = MaximumLikelihoodEstimation.getMean(samples, DIMENSION);
+		double[][] cov = MaximumLikelihoodEstimation.getCovariance(samples, mean);
+		int blockElements = LazyCovarianceMatrix.BLOCK_SIZE * LazyCovarianceMatrix.BLOCK_SIZE;
+		LazyCovarianceMatrix lazy = new LazyCovarianceMatrix(samples, mean, 2 * blockElements);
+		int[] features = {0, 40, DIMENSION - 1};
+
+		assertSubMatrix(cov, lazy, features, features);
+		assertEquals(2, lazy.getBlockCount());
+		assertSubMatrix(cov, lazy, features, features);
+		assertSubMatrix(cov, lazy, new int[] {DIMENSION - 3}, new int[] {1});
+		assertEquals(2, lazy.getBlockCount());
+
+		lazy = new LazyCovarianceMatrix(samples, mean, 0);
+		assertSubMatrix(cov, lazy, features, features);
+		assertEquals(1, lazy.getBlockCount());
+	}
+
+	/*
+	 * The within-class scatter of several classes, estimated with
+	 * several threads.
+	 */
+	@Test
+	public void testWithinClassScatter() {
+		List<List<double[]>> classes = new ArrayList<List<double[]>>();
+		double[][] mean = new double[3][];
+		double[][][] cov = new double[3][][];
+		double[] p = {0.2, 0.3, 0.5};
+
+		for(int c = 0; c < 3; c++) {
+			classes.add(getSamples(20 + 10 * c, 4 + c));
+			mean[c] = MaximumLikelihoodEstimation.getMean(classes.get(c), DIMENSION);
+			cov[c] = MaximumLikelihoodEstimation.getCovariance(classes.get(c), mean[c]);
+		}
+
+		LazyCovarianceMatrix lazy = new LazyCovarianceMatrix(classes, mean, p, DIMENSION * DIMENSION);
+		int[] all = new int[DIMENSION];
+
+		for(int i = 0; i < DIMENSION; i++) {
+			all[i] = DIMENSION - 1 - i;
+		}
+
+		lazy.setThreads(3);
+		assertSubMatrix(Scatter.getWithinClassScatter(cov, p), lazy, all, all);
+	}
+}
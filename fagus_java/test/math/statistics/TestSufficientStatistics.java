@@ -0,0 +1,77 @@
+package math.statistics;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestSufficientStatistics {
+	private static final int DIMENSION = 4;
+	private static final double EPSILON = 1E-9;
+	
+	private static List<double[]> getSamples(int n, long seed) {
+		Random r = new Random(seed);
+		List<double[]> samples = new ArrayList<double[]>();
+		
+		for(int i = 0; i < n; i++) {
+			double[] v = new double[DIMENSION];
+			
+			for(int j = 0; j < DIMENSION; j++) {
+				v[j] = r.nextGaussian() * (j + 1) + 100.0;
+			}
+			samples.add(v);
+		}
+		
+		return samples;
+	}
+	
+	private static void assertEqualStatistics(List<double[]> samples, SufficientStatistics s) {
+		double[] mean = MaximumLikelihoodEstimation.getMean(samples, DIMENSION);
+		double[][] cov = MaximumLikelihoodEstimation.getCovariance(samples, mean);
+		
+		assertEquals(samples.size(), s.getCount());
+		
+		for(int i = 0; i < DIMENSION; i++) {
+			assertEquals(mean[i], s.getMean()[i], EPSILON);
+			
+			for(int j = 0; j < DIMENSION; j++) {
+				assertEquals(cov[i][j], s.getCovariance()[i][j], EPSILON);
+			}
+		}
+	}
+
+	@Test
+	public void testAdd() {
+		List<double[]> samples = getSamples(50, 1);
+		SufficientStatistics s = new SufficientStatistics(DIMENSION);
+		
+		for(double[] v: samples) {
+			s.add(v);
+		}
+		
+		assertEqualStatistics(samples, s);
+	}
+	
+	@Test
+	public void testMerge() {
+		List<double[]> samples = getSamples(50, 2);
+		SufficientStatistics[] parts = new SufficientStatistics[3];
+		
+		for(int i = 0; i < parts.length; i++) {
+			parts[i] = new SufficientStatistics(DIMENSION);
+		}
+		
+		// split into parts of different size, one of them empty
+		for(int i = 0; i < samples.size(); i++) {
+			parts[i % 7 == 0 ? 0 : 1].add(samples.get(i));
+		}
+		
+		parts[2].merge(parts[0]);
+		parts[2].merge(parts[1]);
+		
+		assertEqualStatistics(samples, parts[2]);
+	}
+}
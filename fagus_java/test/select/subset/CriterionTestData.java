@@ -0,0 +1,111 @@
+package select.subset;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import util.ClassDescriptor;
+import util.DefaultClassDescriptor;
+import util.VectorSet;
+
+/*
+ * The samples and assertions shared by the tests of the criterion
+ * functions.
+ */
+class CriterionTestData {
+	static final int DIMENSION = 7;
+	static final double EPSILON = 1E-8;
+
+	/*
+	 * Random samples of several classes, whose covariances and means
+	 * differ. The last feature is almost a copy of the first one, hence
+	 * the subsets containing both are nearly singular.
+	 */
+	static VectorSet getSamples(int classes, long seed) {
+		Random r = new Random(seed);
+		Map<double[], ClassDescriptor> data = new HashMap<double[], ClassDescriptor>();
+		String[] labels = new String[DIMENSION];
+
+		for(int c = 0; c < classes; c++) {
+			ClassDescriptor d = DefaultClassDescriptor.getInstance(Integer.toString(c + 1));
+
+			for(int i = 0; i < 30 + 5 * c; i++) {
+				double[] v = new double[DIMENSION];
+
+				for(int j = 0; j < DIMENSION - 1; j++) {
+					v[j] = r.nextGaussian() * (1.0 + 0.2 * j * c) + 0.4 * c * (j % 3);
+				}
+
+				v[DIMENSION - 1] = v[0] + 1E-6 * r.nextGaussian();
+				data.put(v, d);
+			}
+		}
+
+		for(int j = 0; j < DIMENSION; j++) {
+			labels[j] = Integer.toString(j + 1);
+		}
+
+		return new VectorSet(data, labels);
+	}
+
+	/*
+	 * Initialize a criterion function with the samples, estimating the
+	 * matrices on demand if the capacity is positive.
+	 */
+	static <T extends DeferredCriterionFunction> T initialize(T f, int capacity, VectorSet samples) {
+		f.setDeferredEstimation(capacity);
+		f.initialize(DIMENSION, samples);
+
+		return f;
+	}
+
+	/*
+	 * The value of a state is the value of its subset.
+	 */
+	static void assertState(CriterionFunction f, RecursiveCriterionFunction.State s) {
+		assertEquals(f.getCriterionValue(s.getConfig()), s.getValue(), EPSILON);
+	}
+
+	/*
+	 * The value of the base extended by each candidate is the value
+	 * of the batch.
+	 */
+	static void assertBatch(BatchCriterionFunction f, int[] base, int[] candidates) {
+		double[] out = new double[candidates.length];
+
+		f.getCriterionValues(base, candidates, out);
+
+		for(int i = 0; i < candidates.length; i++) {
+			int[] features = new int[base.length + 1];
+
+			System.arraycopy(base, 0, features, 0, base.length);
+			features[base.length] = candidates[i];
+
+			assertEquals(f.getCriterionValue(features), out[i], EPSILON);
+		}
+	}
+
+	/*
+	 * Get the features, which are not in a subset.
+	 */
+	static int[] getCandidates(int[] base) {
+		int[] candidates = new int[DIMENSION - base.length];
+		int k = 0;
+
+		for(int j = 0; j < DIMENSION; j++) {
+			boolean contained = false;
+
+			for(int i: base) {
+				contained |= i == j;
+			}
+
+			if(!contained) {
+				candidates[k++] = j;
+			}
+		}
+
+		return candidates;
+	}
+}
@@ -0,0 +1,78 @@
+package select.subset;
+
+import static org.junit.Assert.*;
+import static select.subset.CriterionTestData.*;
+
+import org.junit.Test;
+
+public class TestBhattacharyyaDistance {
+	private static BhattacharyyaDistance getCriterion() {
+		return getCriterion(0);
+	}
+
+	private static BhattacharyyaDistance getCriterion(int capacity) {
+		return initialize(new BhattacharyyaDistance(), capacity, getSamples(2, 9));
+	}
+
+	private static void assertBatch(BhattacharyyaDistance f, int[] base) {
+		CriterionTestData.assertBatch(f, base, getCandidates(base));
+	}
+
+	@Test
+	public void testBatch() {
+		BhattacharyyaDistance f = getCriterion();
+
+		assertBatch(f, new int[0]);
+		assertBatch(f, new int[] {3});
+		assertBatch(f, new int[] {5, 1, 2});
+	}
+
+	/*
+	 * The candidate or the base with the copied feature is nearly
+	 * singular.
+	 */
+	@Test
+	public void testSingular() {
+		BhattacharyyaDistance f = getCriterion();
+
+		assertBatch(f, new int[] {0, 4});
+		assertBatch(f, new int[] {2, 0, DIMENSION - 1});
+	}
+
+	/*
+	 * Recursive states agree with the direct evaluation, when features
+	 * are added and removed, even if the subset is nearly singular.
+	 */
+	@Test
+	public void testStates() {
+		BhattacharyyaDistance f = getCriterion();
+		RecursiveCriterionFunction.State s = f.getCriterionState(new int[] {2});
+
+		s = f.getExtendedCriterionState(4, s);
+		assertState(f, s);
+		s = f.getExtendedCriterionState(0, s);
+		assertState(f, s);
+		s = f.getCriterionState(2, s);
+		assertState(f, s);
+		s = f.getExtendedCriterionState(DIMENSION - 1, s);
+		assertState(f, s);
+		s = f.getCriterionState(0, s);
+		assertState(f, s);
+	}
+
+	@Test
+	public void testDeferred() {
+		BhattacharyyaDistance dense = getCriterion();
+		BhattacharyyaDistance deferred = getCriterion(4);
+		RecursiveCriterionFunction.State s = deferred.getCriterionState(new int[] {5, 1});
+		int[][] subsets = {{0}, {1, 3}, {5, 2, 4}, {0, 1, 2, 3, 4, 5}};
+
+		for(int[] subset: subsets) {
+			assertEquals(dense.getCriterionValue(subset), deferred.getCriterionValue(subset), EPSILON);
+		}
+
+		s = deferred.getExtendedCriterionState(3, s);
+		assertEquals(dense.getCriterionValue(s.getConfig()), s.getValue(), EPSILON);
+		assertBatch(deferred, new int[] {4, 2});
+	}
+}
@@ -0,0 +1,177 @@
+package select.subset;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import select.subset.greedy.ForwardSelection;
+import select.subset.greedy.NestedSubsetAlgorithm;
+import select.subset.greedy.SequentialForwardFloatingSearch;
+import util.ClassDescriptor;
+import util.DefaultClassDescriptor;
+import util.VectorSet;
+
+public class TestCachingCriterionFunction {
+	private static final int DIMENSION = 8;
+
+	private static VectorSet getSamples() {
+		Random r = new Random(3);
+		Map<double[], ClassDescriptor> data = new HashMap<double[], ClassDescriptor>();
+		String[] labels = new String[DIMENSION];
+
+		for(int c = 0; c < 2; c++) {
+			ClassDescriptor d = DefaultClassDescriptor.getInstance(Integer.toString(c + 1));
+
+			for(int i = 0; i < 40; i++) {
+				double[] v = new double[DIMENSION];
+
+				for(int j = 0; j < DIMENSION; j++) {
+					v[j] = r.nextGaussian() * (1.0 + 0.1 * j * c) + 0.3 * j * c;
+				}
+
+				data.put(v, d);
+			}
+		}
+
+		for(int j = 0; j < DIMENSION; j++) {
+			labels[j] = Integer.toString(j + 1);
+		}
+
+		return new VectorSet(data, labels);
+	}
+
+	/*
+	 * A bounded criterion function, which evaluates batches too, and
+	 * counts how it is called.
+	 */
+	private static class CountingCriterionFunction implements BoundedCriterionFunction, BatchCriterionFunction {
+		int bounded;
+		int batches;
+
+		public void initialize(int dimension, VectorSet data) {}
+
+		public double getCriterionValue() {
+			return 0.0;
+		}
+
+		public double getCriterionValue(int[] features) {
+			double sum = 0.0;
+
+			for(int i: features) {
+				sum += (i * 7) % DIMENSION + 1;
+			}
+
+			return sum;
+		}
+
+		public BoundedValue getCriterionValue(int[] features, double bound) {
+			bounded++;
+			return new BoundedValue(getCriterionValue(features), true);
+		}
+
+		public void getCriterionValues(int[] base, int[] candidates, double[] out) {
+			int[] features = new int[base.length + 1];
+
+			batches++;
+			System.arraycopy(base, 0, features, 0, base.length);
+
+			for(int i = 0; i < candidates.length; i++) {
+				features[base.length] = candidates[i];
+				out[i] = getCriterionValue(features);
+			}
+		}
+	}
+
+	/*
+	 * The cache of a bounded function passes the bounds on, even if
+	 * the function evaluates batches too.
+	 */
+	@Test
+	public void testBounded() {
+		CountingCriterionFunction f = new CountingCriterionFunction();
+		CachingCriterionFunction cache = CachingCriterionFunction.newInstance(f, 1000);
+		NestedSubsetAlgorithm alg = new ForwardSelection();
+
+		assertTrue(cache instanceof BoundedCriterionFunction);
+		assertFalse(cache instanceof BatchCriterionFunction);
+		assertFalse(cache instanceof RecursiveCriterionFunction);
+
+		alg.run(getSamples(), cache, DIMENSION - 4);
+
+		assertTrue(f.bounded > 0);
+		assertEquals(0, f.batches);
+	}
+
+	@Test
+	public void testBatch() {
+		CachingCriterionFunction cache = CachingCriterionFunction.newInstance(new BatchCriterionFunction() {
+			public void initialize(int dimension, VectorSet data) {}
+
+			public double getCriterionValue() {
+				return 0.0;
+			}
+
+			public double getCriterionValue(int[] features) {
+				return features.length;
+			}
+
+			public void getCriterionValues(int[] base, int[] candidates, double[] out) {
+				for(int i = 0; i < candidates.length; i++) {
+					out[i] = base.length + 1;
+				}
+			}
+		}, 1000);
+
+		assertTrue(cache instanceof BatchCriterionFunction);
+		assertFalse(cache instanceof BoundedCriterionFunction);
+	}
+
+	/*
+	 * The cache of a recursive function passes the states on without
+	 * caching them, and the searches find the same subsets as without
+	 * the cache.
+	 */
+	@Test
+	public void testRecursive() {
+		VectorSet samples = getSamples();
+		CachingCriterionFunction cache = CachingCriterionFunction.newInstance(new BhattacharyyaDistance(), 1000);
+
+		assertTrue(cache instanceof RecursiveCriterionFunction);
+		assertTrue(cache instanceof BatchCriterionFunction);
+		assertTrue(CachingCriterionFunction.newInstance(new ChernoffCriterion(), 1000) instanceof RecursiveCriterionFunction);
+		assertFalse(CachingCriterionFunction.newInstance(new ChernoffCriterion(), 1000) instanceof BatchCriterionFunction);
+
+		NestedSubsetAlgorithm cached = new SequentialForwardFloatingSearch();
+		NestedSubsetAlgorithm direct = new SequentialForwardFloatingSearch();
+
+		cached.run(samples, cache, DIMENSION - 5);
+		direct.run(samples, new BhattacharyyaDistance(), DIMENSION - 5);
+
+		assertArrayEquals(direct.getFeatureVector(), cached.getFeatureVector());
+		assertEquals(direct.getBestValue(), cached.getBestValue(), 1e-10);
+		assertEquals(0, cache.size());
+	}
+
+	/*
+	 * The cache holds no more values than its capacity, also if the
+	 * capacity is not a multiple of the number of segments.
+	 */
+	@Test
+	public void testCapacity() {
+		for(int capacity: new int[] {0, 5, 21}) {
+			CachingCriterionFunction cache = CachingCriterionFunction.newInstance(new CountingCriterionFunction(), capacity);
+
+			for(int i = 0; i < DIMENSION; i++) {
+				for(int j = i; j < DIMENSION; j++) {
+					cache.getCriterionValue(new int[] {i, j});
+				}
+			}
+
+			assertTrue(cache.size() <= capacity);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package select.subset;
+
+import static org.junit.Assert.*;
+import static select.subset.CriterionTestData.*;
+
+import org.junit.Test;
+
+public class TestChernoffCriterion {
+	private static ChernoffCriterion getCriterion(int capacity) {
+		return initialize(new ChernoffCriterion(), capacity, getSamples(3, 13));
+	}
+
+	/*
+	 * Recursive states agree with the direct evaluation, when features
+	 * are added and removed.
+	 */
+	@Test
+	public void testStates() {
+		ChernoffCriterion f = getCriterion(0);
+		RecursiveCriterionFunction.State s = f.getCriterionState(new int[] {2});
+
+		assertState(f, s);
+		s = f.getExtendedCriterionState(4, s);
+		assertState(f, s);
+		s = f.getExtendedCriterionState(1, s);
+		assertState(f, s);
+		s = f.getCriterionState(2, s);
+		assertState(f, s);
+		s = f.getExtendedCriterionState(0, s);
+		assertState(f, s);
+
+		s = f.getCriterionState();
+		assertState(f, s);
+		s = f.getCriterionState(3, s);
+		assertState(f, s);
+	}
+
+	/*
+	 * States of nearly singular subsets, and the states derived from
+	 * them, are evaluated like any other subset.
+	 */
+	@Test
+	public void testSingularStates() {
+		ChernoffCriterion f = getCriterion(0);
+		RecursiveCriterionFunction.State s = f.getCriterionState(new int[] {0, 3});
+
+		s = f.getExtendedCriterionState(DIMENSION - 1, s);
+		assertState(f, s);
+		s = f.getExtendedCriterionState(5, s);
+		assertState(f, s);
+		s = f.getCriterionState(0, s);
+		assertState(f, s);
+	}
+
+	@Test
+	public void testDeferred() {
+		ChernoffCriterion dense = getCriterion(0);
+		ChernoffCriterion deferred = getCriterion(4);
+		RecursiveCriterionFunction.State s = deferred.getCriterionState(new int[] {5, 1});
+
+		s = deferred.getExtendedCriterionState(3, s);
+		assertEquals(dense.getCriterionValue(s.getConfig()), s.getValue(), EPSILON);
+		s = deferred.getCriterionState(5, s);
+		assertEquals(dense.getCriterionValue(s.getConfig()), s.getValue(), EPSILON);
+
+		int[] regular = {0, 1, 2, 3, 4, 5};
+
+		assertEquals(dense.getCriterionValue(regular), deferred.getCriterionValue(regular), EPSILON);
+	}
+}
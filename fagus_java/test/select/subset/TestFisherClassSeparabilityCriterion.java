@@ -0,0 +1,82 @@
+package select.subset;
+
+import static org.junit.Assert.*;
+import static select.subset.CriterionTestData.*;
+
+import org.junit.Test;
+
+public class TestFisherClassSeparabilityCriterion {
+	private static FisherClassSeparabilityCriterion getCriterion(int capacity) {
+		return initialize(new FisherClassSeparabilityCriterion(), capacity, getSamples(3, 5));
+	}
+
+	/*
+	 * The candidates include the features of the base.
+	 */
+	private static void assertBatch(FisherClassSeparabilityCriterion f, int[] base) {
+		int[] candidates = new int[DIMENSION];
+
+		for(int j = 0; j < DIMENSION; j++) {
+			candidates[j] = j;
+		}
+
+		CriterionTestData.assertBatch(f, base, candidates);
+	}
+
+	@Test
+	public void testBatch() {
+		FisherClassSeparabilityCriterion f = getCriterion(0);
+
+		assertBatch(f, new int[0]);
+		assertBatch(f, new int[] {1});
+		assertBatch(f, new int[] {2, 4, 3});
+	}
+
+	/*
+	 * A base with the copied feature is nearly singular, and so are
+	 * all its candidates.
+	 */
+	@Test
+	public void testSingularBase() {
+		FisherClassSeparabilityCriterion f = getCriterion(0);
+
+		assertBatch(f, new int[] {0, DIMENSION - 1});
+		assertBatch(f, new int[] {2, 0, 4, DIMENSION - 1});
+	}
+
+	@Test
+	public void testDeferred() {
+		FisherClassSeparabilityCriterion dense = getCriterion(0);
+		FisherClassSeparabilityCriterion deferred = getCriterion(4);
+		int[][] subsets = {{0}, {1, 3}, {5, 2, 4}, {0, 1, 2, 3, 4, 5}};
+
+		for(int[] s: subsets) {
+			assertEquals(dense.getCriterionValue(s), deferred.getCriterionValue(s), EPSILON);
+		}
+
+		assertBatch(deferred, new int[] {3, 1});
+	}
+
+	/*
+	 * Recursive states agree with the direct evaluation, when features
+	 * are added and removed.
+	 */
+	@Test
+	public void testStates() {
+		FisherClassSeparabilityCriterion f = getCriterion(0);
+		RecursiveCriterionFunction.State s = f.getCriterionState(new int[] {1});
+
+		s = f.getExtendedCriterionState(4, s);
+		assertState(f, s);
+		s = f.getExtendedCriterionState(2, s);
+		assertState(f, s);
+		s = f.getCriterionState(4, s);
+		assertState(f, s);
+		s = f.getExtendedCriterionState(5, s);
+		assertState(f, s);
+
+		s = f.getCriterionState();
+		s = f.getCriterionState(DIMENSION - 1, s);
+		assertState(f, s);
+	}
+}
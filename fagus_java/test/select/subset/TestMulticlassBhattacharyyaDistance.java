@@ -0,0 +1,80 @@
+package select.subset;
+
+import static org.junit.Assert.*;
+import static select.subset.CriterionTestData.*;
+
+import org.junit.Test;
+
+import util.VectorSet;
+
+public class TestMulticlassBhattacharyyaDistance {
+	/*
+	 * For two classes, the minimum is the Bhattacharyya distance.
+	 */
+	@Test
+	public void testTwoClasses() {
+		VectorSet samples = getSamples(2, 17);
+		MulticlassBhattacharyyaDistance f = new MulticlassBhattacharyyaDistance(MulticlassBhattacharyyaDistance.Combination.MINIMUM);
+		BhattacharyyaDistance g = new BhattacharyyaDistance();
+		int[][] subsets = {{0}, {1, 3}, {5, 2, 4}, {0, 1, 2, 3, 4, 5}};
+
+		f.initialize(DIMENSION, samples);
+		g.initialize(DIMENSION, samples);
+
+		for(int[] s: subsets) {
+			assertEquals(g.getCriterionValue(s), f.getCriterionValue(s), EPSILON);
+		}
+	}
+
+	/*
+	 * Recursive states agree with the direct evaluation, when features
+	 * are added and removed, even if the subset is nearly singular.
+	 */
+	@Test
+	public void testStates() {
+		for(MulticlassBhattacharyyaDistance.Combination combination: MulticlassBhattacharyyaDistance.Combination.values()) {
+			MulticlassBhattacharyyaDistance f = new MulticlassBhattacharyyaDistance(combination);
+			RecursiveCriterionFunction.State s;
+
+			f.initialize(DIMENSION, getSamples(4, 17));
+			s = f.getCriterionState(new int[] {2});
+
+			assertState(f, s);
+			s = f.getExtendedCriterionState(4, s);
+			assertState(f, s);
+			s = f.getExtendedCriterionState(0, s);
+			assertState(f, s);
+			s = f.getCriterionState(2, s);
+			assertState(f, s);
+			s = f.getExtendedCriterionState(DIMENSION - 1, s);
+			assertState(f, s);
+			s = f.getCriterionState(0, s);
+			assertState(f, s);
+
+			s = f.getCriterionState();
+			assertState(f, s);
+			s = f.getCriterionState(3, s);
+			assertState(f, s);
+		}
+	}
+
+	/*
+	 * The pairs are evaluated concurrently, if the subset is large
+	 * enough. The matrices may be estimated on demand.
+	 */
+	@Test
+	public void testThreads() {
+		VectorSet samples = getSamples(5, 17);
+		MulticlassBhattacharyyaDistance f = new MulticlassBhattacharyyaDistance();
+		MulticlassBhattacharyyaDistance g = new MulticlassBhattacharyyaDistance();
+		int[] regular = {0, 1, 2, 3, 4, 5};
+
+		g.setThreads(4);
+		g.setDeferredEstimation(4);
+		f.initialize(DIMENSION, samples);
+		g.initialize(DIMENSION, samples);
+
+		assertEquals(f.getCriterionValue(regular), g.getCriterionValue(regular), EPSILON);
+		assertEquals(f.getCriterionValue(new int[] {3, 1}), g.getCriterionValue(new int[] {3, 1}), EPSILON);
+	}
+}